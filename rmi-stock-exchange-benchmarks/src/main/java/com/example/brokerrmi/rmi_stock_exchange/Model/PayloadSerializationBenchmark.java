@@ -0,0 +1,158 @@
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Java serialization round trips of the payloads RMI carries; main() prints their serialized sizes
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadSerializationBenchmark {
+
+    // Elements in the list and map payloads
+    @Param({"1", "256"})
+    public int size;
+
+    private TradeRequest tradeRequest;
+    private TradeResult tradeResult;
+    private OrderResult orderResult;
+    private ArrayList<TradeRequest> tradeBatch;
+    private ArrayList<StockUpdate> stockUpdates;
+    private ArrayList<MarketDataUpdate> marketData;
+    private HashMap<String, Double> allStocks;
+    private PriceBatch priceBatch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tradeRequest = new TradeRequest(OrderSide.BUY, "AAPL", 10, "client-1");
+        tradeResult = new TradeResult(true, 151.5, null);
+        List<Fill> fills = new ArrayList<>();
+        for (int i = 0; i < Math.min(size, 16); i++) {
+            fills.add(new Fill(i, "AAPL", 1, 100 + i, OrderSide.BUY, 150.0 + i * 0.01, 10, "client-1", System.currentTimeMillis()));
+        }
+        orderResult = new OrderResult(1, OrderStatus.FILLED, 10 * fills.size(), 0, fills);
+        tradeBatch = new ArrayList<>();
+        stockUpdates = new ArrayList<>();
+        marketData = new ArrayList<>();
+        allStocks = new HashMap<>();
+        String[] symbols = new String[size];
+        double[] prices = new double[size];
+        int[] quantities = new int[size];
+        long[] versions = new long[size];
+        for (int i = 0; i < size; i++) {
+            String symbol = "SYM" + i;
+            tradeBatch.add(new TradeRequest(i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL, symbol, 10, "client-1"));
+            stockUpdates.add(new StockUpdate(symbol, 100.0 + i, 1000, i));
+            marketData.add(new MarketDataUpdate(symbol, 100.0 + i, 1000, System.currentTimeMillis()));
+            allStocks.put(symbol, 100.0 + i);
+            symbols[i] = symbol;
+            prices[i] = 100.0 + i;
+            quantities[i] = 1000;
+            versions[i] = i;
+        }
+        priceBatch = new PriceBatch(symbols, prices, quantities, versions);
+    }
+
+    @Benchmark
+    public Object tradeRequest() throws Exception {
+        return roundTrip(tradeRequest);
+    }
+
+    @Benchmark
+    public Object tradeResult() throws Exception {
+        return roundTrip(tradeResult);
+    }
+
+    @Benchmark
+    public Object orderResult() throws Exception {
+        return roundTrip(orderResult);
+    }
+
+    @Benchmark
+    public Object tradeBatch() throws Exception {
+        return roundTrip(tradeBatch);
+    }
+
+    @Benchmark
+    public Object stockUpdates() throws Exception {
+        return roundTrip(stockUpdates);
+    }
+
+    @Benchmark
+    public Object marketData() throws Exception {
+        return roundTrip(marketData);
+    }
+
+    @Benchmark
+    public Object allStocks() throws Exception {
+        return roundTrip(allStocks);
+    }
+
+    @Benchmark
+    public Object priceBatch() throws Exception {
+        return roundTrip(priceBatch);
+    }
+
+    private static Object roundTrip(Object payload) throws IOException, ClassNotFoundException {
+        byte[] bytes = serialize(payload);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] serialize(Object payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        PayloadSerializationBenchmark payloads = new PayloadSerializationBenchmark();
+        payloads.size = 256;
+        payloads.setUp();
+        System.out.printf("Serialized sizes (lists and maps of %d):%n", payloads.size);
+        Map<String, Object> samples = new LinkedHashMap<>();
+        samples.put("TradeRequest", payloads.tradeRequest);
+        samples.put("TradeResult", payloads.tradeResult);
+        samples.put("OrderResult", payloads.orderResult);
+        samples.put("List<TradeRequest>", payloads.tradeBatch);
+        samples.put("List<StockUpdate>", payloads.stockUpdates);
+        samples.put("List<MarketDataUpdate>", payloads.marketData);
+        samples.put("Map<String, Double>", payloads.allStocks);
+        samples.put("PriceBatch", payloads.priceBatch);
+        for (Map.Entry<String, Object> sample : samples.entrySet()) {
+            System.out.printf("  %-24s %8d bytes%n", sample.getKey(), serialize(sample.getValue()).length);
+        }
+        new Runner(new OptionsBuilder().include(PayloadSerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.brokerrmi.rmi_stock_exchange.account;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// What the pre-trade check and booking add to a trade, with one lock against sharded accounts; run main() to sweep thread counts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountLedgerBenchmark {
+    private static final int SYMBOLS = 16;
+
+    @Param({"1", "64"})
+    public int shards;
+
+    @Param({"1024"})
+    public int clients;
+
+    private AccountLedger ledger;
+    private String[] clientIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SymbolStore symbolStore = new SymbolStore(SYMBOLS);
+        for (int i = 0; i < SYMBOLS; i++) {
+            symbolStore.add("SYM" + i, 100.0, 1_000_000, 0);
+        }
+        ledger = new AccountLedger(true, shards, Double.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, 0.05, symbolStore);
+        clientIds = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            clientIds[i] = "client-" + i;
+        }
+    }
+
+    @Benchmark
+    public String book() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+        return ledger.book(clientIds[random.nextInt(clients)], random.nextInt(SYMBOLS), side, 1, 100.0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(AccountLedgerBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.brokerrmi.rmi_stock_exchange.account;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Reservation;
+import com.example.brokerrmi.rmi_stock_exchange.journal.TradeJournal;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.LogManager;
+
+/**
+ * What the account check adds to a trade for a client homed on another broker: a draw from its
+ * grant and the settle that follows, with the home an in-process ledger, so misses and refills
+ * cost a grant without the RMI round trip a real home adds (RISK_CHECK at /metrics shows that
+ * live). Refills run on another thread, so with few cores they show up in the average; the larger
+ * grantTrades leaves mostly the draw itself. Run main() to sweep thread counts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AllowancesBenchmark {
+    private static final int SYMBOLS = 16;
+
+    @Param({"1024"})
+    public int clients;
+
+    @Param({"10", "1000"})
+    public int grantTrades;
+
+    private Allowances allowances;
+    private String[] clientIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LogManager.getLogManager().reset();
+        SymbolStore symbolStore = new SymbolStore(SYMBOLS);
+        for (int i = 0; i < SYMBOLS; i++) {
+            symbolStore.add("SYM" + i, 100.0, 1_000_000, 0);
+        }
+        AccountLedger home = new AccountLedger(true, 64, Double.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, 0.05, symbolStore);
+        allowances = new Allowances(true, grantTrades, 1000, new TradeJournal(false, "data/bench", 64, "never", 5, 100_000),
+                symbolStore);
+        AtomicLong keys = new AtomicLong();
+        allowances.start(keys::incrementAndGet, wanted -> {
+            int[] granted = new int[wanted.size()];
+            for (int i = 0; i < granted.length; i++) {
+                Reservation grant = wanted.get(i);
+                granted[i] = home.grant(grant.getClientId(), grant.getKey(), symbolStore.idOf(grant.getSymbol()),
+                        grant.getSide(), grant.getQuantity(), grant.getPrice());
+            }
+            return granted;
+        }, (clientId, key, symbol) -> home.release(clientId, key));
+        clientIds = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            clientIds[i] = "client-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        allowances.stop();
+    }
+
+    @Benchmark
+    public long drawAndSettle() throws RemoteException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+        String clientId = clientIds[random.nextInt(clients)];
+        long key = allowances.draw(clientId, random.nextInt(SYMBOLS), side, 1, 100.0, 105.0);
+        if (key != 0) {
+            allowances.settled(clientId, key, 1);
+        }
+        return key;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(AllowancesBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
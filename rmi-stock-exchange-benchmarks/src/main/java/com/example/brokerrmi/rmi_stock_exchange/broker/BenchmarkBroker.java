@@ -0,0 +1,83 @@
+package com.example.brokerrmi.rmi_stock_exchange.broker;
+
+import com.example.brokerrmi.rmi_stock_exchange.account.AccountLedger;
+import com.example.brokerrmi.rmi_stock_exchange.account.Allowances;
+import com.example.brokerrmi.rmi_stock_exchange.admission.AdmissionController;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.RaftNode;
+import com.example.brokerrmi.rmi_stock_exchange.dedup.DedupWindow;
+import com.example.brokerrmi.rmi_stock_exchange.engine.MatchingEngine;
+import com.example.brokerrmi.rmi_stock_exchange.history.TradeHistory;
+import com.example.brokerrmi.rmi_stock_exchange.journal.TradeJournal;
+import com.example.brokerrmi.rmi_stock_exchange.logging.TradeLogger;
+import com.example.brokerrmi.rmi_stock_exchange.marketdata.CandleAggregator;
+import com.example.brokerrmi.rmi_stock_exchange.marketdata.MarketDataPublisher;
+import com.example.brokerrmi.rmi_stock_exchange.membership.MembershipService;
+import com.example.brokerrmi.rmi_stock_exchange.metrics.TradingMetrics;
+import com.example.brokerrmi.rmi_stock_exchange.partition.PartitionManager;
+import com.example.brokerrmi.rmi_stock_exchange.replication.ReplicationPipeline;
+import com.example.brokerrmi.rmi_stock_exchange.replication.SettlementOutbox;
+import com.example.brokerrmi.rmi_stock_exchange.sequencer.TradeSequencer;
+import com.example.brokerrmi.rmi_stock_exchange.store.PriceSnapshotPublisher;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.logging.LogManager;
+
+// An in-process broker wired the way Spring wires it, with the journal and trade history off and no admission or account limits
+public class BenchmarkBroker implements AutoCloseable {
+    private final TradeSequencer sequencer;
+    private final SymbolStore symbolStore;
+    private final PriceSnapshotPublisher priceSnapshots;
+    private final MembershipService membership;
+    private final Allowances allowances;
+    private final SettlementOutbox settlementOutbox;
+    private final TradingServiceImpl service;
+
+    public BenchmarkBroker(String executionMode) throws RemoteException {
+        LogManager.getLogManager().reset();
+        sequencer = new TradeSequencer(executionMode, 0, 4096);
+        symbolStore = new SymbolStore(1024);
+        priceSnapshots = new PriceSnapshotPublisher(symbolStore, 5);
+        membership = new MembershipService("bench", 250, 2, 5, 8, 3000, 500, 100, 100);
+        TradeJournal journal = new TradeJournal(false, "data/bench", 64, "never", 5, 100_000);
+        allowances = new Allowances(true, 10, 1000, journal, symbolStore);
+        settlementOutbox = new SettlementOutbox("bench", 256, 100, journal);
+        service = new TradingServiceImpl("bench", 0,
+                new ReplicationPipeline("bench", 256, 10_000, 100, 5, 2048),
+                new MatchingEngine(1024, 1000), sequencer, journal,
+                new MarketDataPublisher(20, 3, 1), symbolStore,
+                new TradingMetrics(), new TradeLogger(1000, 100, 1024), new AdmissionController(0, 0, 0, 0),
+                priceSnapshots,
+                new RaftNode("versioned", "bench", 1, 300, 50, 0.8, 512, 4, 5000, 100_000, true, false, false, "data/bench"),
+                new PartitionManager("versioned", "bench", 2, 128, false), membership,
+                new DedupWindow(true, 60_000, 131_072),
+                new AccountLedger(true, 64, Double.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, 0.05, symbolStore),
+                allowances, settlementOutbox,
+                new TradeHistory(false, "bench", "data/bench/history", 4096, 1000, 1000),
+                new CandleAggregator(true, "1s,1m,5m", 300, symbolStore));
+    }
+
+    public TradingServiceImpl getService() {
+        return service;
+    }
+
+    public SymbolStore getSymbolStore() {
+        return symbolStore;
+    }
+
+    public PriceSnapshotPublisher getPriceSnapshots() {
+        return priceSnapshots;
+    }
+
+    @Override
+    public void close() throws NoSuchObjectException {
+        sequencer.shutdown();
+        priceSnapshots.shutdown();
+        membership.shutdown();
+        allowances.stop();
+        settlementOutbox.stop();
+        UnicastRemoteObject.unexportObject(service, true);
+    }
+}
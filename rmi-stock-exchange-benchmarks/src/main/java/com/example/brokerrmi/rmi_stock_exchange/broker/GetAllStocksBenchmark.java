@@ -0,0 +1,68 @@
+package com.example.brokerrmi.rmi_stock_exchange.broker;
+
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// getAllStocks as the symbol universe grows, and the snapshot rebuild that backs it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetAllStocksBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int symbols;
+
+    private BenchmarkBroker broker;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RemoteException {
+        broker = new BenchmarkBroker("monitor");
+        SymbolStore store = broker.getSymbolStore();
+        for (int i = store.size(); i < symbols; i++) {
+            store.add("SYM" + i, 100.0 + i % 100, 1000, 0);
+        }
+        broker.getPriceSnapshots().publishNow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws RemoteException {
+        broker.close();
+    }
+
+    @Benchmark
+    public Map<String, Double> getAllStocks() throws RemoteException {
+        return broker.getService().getAllStocks();
+    }
+
+    // Paid once per publish interval after any change, never by readers
+    @Benchmark
+    public void publishSnapshot() {
+        broker.getPriceSnapshots().publishNow();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GetAllStocksBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.brokerrmi.rmi_stock_exchange.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// Matching throughput against books with a constant number of resting price levels per side
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookBenchmark {
+    private static final long MID = OrderBook.toTicks(150.00);
+    private static final int ORDERS_PER_LEVEL = 10;
+    private static final long ORDER_SIZE = 100;
+
+    @Param({"10", "1000", "10000"})
+    public int depth;
+
+    private OrderBook book;
+    private long nextOrderId;
+    private long filled;
+    private boolean buyNext;
+    private final FillListener listener = (makerOrderId, makerClientId, priceTicks, quantity) -> filled += quantity;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        book = new OrderBook("AAPL", depth * ORDERS_PER_LEVEL * 2);
+        for (int level = 1; level <= depth; level++) {
+            for (int i = 0; i < ORDERS_PER_LEVEL; i++) {
+                book.add(++nextOrderId, false, MID + level, ORDER_SIZE, "maker");
+                book.add(++nextOrderId, true, MID - level, ORDER_SIZE, "maker");
+            }
+        }
+    }
+
+    // Takes the head order at the top of book, then replenishes it so depth stays constant
+    @Benchmark
+    public long matchTopOfBook() {
+        buyNext = !buyNext;
+        long price = buyNext ? book.bestAsk() : book.bestBid();
+        book.match(buyNext, price, ORDER_SIZE, listener);
+        book.add(++nextOrderId, !buyNext, price, ORDER_SIZE, "maker");
+        return filled;
+    }
+
+    // Sweeps five levels with one order, then rebuilds them
+    @Benchmark
+    public long sweepFiveLevels() {
+        buyNext = !buyNext;
+        long best = buyNext ? book.bestAsk() : book.bestBid();
+        long step = buyNext ? 1 : -1;
+        long limit = best + 4 * step;
+        book.match(buyNext, limit, 5 * ORDERS_PER_LEVEL * ORDER_SIZE, listener);
+        for (long price = best; price != limit + step; price += step) {
+            for (int i = 0; i < ORDERS_PER_LEVEL; i++) {
+                book.add(++nextOrderId, !buyNext, price, ORDER_SIZE, "maker");
+            }
+        }
+        return filled;
+    }
+
+    // Rests a passive order deep in the book and cancels it
+    @Benchmark
+    public long restAndCancel() {
+        long orderId = ++nextOrderId;
+        book.add(orderId, true, MID - depth / 2 - 1, ORDER_SIZE, "maker");
+        return book.cancel(orderId, "maker");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OrderBookBenchmark.class.getSimpleName()).build()).run();
+    }
+}
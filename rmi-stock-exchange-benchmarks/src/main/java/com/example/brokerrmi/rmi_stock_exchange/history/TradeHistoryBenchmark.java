@@ -0,0 +1,98 @@
+package com.example.brokerrmi.rmi_stock_exchange.history;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradePage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+import java.util.stream.Stream;
+
+// Recording a trade, and reading a page of one symbol's or one client's trades out of a history already written to disk
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TradeHistoryBenchmark {
+    private static final int SYMBOLS = 100;
+    private static final int CLIENTS = 1000;
+
+    @Param({"1000000"})
+    public int trades;
+
+    private Path directory;
+    private TradeHistory history;
+    private String[] symbols;
+    private String[] clients;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        LogManager.getLogManager().reset();
+        directory = Files.createTempDirectory("trade-history-bench");
+        symbols = new String[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            symbols[i] = "SYM" + i;
+        }
+        clients = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = "client-" + i;
+        }
+        history = new TradeHistory(true, "bench", directory.toString(), 4096, 1000, 1000);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < trades; i++) {
+            history.record(symbols[random.nextInt(SYMBOLS)], random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL,
+                    1 + random.nextInt(100), 100 + random.nextInt(100) / 100.0, clients[random.nextInt(CLIENTS)]);
+        }
+        // Lets the writer store the sealed blocks, so queries read them back from disk
+        while (!Integer.valueOf(0).equals(history.snapshot().get("unwrittenBlocks"))) {
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        history.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        history.record(symbols[random.nextInt(SYMBOLS)], OrderSide.BUY, 10, 100.0, clients[random.nextInt(CLIENTS)]);
+    }
+
+    @Benchmark
+    public TradePage symbolPage() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return history.symbolTrades(symbols[random.nextInt(SYMBOLS)], 0, Long.MAX_VALUE, random.nextInt(trades), 100);
+    }
+
+    @Benchmark
+    public TradePage clientPage() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return history.clientTrades(clients[random.nextInt(CLIENTS)], random.nextInt(trades), 100);
+    }
+}
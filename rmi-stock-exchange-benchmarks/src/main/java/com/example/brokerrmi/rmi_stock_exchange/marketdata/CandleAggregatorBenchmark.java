@@ -0,0 +1,65 @@
+package com.example.brokerrmi.rmi_stock_exchange.marketdata;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.CandleSeries;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// What bar and VWAP upkeep adds to a trade, and reading a full ring of 1s bars back
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CandleAggregatorBenchmark {
+    private static final int BARS = 300;
+
+    @Param({"1000"})
+    public int symbols;
+
+    private CandleAggregator candles;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SymbolStore symbolStore = new SymbolStore(symbols);
+        names = new String[symbols];
+        for (int i = 0; i < symbols; i++) {
+            names[i] = "SYM" + i;
+            symbolStore.add(names[i], 100.0, 1_000_000, 0);
+        }
+        candles = new CandleAggregator(true, "1s,1m,5m", BARS, symbolStore);
+        // Fills every 1s ring, starting far enough back that the 1m and 5m rings hold a few bars too
+        long start = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(BARS);
+        for (int id = 0; id < symbols; id++) {
+            for (int second = 0; second < BARS; second++) {
+                candles.record(id, 100.0 + second % 7, 10, start + TimeUnit.SECONDS.toMillis(second));
+            }
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        candles.record(random.nextInt(symbols), 100.0 + random.nextInt(100) / 100.0, 10, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public CandleSeries latest() {
+        return candles.latest(names[ThreadLocalRandom.current().nextInt(symbols)], 1000, BARS);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.brokerrmi.rmi_stock_exchange.replication;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.LogManager;
+
+/**
+ * Time from publishing a burst of updates until every peer has applied all of them. Peers are
+ * in-process fakes that take {@code peerLatencyMicros} per applyStockUpdates call, standing in
+ * for the network round trip; the last update of each burst is a marker the peers watch for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplicationBenchmark {
+    private static final String MARKER = "MARKER";
+
+    @Param({"1", "3"})
+    public int peers;
+
+    @Param({"0", "200", "2000"})
+    public long peerLatencyMicros;
+
+    @Param({"1", "100"})
+    public int burst;
+
+    private ReplicationPipeline pipeline;
+    private FakePeer[] fakePeers;
+    private String[] symbols;
+    private long version;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LogManager.getLogManager().reset();
+        pipeline = new ReplicationPipeline("bench", 256, 10_000, 100, 5, 2048);
+        fakePeers = new FakePeer[peers];
+        for (int i = 0; i < peers; i++) {
+            fakePeers[i] = new FakePeer(TimeUnit.MICROSECONDS.toNanos(peerLatencyMicros));
+            pipeline.addPeer("peer" + i, fakePeers[i].proxy());
+        }
+        symbols = new String[burst];
+        for (int i = 0; i < burst; i++) {
+            symbols[i] = "SYM" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Benchmark
+    public long publishUntilApplied() {
+        long marker = ++version;
+        for (int i = 0; i < burst - 1; i++) {
+            pipeline.publish(symbols[i], 100.0, 1000, marker);
+        }
+        pipeline.publish(MARKER, 100.0, 1000, marker);
+        for (FakePeer peer : fakePeers) {
+            while (peer.appliedMarker < marker) {
+                Thread.yield();
+            }
+        }
+        return marker;
+    }
+
+    private static final class FakePeer {
+        private final long latencyNanos;
+        private volatile long appliedMarker;
+
+        private FakePeer(long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        // Only what the replicator calls is implemented
+        private TradingService proxy() {
+            return (TradingService) Proxy.newProxyInstance(TradingService.class.getClassLoader(),
+                    new Class<?>[]{TradingService.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "applyStockUpdates" -> {
+                            if (latencyNanos > 0) {
+                                LockSupport.parkNanos(latencyNanos);
+                            }
+                            @SuppressWarnings("unchecked")
+                            List<StockUpdate> updates = (List<StockUpdate>) args[0];
+                            for (StockUpdate update : updates) {
+                                if (MARKER.equals(update.getSymbol())) {
+                                    appliedMarker = update.getVersion();
+                                }
+                            }
+                            yield null;
+                        }
+                        case "isAlive" -> true;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        case "toString" -> "FakePeer";
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ReplicationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
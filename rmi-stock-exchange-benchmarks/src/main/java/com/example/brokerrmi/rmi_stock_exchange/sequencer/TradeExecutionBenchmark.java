@@ -0,0 +1,76 @@
+package com.example.brokerrmi.rmi_stock_exchange.sequencer;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.BenchmarkBroker;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Load test of the monitor path against the sharded sequencer; run main() to sweep thread counts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TradeExecutionBenchmark {
+
+    @Param({"monitor", "sequencer"})
+    public String mode;
+
+    @Param({"1", "256"})
+    public int symbols;
+
+    private BenchmarkBroker broker;
+    private TradingServiceImpl service;
+    private String[] symbolNames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RemoteException {
+        broker = new BenchmarkBroker(mode);
+        service = broker.getService();
+        symbolNames = new String[symbols];
+        for (int i = 0; i < symbols; i++) {
+            symbolNames[i] = "SYM" + i;
+            broker.getSymbolStore().add(symbolNames[i], 100.0, 1_000_000, 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws RemoteException {
+        broker.close();
+    }
+
+    @Benchmark
+    public boolean buyThenSell() throws RemoteException {
+        String symbol = symbolNames[ThreadLocalRandom.current().nextInt(symbolNames.length)];
+        return service.buyStock(symbol, 1, "bench") & service.sellStock(symbol, 1, "bench");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(TradeExecutionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.brokerrmi.rmi_stock_exchange.store;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.Stock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.ref.Reference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Map<String, Stock> against SymbolStore; main() also prints retained heap and full GC time for each
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SymbolStoreBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int symbols;
+
+    private String[] names;
+    private Map<String, Stock> map;
+    private SymbolStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        names = symbolNames(symbols);
+        map = buildMap(names);
+        store = buildStore(names);
+    }
+
+    @Benchmark
+    public double mapRead() {
+        return map.get(randomName()).getPrice();
+    }
+
+    @Benchmark
+    public double storeRead() {
+        return store.price(store.idOf(randomName()));
+    }
+
+    @Benchmark
+    public double mapUpdate() {
+        Stock stock = map.get(randomName());
+        synchronized (stock) {
+            double price = stock.getPrice() + 0.01;
+            stock.setPrice(price);
+            stock.setAvailableQuantity(stock.getAvailableQuantity() + 1);
+            stock.setVersion(stock.getVersion() + 1);
+            return price;
+        }
+    }
+
+    @Benchmark
+    public double storeUpdate() {
+        int id = store.idOf(randomName());
+        synchronized (store.lockFor(id)) {
+            double price = store.price(id) + 0.01;
+            store.set(id, price, store.quantity(id) + 1, store.version(id) + 1);
+            return price;
+        }
+    }
+
+    private String randomName() {
+        return names[ThreadLocalRandom.current().nextInt(names.length)];
+    }
+
+    private static String[] symbolNames(int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "SYM" + i;
+        }
+        return names;
+    }
+
+    private static Map<String, Stock> buildMap(String[] names) {
+        Map<String, Stock> map = new ConcurrentHashMap<>();
+        for (String name : names) {
+            map.put(name, new Stock(name, 100.0, 1000));
+        }
+        return map;
+    }
+
+    private static SymbolStore buildStore(String[] names) {
+        SymbolStore store = new SymbolStore(names.length);
+        for (String name : names) {
+            store.add(name, 100.0, 1000, 0);
+        }
+        return store;
+    }
+
+    // Retained heap beyond the symbol strings, and how long a full collection takes with it live
+    private static void printFootprint(String label, int count, Supplier<Object> builder) {
+        long before = usedAfterGc();
+        Object structure = builder.get();
+        long after = usedAfterGc();
+        long start = System.nanoTime();
+        System.gc();
+        long gcMicros = (System.nanoTime() - start) / 1000;
+        System.out.printf("%-22s %,10d symbols: %,8d KB retained, full GC %,7d us%n",
+                label, count, (after - before) / 1024, gcMicros);
+        Reference.reachabilityFence(structure);
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int count : new int[]{100_000, 1_000_000}) {
+            String[] names = symbolNames(count);
+            printFootprint("ConcurrentHashMap", count, () -> buildMap(names));
+            printFootprint("SymbolStore", count, () -> buildStore(names));
+        }
+        new Runner(new OptionsBuilder()
+                .include(SymbolStoreBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.brokerrmi.rmi_stock_exchange.transport;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.BenchmarkBroker;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.rmi.server.RemoteObject;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Round-trip latency percentiles of RMI against the binary transport over loopback
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportLatencyBenchmark {
+    private static final int PIPELINE_DEPTH = 64;
+
+    private BenchmarkBroker broker;
+    private BinaryTradingServer server;
+    private TradingService rmiStub;
+    private BinaryTradingClient binaryClient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        broker = new BenchmarkBroker("monitor");
+        rmiStub = (TradingService) RemoteObject.toStub(broker.getService());
+
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new BinaryTradingServer(broker.getService(), broker.getPriceSnapshots(), true, port, 0);
+        server.start();
+        binaryClient = new BinaryTradingClient("localhost", port);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        binaryClient.close();
+        server.stop();
+        broker.close();
+    }
+
+    @Benchmark
+    public double rmiGetPrice() throws IOException {
+        return rmiStub.getPrice("AAPL");
+    }
+
+    @Benchmark
+    public double binaryGetPrice() throws IOException {
+        return binaryClient.getPrice("AAPL");
+    }
+
+    @Benchmark
+    public Map<String, Double> rmiGetAllStocks() throws IOException {
+        return rmiStub.getAllStocks();
+    }
+
+    @Benchmark
+    public Map<String, Double> binaryGetAllStocks() throws IOException {
+        return binaryClient.getAllStocks();
+    }
+
+    @Benchmark
+    public boolean rmiSellThenBuy() throws IOException {
+        return rmiStub.sellStock("AAPL", 1, "bench") & rmiStub.buyStock("AAPL", 1, "bench");
+    }
+
+    @Benchmark
+    public boolean binarySellThenBuy() throws IOException {
+        return binaryClient.sellStock("AAPL", 1, "bench") & binaryClient.buyStock("AAPL", 1, "bench");
+    }
+
+    // Time for a burst of pipelined requests on one connection to all complete
+    @Benchmark
+    public double binaryPipelinedGetPrice() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[PIPELINE_DEPTH];
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            futures[i] = binaryClient.getPriceAsync("AAPL");
+        }
+        CompletableFuture.allOf(futures).join();
+        return (Double) futures[PIPELINE_DEPTH - 1].join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TransportLatencyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
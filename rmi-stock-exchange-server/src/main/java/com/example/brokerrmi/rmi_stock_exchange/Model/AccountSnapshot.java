@@ -0,0 +1,29 @@
+// AccountSnapshot.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+import java.util.Map;
+
+// A client's cash and non-zero positions on one broker; a negative position is a short
+public class AccountSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String clientId;
+    private final double cash;
+    private final Map<String, Long> positions;
+
+    public AccountSnapshot(String clientId, double cash, Map<String, Long> positions) {
+        this.clientId = clientId;
+        this.cash = cash;
+        this.positions = positions;
+    }
+
+    public String getClientId() { return clientId; }
+    public double getCash() { return cash; }
+    public Map<String, Long> getPositions() { return positions; }
+
+    @Override
+    public String toString() {
+        return String.format("AccountSnapshot{client='%s', cash=%.2f, positions=%s}", clientId, cash, positions);
+    }
+}
@@ -0,0 +1,30 @@
+// MarketDataUpdate.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+public class MarketDataUpdate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String symbol;
+    private final double price;
+    private final int quantity;
+    private final long timestamp;
+
+    public MarketDataUpdate(String symbol, double price, int quantity, long timestamp) {
+        this.symbol = symbol;
+        this.price = price;
+        this.quantity = quantity;
+        this.timestamp = timestamp;
+    }
+
+    public String getSymbol() { return symbol; }
+    public double getPrice() { return price; }
+    public int getQuantity() { return quantity; }
+    public long getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        return String.format("MarketDataUpdate{symbol='%s', price=%.2f, quantity=%d}", symbol, price, quantity);
+    }
+}
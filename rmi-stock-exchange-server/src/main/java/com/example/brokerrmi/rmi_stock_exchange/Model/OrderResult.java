@@ -0,0 +1,39 @@
+// OrderResult.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class OrderResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long orderId;
+    private final OrderStatus status;
+    private final int filledQuantity;
+    private final int remainingQuantity;
+    private final List<Fill> fills;
+
+    public OrderResult(long orderId, OrderStatus status, int filledQuantity, int remainingQuantity, List<Fill> fills) {
+        this.orderId = orderId;
+        this.status = status;
+        this.filledQuantity = filledQuantity;
+        this.remainingQuantity = remainingQuantity;
+        this.fills = fills;
+    }
+
+    public static OrderResult rejected() {
+        return new OrderResult(0L, OrderStatus.REJECTED, 0, 0, List.of());
+    }
+
+    public long getOrderId() { return orderId; }
+    public OrderStatus getStatus() { return status; }
+    public int getFilledQuantity() { return filledQuantity; }
+    public int getRemainingQuantity() { return remainingQuantity; }
+    public List<Fill> getFills() { return fills; }
+
+    @Override
+    public String toString() {
+        return String.format("OrderResult{orderId=%d, status=%s, filled=%d, remaining=%d}",
+                orderId, status, filledQuantity, remainingQuantity);
+    }
+}
@@ -0,0 +1,7 @@
+// OrderType.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+public enum OrderType {
+    LIMIT,
+    MARKET
+}
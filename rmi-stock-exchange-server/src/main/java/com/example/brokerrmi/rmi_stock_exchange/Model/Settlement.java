@@ -0,0 +1,73 @@
+// Settlement.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+// A trade run on one broker for a client whose account is on another; quantity 0 with last set only releases the hold.
+// A fill of an order carries the order ids, so the home can keep it for the client's getFills. The sequence is the
+// source broker's, so a settlement it sends again is applied once.
+public class Settlement implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String clientId;
+    // The hold it settles against, 0 for none
+    private final long key;
+    private final String symbol;
+    private final OrderSide side;
+    private final int quantity;
+    private final double price;
+    private final long timestamp;
+    // Releases whatever the trade left of the hold
+    private final boolean last;
+    // 0 for a trade that is not an order fill
+    private final long orderId;
+    private final long counterOrderId;
+    private final long sequence;
+
+    public Settlement(String clientId, long key, String symbol, OrderSide side, int quantity, double price,
+                      long timestamp, boolean last) {
+        this(clientId, key, symbol, side, quantity, price, timestamp, last, 0, 0);
+    }
+
+    public Settlement(String clientId, long key, String symbol, OrderSide side, int quantity, double price,
+                      long timestamp, boolean last, long orderId, long counterOrderId) {
+        this(clientId, key, symbol, side, quantity, price, timestamp, last, orderId, counterOrderId, 0);
+    }
+
+    private Settlement(String clientId, long key, String symbol, OrderSide side, int quantity, double price,
+                       long timestamp, boolean last, long orderId, long counterOrderId, long sequence) {
+        this.clientId = clientId;
+        this.key = key;
+        this.symbol = symbol;
+        this.side = side;
+        this.quantity = quantity;
+        this.price = price;
+        this.timestamp = timestamp;
+        this.last = last;
+        this.orderId = orderId;
+        this.counterOrderId = counterOrderId;
+        this.sequence = sequence;
+    }
+
+    public Settlement withSequence(long sequence) {
+        return new Settlement(clientId, key, symbol, side, quantity, price, timestamp, last, orderId, counterOrderId, sequence);
+    }
+
+    public String getClientId() { return clientId; }
+    public long getKey() { return key; }
+    public String getSymbol() { return symbol; }
+    public OrderSide getSide() { return side; }
+    public int getQuantity() { return quantity; }
+    public double getPrice() { return price; }
+    public long getTimestamp() { return timestamp; }
+    public boolean isLast() { return last; }
+    public long getOrderId() { return orderId; }
+    public long getCounterOrderId() { return counterOrderId; }
+    public long getSequence() { return sequence; }
+
+    @Override
+    public String toString() {
+        return String.format("Settlement{seq=%d, key=%016x, %s %s x %d at %.2f, client='%s', last=%s, order=%d}",
+                sequence, key, side, symbol, quantity, price, clientId, last, orderId);
+    }
+}
@@ -5,6 +5,8 @@ public class Stock {
     private String symbol;
     private double price;
     private int availableQuantity;
+    // Replication version, see replication.StockVersions; 0 = never versioned
+    private long version;
 
     public Stock(String symbol, double price, int availableQuantity) {
         this.symbol = symbol;
@@ -24,6 +26,9 @@ public class Stock {
         this.availableQuantity = availableQuantity;
     }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     @Override
     public String toString() {
         return String.format("Stock{symbol='%s', price=%.2f, quantity=%d}",
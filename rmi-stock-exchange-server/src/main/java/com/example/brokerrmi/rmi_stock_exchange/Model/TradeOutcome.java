@@ -0,0 +1,35 @@
+// TradeOutcome.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+// The result of a trade sent with an idempotency key, shared with peers so a retry sent to them is not run again
+public class TradeOutcome implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // The idempotency key combined with the client id
+    private final long key;
+    private final String symbol;
+    private final boolean success;
+    private final double price;
+    private final String message;
+
+    public TradeOutcome(long key, String symbol, boolean success, double price, String message) {
+        this.key = key;
+        this.symbol = symbol;
+        this.success = success;
+        this.price = price;
+        this.message = message;
+    }
+
+    public long getKey() { return key; }
+    public String getSymbol() { return symbol; }
+    public boolean isSuccess() { return success; }
+    public double getPrice() { return price; }
+    public String getMessage() { return message; }
+
+    @Override
+    public String toString() {
+        return String.format("TradeOutcome{key=%016x, %s, success=%s, price=%.2f}", key, symbol, success, price);
+    }
+}
@@ -0,0 +1,45 @@
+// TradeRecord.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+// One trade from a broker's trade history; the sequence is the trade's position in that broker's history
+public class TradeRecord implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;
+    private final long timestamp;
+    private final String symbol;
+    private final OrderSide side;
+    private final int quantity;
+    private final double price;
+    private final String clientId;
+    private final String brokerId;
+
+    public TradeRecord(long sequence, long timestamp, String symbol, OrderSide side, int quantity, double price,
+                       String clientId, String brokerId) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.symbol = symbol;
+        this.side = side;
+        this.quantity = quantity;
+        this.price = price;
+        this.clientId = clientId;
+        this.brokerId = brokerId;
+    }
+
+    public long getSequence() { return sequence; }
+    public long getTimestamp() { return timestamp; }
+    public String getSymbol() { return symbol; }
+    public OrderSide getSide() { return side; }
+    public int getQuantity() { return quantity; }
+    public double getPrice() { return price; }
+    public String getClientId() { return clientId; }
+    public String getBrokerId() { return brokerId; }
+
+    @Override
+    public String toString() {
+        return String.format("TradeRecord{seq=%d, %s %s x %d at %.2f, client='%s', broker='%s', at=%d}",
+                sequence, side, symbol, quantity, price, clientId, brokerId, timestamp);
+    }
+}
@@ -0,0 +1,478 @@
+// AccountLedger.java
+package com.example.brokerrmi.rmi_stock_exchange.account;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountSnapshot;
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountState;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Reservation;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cash and positions per client, opened with {@code account.initial-cash} on the client's first
+ * trade. Accounts are spread over {@code account.shards} shards by client id, each with its own
+ * lock, so clients on different shards never wait for each other and a check is a hash lookup
+ * and a few comparisons. Callers book a trade while they hold its symbol, after pricing it, so
+ * the risk check, the account update and the fill happen as one step. Positions are indexed by
+ * {@link SymbolStore} id.
+ *
+ * <p>Trades that are checked now and booked later, such as resting orders and proposed log
+ * entries, take a hold under a caller-chosen key instead: the cash or shares stay reserved, and
+ * count against every later check, until the trade settles against the hold or the hold is
+ * released. Trades run on another broker draw from a {@link #grant} held for it the same way.
+ */
+@Component
+public class AccountLedger {
+    private final boolean enabled;
+    private final double initialCash;
+    private final double holdSlack;
+    private final int maxOrderQuantity;
+    private final long maxShortQuantity;
+    private final SymbolStore symbolStore;
+    private final Shard[] shards;
+    private final int shardMask;
+    private final LongAdder booked = new LongAdder();
+    private final LongAdder refusedSize = new LongAdder();
+    private final LongAdder refusedBuyingPower = new LongAdder();
+    private final LongAdder refusedShort = new LongAdder();
+
+    public AccountLedger(
+            @Value("${account.enabled:true}") boolean enabled,
+            @Value("${account.shards:64}") int shards,
+            @Value("${account.initial-cash:1000000}") double initialCash,
+            @Value("${account.max-order-quantity:10000}") int maxOrderQuantity,
+            @Value("${account.max-short-quantity:1000}") long maxShortQuantity,
+            @Value("${account.hold-slack:0.05}") double holdSlack,
+            SymbolStore symbolStore) {
+        this.enabled = enabled;
+        this.initialCash = initialCash;
+        this.holdSlack = holdSlack;
+        this.maxOrderQuantity = maxOrderQuantity;
+        this.maxShortQuantity = maxShortQuantity;
+        this.symbolStore = symbolStore;
+        int size = 1;
+        while (size < shards) {
+            size <<= 1;
+        }
+        this.shards = new Shard[size];
+        this.shardMask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // The most a trade priced at price now may cost once it runs elsewhere, with room for the price to move meanwhile
+    public double holdPrice(double price) {
+        return price * (1 + holdSlack);
+    }
+
+    // Checks the trade and books it if it passes; null when booked, otherwise why it was refused
+    public String book(String clientId, int symbolId, OrderSide side, int quantity, double price) {
+        if (!enabled) {
+            return null;
+        }
+        String owner = ownerOf(clientId);
+        Shard shard = shardOf(owner);
+        synchronized (shard) {
+            Account account = shard.accounts.get(owner);
+            String refusal = refusal(account, symbolId, side, quantity, price);
+            if (refusal != null) {
+                return refusal;
+            }
+            if (account == null) {
+                account = new Account(initialCash);
+                shard.accounts.put(owner, account);
+            }
+            account.book(symbolId, side, quantity, price);
+        }
+        booked.increment();
+        return null;
+    }
+
+    // The same checks without booking, for trades that are booked later or elsewhere
+    public String check(String clientId, int symbolId, OrderSide side, int quantity, double price) {
+        if (!enabled) {
+            return null;
+        }
+        String owner = ownerOf(clientId);
+        Shard shard = shardOf(owner);
+        synchronized (shard) {
+            return refusal(shard.accounts.get(owner), symbolId, side, quantity, price);
+        }
+    }
+
+    // Books a trade that has already happened, such as an order book fill or a committed log entry
+    public void settle(String clientId, int symbolId, OrderSide side, int quantity, double price) {
+        settle(clientId, 0, symbolId, side, quantity, price);
+    }
+
+    // The same, taking the quantity off the hold under key, if there still is one
+    public void settle(String clientId, long key, int symbolId, OrderSide side, int quantity, double price) {
+        if (!enabled || symbolId < 0 || quantity <= 0) {
+            return;
+        }
+        String owner = ownerOf(clientId);
+        Shard shard = shardOf(owner);
+        synchronized (shard) {
+            Account account = shard.accounts.computeIfAbsent(owner, id -> new Account(initialCash));
+            account.book(symbolId, side, quantity, price);
+            account.consume(key, quantity);
+        }
+        booked.increment();
+    }
+
+    // Checks the trade as book does, counting earlier holds, and holds it under key if it passes
+    public String reserve(String clientId, long key, int symbolId, OrderSide side, int quantity, double price) {
+        if (!enabled) {
+            return null;
+        }
+        String owner = ownerOf(clientId);
+        Shard shard = shardOf(owner);
+        synchronized (shard) {
+            Account account = shard.accounts.get(owner);
+            String refusal = refusal(account, symbolId, side, quantity, price);
+            if (refusal != null) {
+                return refusal;
+            }
+            if (account == null) {
+                account = new Account(initialCash);
+                shard.accounts.put(owner, account);
+            }
+            account.hold(key, symbolId, side, quantity, price);
+        }
+        return null;
+    }
+
+    /**
+     * Holds as much of quantity under key as the account allows, counting earlier holds, for trades
+     * another broker runs and draws from the hold; returns the quantity held, 0 if none. The size
+     * limit is per trade, so it is left to the broker that runs them.
+     */
+    public int grant(String clientId, long key, int symbolId, OrderSide side, int quantity, double price) {
+        if (!enabled) {
+            return quantity;
+        }
+        String owner = ownerOf(clientId);
+        Shard shard = shardOf(owner);
+        synchronized (shard) {
+            Account account = shard.accounts.get(owner);
+            long fits;
+            if (side == OrderSide.BUY) {
+                double cash = account == null ? initialCash : account.cash - account.heldCash;
+                fits = price > 0 ? (long) (cash / price) : quantity;
+            } else {
+                fits = (account == null ? 0 : account.position(symbolId) - account.heldSells(symbolId)) + maxShortQuantity;
+            }
+            int granted = (int) Math.max(0, Math.min(quantity, fits));
+            if (granted == 0) {
+                (side == OrderSide.BUY ? refusedBuyingPower : refusedShort).increment();
+                return 0;
+            }
+            if (account == null) {
+                account = new Account(initialCash);
+                shard.accounts.put(owner, account);
+            }
+            account.hold(key, symbolId, side, granted, price);
+            return granted;
+        }
+    }
+
+    // Holds without checking, for orders restored from the journal; a key already held is left as it is
+    public void hold(String clientId, long key, int symbolId, OrderSide side, long quantity, double price) {
+        if (!enabled || symbolId < 0) {
+            return;
+        }
+        String owner = ownerOf(clientId);
+        Shard shard = shardOf(owner);
+        synchronized (shard) {
+            shard.accounts.computeIfAbsent(owner, id -> new Account(initialCash)).hold(key, symbolId, side, quantity, price);
+        }
+    }
+
+    // Gives back what is left of the hold; unknown keys are ignored
+    public void release(String clientId, long key) {
+        if (!enabled) {
+            return;
+        }
+        String owner = ownerOf(clientId);
+        Shard shard = shardOf(owner);
+        synchronized (shard) {
+            Account account = shard.accounts.get(owner);
+            if (account != null) {
+                account.release(key);
+            }
+        }
+    }
+
+    // Removes and returns the accounts of the clients that match, to be adopted by another broker
+    public List<AccountState> export(Predicate<String> clients) {
+        List<AccountState> exported = new ArrayList<>();
+        if (!enabled) {
+            return exported;
+        }
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Map.Entry<String, Account>> it = shard.accounts.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Account> entry = it.next();
+                    if (clients.test(entry.getKey())) {
+                        exported.add(entry.getValue().state(entry.getKey(), symbolStore));
+                        it.remove();
+                    }
+                }
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Merges an account another broker held for the client. What it traded there is added to what
+     * it traded here, so the order in which the two brokers saw the client does not matter, and
+     * holds this account already has are kept once.
+     */
+    public void adopt(AccountState state, ToIntFunction<String> symbolIds) {
+        if (!enabled) {
+            return;
+        }
+        String owner = ownerOf(state.getClientId());
+        Shard shard = shardOf(owner);
+        synchronized (shard) {
+            Account account = shard.accounts.computeIfAbsent(owner, id -> new Account(initialCash));
+            account.cash += state.getCash() - initialCash;
+            state.getPositions().forEach((symbol, position) -> account.add(symbolIds.applyAsInt(symbol), position));
+            for (Reservation hold : state.getHolds()) {
+                account.hold(hold.getKey(), symbolIds.applyAsInt(hold.getSymbol()), hold.getSide(), hold.getQuantity(),
+                        hold.getPrice());
+            }
+        }
+    }
+
+    // A client that has not traded yet shows the opening cash and no positions
+    public AccountSnapshot account(String clientId) {
+        String owner = ownerOf(clientId);
+        Shard shard = shardOf(owner);
+        Map<String, Long> positions = new TreeMap<>();
+        double cash;
+        synchronized (shard) {
+            Account account = shard.accounts.get(owner);
+            if (account == null) {
+                return new AccountSnapshot(owner, initialCash, Map.of());
+            }
+            cash = account.cash;
+            for (int id = 0; id < account.positions.length; id++) {
+                if (account.positions[id] != 0) {
+                    positions.put(symbolStore.symbol(id), account.positions[id]);
+                }
+            }
+        }
+        return new AccountSnapshot(owner, cash, positions);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        if (!enabled) {
+            return snapshot;
+        }
+        int accounts = 0;
+        int holds = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                accounts += shard.accounts.size();
+                for (Account account : shard.accounts.values()) {
+                    holds += account.holds == null ? 0 : account.holds.size();
+                }
+            }
+        }
+        snapshot.put("accounts", accounts);
+        snapshot.put("holds", holds);
+        snapshot.put("shards", shards.length);
+        snapshot.put("booked", booked.sum());
+        Map<String, Long> refused = new LinkedHashMap<>();
+        refused.put("orderSize", refusedSize.sum());
+        refused.put("buyingPower", refusedBuyingPower.sum());
+        refused.put("shortLimit", refusedShort.sum());
+        snapshot.put("refused", refused);
+        return snapshot;
+    }
+
+    // The size limits alone, which need no account; null if the size is allowed
+    public String sizeRefusal(int quantity) {
+        // A negative buy would credit cash and a negative sale add shares, past every other check
+        if (quantity <= 0) {
+            refusedSize.increment();
+            return "Order size " + quantity + " is not positive";
+        }
+        if (enabled && quantity > maxOrderQuantity) {
+            refusedSize.increment();
+            return "Order size " + quantity + " above the limit of " + maxOrderQuantity;
+        }
+        return null;
+    }
+
+    // Caller holds the account's shard; a null account is one that has not traded yet. Holds count as spent.
+    private String refusal(Account account, int symbolId, OrderSide side, int quantity, double price) {
+        String refusal = sizeRefusal(quantity);
+        if (refusal != null) {
+            return refusal;
+        }
+        if (side == OrderSide.BUY) {
+            double cash = account == null ? initialCash : account.cash - account.heldCash;
+            if (quantity * price > cash) {
+                refusedBuyingPower.increment();
+                return "Insufficient buying power for " + symbolStore.symbol(symbolId);
+            }
+        } else {
+            long position = account == null ? 0 : account.position(symbolId) - account.heldSells(symbolId);
+            if (position - quantity < -maxShortQuantity) {
+                refusedShort.increment();
+                return "Short-sell limit reached for " + symbolStore.symbol(symbolId);
+            }
+        }
+        return null;
+    }
+
+    private Shard shardOf(String owner) {
+        int hash = owner.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & shardMask];
+    }
+
+    private static String ownerOf(String clientId) {
+        return clientId == null ? "" : clientId;
+    }
+
+    private static final class Shard {
+        private final Map<String, Account> accounts = new HashMap<>();
+    }
+
+    // Guarded by its shard
+    private static final class Account {
+        private double cash;
+        private long[] positions = new long[16];
+        // Totals of the open holds: cash for buys, shares per symbol for sells
+        private double heldCash;
+        private long[] heldSells = new long[16];
+        private Map<Long, Hold> holds;
+
+        private Account(double cash) {
+            this.cash = cash;
+        }
+
+        private long position(int symbolId) {
+            return symbolId < positions.length ? positions[symbolId] : 0;
+        }
+
+        private long heldSells(int symbolId) {
+            return symbolId < heldSells.length ? heldSells[symbolId] : 0;
+        }
+
+        private void book(int symbolId, OrderSide side, int quantity, double price) {
+            if (side == OrderSide.BUY) {
+                cash -= quantity * price;
+                add(symbolId, quantity);
+            } else {
+                cash += quantity * price;
+                add(symbolId, -quantity);
+            }
+        }
+
+        private void add(int symbolId, long quantity) {
+            if (symbolId < 0) {
+                return;
+            }
+            if (symbolId >= positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(symbolId + 1, positions.length * 2));
+            }
+            positions[symbolId] += quantity;
+        }
+
+        private void hold(long key, int symbolId, OrderSide side, long quantity, double price) {
+            if (holds == null) {
+                holds = new HashMap<>();
+            }
+            if (symbolId < 0 || quantity <= 0 || holds.containsKey(key)) {
+                return;
+            }
+            holds.put(key, new Hold(symbolId, side, quantity, price));
+            adjust(symbolId, side, quantity, price);
+        }
+
+        private void consume(long key, long quantity) {
+            Hold hold = holds == null ? null : holds.get(key);
+            if (hold == null) {
+                return;
+            }
+            long taken = Math.min(quantity, hold.quantity);
+            hold.quantity -= taken;
+            adjust(hold.symbolId, hold.side, -taken, hold.price);
+            if (hold.quantity == 0) {
+                holds.remove(key);
+            }
+        }
+
+        private void release(long key) {
+            Hold hold = holds == null ? null : holds.remove(key);
+            if (hold != null) {
+                adjust(hold.symbolId, hold.side, -hold.quantity, hold.price);
+            }
+        }
+
+        private void adjust(int symbolId, OrderSide side, long quantity, double price) {
+            if (side == OrderSide.BUY) {
+                heldCash += quantity * price;
+                return;
+            }
+            if (symbolId >= heldSells.length) {
+                heldSells = Arrays.copyOf(heldSells, Math.max(symbolId + 1, heldSells.length * 2));
+            }
+            heldSells[symbolId] += quantity;
+        }
+
+        private AccountState state(String clientId, SymbolStore symbolStore) {
+            Map<String, Long> byName = new TreeMap<>();
+            for (int id = 0; id < positions.length; id++) {
+                if (positions[id] != 0) {
+                    byName.put(symbolStore.symbol(id), positions[id]);
+                }
+            }
+            List<Reservation> open = new ArrayList<>();
+            if (holds != null) {
+                holds.forEach((key, hold) -> open.add(new Reservation(clientId, key, symbolStore.symbol(hold.symbolId),
+                        hold.side, (int) hold.quantity, hold.price)));
+            }
+            return new AccountState(clientId, cash, byName, open);
+        }
+    }
+
+    // What is left of one hold; a buy holds quantity times price in cash
+    private static final class Hold {
+        private final int symbolId;
+        private final OrderSide side;
+        private long quantity;
+        private final double price;
+
+        private Hold(int symbolId, OrderSide side, long quantity, double price) {
+            this.symbolId = symbolId;
+            this.side = side;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+// Allowances.java
+package com.example.brokerrmi.rmi_stock_exchange.account;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Reservation;
+import com.example.brokerrmi.rmi_stock_exchange.journal.TradeJournal;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Budget the home brokers of other brokers' clients have set aside for trades run here, so a
+ * trade for a client homed elsewhere is checked on this broker instead of waiting on its home.
+ * A grant is a hold on the home under its own key, sized for {@code account.grant-trades} trades
+ * like the one that asked for it. Trades draw from it here and settle against it there; once less
+ * than half a grant is left for a client, symbol and side, another is asked for in the background,
+ * together with the other refills due by then, and only a trade no grant covers waits for the home. Grants nothing has drawn from for
+ * {@code account.grant-idle-ms} are released, so unused budget goes back to the account.
+ *
+ * <p>Each grant is journaled before it is asked for and closed by the settlement that releases
+ * it, so grants still open when the broker stopped are released when it starts again.
+ */
+@Component
+public class Allowances {
+    private static final Logger logger = Logger.getLogger(Allowances.class.getName());
+
+    private static final int REFILL_BATCH = 256;
+
+    private final boolean enabled;
+    private final int grantTrades;
+    private final long idleMillis;
+    private final TradeJournal journal;
+    private final SymbolStore symbolStore;
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final Map<Long, Grant> grants = new ConcurrentHashMap<>();
+    private final Map<Long, OrderDraw> orders = new ConcurrentHashMap<>();
+    // Grants asked for and not yet released, for journal snapshots
+    private final Map<Long, Reservation> open = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final Queue<Refill> refillQueue = new ConcurrentLinkedQueue<>();
+    // Set while a task drains refillQueue, so refills due at once go to the homes in one batch
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final ScheduledExecutorService executor;
+
+    private volatile LongSupplier keys;
+    private volatile Granter granter;
+    private volatile Releaser releaser;
+
+    @FunctionalInterface
+    public interface Granter {
+        // Holds up to each reservation's quantity on its client's home; the quantities held
+        int[] grant(List<Reservation> wanted) throws RemoteException;
+    }
+
+    @FunctionalInterface
+    public interface Releaser {
+        // Gives back what is left of the hold on the client's home, after the settlements already sent
+        void release(String clientId, long key, String symbol);
+    }
+
+    public Allowances(
+            @Value("${account.enabled:true}") boolean enabled,
+            @Value("${account.grant-trades:10}") int grantTrades,
+            @Value("${account.grant-idle-ms:1000}") long idleMillis,
+            TradeJournal journal,
+            SymbolStore symbolStore) {
+        this.enabled = enabled;
+        this.grantTrades = Math.max(1, grantTrades);
+        this.idleMillis = Math.max(1, idleMillis);
+        this.journal = journal;
+        this.symbolStore = symbolStore;
+        this.executor = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "allowances");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Grants open when the broker stopped are released first, since what was drawn from them is unknown
+    public void start(LongSupplier keys, Granter granter, Releaser releaser) {
+        this.keys = keys;
+        this.granter = granter;
+        this.releaser = releaser;
+        for (Reservation grant : new ArrayList<>(open.values())) {
+            close(grant);
+        }
+        executor.scheduleWithFixedDelay(this::releaseIdle, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // A grant journaled before the broker stopped and not released; called during replay
+    public void restore(Reservation grant) {
+        open.put(grant.getKey(), grant);
+    }
+
+    /**
+     * Takes quantity from a grant for the client that covers price, asking its home for a new
+     * grant at holdPrice if none does; the key to settle the trade against, or 0 if the home
+     * would not grant enough. Sales only hold shares, so price does not matter to them.
+     */
+    public long draw(String clientId, int symbolId, OrderSide side, int quantity, double price, double holdPrice)
+            throws RemoteException {
+        if (!enabled) {
+            return keys.getAsLong();
+        }
+        String owner = ownerOf(clientId);
+        Grant grant = null;
+        boolean refill = false;
+        Client client;
+        do {
+            client = clients.computeIfAbsent(owner, id -> new Client());
+            synchronized (client) {
+                if (client.removed) {
+                    continue;
+                }
+                List<Grant> slotGrants = client.bySlot.get(slot(symbolId, side));
+                grant = find(slotGrants, quantity, price);
+                if (grant != null) {
+                    grant.take(quantity);
+                    refill = left(slotGrants, price) < grant.size / 2 && client.refilling.add(slot(symbolId, side));
+                }
+                break;
+            }
+        } while (true);
+        if (grant != null) {
+            hits.increment();
+            if (refill) {
+                refillQueue.add(new Refill(client, clientId, symbolId, side, quantity, holdPrice));
+                if (draining.compareAndSet(false, true)) {
+                    executor.execute(this::drainRefills);
+                }
+            }
+            return grant.key;
+        }
+        misses.increment();
+        Grant fresh = ask(List.of(new Refill(null, clientId, symbolId, side, quantity, holdPrice)))[0];
+        if (fresh == null) {
+            return 0;
+        }
+        // A grant short of this trade is still kept for smaller ones
+        boolean covers = fresh.remaining >= quantity;
+        if (covers) {
+            fresh.take(quantity);
+        }
+        add(owner, fresh);
+        return covers ? fresh.key : 0;
+    }
+
+    // The hold price per share of the grant under key, which a buy drawn from it must not trade above
+    public double priceOf(String clientId, long key) {
+        Grant grant = grants.get(key);
+        return grant == null ? Double.MAX_VALUE : grant.price;
+    }
+
+    // The trade drawn under key ran and its settlement is on its way to the home
+    public void settled(String clientId, long key, int quantity) {
+        update(key, quantity, false);
+    }
+
+    // The trade drawn under key did not run, so its quantity can be drawn again
+    public void giveBack(String clientId, long key, int quantity) {
+        update(key, quantity, true);
+    }
+
+    // An order draws its whole quantity, which stays drawn until it fills or stops resting
+    public long drawOrder(long orderId, String clientId, int symbolId, OrderSide side, int quantity, double price,
+                          double holdPrice) throws RemoteException {
+        long key = draw(clientId, symbolId, side, quantity, price, holdPrice);
+        if (key != 0) {
+            orders.put(orderId, new OrderDraw(clientId, key, quantity));
+        }
+        return key;
+    }
+
+    // The key a fill of the order settles against, or 0 if the order drew nothing here
+    public long orderFilled(long orderId, int quantity) {
+        OrderDraw draw = orders.get(orderId);
+        if (draw == null) {
+            return 0;
+        }
+        draw.remaining -= quantity;
+        settled(draw.clientId, draw.key, quantity);
+        return draw.key;
+    }
+
+    // The order stopped resting and what it did not fill can be drawn again; false if it drew nothing here
+    public boolean orderDone(long orderId) {
+        OrderDraw draw = orders.remove(orderId);
+        if (draw == null) {
+            return false;
+        }
+        giveBack(draw.clientId, draw.key, draw.remaining);
+        return true;
+    }
+
+    // Grants not yet released, for journal snapshots
+    public List<Reservation> openGrants() {
+        return new ArrayList<>(open.values());
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        if (!enabled) {
+            return snapshot;
+        }
+        snapshot.put("grants", open.size());
+        snapshot.put("hits", hits.sum());
+        snapshot.put("misses", misses.sum());
+        snapshot.put("refills", refills.sum());
+        snapshot.put("released", released.sum());
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void drainRefills() {
+        while (true) {
+            List<Refill> batch = new ArrayList<>();
+            Refill next;
+            while (batch.size() < REFILL_BATCH && (next = refillQueue.poll()) != null) {
+                batch.add(next);
+            }
+            if (!batch.isEmpty()) {
+                refill(batch);
+                continue;
+            }
+            draining.set(false);
+            // A refill queued after the queue was found empty but before the flag was cleared started no task of its own
+            if (refillQueue.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void refill(List<Refill> batch) {
+        try {
+            Grant[] fresh = ask(batch);
+            for (int i = 0; i < fresh.length; i++) {
+                if (fresh[i] != null) {
+                    refills.increment();
+                    add(ownerOf(batch.get(i).clientId), fresh[i]);
+                }
+            }
+        } catch (RemoteException e) {
+            logger.fine("Refilling " + batch.size() + " grants failed: " + e.getMessage());
+        } finally {
+            for (Refill refill : batch) {
+                synchronized (refill.client) {
+                    refill.client.refilling.remove(slot(refill.symbolId, refill.side));
+                }
+            }
+        }
+    }
+
+    // The grant for each request, null where the home granted nothing
+    private Grant[] ask(List<Refill> requests) throws RemoteException {
+        List<Reservation> wanted = new ArrayList<>(requests.size());
+        for (Refill request : requests) {
+            int size = (int) Math.min(Integer.MAX_VALUE, (long) request.quantity * grantTrades);
+            Reservation grant = new Reservation(request.clientId, keys.getAsLong(), symbolStore.symbol(request.symbolId),
+                    request.side, size, request.holdPrice);
+            // Journaled before the home is asked, so a grant it held is released even if this broker stops now
+            open.put(grant.getKey(), grant);
+            journal.appendGrant(grant);
+            wanted.add(grant);
+        }
+        int[] granted;
+        try {
+            granted = granter.grant(wanted);
+        } catch (RemoteException e) {
+            wanted.forEach(this::close);
+            throw e;
+        }
+        Grant[] fresh = new Grant[wanted.size()];
+        for (int i = 0; i < fresh.length; i++) {
+            Reservation grant = wanted.get(i);
+            if (granted[i] <= 0) {
+                // Nothing was held, so there is nothing to release
+                open.remove(grant.getKey());
+            } else {
+                fresh[i] = new Grant(grant.getKey(), requests.get(i).symbolId, grant.getSide(), grant.getPrice(), granted[i]);
+            }
+        }
+        return fresh;
+    }
+
+    private void add(String owner, Grant grant) {
+        while (true) {
+            Client client = clients.computeIfAbsent(owner, id -> new Client());
+            synchronized (client) {
+                if (!client.removed) {
+                    grant.client = client;
+                    client.bySlot.computeIfAbsent(slot(grant.symbolId, grant.side), slot -> new ArrayList<>(2)).add(grant);
+                    grants.put(grant.key, grant);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void update(long key, int quantity, boolean giveBack) {
+        Grant grant = grants.get(key);
+        if (grant == null) {
+            return;
+        }
+        Client client = grant.client;
+        synchronized (client) {
+            grant.outstanding -= quantity;
+            if (giveBack) {
+                grant.remaining += quantity;
+            } else if (grant.remaining == 0 && grant.outstanding == 0 && client.remove(grant)) {
+                // Its settlements use up the hold on the home, so there is nothing to release
+                grants.remove(key);
+                open.remove(key);
+            }
+        }
+    }
+
+    // Releases grants with nothing outstanding that are used up or have not been drawn from lately
+    private void releaseIdle() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        List<Long> closing = new ArrayList<>();
+        for (Map.Entry<String, Client> entry : clients.entrySet()) {
+            Client client = entry.getValue();
+            synchronized (client) {
+                Iterator<List<Grant>> slots = client.bySlot.values().iterator();
+                while (slots.hasNext()) {
+                    List<Grant> slotGrants = slots.next();
+                    Iterator<Grant> it = slotGrants.iterator();
+                    while (it.hasNext()) {
+                        Grant grant = it.next();
+                        if (grant.outstanding == 0 && (grant.remaining == 0 || grant.lastUsed < idleSince)) {
+                            it.remove();
+                            grants.remove(grant.key);
+                            closing.add(grant.key);
+                        }
+                    }
+                    if (slotGrants.isEmpty()) {
+                        slots.remove();
+                    }
+                }
+                if (client.bySlot.isEmpty() && client.refilling.isEmpty()) {
+                    client.removed = true;
+                    clients.remove(entry.getKey(), client);
+                }
+            }
+        }
+        for (long key : closing) {
+            Reservation grant = open.get(key);
+            if (grant != null) {
+                close(grant);
+            }
+        }
+    }
+
+    private void close(Reservation grant) {
+        if (grant == null) {
+            return;
+        }
+        try {
+            releaser.release(grant.getClientId(), grant.getKey(), grant.getSymbol());
+            open.remove(grant.getKey());
+            released.increment();
+        } catch (RuntimeException e) {
+            logger.warning("Releasing grant " + grant + " failed: " + e.getMessage());
+        }
+    }
+
+    private static long slot(int symbolId, OrderSide side) {
+        return (long) symbolId << 1 | (side == OrderSide.BUY ? 1 : 0);
+    }
+
+    private static String ownerOf(String clientId) {
+        return clientId == null ? "" : clientId;
+    }
+
+    // The grant with the least left that covers the trade, so a slot's grants are used up one after another
+    private static Grant find(List<Grant> slotGrants, int quantity, double price) {
+        if (slotGrants == null) {
+            return null;
+        }
+        Grant best = null;
+        for (Grant grant : slotGrants) {
+            if (grant.covers(price) && grant.remaining >= quantity && (best == null || grant.remaining < best.remaining)) {
+                best = grant;
+            }
+        }
+        return best;
+    }
+
+    // What the grants that cover price have left in all
+    private static long left(List<Grant> slotGrants, double price) {
+        long left = 0;
+        for (Grant grant : slotGrants) {
+            if (grant.covers(price)) {
+                left += grant.remaining;
+            }
+        }
+        return left;
+    }
+
+    // One client's grants by symbol and side; guarded by itself
+    private static final class Client {
+        private final Map<Long, List<Grant>> bySlot = new HashMap<>();
+        private final Set<Long> refilling = new HashSet<>();
+        // Swept from the map; a caller that still holds it looks the client up again
+        private boolean removed;
+
+        private boolean remove(Grant grant) {
+            List<Grant> slotGrants = bySlot.get(slot(grant.symbolId, grant.side));
+            if (slotGrants == null || !slotGrants.remove(grant)) {
+                return false;
+            }
+            if (slotGrants.isEmpty()) {
+                bySlot.remove(slot(grant.symbolId, grant.side));
+            }
+            return true;
+        }
+    }
+
+    // Guarded by its client
+    private static final class Grant {
+        private final long key;
+        private final int symbolId;
+        private final OrderSide side;
+        private final double price;
+        private final int size;
+        // Not drawn yet
+        private int remaining;
+        // Drawn by trades that have neither settled nor been given back
+        private int outstanding;
+        private long lastUsed;
+        // Set once it is added, before any trade can draw from it
+        private Client client;
+
+        private Grant(long key, int symbolId, OrderSide side, double price, int size) {
+            this.key = key;
+            this.symbolId = symbolId;
+            this.side = side;
+            this.price = price;
+            this.size = size;
+            this.remaining = size;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        private boolean covers(double price) {
+            return side == OrderSide.SELL || this.price >= price;
+        }
+
+        private void take(int quantity) {
+            remaining -= quantity;
+            outstanding += quantity;
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    // A grant to ask the home for; client is the one whose refilling slot to clear, null for a miss
+    private static final class Refill {
+        private final Client client;
+        private final String clientId;
+        private final int symbolId;
+        private final OrderSide side;
+        private final int quantity;
+        private final double holdPrice;
+
+        private Refill(Client client, String clientId, int symbolId, OrderSide side, int quantity, double holdPrice) {
+            this.client = client;
+            this.clientId = clientId;
+            this.symbolId = symbolId;
+            this.side = side;
+            this.quantity = quantity;
+            this.holdPrice = holdPrice;
+        }
+    }
+
+    // Fills and the end of an order run on its book's thread, one at a time
+    private static final class OrderDraw {
+        private final String clientId;
+        private final long key;
+        private int remaining;
+
+        private OrderDraw(String clientId, long key, int quantity) {
+            this.clientId = clientId;
+            this.key = key;
+            this.remaining = quantity;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+// AdmissionController.java
+package com.example.brokerrmi.rmi_stock_exchange.admission;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.ServerBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the client requests a broker works on at once. Reads and trades have separate lanes, so
+ * a burst of trades never delays price queries, and each client has its own in-flight limit so
+ * one client cannot take a whole lane. A request over a limit is rejected with
+ * {@link ServerBusyException} straight away (or after {@code admission.queue-timeout-ms}) rather
+ * than queued, which keeps latency flat for admitted requests and lets the client go elsewhere.
+ * Limits of 0 or less are unbounded.
+ */
+@Component
+public class AdmissionController {
+    public enum Lane { READ, TRADE }
+
+    private final Semaphore[] permits = new Semaphore[Lane.values().length];
+    private final int[] limits = new int[Lane.values().length];
+    private final LongAdder[] rejected = new LongAdder[Lane.values().length];
+    private final int maxPerClient;
+    private final long queueTimeoutNanos;
+    private final Map<String, Integer> perClient = new ConcurrentHashMap<>();
+
+    public AdmissionController(
+            @Value("${admission.max-in-flight-reads:1024}") int maxReads,
+            @Value("${admission.max-in-flight-trades:256}") int maxTrades,
+            @Value("${admission.max-in-flight-per-client:64}") int maxPerClient,
+            @Value("${admission.queue-timeout-ms:0}") long queueTimeoutMs) {
+        limits[Lane.READ.ordinal()] = maxReads;
+        limits[Lane.TRADE.ordinal()] = maxTrades;
+        for (Lane lane : Lane.values()) {
+            int limit = limits[lane.ordinal()];
+            permits[lane.ordinal()] = limit > 0 ? new Semaphore(limit) : null;
+            rejected[lane.ordinal()] = new LongAdder();
+        }
+        this.maxPerClient = maxPerClient;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, queueTimeoutMs));
+    }
+
+    // Every successful acquire must be paired with a release of the same lane and client
+    public void acquire(Lane lane, String clientId) throws ServerBusyException {
+        if (clientId != null && maxPerClient > 0 && perClient.merge(clientId, 1, Integer::sum) > maxPerClient) {
+            releaseClient(clientId);
+            throw reject(lane, "Broker busy: client " + clientId + " has " + maxPerClient + " requests in flight");
+        }
+        Semaphore lanePermits = permits[lane.ordinal()];
+        if (lanePermits != null && !tryAcquire(lanePermits)) {
+            releaseClient(clientId);
+            throw reject(lane, "Broker busy: " + limits[lane.ordinal()] + " "
+                    + lane.name().toLowerCase() + " requests in flight");
+        }
+    }
+
+    public void release(Lane lane, String clientId) {
+        Semaphore lanePermits = permits[lane.ordinal()];
+        if (lanePermits != null) {
+            lanePermits.release();
+        }
+        releaseClient(clientId);
+    }
+
+    public long getRejectedCount(Lane lane) {
+        return rejected[lane.ordinal()].sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (Lane lane : Lane.values()) {
+            Semaphore lanePermits = permits[lane.ordinal()];
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", limits[lane.ordinal()]);
+            stats.put("inFlight", lanePermits != null ? limits[lane.ordinal()] - lanePermits.availablePermits() : -1);
+            stats.put("rejected", rejected[lane.ordinal()].sum());
+            snapshot.put(lane.name(), stats);
+        }
+        snapshot.put("clientsInFlight", perClient.size());
+        return snapshot;
+    }
+
+    private boolean tryAcquire(Semaphore lanePermits) {
+        if (queueTimeoutNanos == 0) {
+            return lanePermits.tryAcquire();
+        }
+        try {
+            return lanePermits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void releaseClient(String clientId) {
+        if (clientId != null && maxPerClient > 0) {
+            perClient.computeIfPresent(clientId, (id, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private ServerBusyException reject(Lane lane, String message) {
+        rejected[lane.ordinal()].increment();
+        return new ServerBusyException(message);
+    }
+}
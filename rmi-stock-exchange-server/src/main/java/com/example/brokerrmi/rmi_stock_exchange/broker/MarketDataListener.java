@@ -0,0 +1,18 @@
+// MarketDataListener.java
+package com.example.brokerrmi.rmi_stock_exchange.broker;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.MarketDataUpdate;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Client-side callback for market data subscriptions. Each delivered batch carries the next
+ * sequence number of its subscription, starting at 1, so a jump means a batch was lost and the
+ * client should re-read prices. Updates are conflated: a batch holds only the latest state of
+ * each symbol that changed since the previous batch.
+ */
+public interface MarketDataListener extends Remote {
+    void onMarketData(long subscriptionId, long sequence, List<MarketDataUpdate> updates) throws RemoteException;
+}
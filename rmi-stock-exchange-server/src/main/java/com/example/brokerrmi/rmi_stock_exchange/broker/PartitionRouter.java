@@ -0,0 +1,185 @@
+// PartitionRouter.java
+package com.example.brokerrmi.rmi_stock_exchange.broker;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountState;
+import com.example.brokerrmi.rmi_stock_exchange.Model.PartitionMap;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.account.AccountLedger;
+import com.example.brokerrmi.rmi_stock_exchange.engine.MatchingEngine;
+import com.example.brokerrmi.rmi_stock_exchange.journal.TradeJournal;
+import com.example.brokerrmi.rmi_stock_exchange.membership.MembershipService;
+import com.example.brokerrmi.rmi_stock_exchange.partition.PartitionManager;
+import com.example.brokerrmi.rmi_stock_exchange.replication.ReplicationPipeline;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * Sends each request to the broker that owns its key, as the {@link PartitionManager} map places
+ * it: a symbol's primary or home, or a client's home. Whatever this broker owns runs locally.
+ * When the map changes it hands symbols, order books and accounts to their new owners.
+ */
+final class PartitionRouter {
+    private static final Logger logger = Logger.getLogger(PartitionRouter.class.getName());
+
+    private final String brokerId;
+    private final PartitionManager partitions;
+    private final MembershipService membership;
+    private final SymbolStore symbolStore;
+    private final MatchingEngine matchingEngine;
+    private final AccountLedger accounts;
+    private final TradeJournal tradeJournal;
+    private final ReplicationPipeline replicationPipeline;
+
+    PartitionRouter(String brokerId, PartitionManager partitions, MembershipService membership, SymbolStore symbolStore,
+                    MatchingEngine matchingEngine, AccountLedger accounts, TradeJournal tradeJournal,
+                    ReplicationPipeline replicationPipeline) {
+        this.brokerId = brokerId;
+        this.partitions = partitions;
+        this.membership = membership;
+        this.symbolStore = symbolStore;
+        this.matchingEngine = matchingEngine;
+        this.accounts = accounts;
+        this.tradeJournal = tradeJournal;
+        this.replicationPipeline = replicationPipeline;
+    }
+
+    @FunctionalInterface
+    interface OwnerCall<T> {
+        T call(TradingService owner) throws RemoteException;
+    }
+
+    @FunctionalInterface
+    interface LocalCall<T> {
+        T call() throws RemoteException;
+    }
+
+    // Partitioned mode: runs the request on the symbol's primary, or locally if that is this broker (always, in the other modes)
+    <T> T onOwner(String symbol, OwnerCall<T> remote, LocalCall<T> local) throws RemoteException {
+        return partitions.isEnabled() ? onHome(partitions::primaryPeer, symbol, remote, local) : local.call();
+    }
+
+    // Runs the request where the symbol's trades run: its home if symbols have homes, otherwise here
+    <T> T onSymbolHome(String symbol, OwnerCall<T> remote, LocalCall<T> local) throws RemoteException {
+        return onHome(partitions::symbolHomePeer, symbol, remote, local);
+    }
+
+    // Runs the request where the client's account is: its home, or here in consensus mode
+    <T> T onClientHome(String clientId, OwnerCall<T> remote, LocalCall<T> local) throws RemoteException {
+        return onHome(partitions::clientHomePeer, clientId, remote, local);
+    }
+
+    /**
+     * Runs the request on the key's home broker, or locally if that is this broker. A forwarded
+     * request lands on a broker whose ring point is strictly closer to the key, so forwarding
+     * cannot loop while brokers briefly disagree on the members.
+     */
+    private <T> T onHome(UnaryOperator<String> homeOf, String key, OwnerCall<T> remote, LocalCall<T> local)
+            throws RemoteException {
+        String homeId;
+        while ((homeId = homeOf.apply(key)) != null) {
+            Optional<T> result = forward(homeId, remote);
+            if (result.isPresent()) {
+                return result.get();
+            }
+        }
+        return local.call();
+    }
+
+    // Empty if the owner could not be reached at all; it is then dropped from the map
+    <T> Optional<T> forward(String ownerId, OwnerCall<T> call) throws RemoteException {
+        TradingService owner = partitions.member(ownerId);
+        if (owner == null) {
+            return Optional.empty();
+        }
+        try {
+            T result = call.call(owner);
+            partitions.recordForward();
+            return Optional.of(result);
+        } catch (ServerException e) {
+            // A busy owner makes this broker busy too, so the client moves on rather than failing
+            if (e.getCause() instanceof ServerBusyException busy) {
+                throw busy;
+            }
+            throw e;
+        } catch (ConnectException | ConnectIOException | NoSuchObjectException e) {
+            // The request never reached the owner, so routing it again cannot run it twice
+            logger.warning("Broker " + brokerId + ": " + ownerId + " unreachable: " + e.getMessage());
+            partitions.removeMember(ownerId, owner);
+            membership.reportUnreachable(ownerId, owner);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Moves symbols after a membership change. Each symbol that gained owners is pushed to them by
+     * its first old owner still in the cluster, or by every broker holding a copy if none is left;
+     * versions decide between copies as in versioned mode. Where symbols have homes, order books
+     * whose home moved away are cancelled, since the orders cannot follow the book. Accounts move
+     * to their clients' new homes.
+     */
+    void handOff(PartitionMap before, PartitionMap after) {
+        for (String symbol : partitions.hasSymbolHomes() ? matchingEngine.bookSymbols() : List.<String>of()) {
+            if (!brokerId.equals(after.primary(symbol))) {
+                int cancelled = matchingEngine.cancelAll(symbol);
+                if (cancelled > 0) {
+                    logger.warning("Broker " + brokerId + ": " + symbol + " order book moved to " + after.primary(symbol)
+                            + ", cancelled " + cancelled + " resting orders");
+                }
+            }
+        }
+        tradeJournal.commit();
+        // Accounts follow their clients' homes
+        Map<String, List<AccountState>> byHome = new HashMap<>();
+        for (AccountState account : accounts.export(clientId -> !brokerId.equals(after.primary(clientId)))) {
+            byHome.computeIfAbsent(after.primary(account.getClientId()), id -> new ArrayList<>()).add(account);
+        }
+        byHome.forEach((homeId, moving) -> {
+            if (!replicationPipeline.publishAccounts(moving, homeId)) {
+                logger.warning("Broker " + brokerId + ": no route to " + homeId + ", dropped " + moving.size() + " accounts");
+            }
+        });
+        if (!partitions.isEnabled()) {
+            return;
+        }
+        int moved = 0;
+        int size = symbolStore.size();
+        for (int id = 0; id < size; id++) {
+            String symbol = symbolStore.symbol(id);
+            List<String> oldOwners = before.owners(symbol);
+            String pusher = null;
+            for (String owner : oldOwners) {
+                if (after.getBrokerIds().contains(owner)) {
+                    pusher = owner;
+                    break;
+                }
+            }
+            if (pusher != null && !pusher.equals(brokerId)) {
+                continue;
+            }
+            List<String> gained = new ArrayList<>(after.owners(symbol));
+            gained.removeAll(oldOwners);
+            gained.remove(brokerId);
+            if (!gained.isEmpty()) {
+                StockUpdate update = symbolStore.read(id);
+                replicationPipeline.publish(symbol, update.getPrice(), update.getQuantity(), update.getVersion(), gained);
+                moved++;
+            }
+        }
+        if (moved > 0) {
+            logger.info("Broker " + brokerId + ": handing off " + moved + " symbols for partition map epoch "
+                    + after.getEpoch());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+// ReplicatedState.java
+package com.example.brokerrmi.rmi_stock_exchange.broker;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+import com.example.brokerrmi.rmi_stock_exchange.account.AccountLedger;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.LogEntry;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.StateMachine;
+import com.example.brokerrmi.rmi_stock_exchange.dedup.DedupWindow;
+import com.example.brokerrmi.rmi_stock_exchange.journal.JournalEventType;
+import com.example.brokerrmi.rmi_stock_exchange.journal.TradeJournal;
+import com.example.brokerrmi.rmi_stock_exchange.logging.TradeLogger;
+import com.example.brokerrmi.rmi_stock_exchange.sequencer.TradeSequencer;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Broker state driven by the Raft log in consensus mode. Entries are applied on the Raft applier
+ * thread in log order with the same arithmetic as local trades, and each change takes the
+ * entry's log index as its version, so every broker computes identical state.
+ */
+final class ReplicatedState implements StateMachine {
+    private final String brokerId;
+    private final SymbolStore symbolStore;
+    private final TradeSequencer tradeSequencer;
+    private final TradeJournal tradeJournal;
+    private final TradeLogger tradeLogger;
+    private final AccountLedger accounts;
+    private final DedupWindow dedup;
+    private final ChangeRecorder changes;
+    private final TradeRecorder trades;
+    private final Supplier<List<StockUpdate>> capture;
+
+    // Journals a change and publishes it to subscribers and the price snapshot
+    @FunctionalInterface
+    interface ChangeRecorder {
+        void record(JournalEventType type, String symbol, double price, int quantity, long version);
+    }
+
+    // Adds a trade to the history and candles; the caller holds the symbol
+    @FunctionalInterface
+    interface TradeRecorder {
+        void record(int id, OrderSide side, int quantity, double price, String clientId);
+    }
+
+    ReplicatedState(String brokerId, SymbolStore symbolStore, TradeSequencer tradeSequencer, TradeJournal tradeJournal,
+                    TradeLogger tradeLogger, AccountLedger accounts, DedupWindow dedup, ChangeRecorder changes,
+                    TradeRecorder trades, Supplier<List<StockUpdate>> capture) {
+        this.brokerId = brokerId;
+        this.symbolStore = symbolStore;
+        this.tradeSequencer = tradeSequencer;
+        this.tradeJournal = tradeJournal;
+        this.tradeLogger = tradeLogger;
+        this.accounts = accounts;
+        this.dedup = dedup;
+        this.changes = changes;
+        this.trades = trades;
+        this.capture = capture;
+    }
+
+    @Override
+    public TradeResult apply(LogEntry entry) {
+        TradeResult result = applyCommand(entry);
+        dedup.record(entry.getClientId(), entry.getIdempotencyKey(), result);
+        return result;
+    }
+
+    private TradeResult applyCommand(LogEntry entry) {
+        String symbol = entry.getSymbol();
+        int quantity = entry.getQuantity();
+        long version = entry.getIndex();
+        switch (entry.getType()) {
+            case BUY: {
+                int id = symbolStore.idOf(symbol);
+                if (id < 0) {
+                    return new TradeResult(false, 0.0, "Stock not found: " + symbol);
+                }
+                return tradeSequencer.execute(symbol, symbolStore.lockFor(id), () -> {
+                    int available = symbolStore.quantity(id);
+                    if (available < quantity) {
+                        return new TradeResult(false, symbolStore.price(id), "Insufficient quantity for " + symbol);
+                    }
+                    double newPrice = TradingServiceImpl.priceAfterBuy(symbolStore.price(id), quantity);
+                    if (tradeLogger.sample()) {
+                        tradeLogger.log(Level.INFO, "Broker %s: BOUGHT %s x %d at $%.2f for client %s (log index %d)",
+                                brokerId, symbol, quantity, newPrice, entry.getClientId(), version);
+                    }
+                    accounts.settle(entry.getClientId(), id, OrderSide.BUY, quantity, newPrice);
+                    applyChange(JournalEventType.TRADE, id, newPrice, available - quantity, version);
+                    trades.record(id, OrderSide.BUY, quantity, newPrice, entry.getClientId());
+                    return new TradeResult(true, newPrice, null);
+                });
+            }
+            case SELL: {
+                int id = symbolStore.idOf(symbol);
+                if (id < 0) {
+                    return new TradeResult(false, 0.0, "Stock not found: " + symbol);
+                }
+                return tradeSequencer.execute(symbol, symbolStore.lockFor(id), () -> {
+                    double newPrice = TradingServiceImpl.priceAfterSell(symbolStore.price(id), quantity);
+                    if (tradeLogger.sample()) {
+                        tradeLogger.log(Level.INFO, "Broker %s: SOLD %s x %d at $%.2f for client %s (log index %d)",
+                                brokerId, symbol, quantity, newPrice, entry.getClientId(), version);
+                    }
+                    accounts.settle(entry.getClientId(), id, OrderSide.SELL, quantity, newPrice);
+                    applyChange(JournalEventType.TRADE, id, newPrice, symbolStore.quantity(id) + quantity, version);
+                    trades.record(id, OrderSide.SELL, quantity, newPrice, entry.getClientId());
+                    return new TradeResult(true, newPrice, null);
+                });
+            }
+            case FILL: {
+                int id = symbolStore.idOf(symbol);
+                if (id < 0) {
+                    return new TradeResult(false, 0.0, "Stock not found: " + symbol);
+                }
+                tradeSequencer.run(symbol, symbolStore.lockFor(id), () ->
+                        applyChange(JournalEventType.FILL, id, entry.getPrice(), symbolStore.quantity(id), version));
+                return new TradeResult(true, entry.getPrice(), null);
+            }
+            default:
+                return new TradeResult(true, 0.0, null);
+        }
+    }
+
+    @Override
+    public List<StockUpdate> capture() {
+        return capture.get();
+    }
+
+    @Override
+    public void restore(List<StockUpdate> state) {
+        for (StockUpdate update : state) {
+            int id = symbolStore.getOrAdd(update.getSymbol(), update.getPrice(), update.getQuantity(), update.getVersion());
+            tradeSequencer.run(update.getSymbol(), symbolStore.lockFor(id), () -> applyChange(JournalEventType.REPLICATED,
+                    id, update.getPrice(), update.getQuantity(), update.getVersion()));
+        }
+    }
+
+    @Override
+    public void checkpoint() {
+        tradeJournal.snapshot();
+    }
+
+    private void applyChange(JournalEventType type, int id, double price, int quantity, long version) {
+        symbolStore.set(id, price, quantity, version);
+        changes.record(type, symbolStore.symbol(id), price, quantity, version);
+    }
+}
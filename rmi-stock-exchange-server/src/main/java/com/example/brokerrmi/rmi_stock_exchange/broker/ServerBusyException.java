@@ -0,0 +1,19 @@
+// ServerBusyException.java
+package com.example.brokerrmi.rmi_stock_exchange.broker;
+
+import java.rmi.RemoteException;
+
+// Thrown when a broker sheds a request under load; the request was not executed and may be sent elsewhere
+public class ServerBusyException extends RemoteException {
+    private static final long serialVersionUID = 1L;
+
+    public ServerBusyException(String message) {
+        super(message);
+    }
+
+    // Thrown in bulk under overload, and the stack trace would only ever point at the admission check
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -1,8 +1,26 @@
 // TradingService.java
 package com.example.brokerrmi.rmi_stock_exchange.broker;
 
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountSnapshot;
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountState;
+import com.example.brokerrmi.rmi_stock_exchange.Model.CandleSeries;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Fill;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderResult;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderType;
+import com.example.brokerrmi.rmi_stock_exchange.Model.PartitionMap;
+import com.example.brokerrmi.rmi_stock_exchange.Model.PriceBatch;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Reservation;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Settlement;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeOutcome;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradePage;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeRequest;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 import java.util.Map;
 
 public interface TradingService extends Remote {
@@ -10,13 +28,50 @@ public interface TradingService extends Remote {
     // Client operations
     boolean buyStock(String symbol, int quantity, String clientId) throws RemoteException;
     boolean sellStock(String symbol, int quantity, String clientId) throws RemoteException;
+    // Exactly once: a retry with the same client-generated key gets the first result instead of trading again
+    boolean buyStock(String symbol, int quantity, String clientId, long idempotencyKey) throws RemoteException;
+    boolean sellStock(String symbol, int quantity, String clientId, long idempotencyKey) throws RemoteException;
     double getPrice(String symbol) throws RemoteException;
     Map<String, Double> getAllStocks() throws RemoteException;
+    // Price, quantity and version of each symbol, in list order, in one call
+    PriceBatch getPrices(List<String> symbols) throws RemoteException;
+    List<TradeResult> executeTrades(List<TradeRequest> trades) throws RemoteException;
+    AccountSnapshot getAccount(String clientId) throws RemoteException;
+
+    // Order book operations
+    OrderResult submitOrder(String symbol, OrderSide side, OrderType type, double price, int quantity,
+                            String clientId) throws RemoteException;
+    boolean cancelOrder(String symbol, long orderId, String clientId) throws RemoteException;
+    List<Fill> getFills(String clientId, long afterSequence) throws RemoteException;
+
+    // Trade history, oldest first, one page at a time: start with cursor 0 and pass each page's nextCursor
+    TradePage getTrades(String symbol, long fromMillis, long toMillis, long cursor, int limit) throws RemoteException;
+    TradePage getClientTrades(String clientId, long cursor, int limit) throws RemoteException;
+    // The latest count OHLCV bars at one of the broker's candle intervals, oldest first, with the day's VWAP
+    CandleSeries getCandles(String symbol, long intervalMillis, int count) throws RemoteException;
+
+    // Market data push; an empty symbol list subscribes to every symbol
+    long subscribe(MarketDataListener listener, List<String> symbols) throws RemoteException;
+    boolean unsubscribe(long subscriptionId) throws RemoteException;
 
     // Broker replication operations
     void registerBroker(String brokerId, TradingService brokerService) throws RemoteException;
     void updateStock(String symbol, double newPrice, String sourceBrokerId) throws RemoteException;
     void syncStockData(Map<String, Double> stockData) throws RemoteException;
+    void applyStockUpdates(List<StockUpdate> updates, String sourceBrokerId) throws RemoteException;
+    // Results of keyed trades run on the source broker, so retries sent here are answered from them
+    void applyTradeOutcomes(List<TradeOutcome> outcomes, String sourceBrokerId) throws RemoteException;
+    // A client's account lives on its home broker: other brokers trade against grants the home holds for them, settle
+    // there after, and accounts move there when membership changes. grant returns how much of each reservation it
+    // held, 0 where nothing. settledBelow is the source's lowest unacknowledged settlement sequence.
+    int[] grant(List<Reservation> reservations) throws RemoteException;
+    void applySettlements(List<Settlement> settlements, long settledBelow, String sourceBrokerId) throws RemoteException;
+    void adoptAccounts(List<AccountState> accounts, String sourceBrokerId) throws RemoteException;
+    // Versioned catch-up: compare bucket digests, then fetch only the buckets that differ
+    long[] getSyncDigest(int bucketCount) throws RemoteException;
+    List<StockUpdate> getStockUpdates(int bucketCount, int[] buckets) throws RemoteException;
+    // Symbol ownership in replication.mode=partitioned; null when the broker holds every symbol
+    PartitionMap getPartitionMap() throws RemoteException;
 
     // Health check
     boolean isAlive() throws RemoteException;
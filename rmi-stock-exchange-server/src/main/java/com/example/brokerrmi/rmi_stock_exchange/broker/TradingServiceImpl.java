@@ -1,127 +1,1141 @@
 // TradingServiceImpl.java
 package com.example.brokerrmi.rmi_stock_exchange.broker;
 
-import com.example.brokerrmi.rmi_stock_exchange.Model.Stock;
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountSnapshot;
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountState;
+import com.example.brokerrmi.rmi_stock_exchange.Model.CandleSeries;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Fill;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderResult;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderStatus;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderType;
+import com.example.brokerrmi.rmi_stock_exchange.Model.PartitionMap;
+import com.example.brokerrmi.rmi_stock_exchange.Model.PriceBatch;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Reservation;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Settlement;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeOutcome;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradePage;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeRequest;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+import com.example.brokerrmi.rmi_stock_exchange.account.AccountLedger;
+import com.example.brokerrmi.rmi_stock_exchange.account.Allowances;
+import com.example.brokerrmi.rmi_stock_exchange.admission.AdmissionController;
+import com.example.brokerrmi.rmi_stock_exchange.admission.AdmissionController.Lane;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.AppendEntriesRequest;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.AppendEntriesResponse;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.ConsensusService;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.InstallSnapshotRequest;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.LogEntry;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.RaftNode;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.VoteRequest;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.VoteResponse;
+import com.example.brokerrmi.rmi_stock_exchange.dedup.DedupWindow;
+import com.example.brokerrmi.rmi_stock_exchange.engine.MatchingEngine;
+import com.example.brokerrmi.rmi_stock_exchange.history.TradeHistory;
+import com.example.brokerrmi.rmi_stock_exchange.journal.JournalEventType;
+import com.example.brokerrmi.rmi_stock_exchange.journal.TradeJournal;
+import com.example.brokerrmi.rmi_stock_exchange.logging.TradeLogger;
+import com.example.brokerrmi.rmi_stock_exchange.marketdata.CandleAggregator;
+import com.example.brokerrmi.rmi_stock_exchange.marketdata.MarketDataPublisher;
+import com.example.brokerrmi.rmi_stock_exchange.membership.GossipService;
+import com.example.brokerrmi.rmi_stock_exchange.membership.MemberState;
+import com.example.brokerrmi.rmi_stock_exchange.membership.MembershipListener;
+import com.example.brokerrmi.rmi_stock_exchange.membership.MembershipService;
+import com.example.brokerrmi.rmi_stock_exchange.metrics.Operation;
+import com.example.brokerrmi.rmi_stock_exchange.metrics.TradingMetrics;
+import com.example.brokerrmi.rmi_stock_exchange.partition.PartitionManager;
+import com.example.brokerrmi.rmi_stock_exchange.replication.ReplicationPipeline;
+import com.example.brokerrmi.rmi_stock_exchange.replication.SettlementOutbox;
+import com.example.brokerrmi.rmi_stock_exchange.replication.StockVersions;
+import com.example.brokerrmi.rmi_stock_exchange.replication.SyncDigest;
+import com.example.brokerrmi.rmi_stock_exchange.sequencer.TradeSequencer;
+import com.example.brokerrmi.rmi_stock_exchange.store.PriceSnapshotPublisher;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.rmi.RemoteException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @Service
-public class TradingServiceImpl extends UnicastRemoteObject implements TradingService {
+public class TradingServiceImpl extends UnicastRemoteObject implements TradingService, ConsensusService, GossipService {
     private static final Logger logger = Logger.getLogger(TradingServiceImpl.class.getName());
 
     private final String brokerId;
+    private final int versionTag;
     private final int port;
-    private final Map<String, Stock> stockDatabase;
+    private final SymbolStore symbolStore;
     private final CopyOnWriteArrayList<TradingService> peerBrokers;
     private final CopyOnWriteArrayList<String> registeredBrokerIds;
+    private final ReplicationPipeline replicationPipeline;
+    private final MatchingEngine matchingEngine;
+    private final TradeSequencer tradeSequencer;
+    private final TradeJournal tradeJournal;
+    private final MarketDataPublisher marketDataPublisher;
+    private final TradingMetrics tradingMetrics;
+    private final TradeLogger tradeLogger;
+    private final AdmissionController admissionController;
+    private final PriceSnapshotPublisher priceSnapshots;
+    private final RaftNode raftNode;
+    private final PartitionManager partitions;
+    private final MembershipService membership;
+    private final DedupWindow dedup;
+    private final AccountLedger accounts;
+    private final Allowances allowances;
+    private final SettlementOutbox settlementOutbox;
+    private final TradeHistory history;
+    private final CandleAggregator candles;
+    private final PartitionRouter router;
+    private final AtomicLong holdSequence = new AtomicLong();
 
     // Use @Value to inject properties instead of constructor parameters
     public TradingServiceImpl(
             @Value("${broker.id:broker1}") String brokerId,
-            @Value("${rmi.port:1099}") int port) throws RemoteException {
+            @Value("${rmi.port:1099}") int port,
+            ReplicationPipeline replicationPipeline,
+            MatchingEngine matchingEngine,
+            TradeSequencer tradeSequencer,
+            TradeJournal tradeJournal,
+            MarketDataPublisher marketDataPublisher,
+            SymbolStore symbolStore,
+            TradingMetrics tradingMetrics,
+            TradeLogger tradeLogger,
+            AdmissionController admissionController,
+            PriceSnapshotPublisher priceSnapshots,
+            RaftNode raftNode,
+            PartitionManager partitions,
+            MembershipService membership,
+            DedupWindow dedup,
+            AccountLedger accounts,
+            Allowances allowances,
+            SettlementOutbox settlementOutbox,
+            TradeHistory history,
+            CandleAggregator candles) throws RemoteException {
         super(port);
         this.brokerId = brokerId;
+        this.versionTag = StockVersions.tagOf(brokerId);
         this.port = port;
-        this.stockDatabase = new ConcurrentHashMap<>();
+        this.symbolStore = symbolStore;
         this.peerBrokers = new CopyOnWriteArrayList<>();
         this.registeredBrokerIds = new CopyOnWriteArrayList<>();
-        initializeSampleData();
+        this.replicationPipeline = replicationPipeline;
+        this.matchingEngine = matchingEngine;
+        this.tradeSequencer = tradeSequencer;
+        this.tradeJournal = tradeJournal;
+        this.marketDataPublisher = marketDataPublisher;
+        this.tradingMetrics = tradingMetrics;
+        this.tradeLogger = tradeLogger;
+        this.admissionController = admissionController;
+        this.priceSnapshots = priceSnapshots;
+        this.raftNode = raftNode;
+        this.partitions = partitions;
+        this.membership = membership;
+        this.dedup = dedup;
+        this.accounts = accounts;
+        this.allowances = allowances;
+        this.settlementOutbox = settlementOutbox;
+        this.history = history;
+        this.candles = candles;
+        this.router = new PartitionRouter(brokerId, partitions, membership, symbolStore, matchingEngine, accounts,
+                tradeJournal, replicationPipeline);
+        replicationPipeline.setSnapshotSource(this::getStockUpdatesFor);
+        replicationPipeline.setObserver(tradingMetrics::recordReplication);
+        // A replicator that gave up hands the peer to membership, which takes it back once it answers again
+        replicationPipeline.setPeerLostListener(membership::reportUnreachable);
+        partitions.setRebalanceListener(router::handOff);
+        dedup.setOutcomeSink(this::shareOutcome);
+        // Both sides of an order book fill are settled and recorded before the book is released
+        matchingEngine.setFillSink(this::onFill);
+        tradeJournal.setSnapshotSource(this::getStockUpdatesForSync);
+        tradeJournal.setOrderSource(sink -> matchingEngine.forEachRestingOrder(sink::restore));
+        tradeJournal.setSettlementSource(settlementOutbox::undelivered, allowances::openGrants);
+        marketDataPublisher.setSnapshotSource(this::getStockUpdatesForSync);
+        if (tradeJournal.replay((symbol, price, quantity, version) -> {
+            int existing = symbolStore.add(symbol, price, quantity, version);
+            if (existing < 0) {
+                symbolStore.set(-existing - 1, price, quantity, version);
+            }
+        }, (symbol, orderId, side, price, quantity, clientId) -> {
+            matchingEngine.restore(symbol, orderId, side, price, quantity, clientId);
+            // Every client is homed here until peers join; the accounts then move to their homes, holds included
+            accounts.hold(clientId, orderHoldKey(orderId), symbolStore.idOf(symbol), side, quantity, price);
+        }, settlement -> {
+            restoreHoldKey(settlement.getKey());
+            settlementOutbox.restore(settlement);
+        }, grant -> {
+            restoreHoldKey(grant.getKey());
+            allowances.restore(grant);
+        })) {
+            logger.info("Broker " + brokerId + " restored " + symbolStore.size() + " stocks from journal on port " + port);
+        } else {
+            initializeSampleData();
+            // Baseline snapshot so a later replay always starts from the seeded universe
+            tradeJournal.snapshot();
+        }
+        // Set after replay, so restored orders are not journaled again
+        matchingEngine.setOrderListener((symbol, orderId, side, price, remaining, clientId) -> {
+            tradeJournal.appendOrder(symbol, orderId, side, price, remaining, clientId);
+            if (remaining == 0) {
+                // Cancelled, or filled and already settled
+                endOrder(clientId, orderId, symbolStore.idOf(symbol));
+            }
+        });
+        settlementOutbox.start(partitions::clientHomePeer, partitions::member, settlements -> applyHere(settlements, brokerId));
+        allowances.start(this::tradeHoldKey, this::grantAtHome, (clientId, key, symbol) -> settlementOutbox.publish(
+                new Settlement(clientId, key, symbol, OrderSide.BUY, 0, 0.0, System.currentTimeMillis(), true)));
+        priceSnapshots.publishNow();
+        if (raftNode.isEnabled()) {
+            // Versions are log indexes in consensus mode, so the newest one is where the restored state stands
+            long applied = 0;
+            for (int id = 0; id < symbolStore.size(); id++) {
+                applied = Math.max(applied, symbolStore.version(id));
+            }
+            raftNode.setObserver(tradingMetrics::recordReplication);
+            raftNode.start(new ReplicatedState(brokerId, symbolStore, tradeSequencer, tradeJournal, tradeLogger, accounts,
+                    dedup, this::recordChange, this::recordTrade, this::getStockUpdatesForSync), applied);
+        }
+        membership.start(this, new PeerLifecycle());
     }
 
-    // ... rest of the methods remain the same
     private void initializeSampleData() {
-        stockDatabase.put("AAPL", new Stock("AAPL", 150.0, 1000));
-        stockDatabase.put("GOOGL", new Stock("GOOGL", 2800.0, 500));
-        stockDatabase.put("TSLA", new Stock("TSLA", 700.0, 800));
-        stockDatabase.put("AMZN", new Stock("AMZN", 3400.0, 300));
-        stockDatabase.put("MSFT", new Stock("MSFT", 300.0, 1200));
+        symbolStore.add("AAPL", 150.0, 1000, 0);
+        symbolStore.add("GOOGL", 2800.0, 500, 0);
+        symbolStore.add("TSLA", 700.0, 800, 0);
+        symbolStore.add("AMZN", 3400.0, 300, 0);
+        symbolStore.add("MSFT", 300.0, 1200, 0);
 
         logger.info("Broker " + brokerId + " initialized with sample data on port " + port);
     }
 
     @Override
     public boolean buyStock(String symbol, int quantity, String clientId) throws RemoteException {
-        logger.info(String.format("Broker %s: BUY request - %s x %d from client %s",
-                brokerId, symbol, quantity, clientId));
+        return buyStock(symbol, quantity, clientId, 0);
+    }
 
-        Stock stock = stockDatabase.get(symbol);
-        if (stock == null) {
-            logger.warning("Stock not found: " + symbol);
+    @Override
+    public boolean buyStock(String symbol, int quantity, String clientId, long idempotencyKey) throws RemoteException {
+        if (!isValid(symbol, quantity)) {
+            tradingMetrics.recordTrade(false);
             return false;
         }
+        admissionController.acquire(Lane.TRADE, clientId);
+        try {
+            long start = System.nanoTime();
+            boolean bought = raftNode.isEnabled()
+                    ? replicatedTrade(OrderSide.BUY, symbol, quantity, clientId, idempotencyKey)
+                    : router.onSymbolHome(symbol, home -> home.buyStock(symbol, quantity, clientId, idempotencyKey),
+                            () -> idempotencyKey == 0
+                                    ? buy(symbol, quantity, clientId).isSuccess()
+                                    : executeOnce(new TradeRequest(OrderSide.BUY, symbol, quantity, clientId, idempotencyKey)).isSuccess());
+            if (bought) {
+                tradeJournal.commit();
+            }
+            tradingMetrics.record(Operation.BUY_STOCK, start);
+            return bought;
+        } finally {
+            admissionController.release(Lane.TRADE, clientId);
+        }
+    }
+
+    @Override
+    public boolean sellStock(String symbol, int quantity, String clientId) throws RemoteException {
+        return sellStock(symbol, quantity, clientId, 0);
+    }
 
-        synchronized (stock) {
-            if (stock.getAvailableQuantity() < quantity) {
-                logger.warning("Insufficient quantity for " + symbol);
-                return false;
+    @Override
+    public boolean sellStock(String symbol, int quantity, String clientId, long idempotencyKey) throws RemoteException {
+        if (!isValid(symbol, quantity)) {
+            tradingMetrics.recordTrade(false);
+            return false;
+        }
+        admissionController.acquire(Lane.TRADE, clientId);
+        try {
+            long start = System.nanoTime();
+            boolean sold = raftNode.isEnabled()
+                    ? replicatedTrade(OrderSide.SELL, symbol, quantity, clientId, idempotencyKey)
+                    : router.onSymbolHome(symbol, home -> home.sellStock(symbol, quantity, clientId, idempotencyKey),
+                            () -> idempotencyKey == 0
+                                    ? sell(symbol, quantity, clientId).isSuccess()
+                                    : executeOnce(new TradeRequest(OrderSide.SELL, symbol, quantity, clientId, idempotencyKey)).isSuccess());
+            if (sold) {
+                tradeJournal.commit();
             }
+            tradingMetrics.record(Operation.SELL_STOCK, start);
+            return sold;
+        } finally {
+            admissionController.release(Lane.TRADE, clientId);
+        }
+    }
 
-            double newPrice = stock.getPrice() * (1 + (quantity * 0.001));
-            stock.setPrice(newPrice);
-            stock.setAvailableQuantity(stock.getAvailableQuantity() - quantity);
+    // Runs every trade in the batch, then makes them all durable with a single journal commit
+    @Override
+    public List<TradeResult> executeTrades(List<TradeRequest> trades) throws RemoteException {
+        // A batch mixes clients, so it takes one trade permit and no per-client slot
+        admissionController.acquire(Lane.TRADE, null);
+        try {
+            long start = System.nanoTime();
+            List<TradeResult> results;
+            results = raftNode.isEnabled() ? replicatedTrades(trades) : tradesAtHomes(trades);
+            tradeJournal.commit();
+            tradingMetrics.record(Operation.EXECUTE_TRADES, start);
+            return results;
+        } finally {
+            admissionController.release(Lane.TRADE, null);
+        }
+    }
 
-            logger.info(String.format("Broker %s: BOUGHT %s x %d at $%.2f for client %s",
-                    brokerId, symbol, quantity, newPrice, clientId));
+    private TradeResult executeTrade(TradeRequest trade) throws RemoteException {
+        if (!isValid(trade)) {
+            tradingMetrics.recordTrade(false);
+            return new TradeResult(false, 0.0, "Invalid trade request");
+        }
+        return trade.getSide() == OrderSide.BUY
+                ? buy(trade.getSymbol(), trade.getQuantity(), trade.getClientId())
+                : sell(trade.getSymbol(), trade.getQuantity(), trade.getClientId());
+    }
 
-            replicateStockUpdate(symbol, newPrice, stock.getAvailableQuantity());
+    // A keyed trade whose key is in the dedup window gets its first result back instead of running again
+    private TradeResult executeOnce(TradeRequest trade) throws RemoteException {
+        if (trade.getIdempotencyKey() == 0) {
+            return executeTrade(trade);
+        }
+        return DedupWindow.join(dedup.submit(trade.getClientId(), trade.getIdempotencyKey(), trade.getSymbol(),
+                () -> CompletableFuture.completedFuture(executeTrade(trade))));
+    }
 
-            return true;
+    // Versioned mode tells every peer, partitioned mode the symbol's other owners; Raft replicas record keys as they apply
+    private void shareOutcome(TradeOutcome outcome) {
+        if (raftNode.isEnabled()) {
+            return;
         }
+        replicationPipeline.publishOutcome(outcome, partitions.isEnabled() ? partitions.replicaPeers(outcome.getSymbol()) : null);
     }
 
-    @Override
-    public boolean sellStock(String symbol, int quantity, String clientId) throws RemoteException {
-        logger.info(String.format("Broker %s: SELL request - %s x %d from client %s",
-                brokerId, symbol, quantity, clientId));
+    private static boolean isValid(TradeRequest trade) {
+        return trade.getSide() != null && isValid(trade.getSymbol(), trade.getQuantity());
+    }
+
+    // Checked before a trade is routed anywhere, so a size of zero or less never reaches a ledger, a home or the log
+    private static boolean isValid(String symbol, int quantity) {
+        return symbol != null && quantity > 0;
+    }
 
-        Stock stock = stockDatabase.get(symbol);
-        if (stock == null) {
-            stock = new Stock(symbol, 100.0, 0);
-            stockDatabase.put(symbol, stock);
+    // Consensus mode: the leader orders the trade in the replicated log, any other broker hands it to the leader
+    private boolean replicatedTrade(OrderSide side, String symbol, int quantity, String clientId, long idempotencyKey)
+            throws RemoteException {
+        if (!raftNode.isLeader()) {
+            TradingService leader = raftNode.leader();
+            return side == OrderSide.BUY
+                    ? leader.buyStock(symbol, quantity, clientId, idempotencyKey)
+                    : leader.sellStock(symbol, quantity, clientId, idempotencyKey);
         }
+        TradeResult result = raftNode.await(proposeOnce(new TradeRequest(side, symbol, quantity, clientId, idempotencyKey)));
+        tradingMetrics.recordTrade(result.isSuccess());
+        return result.isSuccess();
+    }
 
-        synchronized (stock) {
-            double newPrice = stock.getPrice() * (1 - (quantity * 0.0005));
-            stock.setPrice(Math.max(newPrice, 1.0));
-            stock.setAvailableQuantity(stock.getAvailableQuantity() + quantity);
+    /**
+     * Consensus mode, on the leader: a key that is already applied, or still on its way through the
+     * log, is not proposed again. Entries from earlier terms are applied first, so the window also
+     * covers keys the previous leader appended.
+     */
+    private CompletableFuture<TradeResult> proposeOnce(TradeRequest trade) throws RemoteException {
+        LogEntry command = new LogEntry(0, 0, trade.getSide() == OrderSide.BUY ? LogEntry.Type.BUY : LogEntry.Type.SELL,
+                trade.getSymbol(), trade.getQuantity(), 0.0, trade.getClientId(), trade.getIdempotencyKey());
+        if (trade.getIdempotencyKey() == 0) {
+            return proposeChecked(trade, command);
+        }
+        raftNode.awaitTermStart();
+        return dedup.submit(trade.getClientId(), trade.getIdempotencyKey(), trade.getSymbol(),
+                () -> proposeChecked(trade, command));
+    }
 
-            logger.info(String.format("Broker %s: SOLD %s x %d at $%.2f for client %s",
-                    brokerId, symbol, quantity, newPrice, clientId));
+    private CompletableFuture<TradeResult> proposeChecked(TradeRequest trade, LogEntry command) throws ServerBusyException {
+        long key = tradeHoldKey();
+        TradeResult refused = riskCheck(trade, key);
+        if (refused != null) {
+            return CompletableFuture.completedFuture(refused);
+        }
+        return proposeHeld(List.of(command), List.of(trade), List.of(key)).get(0);
+    }
 
-            replicateStockUpdate(symbol, newPrice, stock.getAvailableQuantity());
+    /**
+     * Consensus mode, on the leader: the client's account is checked before the trade enters the
+     * log, at the price it would trade at now plus {@code account.hold-slack}, and the trade is held
+     * under key until it is applied, so trades still in the log count against the limits. Replicas
+     * book the trade when they apply it and never refuse it there, because a replica restored from
+     * a snapshot has no accounts and would decide differently.
+     */
+    private TradeResult riskCheck(TradeRequest trade, long key) {
+        int id = symbolStore.idOf(trade.getSymbol());
+        if (id < 0) {
+            // Applying it rejects the trade on every broker alike
+            return null;
+        }
+        double price = symbolStore.price(id);
+        int quantity = trade.getQuantity();
+        String refusal = accounts.reserve(trade.getClientId(), key, id, trade.getSide(), quantity,
+                trade.getSide() == OrderSide.BUY ? accounts.holdPrice(priceAfterBuy(price, quantity)) : priceAfterSell(price, quantity));
+        return refusal == null ? null : new TradeResult(false, price, refusal);
+    }
 
-            return true;
+    // Releases each trade's hold once its entry is applied, which has booked it by then, or fails
+    private List<CompletableFuture<TradeResult>> proposeHeld(List<LogEntry> commands, List<TradeRequest> trades,
+                                                             List<Long> keys) throws ServerBusyException {
+        List<CompletableFuture<TradeResult>> proposed;
+        try {
+            proposed = raftNode.proposeAll(commands);
+        } catch (ServerBusyException e) {
+            for (int i = 0; i < trades.size(); i++) {
+                accounts.release(trades.get(i).getClientId(), keys.get(i));
+            }
+            throw e;
         }
+        List<CompletableFuture<TradeResult>> released = new ArrayList<>(proposed.size());
+        for (int i = 0; i < proposed.size(); i++) {
+            String clientId = trades.get(i).getClientId();
+            long key = keys.get(i);
+            released.add(proposed.get(i).whenComplete((result, failure) -> accounts.release(clientId, key)));
+        }
+        return released;
+    }
+
+    // The whole batch is appended at once, so it shares AppendEntries calls and log flushes
+    private List<TradeResult> replicatedTrades(List<TradeRequest> trades) throws RemoteException {
+        if (!raftNode.isLeader()) {
+            return raftNode.leader().executeTrades(trades);
+        }
+        // Keyed trades go through the dedup window one at a time; unkeyed runs between them are appended together
+        List<CompletableFuture<TradeResult>> pending = new ArrayList<>(trades.size());
+        List<LogEntry> run = new ArrayList<>();
+        List<TradeRequest> runTrades = new ArrayList<>();
+        List<Long> runKeys = new ArrayList<>();
+        for (TradeRequest trade : trades) {
+            if (!isValid(trade)) {
+                continue;
+            }
+            long key = trade.getIdempotencyKey() == 0 ? tradeHoldKey() : 0;
+            TradeResult refused = key != 0 ? riskCheck(trade, key) : null;
+            if (key != 0 && refused == null) {
+                run.add(new LogEntry(0, 0, trade.getSide() == OrderSide.BUY ? LogEntry.Type.BUY : LogEntry.Type.SELL,
+                        trade.getSymbol(), trade.getQuantity(), 0.0, trade.getClientId()));
+                runTrades.add(trade);
+                runKeys.add(key);
+                continue;
+            }
+            pending.addAll(proposeHeld(run, runTrades, runKeys));
+            run.clear();
+            runTrades.clear();
+            runKeys.clear();
+            pending.add(refused != null ? CompletableFuture.completedFuture(refused) : proposeOnce(trade));
+        }
+        pending.addAll(proposeHeld(run, runTrades, runKeys));
+        List<TradeResult> results = new ArrayList<>(trades.size());
+        int next = 0;
+        for (TradeRequest trade : trades) {
+            TradeResult result = isValid(trade)
+                    ? raftNode.await(pending.get(next++))
+                    : new TradeResult(false, 0.0, "Invalid trade request");
+            tradingMetrics.recordTrade(result.isSuccess());
+            results.add(result);
+        }
+        return results;
+    }
+
+    // Trades run here unless their symbol has a home elsewhere; those go to their homes in one call per home
+    private List<TradeResult> tradesAtHomes(List<TradeRequest> trades) throws RemoteException {
+        TradeResult[] results = new TradeResult[trades.size()];
+        Map<String, List<Integer>> byOwner = new HashMap<>();
+        for (int i = 0; i < trades.size(); i++) {
+            TradeRequest trade = trades.get(i);
+            String ownerId = isValid(trade) ? partitions.symbolHomePeer(trade.getSymbol()) : null;
+            if (ownerId == null) {
+                results[i] = executeOnce(trade);
+            } else {
+                byOwner.computeIfAbsent(ownerId, id -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> group : byOwner.entrySet()) {
+            List<Integer> positions = group.getValue();
+            List<TradeRequest> batch = new ArrayList<>(positions.size());
+            for (int position : positions) {
+                batch.add(trades.get(position));
+            }
+            Optional<List<TradeResult>> forwarded = router.forward(group.getKey(), owner -> owner.executeTrades(batch));
+            // An unreachable owner has left the map, so its trades are routed again
+            List<TradeResult> groupResults = forwarded.isPresent() ? forwarded.get() : tradesAtHomes(batch);
+            for (int j = 0; j < positions.size(); j++) {
+                results[positions.get(j)] = groupResults.get(j);
+            }
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    private TradeResult buy(String symbol, int quantity, String clientId) throws RemoteException {
+        int id = symbolStore.idOf(symbol);
+        if (id < 0) {
+            return notFound(OrderSide.BUY, symbol, quantity, clientId);
+        }
+
+        // A client homed on another broker is checked here, against what its home granted this broker,
+        // at no more than the price the grant holds
+        long key = 0;
+        double maxPrice = Double.MAX_VALUE;
+        if (partitions.clientHomePeer(clientId) != null) {
+            long start = System.nanoTime();
+            double price = priceAfterBuy(symbolStore.price(id), quantity);
+            String refusal = localRefusal(clientId, quantity);
+            if (refusal == null) {
+                key = allowances.draw(clientId, id, OrderSide.BUY, quantity, price, accounts.holdPrice(price));
+                refusal = key == 0 ? "Insufficient buying power for " + symbol : null;
+                maxPrice = allowances.priceOf(clientId, key);
+            }
+            tradingMetrics.record(Operation.RISK_CHECK, start);
+            if (refusal != null) {
+                tradingMetrics.recordTrade(false);
+                return refused(OrderSide.BUY, id, quantity, clientId, refusal);
+            }
+        }
+        long holdKey = key;
+        double holdPrice = maxPrice;
+
+        TradeResult result = tradeSequencer.execute(symbol, symbolStore.lockFor(id), () -> {
+            int available = symbolStore.quantity(id);
+            if (available < quantity) {
+                giveBack(clientId, holdKey, quantity);
+                if (tradeLogger.sample()) {
+                    tradeLogger.log(Level.WARNING, "Broker %s: BUY %s x %d from client %s rejected, only %d available",
+                            brokerId, symbol, quantity, clientId, available);
+                }
+                return new TradeResult(false, symbolStore.price(id), "Insufficient quantity for " + symbol);
+            }
+
+            double newPrice = priceAfterBuy(symbolStore.price(id), quantity);
+
+            // Booked while the symbol is held, so no other trade runs between the check and the fill
+            String refusal = holdKey == 0
+                    ? accounts.book(clientId, id, OrderSide.BUY, quantity, newPrice)
+                    : newPrice > holdPrice ? "Price moved above the held price for " + symbol : null;
+            if (refusal != null) {
+                giveBack(clientId, holdKey, quantity);
+                return refused(OrderSide.BUY, id, quantity, clientId, refusal);
+            }
+
+            if (tradeLogger.sample()) {
+                tradeLogger.log(Level.INFO, "Broker %s: BOUGHT %s x %d at $%.2f for client %s",
+                        brokerId, symbol, quantity, newPrice, clientId);
+            }
+
+            commitLocalChange(JournalEventType.TRADE, id, newPrice, available - quantity);
+            recordTrade(id, OrderSide.BUY, quantity, newPrice, clientId);
+            if (holdKey != 0) {
+                settle(clientId, holdKey, id, OrderSide.BUY, quantity, newPrice, false);
+                allowances.settled(clientId, holdKey, quantity);
+            }
+
+            return new TradeResult(true, newPrice, null);
+        });
+        tradingMetrics.recordTrade(result.isSuccess());
+        return result;
+    }
+
+    // Only listed symbols can be sold; a sale no longer creates the symbol
+    private TradeResult sell(String symbol, int quantity, String clientId) throws RemoteException {
+        int id = symbolStore.idOf(symbol);
+        if (id < 0) {
+            return notFound(OrderSide.SELL, symbol, quantity, clientId);
+        }
+
+        // A sale only holds shares, so the price it runs at does not matter to the grant
+        long key = 0;
+        if (partitions.clientHomePeer(clientId) != null) {
+            long start = System.nanoTime();
+            String refusal = localRefusal(clientId, quantity);
+            if (refusal == null) {
+                double price = symbolStore.price(id);
+                key = allowances.draw(clientId, id, OrderSide.SELL, quantity, price, price);
+                refusal = key == 0 ? "Short-sell limit reached for " + symbol : null;
+            }
+            tradingMetrics.record(Operation.RISK_CHECK, start);
+            if (refusal != null) {
+                tradingMetrics.recordTrade(false);
+                return refused(OrderSide.SELL, id, quantity, clientId, refusal);
+            }
+        }
+        long holdKey = key;
+
+        TradeResult result = tradeSequencer.execute(symbol, symbolStore.lockFor(id), () -> {
+            double newPrice = priceAfterSell(symbolStore.price(id), quantity);
+
+            String refusal = holdKey == 0 ? accounts.book(clientId, id, OrderSide.SELL, quantity, newPrice) : null;
+            if (refusal != null) {
+                return refused(OrderSide.SELL, id, quantity, clientId, refusal);
+            }
+
+            if (tradeLogger.sample()) {
+                tradeLogger.log(Level.INFO, "Broker %s: SOLD %s x %d at $%.2f for client %s",
+                        brokerId, symbol, quantity, newPrice, clientId);
+            }
+
+            commitLocalChange(JournalEventType.TRADE, id, newPrice, symbolStore.quantity(id) + quantity);
+            recordTrade(id, OrderSide.SELL, quantity, newPrice, clientId);
+            if (holdKey != 0) {
+                settle(clientId, holdKey, id, OrderSide.SELL, quantity, newPrice, false);
+                allowances.settled(clientId, holdKey, quantity);
+            }
+
+            return new TradeResult(true, newPrice, null);
+        });
+        tradingMetrics.recordTrade(result.isSuccess());
+        return result;
+    }
+
+    // Caller holds the symbol
+    private void recordTrade(int id, OrderSide side, int quantity, double price, String clientId) {
+        history.record(symbolStore.symbol(id), side, quantity, price, clientId);
+        candles.record(id, price, quantity, System.currentTimeMillis());
+    }
+
+    // The fill is settled and kept for getFills on the client's home, so its fills are read where its account is
+    private void onFill(Fill fill) {
+        int id = symbolStore.idOf(fill.getSymbol());
+        String clientId = fill.getClientId();
+        // An order drawn from a grant settles against the grant, one restored from the journal against its own hold
+        long key = allowances.orderFilled(fill.getOrderId(), fill.getQuantity());
+        if (key == 0) {
+            key = orderHoldKey(fill.getOrderId());
+        }
+        if (partitions.clientHomePeer(clientId) == null) {
+            accounts.settle(clientId, key, id, fill.getSide(), fill.getQuantity(), fill.getPrice());
+            matchingEngine.recordFill(fill);
+        } else {
+            settlementOutbox.publish(new Settlement(clientId, key, fill.getSymbol(), fill.getSide(), fill.getQuantity(),
+                    fill.getPrice(), fill.getTimestamp(), false, fill.getOrderId(), fill.getCounterOrderId()));
+        }
+        history.record(fill.getSymbol(), fill.getSide(), fill.getQuantity(), fill.getPrice(), fill.getClientId());
+        // Both sides of a match are one trade, so only the taker's fill counts toward the bars; its order is the newer one
+        if (fill.getOrderId() > fill.getCounterOrderId()) {
+            candles.record(id, fill.getPrice(), fill.getQuantity(), fill.getTimestamp());
+        }
+    }
+
+    private TradeResult notFound(OrderSide side, String symbol, int quantity, String clientId) {
+        tradingMetrics.recordTrade(false);
+        if (tradeLogger.sample()) {
+            tradeLogger.log(Level.WARNING, "Broker %s: %s %s x %d from client %s rejected, stock not found",
+                    brokerId, side, symbol, quantity, clientId);
+        }
+        return new TradeResult(false, 0.0, "Stock not found: " + symbol);
+    }
+
+    // Caller holds the symbol
+    private TradeResult refused(OrderSide side, int id, int quantity, String clientId, String refusal) {
+        if (tradeLogger.sample()) {
+            tradeLogger.log(Level.WARNING, "Broker %s: %s %s x %d from client %s refused, %s",
+                    brokerId, side, symbolStore.symbol(id), quantity, clientId, refusal);
+        }
+        return new TradeResult(false, symbolStore.price(id), refusal);
+    }
+
+    // Orders hold under their id, other trades under a sequence of their own; both carry this broker's tag
+    private long orderHoldKey(long orderId) {
+        return orderId << 16 | versionTag;
+    }
+
+    private long tradeHoldKey() {
+        return 1L << 62 | holdSequence.incrementAndGet() << 16 | versionTag;
+    }
+
+    // Keys from before a restart may still be held on other brokers, so new ones are numbered past them
+    private void restoreHoldKey(long key) {
+        if (key >>> 62 == 1 && (key & 0xFFFF) == versionTag) {
+            holdSequence.accumulateAndGet(key >>> 16 & (1L << 46) - 1, Math::max);
+        }
+    }
+
+    // Checks that need no account, for a trade whose client is homed elsewhere; null if it passes
+    private String localRefusal(String clientId, int quantity) {
+        if (!fitsJournal(clientId)) {
+            return "Client id too long";
+        }
+        return accounts.sizeRefusal(quantity);
+    }
+
+    // A client id journaled with a resting order or a settlement has to fit the record
+    private boolean fitsJournal(String clientId) {
+        return !tradeJournal.isEnabled() || clientId == null || clientId.length() <= TradeJournal.MAX_CLIENT_ID_BYTES / 3
+                || clientId.getBytes(StandardCharsets.UTF_8).length <= TradeJournal.MAX_CLIENT_ID_BYTES;
+    }
+
+    // Asks the client's home to hold a grant for trades run here, or holds it here if the client has moved here since
+    // One call per home broker; a home that cannot be reached fails the whole batch
+    private int[] grantAtHome(List<Reservation> wanted) throws RemoteException {
+        Map<String, List<Integer>> byHome = new HashMap<>();
+        for (int i = 0; i < wanted.size(); i++) {
+            String homeId = partitions.clientHomePeer(wanted.get(i).getClientId());
+            byHome.computeIfAbsent(homeId == null ? "" : homeId, id -> new ArrayList<>()).add(i);
+        }
+        int[] granted = new int[wanted.size()];
+        for (List<Integer> indexes : byHome.values()) {
+            List<Reservation> batch = new ArrayList<>(indexes.size());
+            for (int index : indexes) {
+                batch.add(wanted.get(index));
+            }
+            int[] batchGranted = router.onClientHome(batch.get(0).getClientId(), home -> home.grant(batch),
+                    () -> grantHere(batch));
+            for (int i = 0; i < indexes.size(); i++) {
+                granted[indexes.get(i)] = batchGranted[i];
+            }
+        }
+        return granted;
+    }
+
+    private int[] grantHere(List<Reservation> reservations) {
+        int[] granted = new int[reservations.size()];
+        for (int i = 0; i < granted.length; i++) {
+            Reservation wanted = reservations.get(i);
+            granted[i] = accounts.grant(wanted.getClientId(), wanted.getKey(), symbolIdOf(wanted.getSymbol(), wanted.getPrice()),
+                    wanted.getSide(), wanted.getQuantity(), wanted.getPrice());
+        }
+        return granted;
+    }
+
+    /**
+     * Books a trade against its hold on the client's home broker: at once if that is this broker,
+     * otherwise through the settlement outbox, which keeps it until the home has it. With last
+     * set, whatever the trade left of the hold is given back.
+     */
+    private void settle(String clientId, long key, int id, OrderSide side, int quantity, double price, boolean last) {
+        if (partitions.clientHomePeer(clientId) == null) {
+            if (quantity > 0) {
+                accounts.settle(clientId, key, id, side, quantity, price);
+            }
+            if (last) {
+                accounts.release(clientId, key);
+            }
+            return;
+        }
+        settlementOutbox.publish(new Settlement(clientId, key, symbolStore.symbol(id), side, quantity, price,
+                System.currentTimeMillis(), last));
+    }
+
+    private void release(String clientId, long key, int id) {
+        if (key != 0 && id >= 0) {
+            settle(clientId, key, id, OrderSide.BUY, 0, 0.0, true);
+        }
+    }
+
+    // A trade drawn from a grant that did not run
+    private void giveBack(String clientId, long key, int quantity) {
+        if (key != 0) {
+            allowances.giveBack(clientId, key, quantity);
+        }
+    }
+
+    // What an order that stopped resting did not fill goes back to its grant, or its own hold is released
+    private void endOrder(String clientId, long orderId, int id) {
+        if (!allowances.orderDone(orderId)) {
+            release(clientId, orderHoldKey(orderId), id);
+        }
+    }
+
+    static double priceAfterBuy(double price, int quantity) {
+        return price * (1 + (quantity * 0.001));
+    }
+
+    static double priceAfterSell(double price, int quantity) {
+        return Math.max(price * (1 - (quantity * 0.0005)), 1.0);
     }
 
     @Override
     public double getPrice(String symbol) throws RemoteException {
-        Stock stock = stockDatabase.get(symbol);
-        return stock != null ? stock.getPrice() : 0.0;
+        admissionController.acquire(Lane.READ, null);
+        long start = System.nanoTime();
+        try {
+            if (!raftNode.awaitLocalRead()) {
+                return raftNode.leader().getPrice(symbol);
+            }
+            // Any owner of the symbol can answer; other brokers may only hold a stale copy
+            if (partitions.isEnabled() && !partitions.holds(symbol)) {
+                return router.onOwner(symbol, owner -> owner.getPrice(symbol), () -> localPrice(symbol));
+            }
+            return localPrice(symbol);
+        } finally {
+            // Reads forwarded to the leader or an owner are timed too, round trip included
+            tradingMetrics.record(Operation.GET_PRICE, start);
+            admissionController.release(Lane.READ, null);
+        }
+    }
+
+    private double localPrice(String symbol) {
+        int id = symbolStore.idOf(symbol);
+        return id >= 0 ? symbolStore.price(id) : 0.0;
     }
 
     @Override
     public Map<String, Double> getAllStocks() throws RemoteException {
-        Map<String, Double> prices = new ConcurrentHashMap<>();
-        stockDatabase.forEach((symbol, stock) -> prices.put(symbol, stock.getPrice()));
-        return prices;
+        admissionController.acquire(Lane.READ, null);
+        try {
+            long start = System.nanoTime();
+            // Shared and unmodifiable; at most snapshot.publish-interval-ms behind the store. When partitioned,
+            // only the symbols this broker owns are current.
+            Map<String, Double> prices = priceSnapshots.current().getPrices();
+            tradingMetrics.record(Operation.GET_ALL_STOCKS, start);
+            return prices;
+        } finally {
+            admissionController.release(Lane.READ, null);
+        }
+    }
+
+    @Override
+    public PriceBatch getPrices(List<String> symbols) throws RemoteException {
+        admissionController.acquire(Lane.READ, null);
+        long start = System.nanoTime();
+        try {
+            if (!raftNode.awaitLocalRead()) {
+                return raftNode.leader().getPrices(symbols);
+            }
+            PriceBatch batch = localPrices(symbols.toArray(new String[0]));
+            if (partitions.isEnabled()) {
+                fillFromOwners(batch);
+            }
+            return batch;
+        } finally {
+            tradingMetrics.record(Operation.GET_PRICES, start);
+            admissionController.release(Lane.READ, null);
+        }
+    }
+
+    private PriceBatch localPrices(String[] symbols) {
+        double[] prices = new double[symbols.length];
+        int[] quantities = new int[symbols.length];
+        long[] versions = new long[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            int id = symbolStore.idOf(symbols[i]);
+            if (id >= 0) {
+                symbolStore.read(id, prices, quantities, versions, i);
+            } else {
+                versions[i] = -1;
+            }
+        }
+        return new PriceBatch(symbols, prices, quantities, versions);
+    }
+
+    // Partitioned mode: symbols this broker does not own are asked of their primaries, one call per primary.
+    // Where a primary cannot be reached, the local copy stays in the batch.
+    private void fillFromOwners(PriceBatch batch) throws RemoteException {
+        Map<String, List<Integer>> byOwner = new HashMap<>();
+        String[] symbols = batch.getSymbols();
+        for (int i = 0; i < symbols.length; i++) {
+            String ownerId = partitions.holds(symbols[i]) ? null : partitions.primaryPeer(symbols[i]);
+            if (ownerId != null) {
+                byOwner.computeIfAbsent(ownerId, id -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> group : byOwner.entrySet()) {
+            List<Integer> positions = group.getValue();
+            List<String> owned = new ArrayList<>(positions.size());
+            positions.forEach(i -> owned.add(symbols[i]));
+            Optional<PriceBatch> forwarded = router.forward(group.getKey(), owner -> owner.getPrices(owned));
+            if (forwarded.isPresent()) {
+                PriceBatch remote = forwarded.get();
+                for (int j = 0; j < positions.size(); j++) {
+                    int i = positions.get(j);
+                    batch.getPrices()[i] = remote.getPrices()[j];
+                    batch.getQuantities()[i] = remote.getQuantities()[j];
+                    batch.getVersions()[i] = remote.getVersions()[j];
+                }
+            }
+        }
+    }
+
+    @Override
+    public OrderResult submitOrder(String symbol, OrderSide side, OrderType type, double price, int quantity,
+                                   String clientId) throws RemoteException {
+        admissionController.acquire(Lane.TRADE, clientId);
+        try {
+            // Consensus mode keeps the one order book on the leader; where symbols have homes, it is on the home
+            if (raftNode.isEnabled() && !raftNode.isLeader()) {
+                return raftNode.leader().submitOrder(symbol, side, type, price, quantity, clientId);
+            }
+            return router.onSymbolHome(symbol, home -> home.submitOrder(symbol, side, type, price, quantity, clientId),
+                    () -> placeOrder(symbol, side, type, price, quantity, clientId));
+        } finally {
+            admissionController.release(Lane.TRADE, clientId);
+        }
+    }
+
+    private OrderResult placeOrder(String symbol, OrderSide side, OrderType type, double price, int quantity,
+                                   String clientId) throws RemoteException {
+        long start = System.nanoTime();
+        // Nothing could hold, cancel or settle an order without a client
+        if (clientId == null) {
+            tradingMetrics.recordFailure(Operation.SUBMIT_ORDER);
+            return OrderResult.rejected();
+        }
+        int id = symbolStore.idOf(symbol);
+        if (id < 0) {
+            tradingMetrics.recordFailure(Operation.SUBMIT_ORDER);
+            if (tradeLogger.sample()) {
+                tradeLogger.log(Level.WARNING, "Broker %s: %s %s order for %s from client %s rejected, stock not found",
+                        brokerId, type, side, symbol, clientId);
+            }
+            return OrderResult.rejected();
+        }
+        // A resting order, and the settlement of a client homed elsewhere, are journaled with the client id
+        boolean rest = tradeJournal.isEnabled();
+        if ((type == OrderType.LIMIT || partitions.clientHomePeer(clientId) != null) && !fitsJournal(clientId)) {
+            tradingMetrics.recordFailure(Operation.SUBMIT_ORDER);
+            return OrderResult.rejected();
+        }
+        // The whole order is held until it fills, is cancelled or stops resting, a market order at the quoted
+        // price plus slack: on the client's home, or drawn from a grant its home holds for this broker
+        long orderId = matchingEngine.nextOrderId();
+        double holdPrice = type == OrderType.LIMIT ? price : accounts.holdPrice(symbolStore.price(id));
+        String refusal;
+        if (partitions.clientHomePeer(clientId) == null) {
+            refusal = accounts.reserve(clientId, orderHoldKey(orderId), id, side, quantity, holdPrice);
+        } else {
+            long checkStart = System.nanoTime();
+            refusal = accounts.sizeRefusal(quantity);
+            if (refusal == null && allowances.drawOrder(orderId, clientId, id, side, quantity, holdPrice, holdPrice) == 0) {
+                refusal = side == OrderSide.BUY ? "Insufficient buying power for " + symbol
+                        : "Short-sell limit reached for " + symbol;
+            }
+            tradingMetrics.record(Operation.RISK_CHECK, checkStart);
+        }
+        if (refusal != null) {
+            tradingMetrics.recordFailure(Operation.SUBMIT_ORDER);
+            if (tradeLogger.sample()) {
+                tradeLogger.log(Level.WARNING, "Broker %s: %s %s order for %s from client %s refused, %s",
+                        brokerId, type, side, symbol, clientId, refusal);
+            }
+            return OrderResult.rejected();
+        }
+
+        // Without a journal a resting order would not survive a restart, so limit orders are immediate-or-cancel
+        OrderResult result = matchingEngine.submit(orderId, symbol, side, type, price, quantity, clientId, rest);
+        if (result.getStatus() != OrderStatus.NEW && result.getStatus() != OrderStatus.PARTIALLY_FILLED) {
+            endOrder(clientId, orderId, id);
+        }
+        List<Fill> fills = result.getFills();
+        if (!fills.isEmpty()) {
+            // The last traded price becomes the quoted price
+            double lastPrice = fills.get(fills.size() - 1).getPrice();
+            if (raftNode.isEnabled()) {
+                raftNode.propose(new LogEntry(0, 0, LogEntry.Type.FILL, symbol, 0, lastPrice, clientId));
+            } else {
+                tradeSequencer.run(symbol, symbolStore.lockFor(id), () ->
+                        commitLocalChange(JournalEventType.FILL, id, lastPrice, symbolStore.quantity(id)));
+            }
+        }
+        // Covers the fills and the order left resting
+        tradeJournal.commit();
+        if (tradeLogger.sample()) {
+            tradeLogger.log(Level.INFO, "Broker %s: %s %s order %d for %s x %d from client %s -> %s",
+                    brokerId, type, side, result.getOrderId(), symbol, quantity, clientId, result.getStatus());
+        }
+        tradingMetrics.record(Operation.SUBMIT_ORDER, start);
+        return result;
+    }
+
+    @Override
+    public boolean cancelOrder(String symbol, long orderId, String clientId) throws RemoteException {
+        admissionController.acquire(Lane.TRADE, clientId);
+        try {
+            if (raftNode.isEnabled() && !raftNode.isLeader()) {
+                return raftNode.leader().cancelOrder(symbol, orderId, clientId);
+            }
+            return router.onSymbolHome(symbol, home -> home.cancelOrder(symbol, orderId, clientId),
+                    () -> cancelLocally(symbol, orderId, clientId));
+        } finally {
+            admissionController.release(Lane.TRADE, clientId);
+        }
+    }
+
+    private boolean cancelLocally(String symbol, long orderId, String clientId) {
+        long start = System.nanoTime();
+        boolean cancelled = matchingEngine.cancel(symbol, orderId, clientId);
+        if (cancelled) {
+            tradeJournal.commit();
+        }
+        if (tradeLogger.sample()) {
+            tradeLogger.log(Level.INFO, "Broker %s: CANCEL order %d for %s from client %s -> %s",
+                    brokerId, orderId, symbol, clientId, cancelled ? "cancelled" : "not found");
+        }
+        tradingMetrics.record(Operation.CANCEL_ORDER, start);
+        return cancelled;
+    }
+
+    // Fills are kept on the client's home broker, wherever the orders matched, and numbered in its sequence;
+    // in consensus mode on the leader
+    @Override
+    public List<Fill> getFills(String clientId, long afterSequence) throws RemoteException {
+        admissionController.acquire(Lane.READ, clientId);
+        try {
+            if (raftNode.isEnabled() && !raftNode.isLeader()) {
+                return raftNode.leader().getFills(clientId, afterSequence);
+            }
+            return router.onClientHome(clientId, home -> home.getFills(clientId, afterSequence),
+                    () -> matchingEngine.getFills(clientId, afterSequence));
+        } finally {
+            admissionController.release(Lane.READ, clientId);
+        }
+    }
+
+    // The account on the client's home broker; in consensus mode the leader's, which also holds the order fills
+    @Override
+    public AccountSnapshot getAccount(String clientId) throws RemoteException {
+        admissionController.acquire(Lane.READ, clientId);
+        try {
+            if (raftNode.isEnabled() && !raftNode.isLeader()) {
+                return raftNode.leader().getAccount(clientId);
+            }
+            return router.onClientHome(clientId, home -> home.getAccount(clientId), () -> accounts.account(clientId));
+        } finally {
+            admissionController.release(Lane.READ, clientId);
+        }
+    }
+
+    // A symbol's trades are asked of its home, or in consensus mode the leader; without symbol homes each broker
+    // answers with the trades it ran
+    @Override
+    public TradePage getTrades(String symbol, long fromMillis, long toMillis, long cursor, int limit) throws RemoteException {
+        admissionController.acquire(Lane.READ, null);
+        try {
+            if (raftNode.isEnabled() && !raftNode.isLeader()) {
+                return raftNode.leader().getTrades(symbol, fromMillis, toMillis, cursor, limit);
+            }
+            return router.onSymbolHome(symbol, home -> home.getTrades(symbol, fromMillis, toMillis, cursor, limit),
+                    () -> localTrades(symbol, fromMillis, toMillis, cursor, limit));
+        } finally {
+            admissionController.release(Lane.READ, null);
+        }
+    }
+
+    private TradePage localTrades(String symbol, long fromMillis, long toMillis, long cursor, int limit) throws RemoteException {
+        try {
+            return history.symbolTrades(symbol, fromMillis, toMillis, cursor, limit);
+        } catch (IOException e) {
+            throw new RemoteException("Failed to read trade history", e);
+        }
+    }
+
+    // A client's trades are kept with its account, on its home broker, wherever they ran; in consensus mode on the leader
+    @Override
+    public TradePage getClientTrades(String clientId, long cursor, int limit) throws RemoteException {
+        admissionController.acquire(Lane.READ, clientId);
+        try {
+            if (raftNode.isEnabled() && !raftNode.isLeader()) {
+                return raftNode.leader().getClientTrades(clientId, cursor, limit);
+            }
+            return router.onClientHome(clientId, home -> home.getClientTrades(clientId, cursor, limit),
+                    () -> localClientTrades(clientId, cursor, limit));
+        } finally {
+            admissionController.release(Lane.READ, clientId);
+        }
+    }
+
+    private TradePage localClientTrades(String clientId, long cursor, int limit) throws RemoteException {
+        try {
+            return history.clientTrades(clientId, cursor, limit);
+        } catch (IOException e) {
+            throw new RemoteException("Failed to read trade history", e);
+        }
+    }
+
+    // Bars are built where trades run: on a symbol's home, on the leader in consensus mode, otherwise on every broker
+    @Override
+    public CandleSeries getCandles(String symbol, long intervalMillis, int count) throws RemoteException {
+        admissionController.acquire(Lane.READ, null);
+        try {
+            if (raftNode.isEnabled() && !raftNode.isLeader()) {
+                return raftNode.leader().getCandles(symbol, intervalMillis, count);
+            }
+            return router.onSymbolHome(symbol, home -> home.getCandles(symbol, intervalMillis, count),
+                    () -> candles.latest(symbol, intervalMillis, count));
+        } finally {
+            admissionController.release(Lane.READ, null);
+        }
+    }
+
+    @Override
+    public long subscribe(MarketDataListener listener, List<String> symbols) throws RemoteException {
+        return marketDataPublisher.subscribe(listener, symbols);
+    }
+
+    @Override
+    public boolean unsubscribe(long subscriptionId) throws RemoteException {
+        return marketDataPublisher.unsubscribe(subscriptionId);
     }
 
     @Override
     public void registerBroker(String brokerId, TradingService brokerService) throws RemoteException {
-        if (!this.brokerId.equals(brokerId) && !registeredBrokerIds.contains(brokerId)) {
-            peerBrokers.add(brokerService);
-            registeredBrokerIds.add(brokerId);
-            logger.info("Broker " + this.brokerId + " registered peer broker: " + brokerId);
+        // Membership gossips this broker's view back, so the peer learns about this broker and the rest of the cluster
+        membership.join(brokerId, brokerService);
+    }
 
-            brokerService.syncStockData(getStockDataForSync());
+    @Override
+    public List<MemberState> gossip(String senderId, List<MemberState> view) throws RemoteException {
+        return membership.gossip(senderId, view);
+    }
+
+    /**
+     * Joins and leaves peers as membership sees them come and go. In versioned mode a peer that
+     * comes up gets a replicator and a digest catch-up; in partitioned mode the rebalance pushes
+     * each symbol to its new owners. Both rebuild the map that gives every client its home. Raft
+     * keeps retrying its peers itself and only needs to learn their stubs.
+     */
+    private final class PeerLifecycle implements MembershipListener {
+        @Override
+        public void memberUp(String peerId, TradingService peer) {
+            peerBrokers.addIfAbsent(peer);
+            registeredBrokerIds.addIfAbsent(peerId);
+            if (raftNode.isEnabled()) {
+                raftNode.addPeer(peerId, peer);
+                logger.info("Broker " + brokerId + " registered consensus peer: " + peerId);
+                return;
+            }
+            replicationPipeline.addPeer(peerId, peer);
+            partitions.addMember(peerId, peer);
+            if (partitions.isEnabled()) {
+                logger.info("Broker " + brokerId + " registered partition member: " + peerId);
+                return;
+            }
+            logger.info("Broker " + brokerId + " registered peer broker: " + peerId);
+            try {
+                catchUp(peerId, peer);
+            } catch (RemoteException e) {
+                tradingMetrics.recordFailure(Operation.CATCH_UP);
+                logger.warning("Broker " + brokerId + ": catch-up with " + peerId + " failed: " + e.getMessage());
+                membership.reportUnreachable(peerId, peer);
+            }
+        }
+
+        @Override
+        public void memberDown(String peerId, TradingService peer) {
+            peerBrokers.remove(peer);
+            registeredBrokerIds.remove(peerId);
+            if (raftNode.isEnabled()) {
+                return;
+            }
+            replicationPipeline.removePeer(peerId);
+            partitions.removeMember(peerId, peer);
         }
     }
 
@@ -130,34 +1144,256 @@ public class TradingServiceImpl extends UnicastRemoteObject implements TradingSe
         if (this.brokerId.equals(sourceBrokerId)) {
             return;
         }
+        rejectInConsensusMode(sourceBrokerId);
 
-        Stock stock = stockDatabase.get(symbol);
-        if (stock != null) {
-            synchronized (stock) {
-                stock.setPrice(newPrice);
-                logger.info(String.format("Broker %s: Updated %s to $%.2f (from broker %s)",
-                        brokerId, symbol, newPrice, sourceBrokerId));
-            }
-        } else {
-            stockDatabase.put(symbol, new Stock(symbol, newPrice, 1000));
-            logger.info(String.format("Broker %s: Added new stock %s at $%.2f (from broker %s)",
-                    brokerId, symbol, newPrice, sourceBrokerId));
-        }
+        applyRemoteUpdate(symbol, newPrice, -1, -1, sourceBrokerId);
+        tradeJournal.commit();
     }
 
+    // Legacy unversioned sync: without versions only symbols missing here can be taken safely
     @Override
     public void syncStockData(Map<String, Double> stockData) throws RemoteException {
+        rejectInConsensusMode("a legacy broker");
         stockData.forEach((symbol, price) -> {
-            Stock existing = stockDatabase.get(symbol);
-            if (existing == null) {
-                stockDatabase.put(symbol, new Stock(symbol, price, 1000));
-            } else if (price > existing.getPrice()) {
-                existing.setPrice(price);
+            if (symbolStore.add(symbol, price, 0, 0) >= 0) {
+                recordChange(JournalEventType.REPLICATED, symbol, price, 0, 0);
             }
         });
+        tradeJournal.commit();
         logger.info("Broker " + brokerId + " synchronized stock data");
     }
 
+    @Override
+    public void applyStockUpdates(List<StockUpdate> updates, String sourceBrokerId) throws RemoteException {
+        if (this.brokerId.equals(sourceBrokerId)) {
+            return;
+        }
+        rejectInConsensusMode(sourceBrokerId);
+
+        long start = System.nanoTime();
+        for (StockUpdate update : updates) {
+            applyRemoteUpdate(update.getSymbol(), update.getPrice(), update.getQuantity(), update.getVersion(), sourceBrokerId);
+        }
+        tradeJournal.commit();
+        tradingMetrics.record(Operation.APPLY_STOCK_UPDATES, start);
+        logger.fine("Broker " + brokerId + ": Applied " + updates.size() + " updates from broker " + sourceBrokerId);
+    }
+
+    @Override
+    public void applyTradeOutcomes(List<TradeOutcome> outcomes, String sourceBrokerId) throws RemoteException {
+        if (!this.brokerId.equals(sourceBrokerId)) {
+            dedup.recordReplicated(outcomes);
+        }
+    }
+
+    @Override
+    public int[] grant(List<Reservation> reservations) throws RemoteException {
+        rejectInConsensusMode("a home broker call");
+        return grantHere(reservations);
+    }
+
+    // Refused whole if a client is not homed here any more, so the source sends it on to the new home
+    @Override
+    public void applySettlements(List<Settlement> settlements, long settledBelow, String sourceBrokerId)
+            throws RemoteException {
+        rejectInConsensusMode(sourceBrokerId);
+        for (Settlement settlement : settlements) {
+            String homeId = partitions.clientHomePeer(settlement.getClientId());
+            if (homeId != null) {
+                throw new RemoteException("Broker " + brokerId + " is not the home of client " + settlement.getClientId()
+                        + ", " + homeId + " is");
+            }
+        }
+        applyHere(settlementOutbox.fresh(settlements, settledBelow, sourceBrokerId), sourceBrokerId);
+    }
+
+    private void applyHere(List<Settlement> settlements, String sourceBrokerId) {
+        for (Settlement settlement : settlements) {
+            String clientId = settlement.getClientId();
+            if (settlement.getQuantity() > 0) {
+                accounts.settle(clientId, settlement.getKey(), symbolIdOf(settlement.getSymbol(), settlement.getPrice()),
+                        settlement.getSide(), settlement.getQuantity(), settlement.getPrice());
+                history.recordForClient(settlement.getSymbol(), settlement.getSide(), settlement.getQuantity(),
+                        settlement.getPrice(), clientId, sourceBrokerId, settlement.getTimestamp());
+            }
+            if (settlement.isLast()) {
+                accounts.release(clientId, settlement.getKey());
+            }
+            if (settlement.getOrderId() != 0) {
+                matchingEngine.recordFill(new Fill(0, settlement.getSymbol(), settlement.getOrderId(),
+                        settlement.getCounterOrderId(), settlement.getSide(), settlement.getPrice(),
+                        settlement.getQuantity(), clientId, settlement.getTimestamp()));
+            }
+        }
+    }
+
+    @Override
+    public void adoptAccounts(List<AccountState> states, String sourceBrokerId) throws RemoteException {
+        rejectInConsensusMode(sourceBrokerId);
+        for (AccountState state : states) {
+            accounts.adopt(state, symbol -> symbolIdOf(symbol, 0.0));
+        }
+        logger.info("Broker " + brokerId + ": adopted " + states.size() + " accounts from " + sourceBrokerId);
+    }
+
+    // Accounts index positions by local symbol id; a symbol this broker has not seen gets a placeholder any update replaces
+    private int symbolIdOf(String symbol, double price) {
+        return symbolStore.getOrAdd(symbol, price, 0, 0);
+    }
+
+    // Last-writer-wins updates would bypass the replicated log and make brokers diverge
+    private void rejectInConsensusMode(String sourceBrokerId) throws RemoteException {
+        if (raftNode.isEnabled()) {
+            throw new RemoteException("Broker " + brokerId + " replicates through consensus and does not accept"
+                    + " versioned updates from " + sourceBrokerId);
+        }
+    }
+
+    @Override
+    public AppendEntriesResponse appendEntries(AppendEntriesRequest request) throws RemoteException {
+        long start = System.nanoTime();
+        AppendEntriesResponse response = raftNode.handleAppendEntries(request);
+        tradingMetrics.record(Operation.APPEND_ENTRIES, start);
+        return response;
+    }
+
+    @Override
+    public VoteResponse requestVote(VoteRequest request) throws RemoteException {
+        return raftNode.handleRequestVote(request);
+    }
+
+    @Override
+    public long installSnapshot(InstallSnapshotRequest request) throws RemoteException {
+        long start = System.nanoTime();
+        long term = raftNode.handleInstallSnapshot(request);
+        tradingMetrics.record(Operation.INSTALL_SNAPSHOT, start);
+        return term;
+    }
+
+    @Override
+    public long readIndex() throws RemoteException {
+        return raftNode.handleReadIndex();
+    }
+
+    @Override
+    public PartitionMap getPartitionMap() throws RemoteException {
+        return partitions.isEnabled() ? partitions.current() : null;
+    }
+
+    @Override
+    public long[] getSyncDigest(int bucketCount) throws RemoteException {
+        long start = System.nanoTime();
+        long[] digest = SyncDigest.create(bucketCount);
+        int size = symbolStore.size();
+        for (int id = 0; id < size; id++) {
+            SyncDigest.add(digest, symbolStore.symbol(id), symbolStore.version(id));
+        }
+        tradingMetrics.record(Operation.GET_SYNC_DIGEST, start);
+        return digest;
+    }
+
+    @Override
+    public List<StockUpdate> getStockUpdates(int bucketCount, int[] buckets) throws RemoteException {
+        long start = System.nanoTime();
+        SyncDigest.checkBucketCount(bucketCount);
+        BitSet wanted = new BitSet(bucketCount);
+        for (int bucket : buckets) {
+            wanted.set(bucket);
+        }
+        List<StockUpdate> updates = new ArrayList<>();
+        int size = symbolStore.size();
+        for (int id = 0; id < size; id++) {
+            if (wanted.get(SyncDigest.bucketOf(symbolStore.symbol(id), bucketCount))) {
+                updates.add(symbolStore.read(id));
+            }
+        }
+        tradingMetrics.record(Operation.GET_STOCK_UPDATES, start);
+        return updates;
+    }
+
+    /**
+     * Brings a newly registered peer and this broker up to date with each other. Only digest
+     * buckets that differ are exchanged, in chunks of {@code replication.sync-chunk-size}
+     * symbols, and each side keeps whichever version of a symbol is newer.
+     */
+    private void catchUp(String peerId, TradingService peer) throws RemoteException {
+        long start = System.nanoTime();
+        int symbols = Math.max(symbolStore.size(), 1);
+        int bucketCount = SyncDigest.bucketCount(symbols);
+        long[] theirs = peer.getSyncDigest(bucketCount);
+        long[] ours = getSyncDigest(bucketCount);
+        int[] differing = new int[bucketCount];
+        int differingCount = 0;
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            if (ours[bucket] != theirs[bucket]) {
+                differing[differingCount++] = bucket;
+            }
+        }
+
+        int chunkSize = replicationPipeline.getSyncChunkSize();
+        int bucketsPerChunk = Math.max(1, (int) ((long) chunkSize * bucketCount / symbols));
+        int pulled = 0;
+        int pushed = 0;
+        for (int from = 0; from < differingCount; from += bucketsPerChunk) {
+            int[] buckets = Arrays.copyOfRange(differing, from, Math.min(from + bucketsPerChunk, differingCount));
+
+            Map<String, Long> peerVersions = new HashMap<>();
+            for (StockUpdate update : peer.getStockUpdates(bucketCount, buckets)) {
+                peerVersions.put(update.getSymbol(), update.getVersion());
+                applyRemoteUpdate(update.getSymbol(), update.getPrice(), update.getQuantity(), update.getVersion(), peerId);
+                pulled++;
+            }
+
+            List<StockUpdate> newer = new ArrayList<>();
+            for (StockUpdate update : getStockUpdates(bucketCount, buckets)) {
+                Long peerVersion = peerVersions.get(update.getSymbol());
+                if (peerVersion == null || StockVersions.isNewer(update.getVersion(), peerVersion)) {
+                    newer.add(update);
+                }
+            }
+            for (int i = 0; i < newer.size(); i += chunkSize) {
+                peer.applyStockUpdates(new ArrayList<>(newer.subList(i, Math.min(i + chunkSize, newer.size()))), brokerId);
+            }
+            pushed += newer.size();
+        }
+        tradeJournal.commit();
+        tradingMetrics.record(Operation.CATCH_UP, start);
+        logger.info(String.format("Broker %s: caught up with %s in %d ms (%d/%d buckets differed, pulled %d, pushed %d symbols)",
+                brokerId, peerId, (System.nanoTime() - start) / 1_000_000, differingCount, bucketCount, pulled, pushed));
+    }
+
+    // Negative quantity or version: the sender did not provide one (legacy updateStock), so apply unconditionally
+    private void applyRemoteUpdate(String symbol, double newPrice, int quantity, long version, String sourceBrokerId) {
+        int id = symbolStore.idOf(symbol);
+        if (id < 0) {
+            int added = symbolStore.add(symbol, newPrice, Math.max(quantity, 0), Math.max(version, 0));
+            if (added >= 0) {
+                recordChange(JournalEventType.REPLICATED, symbol, newPrice, Math.max(quantity, 0), Math.max(version, 0));
+                logger.info(String.format("Broker %s: Added new stock %s at $%.2f (from broker %s)",
+                        brokerId, symbol, newPrice, sourceBrokerId));
+                return;
+            }
+            id = -added - 1;
+        }
+
+        int slot = id;
+        tradeSequencer.run(symbol, symbolStore.lockFor(slot), () -> {
+            long currentVersion = symbolStore.version(slot);
+            if (version >= 0 && !StockVersions.isNewer(version, currentVersion)) {
+                // Stale or already applied
+                return;
+            }
+            int newQuantity = quantity >= 0 ? quantity : symbolStore.quantity(slot);
+            long newVersion = version >= 0 ? version : currentVersion;
+            symbolStore.set(slot, newPrice, newQuantity, newVersion);
+            recordChange(JournalEventType.REPLICATED, symbol, newPrice, newQuantity, newVersion);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(String.format("Broker %s: Updated %s to $%.2f (from broker %s)",
+                        brokerId, symbol, newPrice, sourceBrokerId));
+            }
+        });
+    }
+
     @Override
     public boolean isAlive() throws RemoteException {
         return true;
@@ -168,27 +1404,58 @@ public class TradingServiceImpl extends UnicastRemoteObject implements TradingSe
         return brokerId;
     }
 
-    private void replicateStockUpdate(String symbol, double newPrice, int quantity) {
-        peerBrokers.forEach(broker -> {
-            try {
-                broker.updateStock(symbol, newPrice, brokerId);
-            } catch (RemoteException e) {
-                logger.warning("Failed to replicate update to broker: " + e.getMessage());
-                peerBrokers.remove(broker);
-            }
-        });
+    // Local changes take the next version and go to peers as well as the journal and subscribers
+    private void commitLocalChange(JournalEventType type, int id, double price, int quantity) {
+        long version = StockVersions.next(symbolStore.version(id), versionTag);
+        symbolStore.set(id, price, quantity, version);
+        String symbol = symbolStore.symbol(id);
+        if (partitions.isEnabled()) {
+            replicationPipeline.publish(symbol, price, quantity, version, partitions.replicaPeers(symbol));
+        } else {
+            replicationPipeline.publish(symbol, price, quantity, version);
+        }
+        recordChange(type, symbol, price, quantity, version);
+    }
+
+    // Every state change is journaled, pushed to market data subscribers and republished in the price snapshot
+    private void recordChange(JournalEventType type, String symbol, double price, int quantity, long version) {
+        tradeJournal.append(type, symbol, price, quantity, version);
+        marketDataPublisher.publish(symbol, price, quantity);
+        priceSnapshots.markChanged();
+    }
+
+    // Reads each symbol through its sequence lock, so no writer is blocked or waited on
+    private List<StockUpdate> getStockUpdatesForSync() {
+        int size = symbolStore.size();
+        List<StockUpdate> updates = new ArrayList<>(size);
+        for (int id = 0; id < size; id++) {
+            updates.add(symbolStore.read(id));
+        }
+        return updates;
     }
 
-    private Map<String, Double> getStockDataForSync() {
-        Map<String, Double> syncData = new ConcurrentHashMap<>();
-        stockDatabase.forEach((symbol, stock) -> syncData.put(symbol, stock.getPrice()));
-        return syncData;
+    // What a peer's replicator resends when it falls too far behind: everything, or its own symbols when partitioned
+    private List<StockUpdate> getStockUpdatesFor(String peerId) {
+        if (!partitions.isEnabled()) {
+            return getStockUpdatesForSync();
+        }
+        PartitionMap map = partitions.current();
+        int size = symbolStore.size();
+        List<StockUpdate> updates = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            if (map.isOwner(peerId, symbolStore.symbol(id))) {
+                updates.add(symbolStore.read(id));
+            }
+        }
+        return updates;
     }
 
     public void printStockStatus() {
         logger.info("=== Broker " + brokerId + " Stock Status ===");
-        stockDatabase.forEach((symbol, stock) ->
-                logger.info(String.format("  %s: $%.2f (Qty: %d)",
-                        symbol, stock.getPrice(), stock.getAvailableQuantity())));
+        int size = symbolStore.size();
+        for (int id = 0; id < size; id++) {
+            logger.info(String.format("  %s: $%.2f (Qty: %d)",
+                    symbolStore.symbol(id), symbolStore.price(id), symbolStore.quantity(id)));
+        }
     }
 }
\ No newline at end of file
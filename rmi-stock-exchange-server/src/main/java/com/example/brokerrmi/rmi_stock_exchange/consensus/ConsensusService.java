@@ -0,0 +1,15 @@
+// ConsensusService.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Broker-to-broker Raft calls; the broker's TradingService stub implements this too, clients never use it
+public interface ConsensusService extends Remote {
+    AppendEntriesResponse appendEntries(AppendEntriesRequest request) throws RemoteException;
+    VoteResponse requestVote(VoteRequest request) throws RemoteException;
+    // Returns the receiver's current term
+    long installSnapshot(InstallSnapshotRequest request) throws RemoteException;
+    // The leader's commit index, once it has confirmed its lease; a follower reads after applying up to it
+    long readIndex() throws RemoteException;
+}
@@ -0,0 +1,63 @@
+// LogEntry.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import java.io.Serializable;
+
+// One command in the replicated log; applying the same entries in the same order gives the same state everywhere
+public final class LogEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        // Appended by every new leader so entries from earlier terms can commit
+        NOOP,
+        BUY,
+        SELL,
+        // Order book fill on the leader: the symbol's quoted price becomes the last traded price
+        FILL
+    }
+
+    private final long term;
+    private final long index;
+    private final Type type;
+    private final String symbol;
+    private final int quantity;
+    private final double price;
+    private final String clientId;
+    // The trade's idempotency key, or 0
+    private final long idempotencyKey;
+
+    public LogEntry(long term, long index, Type type, String symbol, int quantity, double price, String clientId) {
+        this(term, index, type, symbol, quantity, price, clientId, 0);
+    }
+
+    public LogEntry(long term, long index, Type type, String symbol, int quantity, double price, String clientId,
+                    long idempotencyKey) {
+        this.term = term;
+        this.index = index;
+        this.type = type;
+        this.symbol = symbol;
+        this.quantity = quantity;
+        this.price = price;
+        this.clientId = clientId;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public long getTerm() { return term; }
+    public long getIndex() { return index; }
+    public Type getType() { return type; }
+    public String getSymbol() { return symbol; }
+    public int getQuantity() { return quantity; }
+    public double getPrice() { return price; }
+    public String getClientId() { return clientId; }
+    public long getIdempotencyKey() { return idempotencyKey; }
+
+    LogEntry at(long term, long index) {
+        return new LogEntry(term, index, type, symbol, quantity, price, clientId, idempotencyKey);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LogEntry{%d@%d %s %s x %d, price=%.2f, client='%s'}",
+                index, term, type, symbol, quantity, price, clientId);
+    }
+}
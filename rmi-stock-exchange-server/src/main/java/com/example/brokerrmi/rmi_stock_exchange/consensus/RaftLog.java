@@ -0,0 +1,375 @@
+// RaftLog.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * The Raft log: entries after {@code startIndex} in memory, written through to a single file
+ * when persistence is on. Appends only touch memory; {@link #flush()} writes and forces
+ * everything appended since the last flush in one go, so a burst of proposals costs one fsync.
+ * Entries up to {@code startIndex} have been compacted away and are covered by the broker's
+ * journal snapshot; only the term of the last of them is kept.
+ * <p>
+ * File layout: magic, startIndex, startTerm, then records of
+ * {@code length:int32 crc:int32 term:int64 type:int8 symbol:utf quantity:int32 price:float64 client:utf key:int64};
+ * records written before idempotency keys existed end after {@code client} and load with key 0.
+ * A torn or corrupt tail record is cut off on load.
+ */
+final class RaftLog {
+    private static final Logger logger = Logger.getLogger(RaftLog.class.getName());
+
+    private static final int MAGIC = 0x5241464C;
+    private static final int HEADER_BYTES = 4 + 8 + 8;
+    private static final LogEntry.Type[] TYPES = LogEntry.Type.values();
+
+    private final Path file;
+    private final boolean fsync;
+    private final Object fileLock = new Object();
+
+    // Guarded by this
+    private long startIndex;
+    private long startTerm;
+    private LogEntry[] entries = new LogEntry[1024];
+    // File offset of each entry's record; valid up to persistedIndex
+    private long[] offsets = new long[1024];
+    private int count;
+    private long persistedIndex;
+    private long fileEnd = HEADER_BYTES;
+
+    // Guarded by fileLock
+    private FileChannel channel;
+
+    // file null keeps the log in memory only
+    RaftLog(Path file, boolean fsync) {
+        this.file = file;
+        this.fsync = fsync;
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            if (Files.exists(file)) {
+                load();
+            } else {
+                rewrite();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open Raft log " + file, e);
+        }
+    }
+
+    synchronized long startIndex() {
+        return startIndex;
+    }
+
+    synchronized long lastIndex() {
+        return startIndex + count;
+    }
+
+    synchronized long lastTerm() {
+        return count == 0 ? startTerm : entries[count - 1].getTerm();
+    }
+
+    // -1 if the index has been compacted away or is past the end
+    synchronized long termAt(long index) {
+        if (index == startIndex) {
+            return startTerm;
+        }
+        if (index < startIndex || index > startIndex + count) {
+            return -1;
+        }
+        return entries[(int) (index - startIndex - 1)].getTerm();
+    }
+
+    synchronized LogEntry get(long index) {
+        return entries[(int) (index - startIndex - 1)];
+    }
+
+    // Up to max entries starting at from, which must not have been compacted
+    synchronized List<LogEntry> slice(long from, int max) {
+        int offset = (int) (from - startIndex - 1);
+        int to = Math.min(count, offset + max);
+        return offset >= to ? List.of() : new ArrayList<>(Arrays.asList(entries).subList(offset, to));
+    }
+
+    // Assigns the next index in the given term
+    synchronized LogEntry append(long term, LogEntry entry) {
+        LogEntry indexed = entry.at(term, startIndex + count + 1);
+        add(indexed);
+        return indexed;
+    }
+
+    // Follower side: the entry already carries the leader's term and index
+    synchronized void appendReplicated(LogEntry entry) {
+        if (entry.getIndex() != startIndex + count + 1) {
+            throw new IllegalStateException("Out of order log entry " + entry.getIndex() + " after " + lastIndex());
+        }
+        add(entry);
+    }
+
+    private void add(LogEntry entry) {
+        if (count == entries.length) {
+            entries = Arrays.copyOf(entries, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        entries[count++] = entry;
+    }
+
+    // Drops the entry at index and everything after it
+    void truncateFrom(long index) {
+        synchronized (fileLock) {
+            synchronized (this) {
+                int keep = (int) (index - startIndex - 1);
+                if (keep < 0 || keep >= count) {
+                    return;
+                }
+                Arrays.fill(entries, keep, count, null);
+                count = keep;
+                if (persistedIndex >= index) {
+                    persistedIndex = index - 1;
+                    fileEnd = keep == 0 ? HEADER_BYTES : offsets[keep];
+                    if (channel != null) {
+                        try {
+                            channel.truncate(fileEnd);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Failed to truncate Raft log " + file, e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every entry appended since the last flush and forces it to disk when fsync is on.
+     * Returns the last index that is now durable. Safe to call without the Raft node's lock.
+     */
+    long flush() {
+        synchronized (fileLock) {
+            ByteBuffer batch;
+            long target;
+            synchronized (this) {
+                target = startIndex + count;
+                if (channel == null) {
+                    persistedIndex = target;
+                    return target;
+                }
+                if (persistedIndex >= target) {
+                    return persistedIndex;
+                }
+                batch = encode(persistedIndex + 1, target);
+            }
+            try {
+                long position = fileEnd;
+                while (batch.hasRemaining()) {
+                    position += channel.write(batch, position);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+                synchronized (this) {
+                    persistedIndex = target;
+                    fileEnd = position;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write Raft log " + file, e);
+            }
+            return target;
+        }
+    }
+
+    // Forgets entries up to index, which must be applied and covered by a durable state snapshot
+    void compactTo(long index) {
+        synchronized (fileLock) {
+            synchronized (this) {
+                if (index <= startIndex || index > startIndex + count) {
+                    return;
+                }
+                long term = termAt(index);
+                int drop = (int) (index - startIndex);
+                System.arraycopy(entries, drop, entries, 0, count - drop);
+                Arrays.fill(entries, count - drop, count, null);
+                count -= drop;
+                startIndex = index;
+                startTerm = term;
+                if (file != null) {
+                    persistedIndex = Math.max(persistedIndex, startIndex);
+                    rewriteQuietly();
+                }
+            }
+        }
+    }
+
+    // Replaces the whole log with an installed snapshot's position
+    void resetTo(long index, long term) {
+        synchronized (fileLock) {
+            synchronized (this) {
+                Arrays.fill(entries, 0, count, null);
+                count = 0;
+                startIndex = index;
+                startTerm = term;
+                persistedIndex = index;
+                if (file != null) {
+                    rewriteQuietly();
+                }
+            }
+        }
+    }
+
+    void close() {
+        synchronized (fileLock) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.warning("Failed to close Raft log: " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+    }
+
+    private void rewriteQuietly() {
+        try {
+            rewrite();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rewrite Raft log " + file, e);
+        }
+    }
+
+    // Writes header plus every persisted entry to a new file and swaps it in; caller holds both locks
+    private void rewrite() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long persistedCount = persistedIndex - startIndex;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putLong(startIndex).putLong(startTerm);
+            out.write(header.flip());
+            long position = HEADER_BYTES;
+            if (persistedCount > 0) {
+                ByteBuffer body = encode(startIndex + 1, persistedIndex);
+                while (body.hasRemaining()) {
+                    out.write(body);
+                }
+                position = out.position();
+            }
+            out.force(true);
+            fileEnd = position;
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+    }
+
+    // Fills in offsets for the entries as it goes; positions are relative to fileEnd
+    private ByteBuffer encode(long from, long to) {
+        List<byte[]> records = new ArrayList<>((int) (to - from + 1));
+        int total = 0;
+        long position = from == startIndex + 1 ? HEADER_BYTES : fileEnd;
+        CRC32 crc = new CRC32();
+        for (long index = from; index <= to; index++) {
+            LogEntry entry = get(index);
+            byte[] symbol = utf(entry.getSymbol());
+            byte[] client = utf(entry.getClientId());
+            ByteBuffer body = ByteBuffer.allocate(8 + 1 + 2 + symbol.length + 4 + 8 + 2 + client.length + 8)
+                    .putLong(entry.getTerm())
+                    .put((byte) entry.getType().ordinal())
+                    .putShort((short) symbol.length).put(symbol)
+                    .putInt(entry.getQuantity())
+                    .putDouble(entry.getPrice())
+                    .putShort((short) client.length).put(client)
+                    .putLong(entry.getIdempotencyKey());
+            crc.reset();
+            crc.update(body.array());
+            byte[] record = ByteBuffer.allocate(8 + body.capacity())
+                    .putInt(body.capacity()).putInt((int) crc.getValue()).put(body.array()).array();
+            offsets[(int) (index - startIndex - 1)] = position;
+            position += record.length;
+            records.add(record);
+            total += record.length;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(total);
+        records.forEach(batch::put);
+        return batch.flip();
+    }
+
+    private void load() throws IOException {
+        long validEnd;
+        try (DataInputStream in = new DataInputStream(Channels.newInputStream(FileChannel.open(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a Raft log: " + file);
+            }
+            startIndex = in.readLong();
+            startTerm = in.readLong();
+            validEnd = HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] body;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > 1 << 20) {
+                        break;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(body);
+                long term = record.getLong();
+                LogEntry.Type type = TYPES[record.get()];
+                String symbol = readUtf(record);
+                int quantity = record.getInt();
+                double price = record.getDouble();
+                String client = readUtf(record);
+                long key = record.remaining() >= 8 ? record.getLong() : 0;
+                add(new LogEntry(term, startIndex + count + 1, type, symbol, quantity, price, client, key));
+                offsets[count - 1] = validEnd;
+                validEnd += 8 + body.length;
+            }
+        }
+        persistedIndex = startIndex + count;
+        fileEnd = validEnd;
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        if (channel.size() > validEnd) {
+            logger.warning("Cutting " + (channel.size() - validEnd) + " bytes of torn records off " + file);
+            channel.truncate(validEnd);
+        }
+        logger.info("Loaded Raft log with entries " + (startIndex + 1) + " to " + persistedIndex);
+    }
+
+    private static byte[] utf(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readUtf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,1048 @@
+// RaftNode.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+import com.example.brokerrmi.rmi_stock_exchange.broker.ServerBusyException;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import com.example.brokerrmi.rmi_stock_exchange.replication.ReplicationObserver;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Raft consensus among the brokers that membership connects, used when
+ * {@code replication.mode=consensus}. Trades become entries in one replicated log; an entry is
+ * applied to every broker's state, in log order, once a majority of {@code consensus.cluster-size}
+ * brokers has it on disk, so all brokers agree on prices and quantities instead of racing.
+ * <p>
+ * Only the leader appends. Each follower has a sender thread that keeps up to
+ * {@code consensus.max-inflight-appends} AppendEntries calls of {@code consensus.batch-size}
+ * entries on the wire at once, and the leader's own log is flushed by one thread with a single
+ * fsync for everything proposed since the last one. Elections start with a pre-vote, and a
+ * broker that has heard from a live leader within the election timeout refuses to vote, so a
+ * leader that has a majority's acknowledgement from less than {@code consensus.lease-ratio}
+ * election timeouts ago knows no other leader exists and can answer reads from local state.
+ */
+@Component
+public class RaftNode {
+    public enum Role { FOLLOWER, CANDIDATE, LEADER }
+
+    private static final Logger logger = Logger.getLogger(RaftNode.class.getName());
+
+    private final boolean enabled;
+    private final String brokerId;
+    private final int clusterSize;
+    private final int quorum;
+    private final long electionTimeoutNanos;
+    private final long heartbeatNanos;
+    private final long leaseNanos;
+    private final int batchSize;
+    private final int maxInflight;
+    private final long commitTimeoutMs;
+    private final long compactEvery;
+    private final boolean followerReads;
+    private final Path stateFile;
+    private final RaftLog log;
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<TradeResult>> waiting = new ConcurrentHashMap<>();
+    private final ExecutorService rpcExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // Held while entries are applied, a snapshot is captured, or one is installed
+    private final Object applyLock = new Object();
+
+    // Guarded by this
+    private long currentTerm;
+    private String votedFor;
+    private Role role = Role.FOLLOWER;
+    private String leaderId;
+    private long commitIndex;
+    private long durableIndex;
+    private long electionDeadline;
+    private long lastLeaderContact;
+    private long leaderSince;
+    private long termStartIndex;
+
+    private volatile long lastApplied;
+    private volatile StateMachine stateMachine;
+    private volatile ReplicationObserver observer = (peerId, entries, nanos, success) -> { };
+    private volatile boolean running;
+    private final List<Thread> threads = new ArrayList<>();
+
+    public RaftNode(
+            @Value("${replication.mode:versioned}") String mode,
+            @Value("${broker.id:broker1}") String brokerId,
+            @Value("${consensus.cluster-size:3}") int clusterSize,
+            @Value("${consensus.election-timeout-ms:300}") long electionTimeoutMs,
+            @Value("${consensus.heartbeat-interval-ms:50}") long heartbeatIntervalMs,
+            @Value("${consensus.lease-ratio:0.8}") double leaseRatio,
+            @Value("${consensus.batch-size:512}") int batchSize,
+            @Value("${consensus.max-inflight-appends:4}") int maxInflight,
+            @Value("${consensus.commit-timeout-ms:5000}") long commitTimeoutMs,
+            @Value("${consensus.compact-every:100000}") long compactEvery,
+            @Value("${consensus.follower-reads:false}") boolean followerReads,
+            @Value("${consensus.fsync:true}") boolean fsync,
+            @Value("${journal.enabled:true}") boolean persistent,
+            @Value("${journal.dir:data/${broker.id:broker1}}") String directory) {
+        this.enabled = "consensus".equalsIgnoreCase(mode);
+        this.brokerId = brokerId;
+        this.clusterSize = Math.max(1, clusterSize);
+        this.quorum = this.clusterSize / 2 + 1;
+        this.electionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(electionTimeoutMs);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, heartbeatIntervalMs));
+        this.leaseNanos = (long) (electionTimeoutNanos * Math.min(Math.max(leaseRatio, 0.0), 1.0));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxInflight = Math.max(1, maxInflight);
+        this.commitTimeoutMs = commitTimeoutMs;
+        this.compactEvery = compactEvery;
+        this.followerReads = followerReads;
+        // The log lives next to the journal that holds the state it has been compacted into
+        Path raftDirectory = Paths.get(directory).resolve("raft");
+        this.stateFile = enabled && persistent ? raftDirectory.resolve("state") : null;
+        this.log = enabled ? new RaftLog(persistent ? raftDirectory.resolve("log") : null, fsync) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setObserver(ReplicationObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Starts the node once the state machine has been restored. {@code appliedIndex} is the log
+     * index the restored state reflects; log entries after it are applied as they commit.
+     */
+    public void start(StateMachine stateMachine, long appliedIndex) {
+        if (!enabled) {
+            return;
+        }
+        this.stateMachine = stateMachine;
+        loadState();
+        synchronized (this) {
+            long applied = Math.max(appliedIndex, log.startIndex());
+            if (applied > log.lastIndex()) {
+                throw new IllegalStateException("Broker " + brokerId + " state is at log index " + applied
+                        + " but the Raft log ends at " + log.lastIndex() + "; start it with an empty journal.dir");
+            }
+            lastApplied = applied;
+            commitIndex = applied;
+            durableIndex = log.lastIndex();
+            electionDeadline = System.nanoTime() + randomElectionTimeout();
+            running = true;
+        }
+        startThread("raft-ticker", this::tickLoop);
+        startThread("raft-applier", this::applyLoop);
+        startThread("raft-flusher", this::flushLoop);
+        peers.values().forEach(Peer::start);
+        logger.info(String.format("Broker %s: consensus replication in a cluster of %d, term %d, log %d..%d, applied %d",
+                brokerId, clusterSize, currentTerm, log.startIndex() + 1, log.lastIndex(), lastApplied));
+    }
+
+    /**
+     * Adds or replaces a peer. Returns false if the same peer stub was already known, so mutual
+     * registration stops after one round.
+     */
+    public boolean addPeer(String peerId, TradingService service) {
+        if (!(service instanceof ConsensusService consensus)) {
+            throw new IllegalArgumentException("Broker " + peerId + " does not support consensus replication");
+        }
+        Peer existing = peers.get(peerId);
+        if (existing != null) {
+            if (existing.trading.equals(service)) {
+                return false;
+            }
+            synchronized (this) {
+                existing.trading = service;
+                existing.consensus = consensus;
+                existing.retryAtNanos = 0;
+                notifyAll();
+            }
+            logger.info("Broker " + brokerId + ": consensus peer " + peerId + " reconnected");
+            return true;
+        }
+        if (peers.size() >= clusterSize - 1) {
+            logger.warning("Broker " + brokerId + ": peer " + peerId + " is beyond consensus.cluster-size "
+                    + clusterSize + "; it will receive the log but a majority is still " + quorum);
+        }
+        Peer peer = new Peer(peerId, service, consensus);
+        synchronized (this) {
+            peer.nextIndex = log.lastIndex() + 1;
+        }
+        if (peers.putIfAbsent(peerId, peer) == null && running) {
+            peer.start();
+        }
+        logger.info("Broker " + brokerId + ": added consensus peer " + peerId);
+        return true;
+    }
+
+    public synchronized boolean isLeader() {
+        return role == Role.LEADER;
+    }
+
+    // The current leader's stub, to forward a request to; busy if there is none right now
+    public TradingService leader() throws ServerBusyException {
+        String leader;
+        synchronized (this) {
+            leader = leaderId;
+        }
+        Peer peer = leader != null ? peers.get(leader) : null;
+        if (peer == null) {
+            throw new ServerBusyException("Broker " + brokerId + " knows no consensus leader right now");
+        }
+        return peer.trading;
+    }
+
+    /**
+     * Appends commands to the log on the leader. Each future completes with the command's result
+     * once it is committed and applied here, or fails if this broker loses leadership first.
+     */
+    public List<CompletableFuture<TradeResult>> proposeAll(List<LogEntry> commands) throws ServerBusyException {
+        List<CompletableFuture<TradeResult>> results = new ArrayList<>(commands.size());
+        synchronized (this) {
+            if (role != Role.LEADER) {
+                throw new ServerBusyException("Broker " + brokerId + " is not the consensus leader");
+            }
+            for (LogEntry command : commands) {
+                LogEntry entry = log.append(currentTerm, command);
+                CompletableFuture<TradeResult> result = new CompletableFuture<>();
+                waiting.put(entry.getIndex(), result);
+                results.add(result);
+            }
+            notifyAll();
+        }
+        return results;
+    }
+
+    public TradeResult propose(LogEntry command) throws RemoteException {
+        return await(proposeAll(List.of(command)).get(0));
+    }
+
+    public TradeResult await(CompletableFuture<TradeResult> result) throws RemoteException {
+        try {
+            return result.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RemoteException("Broker " + brokerId + ": trade not committed within " + commitTimeoutMs
+                    + " ms; it may still be applied");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RemoteException remote) {
+                throw remote;
+            }
+            throw new RemoteException("Broker " + brokerId + ": trade failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted waiting for commit");
+        }
+    }
+
+    /**
+     * True if a read may be answered from this broker's state: on the leader once it holds a lease
+     * and has applied everything committed before its term, and with {@code consensus.follower-reads}
+     * on a follower once it has applied up to the leader's read index. False means the read should
+     * go to the leader.
+     */
+    public boolean awaitLocalRead() throws RemoteException {
+        if (!enabled) {
+            return true;
+        }
+        ConsensusService leader = null;
+        synchronized (this) {
+            if (role == Role.LEADER) {
+                return awaitLeaderRead();
+            }
+            if (!followerReads) {
+                return false;
+            }
+            Peer peer = leaderId != null ? peers.get(leaderId) : null;
+            if (peer != null) {
+                leader = peer.consensus;
+            }
+        }
+        if (leader == null) {
+            return false;
+        }
+        long index = leader.readIndex();
+        synchronized (this) {
+            long deadline = System.nanoTime() + electionTimeoutNanos;
+            while (lastApplied < index) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                waitNanos(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The commit index a follower has to apply before it answers a read, so the read sees every
+     * trade committed before it started. Only the leader answers, and only while it holds a lease.
+     */
+    public long handleReadIndex() throws ServerBusyException {
+        synchronized (this) {
+            if (!enabled || !awaitLeaderRead()) {
+                throw new ServerBusyException("Broker " + brokerId + " is not the consensus leader");
+            }
+            return commitIndex;
+        }
+    }
+
+    // Caller holds the lock; false if this broker stopped being the leader meanwhile
+    private boolean awaitLeaderRead() throws ServerBusyException {
+        long deadline = System.nanoTime() + electionTimeoutNanos;
+        while (role == Role.LEADER && (!hasLease(System.nanoTime()) || lastApplied < termStartIndex)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new ServerBusyException("Broker " + brokerId + " could not confirm its leader lease");
+            }
+            waitNanos(remaining);
+        }
+        return role == Role.LEADER;
+    }
+
+    /**
+     * On the leader, waits until everything committed before its term has been applied, so state
+     * built from applied entries (such as the dedup window) covers the whole log before a new
+     * command is checked against it.
+     */
+    public void awaitTermStart() throws ServerBusyException {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            long deadline = System.nanoTime() + electionTimeoutNanos;
+            while (role == Role.LEADER && lastApplied < termStartIndex) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new ServerBusyException("Broker " + brokerId + " has not applied its predecessor's log yet");
+                }
+                waitNanos(remaining);
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        if (!enabled) {
+            return snapshot;
+        }
+        snapshot.put("role", role.name());
+        snapshot.put("term", currentTerm);
+        snapshot.put("leader", leaderId);
+        snapshot.put("clusterSize", clusterSize);
+        snapshot.put("leaseValid", role == Role.LEADER && hasLease(System.nanoTime()));
+        snapshot.put("logStartIndex", log.startIndex());
+        snapshot.put("lastLogIndex", log.lastIndex());
+        snapshot.put("commitIndex", commitIndex);
+        snapshot.put("lastApplied", lastApplied);
+        Map<String, Object> peerStates = new TreeMap<>();
+        peers.forEach((id, peer) -> {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("matchIndex", peer.matchIndex);
+            state.put("nextIndex", peer.nextIndex);
+            state.put("inflight", peer.inflight);
+            peerStates.put(id, state);
+        });
+        snapshot.put("peers", peerStates);
+        return snapshot;
+    }
+
+    // ---- RPC handlers, called through the broker's ConsensusService ----
+
+    public AppendEntriesResponse handleAppendEntries(AppendEntriesRequest request) {
+        long term = request.getTerm();
+        long matchIndex;
+        boolean appended = false;
+        synchronized (this) {
+            if (!enabled || term < currentTerm) {
+                return new AppendEntriesResponse(currentTerm, false, enabled ? log.lastIndex() : 0);
+            }
+            acceptLeader(term, request.getLeaderId());
+            long prev = request.getPrevLogIndex();
+            // Pipelined appends can overtake each other on the wire; give the ones ahead of this a moment to land
+            long waitUntil = System.nanoTime() + heartbeatNanos;
+            while (prev > log.lastIndex() && currentTerm == term && System.nanoTime() < waitUntil) {
+                waitNanos(waitUntil - System.nanoTime());
+            }
+            if (currentTerm != term || prev > log.lastIndex()) {
+                return new AppendEntriesResponse(currentTerm, false, log.lastIndex());
+            }
+            List<LogEntry> entries = request.getEntries();
+            int from = 0;
+            if (prev < log.startIndex()) {
+                // Compacted here, so committed: the overlapping entries are already applied
+                from = (int) Math.min(entries.size(), log.startIndex() - prev);
+            } else if (log.termAt(prev) != request.getPrevLogTerm()) {
+                return new AppendEntriesResponse(currentTerm, false, conflictHint(prev));
+            }
+            for (int i = from; i < entries.size(); i++) {
+                LogEntry entry = entries.get(i);
+                if (entry.getIndex() <= log.lastIndex()) {
+                    if (log.termAt(entry.getIndex()) == entry.getTerm()) {
+                        continue;
+                    }
+                    // Conflicting uncommitted suffix from an earlier leader
+                    log.truncateFrom(entry.getIndex());
+                    durableIndex = Math.min(durableIndex, entry.getIndex() - 1);
+                }
+                log.appendReplicated(entry);
+                appended = true;
+            }
+            matchIndex = prev + entries.size();
+            if (appended) {
+                notifyAll();
+            }
+        }
+        if (appended) {
+            // Outside the lock, so later batches can be appended while this one is forced
+            long durable = log.flush();
+            synchronized (this) {
+                durableIndex = Math.max(durableIndex, Math.min(durable, log.lastIndex()));
+            }
+        }
+        synchronized (this) {
+            if (currentTerm != term) {
+                return new AppendEntriesResponse(currentTerm, false, log.lastIndex());
+            }
+            long newCommit = Math.min(request.getLeaderCommit(), matchIndex);
+            if (newCommit > commitIndex) {
+                commitIndex = newCommit;
+                notifyAll();
+            }
+            return new AppendEntriesResponse(currentTerm, true, matchIndex);
+        }
+    }
+
+    public VoteResponse handleRequestVote(VoteRequest request) {
+        synchronized (this) {
+            if (!enabled) {
+                return new VoteResponse(0, false);
+            }
+            long now = System.nanoTime();
+            boolean upToDate = request.getLastLogTerm() > log.lastTerm()
+                    || (request.getLastLogTerm() == log.lastTerm() && request.getLastLogIndex() >= log.lastIndex());
+            // A live leader means the candidate was only cut off; refusing keeps the leader and its lease
+            boolean leaderAlive = role == Role.LEADER
+                    || (leaderId != null && now - lastLeaderContact < electionTimeoutNanos);
+            if (request.isPreVote()) {
+                return new VoteResponse(currentTerm, !leaderAlive && request.getTerm() > currentTerm && upToDate);
+            }
+            if (request.getTerm() < currentTerm || (leaderAlive && !request.getCandidateId().equals(leaderId))) {
+                return new VoteResponse(currentTerm, false);
+            }
+            if (request.getTerm() > currentTerm) {
+                stepDown(request.getTerm(), null);
+            }
+            if ((votedFor == null || votedFor.equals(request.getCandidateId())) && upToDate) {
+                votedFor = request.getCandidateId();
+                persistState();
+                electionDeadline = now + randomElectionTimeout();
+                return new VoteResponse(currentTerm, true);
+            }
+            return new VoteResponse(currentTerm, false);
+        }
+    }
+
+    public long handleInstallSnapshot(InstallSnapshotRequest request) {
+        long index = request.getLastIncludedIndex();
+        synchronized (this) {
+            if (!enabled || request.getTerm() < currentTerm) {
+                return currentTerm;
+            }
+            acceptLeader(request.getTerm(), request.getLeaderId());
+            if (index <= lastApplied) {
+                return currentTerm;
+            }
+        }
+        synchronized (applyLock) {
+            synchronized (this) {
+                if (request.getTerm() != currentTerm || index <= lastApplied) {
+                    return currentTerm;
+                }
+            }
+            stateMachine.restore(request.getState());
+            stateMachine.checkpoint();
+            synchronized (this) {
+                if (log.termAt(index) == request.getLastIncludedTerm()) {
+                    log.compactTo(index);
+                } else {
+                    log.resetTo(index, request.getLastIncludedTerm());
+                }
+                durableIndex = Math.max(Math.min(durableIndex, log.lastIndex()), index);
+                commitIndex = Math.max(commitIndex, index);
+                lastApplied = index;
+                notifyAll();
+            }
+        }
+        logger.info(String.format("Broker %s: installed snapshot of %d symbols at log index %d from %s",
+                brokerId, request.getState().size(), index, request.getLeaderId()));
+        return request.getTerm();
+    }
+
+    // ---- Internals ----
+
+    // Caller holds the lock; the request's term is at least the current one
+    private void acceptLeader(long term, String leader) {
+        if (term > currentTerm || role != Role.FOLLOWER) {
+            stepDown(term, leader);
+        }
+        if (!leader.equals(leaderId)) {
+            logger.info("Broker " + brokerId + ": following leader " + leader + " in term " + term);
+        }
+        leaderId = leader;
+        lastLeaderContact = System.nanoTime();
+        electionDeadline = lastLeaderContact + randomElectionTimeout();
+    }
+
+    // Caller holds the lock
+    private void stepDown(long term, String leader) {
+        if (term > currentTerm) {
+            currentTerm = term;
+            votedFor = null;
+            persistState();
+        }
+        if (role == Role.LEADER) {
+            logger.info("Broker " + brokerId + " stepped down as leader in term " + currentTerm);
+            RemoteException lost = new RemoteException("Broker " + brokerId
+                    + " lost leadership before the trade committed; it may still be applied");
+            waiting.values().forEach(result -> result.completeExceptionally(lost));
+            waiting.clear();
+        }
+        role = Role.FOLLOWER;
+        leaderId = leader;
+        electionDeadline = System.nanoTime() + randomElectionTimeout();
+        notifyAll();
+    }
+
+    // Caller holds the lock
+    private void becomeLeader() {
+        role = Role.LEADER;
+        leaderId = brokerId;
+        leaderSince = System.nanoTime();
+        for (Peer peer : peers.values()) {
+            peer.nextIndex = log.lastIndex() + 1;
+            peer.matchIndex = 0;
+            peer.lastAckNanos = 0;
+            peer.retryAtNanos = 0;
+            peer.lastSendNanos = 0;
+        }
+        termStartIndex = log.append(currentTerm, new LogEntry(0, 0, LogEntry.Type.NOOP, null, 0, 0.0, null)).getIndex();
+        logger.info("Broker " + brokerId + " is the consensus leader for term " + currentTerm);
+        advanceCommit();
+        notifyAll();
+    }
+
+    // Caller holds the lock: commits the highest index a majority has durably stored, if it is from this term
+    private void advanceCommit() {
+        if (role != Role.LEADER) {
+            return;
+        }
+        long[] matches = new long[clusterSize];
+        matches[0] = durableIndex;
+        int i = 1;
+        for (Peer peer : peers.values()) {
+            if (i < clusterSize) {
+                matches[i++] = peer.matchIndex;
+            }
+        }
+        Arrays.sort(matches);
+        long candidate = matches[clusterSize - quorum];
+        if (candidate > commitIndex && log.termAt(candidate) == currentTerm) {
+            commitIndex = candidate;
+            notifyAll();
+        }
+    }
+
+    // Caller holds the lock: a majority acknowledged appends sent less than the lease ago
+    private boolean hasLease(long now) {
+        return quorumContactAge(now) < leaseNanos;
+    }
+
+    // Caller holds the lock: how long ago the send that a majority has since acknowledged went out
+    private long quorumContactAge(long now) {
+        long[] ages = new long[clusterSize];
+        Arrays.fill(ages, Long.MAX_VALUE);
+        ages[0] = 0;
+        int i = 1;
+        for (Peer peer : peers.values()) {
+            if (i < clusterSize && peer.lastAckNanos != 0) {
+                ages[i++] = now - peer.lastAckNanos;
+            }
+        }
+        Arrays.sort(ages);
+        return ages[quorum - 1];
+    }
+
+    // Caller holds the lock: where the leader should retry from, skipping the whole conflicting term
+    private long conflictHint(long prev) {
+        long conflictTerm = log.termAt(prev);
+        if (conflictTerm < 0) {
+            return Math.min(log.lastIndex(), prev - 1);
+        }
+        long index = prev;
+        while (index - 1 > Math.max(log.startIndex(), commitIndex) && log.termAt(index - 1) == conflictTerm) {
+            index--;
+        }
+        return Math.max(index - 1, commitIndex);
+    }
+
+    private void tickLoop() {
+        while (running) {
+            try {
+                Thread.sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(heartbeatNanos) / 2));
+            } catch (InterruptedException e) {
+                return;
+            }
+            boolean electionDue;
+            synchronized (this) {
+                long now = System.nanoTime();
+                electionDue = role != Role.LEADER && now >= electionDeadline;
+                if (role == Role.LEADER && clusterSize > 1 && now - leaderSince > electionTimeoutNanos
+                        && quorumContactAge(now) > electionTimeoutNanos) {
+                    logger.warning("Broker " + brokerId + " lost contact with a majority of the cluster");
+                    stepDown(currentTerm, null);
+                }
+            }
+            if (electionDue) {
+                runElection();
+            }
+        }
+    }
+
+    private void runElection() {
+        VoteRequest preVote;
+        synchronized (this) {
+            electionDeadline = System.nanoTime() + randomElectionTimeout();
+            if (quorum == 1) {
+                currentTerm++;
+                votedFor = brokerId;
+                persistState();
+                becomeLeader();
+                return;
+            }
+            preVote = new VoteRequest(currentTerm + 1, brokerId, log.lastIndex(), log.lastTerm(), true);
+        }
+        // A pre-vote round first, so a broker that was merely cut off does not inflate the term on rejoining
+        if (!collectVotes(preVote)) {
+            return;
+        }
+        VoteRequest vote;
+        synchronized (this) {
+            if (role == Role.LEADER || currentTerm + 1 != preVote.getTerm()) {
+                return;
+            }
+            currentTerm++;
+            role = Role.CANDIDATE;
+            votedFor = brokerId;
+            leaderId = null;
+            persistState();
+            electionDeadline = System.nanoTime() + randomElectionTimeout();
+            vote = new VoteRequest(currentTerm, brokerId, log.lastIndex(), log.lastTerm(), false);
+        }
+        logger.fine("Broker " + brokerId + " is standing for election in term " + vote.getTerm());
+        if (collectVotes(vote)) {
+            synchronized (this) {
+                if (role == Role.CANDIDATE && currentTerm == vote.getTerm()) {
+                    becomeLeader();
+                }
+            }
+        }
+    }
+
+    // True once a majority, counting this broker, has granted the request within an election timeout
+    private boolean collectVotes(VoteRequest request) {
+        ExecutorCompletionService<VoteResponse> responses = new ExecutorCompletionService<>(rpcExecutor);
+        int sent = 0;
+        for (Peer peer : peers.values()) {
+            ConsensusService target = peer.consensus;
+            responses.submit(() -> target.requestVote(request));
+            sent++;
+        }
+        int granted = 1;
+        long deadline = System.nanoTime() + electionTimeoutNanos;
+        for (int i = 0; i < sent && granted < quorum; i++) {
+            try {
+                Future<VoteResponse> next = responses.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                VoteResponse response = next.get();
+                synchronized (this) {
+                    if (response.getTerm() > currentTerm) {
+                        stepDown(response.getTerm(), null);
+                        return false;
+                    }
+                }
+                if (response.isGranted()) {
+                    granted++;
+                }
+            } catch (ExecutionException e) {
+                // Unreachable peers simply do not vote
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return granted >= quorum;
+    }
+
+    private void applyLoop() {
+        while (running) {
+            long target;
+            synchronized (this) {
+                while (running && commitIndex <= lastApplied) {
+                    waitNanos(TimeUnit.SECONDS.toNanos(1));
+                }
+                target = commitIndex;
+            }
+            if (!running) {
+                return;
+            }
+            synchronized (applyLock) {
+                long from = lastApplied + 1;
+                if (from <= target) {
+                    for (LogEntry entry : log.slice(from, (int) (target - from + 1))) {
+                        apply(entry);
+                    }
+                }
+                if (compactEvery > 0 && lastApplied - log.startIndex() >= compactEvery) {
+                    stateMachine.checkpoint();
+                    log.compactTo(lastApplied);
+                    logger.info("Broker " + brokerId + ": compacted Raft log up to index " + lastApplied);
+                }
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void apply(LogEntry entry) {
+        TradeResult result;
+        try {
+            result = entry.getType() == LogEntry.Type.NOOP
+                    ? new TradeResult(true, 0.0, null)
+                    : stateMachine.apply(entry);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Broker " + brokerId + " failed to apply " + entry, e);
+            result = new TradeResult(false, 0.0, "Failed to apply: " + e.getMessage());
+        }
+        lastApplied = entry.getIndex();
+        CompletableFuture<TradeResult> waiter = waiting.remove(entry.getIndex());
+        if (waiter != null) {
+            waiter.complete(result);
+        }
+    }
+
+    // The leader's own log write; it counts towards the majority only once it is durable
+    private void flushLoop() {
+        while (running) {
+            synchronized (this) {
+                while (running && (role != Role.LEADER || durableIndex >= log.lastIndex())) {
+                    waitNanos(TimeUnit.SECONDS.toNanos(1));
+                }
+            }
+            if (!running) {
+                return;
+            }
+            long durable = log.flush();
+            synchronized (this) {
+                durableIndex = Math.max(durableIndex, Math.min(durable, log.lastIndex()));
+                advanceCommit();
+            }
+        }
+    }
+
+    private void loadState() {
+        if (stateFile == null || !Files.exists(stateFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(stateFile))) {
+            long term = in.readLong();
+            String vote = in.readUTF();
+            synchronized (this) {
+                currentTerm = term;
+                votedFor = vote.isEmpty() ? null : vote;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read Raft state " + stateFile, e);
+        }
+    }
+
+    // Caller holds the lock: term and vote must be on disk before any reply that depends on them
+    private void persistState() {
+        if (stateFile == null) {
+            return;
+        }
+        Path temp = stateFile.resolveSibling("state.tmp");
+        try {
+            FileOutputStream file = new FileOutputStream(temp.toFile());
+            try (DataOutputStream out = new DataOutputStream(file)) {
+                out.writeLong(currentTerm);
+                out.writeUTF(votedFor == null ? "" : votedFor);
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write Raft state " + stateFile, e);
+        }
+    }
+
+    private long randomElectionTimeout() {
+        return electionTimeoutNanos + ThreadLocalRandom.current().nextLong(Math.max(1, electionTimeoutNanos));
+    }
+
+    // Caller holds the lock
+    private void waitNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.timedWait(this, Math.max(nanos, 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startThread(String name, Runnable loop) {
+        Thread thread = new Thread(loop, name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        peers.values().forEach(peer -> {
+            if (peer.thread != null) {
+                peer.thread.interrupt();
+            }
+        });
+        rpcExecutor.shutdownNow();
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * Leader-side replication state for one follower. The sender thread only builds requests;
+     * the calls themselves run on virtual threads so several can be in flight at once.
+     */
+    private final class Peer {
+        private final String id;
+        private volatile TradingService trading;
+        private volatile ConsensusService consensus;
+        private Thread thread;
+
+        // Guarded by RaftNode.this
+        private long nextIndex = 1;
+        private long matchIndex;
+        private int inflight;
+        private boolean snapshotting;
+        private long lastSendNanos;
+        private long lastAckNanos;
+        private long retryAtNanos;
+        private int failures;
+
+        private Peer(String id, TradingService trading, ConsensusService consensus) {
+            this.id = id;
+            this.trading = trading;
+            this.consensus = consensus;
+        }
+
+        private void start() {
+            thread = new Thread(this::sendLoop, "raft-append-" + id);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void sendLoop() {
+            while (running) {
+                Runnable call;
+                synchronized (RaftNode.this) {
+                    call = nextCall();
+                    if (call == null) {
+                        long now = System.nanoTime();
+                        long wake = role != Role.LEADER ? TimeUnit.SECONDS.toNanos(1)
+                                : Math.max(lastSendNanos + heartbeatNanos, retryAtNanos) - now;
+                        waitNanos(wake);
+                        continue;
+                    }
+                }
+                try {
+                    rpcExecutor.execute(call);
+                } catch (RuntimeException e) {
+                    return;
+                }
+            }
+        }
+
+        // Caller holds the node lock
+        private Runnable nextCall() {
+            if (role != Role.LEADER) {
+                inflight = 0;
+                snapshotting = false;
+                return null;
+            }
+            long now = System.nanoTime();
+            if (now < retryAtNanos || snapshotting) {
+                return null;
+            }
+            long term = currentTerm;
+            if (nextIndex <= log.startIndex()) {
+                snapshotting = true;
+                lastSendNanos = now;
+                return () -> sendSnapshot(term);
+            }
+            if (inflight < maxInflight && nextIndex <= log.lastIndex()) {
+                long prev = nextIndex - 1;
+                List<LogEntry> entries = log.slice(nextIndex, batchSize);
+                AppendEntriesRequest request = new AppendEntriesRequest(term, brokerId, prev, log.termAt(prev),
+                        entries, commitIndex);
+                nextIndex += entries.size();
+                inflight++;
+                lastSendNanos = now;
+                return () -> send(request, now, true);
+            }
+            if (now - lastSendNanos >= heartbeatNanos) {
+                // Anchored at the last index known to match, so it never waits behind a gap on the follower
+                long prev = Math.max(matchIndex, log.startIndex());
+                AppendEntriesRequest heartbeat = new AppendEntriesRequest(term, brokerId, prev, log.termAt(prev),
+                        List.of(), commitIndex);
+                lastSendNanos = now;
+                return () -> send(heartbeat, now, false);
+            }
+            return null;
+        }
+
+        private void send(AppendEntriesRequest request, long sentAt, boolean counted) {
+            long start = System.nanoTime();
+            AppendEntriesResponse response;
+            try {
+                response = consensus.appendEntries(request);
+                observer.onSend(id, request.getEntries().size(), System.nanoTime() - start, true);
+            } catch (RemoteException e) {
+                observer.onSend(id, request.getEntries().size(), System.nanoTime() - start, false);
+                synchronized (RaftNode.this) {
+                    if (counted) {
+                        inflight--;
+                    }
+                    failed(request.getTerm(), e);
+                }
+                return;
+            }
+            synchronized (RaftNode.this) {
+                if (counted) {
+                    inflight--;
+                }
+                if (response.getTerm() > currentTerm) {
+                    stepDown(response.getTerm(), null);
+                    return;
+                }
+                if (role != Role.LEADER || currentTerm != request.getTerm()) {
+                    return;
+                }
+                failures = 0;
+                // Any answer in this term confirms leadership as of the send
+                lastAckNanos = Math.max(lastAckNanos, sentAt);
+                if (response.isSuccess()) {
+                    matchIndex = Math.max(matchIndex, response.getLastLogIndex());
+                    nextIndex = Math.max(nextIndex, matchIndex + 1);
+                    if (inflight == 0 && nextIndex > matchIndex + 1) {
+                        // Nothing outstanding covers the gap, e.g. a peer that joined after the leader was elected
+                        nextIndex = matchIndex + 1;
+                    }
+                    advanceCommit();
+                } else {
+                    nextIndex = Math.max(matchIndex + 1, Math.min(nextIndex, response.getLastLogIndex() + 1));
+                }
+                RaftNode.this.notifyAll();
+            }
+        }
+
+        private void sendSnapshot(long term) {
+            InstallSnapshotRequest request;
+            synchronized (applyLock) {
+                long index = lastApplied;
+                long snapshotTerm;
+                synchronized (RaftNode.this) {
+                    snapshotTerm = log.termAt(index);
+                }
+                List<StockUpdate> state = stateMachine.capture();
+                request = new InstallSnapshotRequest(term, brokerId, index, snapshotTerm, state);
+            }
+            long start = System.nanoTime();
+            long theirTerm;
+            try {
+                theirTerm = consensus.installSnapshot(request);
+                observer.onSend(id, request.getState().size(), System.nanoTime() - start, true);
+            } catch (RemoteException e) {
+                observer.onSend(id, request.getState().size(), System.nanoTime() - start, false);
+                synchronized (RaftNode.this) {
+                    snapshotting = false;
+                    failed(term, e);
+                }
+                return;
+            }
+            synchronized (RaftNode.this) {
+                snapshotting = false;
+                if (theirTerm > currentTerm) {
+                    stepDown(theirTerm, null);
+                    return;
+                }
+                if (role == Role.LEADER && currentTerm == term) {
+                    matchIndex = Math.max(matchIndex, request.getLastIncludedIndex());
+                    nextIndex = matchIndex + 1;
+                    logger.info("Broker " + brokerId + ": sent snapshot at index " + request.getLastIncludedIndex()
+                            + " to " + id);
+                    advanceCommit();
+                }
+                RaftNode.this.notifyAll();
+            }
+        }
+
+        // Caller holds the node lock: rewind to the last known match and back off
+        private void failed(long term, RemoteException e) {
+            if (role != Role.LEADER || currentTerm != term) {
+                return;
+            }
+            if (failures++ == 0) {
+                logger.warning("Broker " + brokerId + ": consensus peer " + id + " unreachable: " + e.getMessage());
+            }
+            nextIndex = matchIndex + 1;
+            long backoff = Math.min(heartbeatNanos << Math.min(failures, 6), electionTimeoutNanos);
+            retryAtNanos = System.nanoTime() + backoff;
+        }
+    }
+}
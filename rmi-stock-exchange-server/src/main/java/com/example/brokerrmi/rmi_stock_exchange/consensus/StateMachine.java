@@ -0,0 +1,20 @@
+// StateMachine.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+
+import java.util.List;
+
+// The broker state the replicated log drives; the Raft node never calls two of these at once
+public interface StateMachine {
+    TradeResult apply(LogEntry entry);
+
+    // Current state, consistent with the last applied entry
+    List<StockUpdate> capture();
+
+    void restore(List<StockUpdate> state);
+
+    // Makes the current state durable, so log entries up to the last applied one may be discarded
+    void checkpoint();
+}
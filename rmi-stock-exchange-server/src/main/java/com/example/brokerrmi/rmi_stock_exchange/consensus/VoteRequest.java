@@ -0,0 +1,29 @@
+// VoteRequest.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import java.io.Serializable;
+
+public class VoteRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long term;
+    private final String candidateId;
+    private final long lastLogIndex;
+    private final long lastLogTerm;
+    // A pre-vote asks whether the receiver would vote, without it changing its term or vote
+    private final boolean preVote;
+
+    public VoteRequest(long term, String candidateId, long lastLogIndex, long lastLogTerm, boolean preVote) {
+        this.term = term;
+        this.candidateId = candidateId;
+        this.lastLogIndex = lastLogIndex;
+        this.lastLogTerm = lastLogTerm;
+        this.preVote = preVote;
+    }
+
+    public long getTerm() { return term; }
+    public String getCandidateId() { return candidateId; }
+    public long getLastLogIndex() { return lastLogIndex; }
+    public long getLastLogTerm() { return lastLogTerm; }
+    public boolean isPreVote() { return preVote; }
+}
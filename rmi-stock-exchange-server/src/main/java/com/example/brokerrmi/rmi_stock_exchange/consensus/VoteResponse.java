@@ -0,0 +1,19 @@
+// VoteResponse.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import java.io.Serializable;
+
+public class VoteResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long term;
+    private final boolean granted;
+
+    public VoteResponse(long term, boolean granted) {
+        this.term = term;
+        this.granted = granted;
+    }
+
+    public long getTerm() { return term; }
+    public boolean isGranted() { return granted; }
+}
@@ -0,0 +1,282 @@
+// DedupWindow.java
+package com.example.brokerrmi.rmi_stock_exchange.dedup;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeOutcome;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Remembers the result of every trade sent with an idempotency key, so a retry or failover that
+ * repeats the key gets the first result back instead of trading again. Keys are combined with the
+ * client id and live in two generations of {@link OutcomeTable}: new keys go into the current
+ * one, lookups check both, and every half of {@code dedup.window-ms} the older generation is
+ * dropped. A generation that fills up with {@code dedup.capacity} keys is rotated early, so memory
+ * is fixed and a key is remembered for at least half a window or one generation of keys,
+ * whichever is shorter. A key whose trade is still running is claimed, and a duplicate arriving
+ * meanwhile waits for the same result. A trade that failed after it started, such as a log entry
+ * the leader stopped waiting for, may still take effect, so its key stays claimed until its
+ * outcome is recorded or a whole window has passed, and duplicates are refused until then.
+ */
+@Component
+public class DedupWindow {
+    @FunctionalInterface
+    public interface Execution {
+        CompletableFuture<TradeResult> start() throws RemoteException;
+    }
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final long halfWindowNanos;
+    private final int capacity;
+    private final Map<Long, CompletableFuture<TradeResult>> running = new ConcurrentHashMap<>();
+    // Keys of trades that failed after they started, to the time their claim lapses
+    private final Map<Long, Long> unresolved = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder replicated = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private final LongAdder earlyRotations = new LongAdder();
+    private final LongAdder unknownOutcomes = new LongAdder();
+
+    // Guarded by this
+    private OutcomeTable current;
+    private OutcomeTable previous;
+    private long rotatedAtNanos = System.nanoTime();
+
+    private volatile Consumer<TradeOutcome> outcomeSink = outcome -> { };
+
+    public DedupWindow(
+            @Value("${dedup.enabled:true}") boolean enabled,
+            @Value("${dedup.window-ms:60000}") long windowMs,
+            @Value("${dedup.capacity:131072}") int capacity) {
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.halfWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(2, windowMs) / 2);
+        this.capacity = Math.max(1, capacity);
+        if (enabled) {
+            current = new OutcomeTable(this.capacity);
+            previous = new OutcomeTable(this.capacity);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Receives the outcome of each trade run through submit, to be shared with peers
+    public void setOutcomeSink(Consumer<TradeOutcome> outcomeSink) {
+        this.outcomeSink = outcomeSink;
+    }
+
+    // Null if the key has not been seen within the window
+    public TradeResult lookup(String clientId, long idempotencyKey) {
+        if (!enabled || idempotencyKey == 0) {
+            return null;
+        }
+        return find(keyOf(clientId, idempotencyKey));
+    }
+
+    /**
+     * Starts the trade unless its key is in the window or already running. The future completes
+     * with the first result for the key; once the trade completes it is recorded and handed to the
+     * outcome sink. Without a key the trade is simply started.
+     */
+    public CompletableFuture<TradeResult> submit(String clientId, long idempotencyKey, String symbol,
+                                                 Execution execution) throws RemoteException {
+        if (!enabled || idempotencyKey == 0) {
+            return execution.start();
+        }
+        long key = keyOf(clientId, idempotencyKey);
+        TradeResult known = find(key);
+        if (known == null) {
+            CompletableFuture<TradeResult> claim = new CompletableFuture<>();
+            CompletableFuture<TradeResult> first = running.putIfAbsent(key, claim);
+            if (first != null) {
+                duplicates.increment();
+                return first;
+            }
+            // Recorded between the lookup and the claim
+            known = find(key);
+            if (known == null) {
+                if (isUnresolved(key)) {
+                    running.remove(key, claim);
+                    duplicates.increment();
+                    return CompletableFuture.failedFuture(new RemoteException(
+                            "Outcome of an earlier attempt with this key is not known yet, retry later"));
+                }
+                start(key, symbol, execution, claim);
+                return claim;
+            }
+            running.remove(key, claim);
+        }
+        duplicates.increment();
+        return CompletableFuture.completedFuture(known);
+    }
+
+    private void start(long key, String symbol, Execution execution, CompletableFuture<TradeResult> claim) throws RemoteException {
+        CompletableFuture<TradeResult> started;
+        try {
+            started = execution.start();
+        } catch (RemoteException | RuntimeException e) {
+            running.remove(key, claim);
+            claim.completeExceptionally(e);
+            throw e;
+        }
+        executed.increment();
+        started.whenComplete((result, error) -> {
+            // A trade that could not start is forgotten above, so a retry runs it; one that failed since may yet run
+            if (error == null) {
+                record(key, result);
+                outcomeSink.accept(new TradeOutcome(key, symbol, result.isSuccess(), result.getPrice(), result.getMessage()));
+                claim.complete(result);
+            } else {
+                unresolved.put(key, System.nanoTime() + 2 * halfWindowNanos);
+                unknownOutcomes.increment();
+                claim.completeExceptionally(error);
+            }
+            running.remove(key, claim);
+        });
+    }
+
+    // Consensus mode: every broker records each keyed entry as it applies it, so whichever leads next knows it
+    public void record(String clientId, long idempotencyKey, TradeResult result) {
+        if (enabled && idempotencyKey != 0) {
+            record(keyOf(clientId, idempotencyKey), result);
+        }
+    }
+
+    // Outcomes of trades that ran on a peer
+    public void recordReplicated(List<TradeOutcome> outcomes) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            for (TradeOutcome outcome : outcomes) {
+                put(outcome.getKey(), outcome.isSuccess(), outcome.getPrice(), outcome.getMessage());
+            }
+        }
+        replicated.add(outcomes.size());
+    }
+
+    // Waits for a future from submit, with the cause of a failure thrown as it was
+    public static TradeResult join(CompletableFuture<TradeResult> result) throws RemoteException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RemoteException remote) {
+                throw remote;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RemoteException("Trade failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted waiting for a trade");
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        if (!enabled) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot.put("keys", current.size() + previous.size());
+        }
+        snapshot.put("windowMs", windowMs);
+        snapshot.put("capacity", capacity);
+        snapshot.put("running", running.size());
+        snapshot.put("unresolved", unresolved.size());
+        snapshot.put("executed", executed.sum());
+        snapshot.put("duplicates", duplicates.sum());
+        snapshot.put("replicated", replicated.sum());
+        snapshot.put("rotations", rotations.sum());
+        snapshot.put("earlyRotations", earlyRotations.sum());
+        snapshot.put("unknownOutcomes", unknownOutcomes.sum());
+        return snapshot;
+    }
+
+    static long keyOf(String clientId, long idempotencyKey) {
+        long key = mix(idempotencyKey * 0x9E3779B97F4A7C15L + (clientId == null ? 0 : clientId.hashCode()));
+        return key == 0 ? 1 : key;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private synchronized TradeResult find(long key) {
+        expire(System.nanoTime());
+        TradeResult result = current.get(key);
+        return result != null ? result : previous.get(key);
+    }
+
+    private synchronized void record(long key, TradeResult result) {
+        put(key, result.isSuccess(), result.getPrice(), result.getMessage());
+    }
+
+    private boolean isUnresolved(long key) {
+        Long lapsesAt = unresolved.get(key);
+        if (lapsesAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - lapsesAt < 0) {
+            return true;
+        }
+        unresolved.remove(key, lapsesAt);
+        return false;
+    }
+
+    // Caller holds this
+    private void put(long key, boolean success, double price, String message) {
+        long now = System.nanoTime();
+        expire(now);
+        unresolved.remove(key);
+        if (!current.put(key, success, price, message)) {
+            earlyRotations.increment();
+            rotate(now);
+            current.put(key, success, price, message);
+        }
+    }
+
+    // Caller holds this
+    private void expire(long now) {
+        long elapsed = now - rotatedAtNanos;
+        if (elapsed >= 2 * halfWindowNanos) {
+            // Idle for a whole window: both generations are out of date
+            previous.clear();
+            rotate(now);
+        } else if (elapsed >= halfWindowNanos) {
+            rotate(now);
+        }
+    }
+
+    // Caller holds this
+    private void rotate(long now) {
+        unresolved.values().removeIf(lapsesAt -> now - lapsesAt >= 0);
+        OutcomeTable dropped = previous;
+        dropped.clear();
+        previous = current;
+        current = dropped;
+        rotatedAtNanos = now;
+        rotations.increment();
+    }
+}
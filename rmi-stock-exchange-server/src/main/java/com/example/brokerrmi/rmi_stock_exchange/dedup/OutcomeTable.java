@@ -0,0 +1,76 @@
+// OutcomeTable.java
+package com.example.brokerrmi.rmi_stock_exchange.dedup;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from a well-mixed, non-zero 64-bit key to a trade result, kept in
+ * flat arrays (key, price bits, success flag, and a message reference that is only set for
+ * rejections). Holds up to {@code capacity} keys at a load factor of at most one half, with
+ * linear probing, and is cleared rather than shrunk. Not thread-safe.
+ */
+final class OutcomeTable {
+    // 0 marks an empty slot
+    private final long[] keys;
+    private final long[] prices;
+    private final boolean[] successes;
+    private final String[] messages;
+    private final int mask;
+    private final int capacity;
+    private int size;
+
+    OutcomeTable(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        int slots = Integer.highestOneBit(Math.max(1, 2 * this.capacity - 1)) << 1;
+        this.keys = new long[slots];
+        this.prices = new long[slots];
+        this.successes = new boolean[slots];
+        this.messages = new String[slots];
+        this.mask = slots - 1;
+    }
+
+    // Null if absent
+    TradeResult get(long key) {
+        int slot = (int) key & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return new TradeResult(successes[slot], Double.longBitsToDouble(prices[slot]), messages[slot]);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    // False if the key is new and the table is full
+    boolean put(long key, boolean success, double price, String message) {
+        int slot = (int) key & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            if (size == capacity) {
+                return false;
+            }
+            keys[slot] = key;
+            size++;
+        }
+        successes[slot] = success;
+        prices[slot] = Double.doubleToRawLongBits(price);
+        messages[slot] = message;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0L);
+            Arrays.fill(messages, null);
+            size = 0;
+        }
+    }
+}
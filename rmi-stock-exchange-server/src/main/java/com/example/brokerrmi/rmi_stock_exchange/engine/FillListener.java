@@ -0,0 +1,8 @@
+// FillListener.java
+package com.example.brokerrmi.rmi_stock_exchange.engine;
+
+@FunctionalInterface
+public interface FillListener {
+    // Called once per maker order touched by an incoming order, in match order
+    void onFill(long makerOrderId, String makerClientId, long priceTicks, long quantity);
+}
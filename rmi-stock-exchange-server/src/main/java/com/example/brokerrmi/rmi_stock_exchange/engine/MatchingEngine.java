@@ -0,0 +1,202 @@
+// MatchingEngine.java
+package com.example.brokerrmi.rmi_stock_exchange.engine;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.Fill;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderResult;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderStatus;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Component
+public class MatchingEngine {
+    private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+    private final Map<String, Deque<Fill>> fillsByClient = new ConcurrentHashMap<>();
+    private final AtomicLong orderIds = new AtomicLong();
+    private final AtomicLong fillSequence = new AtomicLong();
+    private final int initialOrdersPerBook;
+    private final int maxFillsPerClient;
+    private volatile Consumer<Fill> fillSink = this::recordFill;
+    private volatile RestingOrderListener orderListener = (symbol, orderId, side, price, remaining, clientId) -> { };
+
+    public MatchingEngine(
+            @Value("${engine.initial-orders-per-book:1024}") int initialOrdersPerBook,
+            @Value("${engine.max-fills-per-client:1000}") int maxFillsPerClient) {
+        this.initialOrdersPerBook = initialOrdersPerBook;
+        this.maxFillsPerClient = maxFillsPerClient;
+    }
+
+    // Receives both sides of every fill while the book is still locked, so they are settled as part of the match;
+    // by default each is kept for its client here, a sink that replaces it decides where it is kept
+    public void setFillSink(Consumer<Fill> fillSink) {
+        this.fillSink = fillSink;
+    }
+
+    // Told about every change to a resting order, so the book can be journaled
+    public void setOrderListener(RestingOrderListener orderListener) {
+        this.orderListener = orderListener;
+    }
+
+    public OrderResult submit(String symbol, OrderSide side, OrderType type, double price,
+                              int quantity, String clientId) {
+        return submit(symbol, side, type, price, quantity, clientId, true);
+    }
+
+    // With rest false, the unfilled part of a limit order is cancelled like that of a market order
+    public OrderResult submit(String symbol, OrderSide side, OrderType type, double price,
+                              int quantity, String clientId, boolean rest) {
+        return submit(nextOrderId(), symbol, side, type, price, quantity, clientId, rest);
+    }
+
+    // For callers that need the order id before the order is matched
+    public long nextOrderId() {
+        return orderIds.incrementAndGet();
+    }
+
+    // The order id must come from nextOrderId
+    public OrderResult submit(long orderId, String symbol, OrderSide side, OrderType type, double price,
+                              int quantity, String clientId, boolean rest) {
+        // An order without a client could never be cancelled or reported back
+        if (clientId == null || quantity <= 0 || (type == OrderType.LIMIT && price <= 0)) {
+            return OrderResult.rejected();
+        }
+
+        boolean buy = side == OrderSide.BUY;
+        long limitTicks = type == OrderType.MARKET
+                ? (buy ? OrderBook.MARKET_BUY : OrderBook.MARKET_SELL)
+                : OrderBook.toTicks(price);
+        OrderBook book = books.computeIfAbsent(symbol, s -> new OrderBook(s, initialOrdersPerBook));
+
+        List<Fill> fills = new ArrayList<>();
+        long remaining;
+        synchronized (book) {
+            long timestamp = System.currentTimeMillis();
+            OrderSide makerSide = buy ? OrderSide.SELL : OrderSide.BUY;
+            remaining = book.match(buy, limitTicks, quantity, (makerOrderId, makerClientId, priceTicks, traded) -> {
+                double fillPrice = OrderBook.toPrice(priceTicks);
+                Fill taker = new Fill(fillSequence.incrementAndGet(), symbol, orderId, makerOrderId, side,
+                        fillPrice, (int) traded, clientId, timestamp);
+                Fill maker = new Fill(fillSequence.incrementAndGet(), symbol, makerOrderId, orderId,
+                        makerSide, fillPrice, (int) traded, makerClientId, timestamp);
+                fillSink.accept(taker);
+                fillSink.accept(maker);
+                fills.add(taker);
+                orderListener.onOrder(symbol, makerOrderId, makerSide, fillPrice, book.remaining(makerOrderId), makerClientId);
+            });
+            if (remaining > 0 && type == OrderType.LIMIT && rest) {
+                book.add(orderId, buy, limitTicks, remaining, clientId);
+                orderListener.onOrder(symbol, orderId, side, OrderBook.toPrice(limitTicks), remaining, clientId);
+            }
+        }
+
+        int filled = quantity - (int) remaining;
+        OrderStatus status;
+        if (remaining == 0) {
+            status = OrderStatus.FILLED;
+        } else if (type == OrderType.MARKET || !rest) {
+            // Unfilled market quantity is never rested
+            status = OrderStatus.CANCELLED;
+        } else {
+            status = filled > 0 ? OrderStatus.PARTIALLY_FILLED : OrderStatus.NEW;
+        }
+        return new OrderResult(orderId, status, filled, (int) remaining, fills);
+    }
+
+    public boolean cancel(String symbol, long orderId, String clientId) {
+        OrderBook book = books.get(symbol);
+        if (book == null) {
+            return false;
+        }
+        synchronized (book) {
+            if (book.cancel(orderId, clientId) == 0) {
+                return false;
+            }
+            orderListener.onOrder(symbol, orderId, null, 0.0, 0, clientId);
+            return true;
+        }
+    }
+
+    // Symbols that have had a book on this broker
+    public List<String> bookSymbols() {
+        return new ArrayList<>(books.keySet());
+    }
+
+    // Cancels every order resting on the symbol's book; returns how many there were
+    public int cancelAll(String symbol) {
+        OrderBook book = books.get(symbol);
+        if (book == null) {
+            return 0;
+        }
+        synchronized (book) {
+            List<Long> orderIds = new ArrayList<>();
+            List<String> clientIds = new ArrayList<>();
+            book.forEachOrder((orderId, buy, priceTicks, quantity, clientId) -> {
+                orderIds.add(orderId);
+                clientIds.add(clientId);
+            });
+            for (int i = 0; i < orderIds.size(); i++) {
+                book.cancel(orderIds.get(i), clientIds.get(i));
+                orderListener.onOrder(symbol, orderIds.get(i), null, 0.0, 0, clientIds.get(i));
+            }
+            return orderIds.size();
+        }
+    }
+
+    // Puts back an order read from the journal, in its place in time; later order ids follow it
+    public void restore(String symbol, long orderId, OrderSide side, double price, long quantity, String clientId) {
+        OrderBook book = books.computeIfAbsent(symbol, s -> new OrderBook(s, initialOrdersPerBook));
+        synchronized (book) {
+            book.add(orderId, side == OrderSide.BUY, OrderBook.toTicks(price), quantity, clientId);
+        }
+        orderIds.accumulateAndGet(orderId, Math::max);
+    }
+
+    // Every resting order of every book, one book at a time
+    public void forEachRestingOrder(RestingOrderListener visitor) {
+        books.forEach((symbol, book) -> {
+            synchronized (book) {
+                book.forEachOrder((orderId, buy, priceTicks, quantity, clientId) -> visitor.onOrder(symbol, orderId,
+                        buy ? OrderSide.BUY : OrderSide.SELL, OrderBook.toPrice(priceTicks), quantity, clientId));
+            }
+        });
+    }
+
+    public List<Fill> getFills(String clientId, long afterSequence) {
+        Deque<Fill> fills = fillsByClient.get(clientId);
+        List<Fill> result = new ArrayList<>();
+        if (fills == null) {
+            return result;
+        }
+        synchronized (fills) {
+            for (Fill fill : fills) {
+                if (fill.getSequence() > afterSequence) {
+                    result.add(fill);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Keeps the fill for getFills; one with sequence 0, such as a fill run on another broker, is given the next one here
+    public void recordFill(Fill fill) {
+        Deque<Fill> fills = fillsByClient.computeIfAbsent(fill.getClientId(), id -> new ArrayDeque<>());
+        synchronized (fills) {
+            fills.addLast(fill.getSequence() != 0 ? fill : new Fill(fillSequence.incrementAndGet(), fill.getSymbol(),
+                    fill.getOrderId(), fill.getCounterOrderId(), fill.getSide(), fill.getPrice(), fill.getQuantity(),
+                    fill.getClientId(), fill.getTimestamp()));
+            while (fills.size() > maxFillsPerClient) {
+                fills.removeFirst();
+            }
+        }
+    }
+}
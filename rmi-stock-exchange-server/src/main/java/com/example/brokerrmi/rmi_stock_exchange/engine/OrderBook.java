@@ -0,0 +1,303 @@
+// OrderBook.java
+package com.example.brokerrmi.rmi_stock_exchange.engine;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Bid/ask book for a single symbol with price-time priority.
+ * <p>
+ * Prices are integer ticks. Resting orders live in a pooled struct-of-arrays node store
+ * and each price level is a FIFO list threaded through those nodes, so steady-state
+ * matching and resting allocate nothing. Not thread-safe; the owner serializes access.
+ */
+public final class OrderBook {
+    public static final long TICKS_PER_UNIT = 100;
+    public static final long MARKET_BUY = Long.MAX_VALUE;
+    public static final long MARKET_SELL = 0L;
+
+    private static final int NIL = -1;
+
+    private final String symbol;
+
+    // Pooled order nodes
+    private long[] nodeOrderId;
+    private long[] nodeQuantity;
+    private long[] nodePrice;
+    private int[] nodeNext;
+    private int[] nodePrev;
+    private boolean[] nodeBuy;
+    private String[] nodeClientId;
+    private int nodeCount;
+    private int freeHead = NIL;
+
+    private final LongIntMap orderIndex;
+    private final BookSide bids = new BookSide(true);
+    private final BookSide asks = new BookSide(false);
+
+    public OrderBook(String symbol, int initialOrders) {
+        this.symbol = symbol;
+        int capacity = Math.max(16, initialOrders);
+        nodeOrderId = new long[capacity];
+        nodeQuantity = new long[capacity];
+        nodePrice = new long[capacity];
+        nodeNext = new int[capacity];
+        nodePrev = new int[capacity];
+        nodeBuy = new boolean[capacity];
+        nodeClientId = new String[capacity];
+        orderIndex = new LongIntMap(capacity);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public static long toTicks(double price) {
+        return Math.round(price * TICKS_PER_UNIT);
+    }
+
+    public static double toPrice(long ticks) {
+        return (double) ticks / TICKS_PER_UNIT;
+    }
+
+    /**
+     * Matches an incoming order against the opposite side and returns the unfilled quantity.
+     * Use {@link #MARKET_BUY} or {@link #MARKET_SELL} as the limit for market orders.
+     */
+    public long match(boolean buy, long limitTicks, long quantity, FillListener listener) {
+        BookSide opposite = buy ? asks : bids;
+        long remaining = quantity;
+
+        while (remaining > 0 && opposite.size > 0) {
+            int level = opposite.size - 1;
+            long levelPrice = opposite.prices[level];
+            if (buy ? levelPrice > limitTicks : levelPrice < limitTicks) {
+                break;
+            }
+
+            int node = opposite.heads[level];
+            while (remaining > 0 && node != NIL) {
+                long traded = Math.min(remaining, nodeQuantity[node]);
+                remaining -= traded;
+                nodeQuantity[node] -= traded;
+                opposite.volumes[level] -= traded;
+                listener.onFill(nodeOrderId[node], nodeClientId[node], levelPrice, traded);
+
+                int next = nodeNext[node];
+                if (nodeQuantity[node] == 0) {
+                    orderIndex.remove(nodeOrderId[node]);
+                    unlink(opposite, level, node);
+                    release(node);
+                }
+                node = next;
+            }
+
+            if (opposite.heads[level] == NIL) {
+                opposite.removeLevel(level);
+            }
+        }
+        return remaining;
+    }
+
+    // Rests the order at the back of its price level
+    public void add(long orderId, boolean buy, long priceTicks, long quantity, String clientId) {
+        BookSide side = buy ? bids : asks;
+        int level = side.findOrInsert(priceTicks);
+        int node = allocate();
+
+        nodeOrderId[node] = orderId;
+        nodeQuantity[node] = quantity;
+        nodePrice[node] = priceTicks;
+        nodeBuy[node] = buy;
+        nodeClientId[node] = clientId;
+        nodeNext[node] = NIL;
+        nodePrev[node] = side.tails[level];
+
+        if (side.tails[level] == NIL) {
+            side.heads[level] = node;
+        } else {
+            nodeNext[side.tails[level]] = node;
+        }
+        side.tails[level] = node;
+        side.volumes[level] += quantity;
+        orderIndex.put(orderId, node);
+    }
+
+    // Returns the cancelled quantity, or 0 if the order is unknown or owned by another client
+    public long cancel(long orderId, String clientId) {
+        int node = orderIndex.get(orderId);
+        if (node == LongIntMap.MISSING || !Objects.equals(nodeClientId[node], clientId)) {
+            return 0;
+        }
+        orderIndex.remove(orderId);
+
+        BookSide side = nodeBuy[node] ? bids : asks;
+        int level = side.search(nodePrice[node]);
+        long cancelled = nodeQuantity[node];
+        side.volumes[level] -= cancelled;
+        unlink(side, level, node);
+        if (side.heads[level] == NIL) {
+            side.removeLevel(level);
+        }
+        release(node);
+        return cancelled;
+    }
+
+    // What is left of a resting order, or 0 if it is not in the book
+    public long remaining(long orderId) {
+        int node = orderIndex.get(orderId);
+        return node == LongIntMap.MISSING ? 0L : nodeQuantity[node];
+    }
+
+    // Visits every resting order, bids then asks, each side best level first and each level in time order
+    public void forEachOrder(OrderVisitor visitor) {
+        for (BookSide side : new BookSide[] {bids, asks}) {
+            for (int level = side.size - 1; level >= 0; level--) {
+                for (int node = side.heads[level]; node != NIL; node = nodeNext[node]) {
+                    visitor.visit(nodeOrderId[node], nodeBuy[node], nodePrice[node], nodeQuantity[node], nodeClientId[node]);
+                }
+            }
+        }
+    }
+
+    public long bestBid() {
+        return bids.size > 0 ? bids.prices[bids.size - 1] : 0L;
+    }
+
+    public long bestAsk() {
+        return asks.size > 0 ? asks.prices[asks.size - 1] : 0L;
+    }
+
+    public int bidLevels() {
+        return bids.size;
+    }
+
+    public int askLevels() {
+        return asks.size;
+    }
+
+    public int restingOrders() {
+        return orderIndex.size();
+    }
+
+    private void unlink(BookSide side, int level, int node) {
+        int prev = nodePrev[node];
+        int next = nodeNext[node];
+        if (prev == NIL) {
+            side.heads[level] = next;
+        } else {
+            nodeNext[prev] = next;
+        }
+        if (next == NIL) {
+            side.tails[level] = prev;
+        } else {
+            nodePrev[next] = prev;
+        }
+    }
+
+    private int allocate() {
+        if (freeHead != NIL) {
+            int node = freeHead;
+            freeHead = nodeNext[node];
+            return node;
+        }
+        if (nodeCount == nodeOrderId.length) {
+            int capacity = nodeCount << 1;
+            nodeOrderId = Arrays.copyOf(nodeOrderId, capacity);
+            nodeQuantity = Arrays.copyOf(nodeQuantity, capacity);
+            nodePrice = Arrays.copyOf(nodePrice, capacity);
+            nodeNext = Arrays.copyOf(nodeNext, capacity);
+            nodePrev = Arrays.copyOf(nodePrev, capacity);
+            nodeBuy = Arrays.copyOf(nodeBuy, capacity);
+            nodeClientId = Arrays.copyOf(nodeClientId, capacity);
+        }
+        return nodeCount++;
+    }
+
+    private void release(int node) {
+        nodeClientId[node] = null;
+        nodeNext[node] = freeHead;
+        freeHead = node;
+    }
+
+    @FunctionalInterface
+    public interface OrderVisitor {
+        void visit(long orderId, boolean buy, long priceTicks, long quantity, String clientId);
+    }
+
+    /**
+     * Price levels for one side, kept sorted worst to best so the best level is always
+     * the last element and consuming it never shifts the array.
+     */
+    private static final class BookSide {
+        private final boolean bid;
+        private long[] prices = new long[64];
+        private int[] heads = new int[64];
+        private int[] tails = new int[64];
+        private long[] volumes = new long[64];
+        private int size;
+
+        private BookSide(boolean bid) {
+            this.bid = bid;
+        }
+
+        // Binary search in worst-to-best order; returns -(insertion point) - 1 when absent
+        private int search(long price) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midPrice = prices[mid];
+                if (midPrice == price) {
+                    return mid;
+                }
+                boolean midWorse = bid ? midPrice < price : midPrice > price;
+                if (midWorse) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private int findOrInsert(long price) {
+            int index = search(price);
+            if (index >= 0) {
+                return index;
+            }
+            index = -(index + 1);
+            if (size == prices.length) {
+                int capacity = size << 1;
+                prices = Arrays.copyOf(prices, capacity);
+                heads = Arrays.copyOf(heads, capacity);
+                tails = Arrays.copyOf(tails, capacity);
+                volumes = Arrays.copyOf(volumes, capacity);
+            }
+            int moved = size - index;
+            if (moved > 0) {
+                System.arraycopy(prices, index, prices, index + 1, moved);
+                System.arraycopy(heads, index, heads, index + 1, moved);
+                System.arraycopy(tails, index, tails, index + 1, moved);
+                System.arraycopy(volumes, index, volumes, index + 1, moved);
+            }
+            prices[index] = price;
+            heads[index] = NIL;
+            tails[index] = NIL;
+            volumes[index] = 0L;
+            size++;
+            return index;
+        }
+
+        private void removeLevel(int index) {
+            int moved = size - index - 1;
+            if (moved > 0) {
+                System.arraycopy(prices, index + 1, prices, index, moved);
+                System.arraycopy(heads, index + 1, heads, index, moved);
+                System.arraycopy(tails, index + 1, tails, index, moved);
+                System.arraycopy(volumes, index + 1, volumes, index, moved);
+            }
+            size--;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+// RestingOrderListener.java
+package com.example.brokerrmi.rmi_stock_exchange.engine;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+
+@FunctionalInterface
+public interface RestingOrderListener {
+    // Called with the book locked whenever a resting order is added, partly filled or removed; 0 remaining = gone
+    void onOrder(String symbol, long orderId, OrderSide side, double price, long remaining, String clientId);
+}
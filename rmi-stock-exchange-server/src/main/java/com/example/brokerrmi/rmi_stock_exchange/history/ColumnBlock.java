@@ -0,0 +1,203 @@
+// ColumnBlock.java
+package com.example.brokerrmi.rmi_stock_exchange.history;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Up to a block's worth of trades, one array per column, in sequence order. Symbols, clients
+ * and brokers are dictionary ids. {@link #encode()} lays the columns out one after another:
+ * timestamps as zigzag varint deltas, ids and quantities as varints, sides as bytes and prices
+ * as the XOR of each price's bits with the same symbol's previous price, which leaves mostly zero
+ * bytes for the compressor while a symbol trades near one price.
+ */
+final class ColumnBlock {
+    // Longest encoded row: timestamp, symbol, side, quantity, price, client, broker
+    private static final int MAX_ROW_BYTES = 10 + 5 + 1 + 5 + 8 + 5 + 5;
+
+    final long firstSequence;
+    final long[] timestamps;
+    final int[] symbols;
+    final byte[] sides;
+    final int[] quantities;
+    final double[] prices;
+    final int[] clients;
+    final int[] brokers;
+    int count;
+
+    ColumnBlock(long firstSequence, int capacity) {
+        this.firstSequence = firstSequence;
+        this.timestamps = new long[capacity];
+        this.symbols = new int[capacity];
+        this.sides = new byte[capacity];
+        this.quantities = new int[capacity];
+        this.prices = new double[capacity];
+        this.clients = new int[capacity];
+        this.brokers = new int[capacity];
+    }
+
+    boolean isFull() {
+        return count == timestamps.length;
+    }
+
+    void add(long timestamp, int symbol, OrderSide side, int quantity, double price, int client, int broker) {
+        timestamps[count] = timestamp;
+        symbols[count] = symbol;
+        sides[count] = (byte) (side == OrderSide.BUY ? 0 : 1);
+        quantities[count] = quantity;
+        prices[count] = price;
+        clients[count] = client;
+        brokers[count] = broker;
+        count++;
+    }
+
+    OrderSide side(int row) {
+        return sides[row] == 0 ? OrderSide.BUY : OrderSide.SELL;
+    }
+
+    long minTimestamp() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, timestamps[i]);
+        }
+        return min;
+    }
+
+    long maxTimestamp() {
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, timestamps[i]);
+        }
+        return max;
+    }
+
+    static int[] distinct(int[] column, int count) {
+        return Arrays.stream(column, 0, count).distinct().sorted().toArray();
+    }
+
+    byte[] encode() {
+        Encoder out = new Encoder(count * MAX_ROW_BYTES);
+        long previousTimestamp = 0;
+        for (int i = 0; i < count; i++) {
+            out.varLong(zigzag(timestamps[i] - previousTimestamp));
+            previousTimestamp = timestamps[i];
+        }
+        for (int i = 0; i < count; i++) {
+            out.varLong(symbols[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            out.bytes[out.position++] = sides[i];
+        }
+        for (int i = 0; i < count; i++) {
+            out.varLong(quantities[i]);
+        }
+        Map<Integer, Long> previousBits = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            long bits = Double.doubleToRawLongBits(prices[i]);
+            Long previous = previousBits.put(symbols[i], bits);
+            out.fixedLong(previous == null ? bits : bits ^ previous);
+        }
+        for (int i = 0; i < count; i++) {
+            out.varLong(clients[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            out.varLong(brokers[i]);
+        }
+        return Arrays.copyOf(out.bytes, out.position);
+    }
+
+    static ColumnBlock decode(long firstSequence, int count, byte[] bytes) {
+        ColumnBlock block = new ColumnBlock(firstSequence, count);
+        Decoder in = new Decoder(bytes);
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            timestamp += unzigzag(in.varLong());
+            block.timestamps[i] = timestamp;
+        }
+        for (int i = 0; i < count; i++) {
+            block.symbols[i] = (int) in.varLong();
+        }
+        for (int i = 0; i < count; i++) {
+            block.sides[i] = bytes[in.position++];
+        }
+        for (int i = 0; i < count; i++) {
+            block.quantities[i] = (int) in.varLong();
+        }
+        Map<Integer, Long> previousBits = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            long bits = in.fixedLong() ^ previousBits.getOrDefault(block.symbols[i], 0L);
+            previousBits.put(block.symbols[i], bits);
+            block.prices[i] = Double.longBitsToDouble(bits);
+        }
+        for (int i = 0; i < count; i++) {
+            block.clients[i] = (int) in.varLong();
+        }
+        for (int i = 0; i < count; i++) {
+            block.brokers[i] = (int) in.varLong();
+        }
+        block.count = count;
+        return block;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Encoder {
+        private final byte[] bytes;
+        private int position;
+
+        private Encoder(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void varLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        private void fixedLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[position++] = (byte) (value >>> shift);
+            }
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[] bytes;
+        private int position;
+
+        private Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private long varLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private long fixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,649 @@
+// TradeHistory.java
+package com.example.brokerrmi.rmi_stock_exchange.history;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradePage;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeRecord;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Every trade this broker runs, in an append-only columnar store under {@code history.dir}, and
+ * the trades other brokers ran for clients whose account is here, which only client queries see.
+ * Trades fill an in-memory {@link ColumnBlock} of {@code history.block-trades} rows. A full block,
+ * or one older than {@code history.flush-interval-ms}, is encoded, deflated and appended to
+ * {@code trades.col} by the writer thread, behind a header holding its time range and the
+ * symbols and clients it contains. The headers stay in memory as the index: a query decodes only
+ * the blocks that can match, one at a time, and returns at most {@code history.max-page-size}
+ * trades with a cursor to continue from. Symbols, clients and brokers are stored as ids from
+ * dictionaries kept in {@code dictionary.dat}.
+ */
+@Component
+public class TradeHistory {
+    private static final Logger logger = Logger.getLogger(TradeHistory.class.getName());
+
+    private static final String DATA_FILE = "trades.col";
+    private static final String DICTIONARY_FILE = "dictionary.dat";
+    private static final int BLOCK_MAGIC = 0x54424C4B;
+    // magic + first sequence + count + min and max timestamp + two id counts + raw and compressed length + crc
+    private static final int FIXED_HEADER_BYTES = 4 + 8 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 4;
+    private static final byte SYMBOLS = 0;
+    private static final byte CLIENTS = 1;
+    private static final byte BROKERS = 2;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int blockTrades;
+    private final long flushIntervalMs;
+    private final int maxPageSize;
+    private final Dictionary symbols = new Dictionary(SYMBOLS);
+    private final Dictionary clients = new Dictionary(CLIENTS);
+    private final Dictionary brokers = new Dictionary(BROKERS);
+    // Sealed blocks in sequence order
+    private final List<Block> blocks = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService writer;
+    private final int brokerIndex;
+
+    // Guarded by this
+    private ColumnBlock open;
+    private long openedAtMillis;
+    private final List<DictionaryEntry> newEntries = new ArrayList<>();
+
+    // Writer thread only, after construction
+    private FileChannel data;
+    private FileChannel dictionary;
+    private long dataSize;
+    private final Deflater deflater = new Deflater();
+
+    private volatile long storedBytes;
+    private volatile long encodedBytes;
+
+    public TradeHistory(
+            @Value("${history.enabled:true}") boolean enabled,
+            @Value("${broker.id:broker1}") String brokerId,
+            @Value("${history.dir:${journal.dir:data/${broker.id:broker1}}/history}") String directory,
+            @Value("${history.block-trades:4096}") int blockTrades,
+            @Value("${history.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${history.max-page-size:1000}") int maxPageSize) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.blockTrades = Math.max(1, blockTrades);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.maxPageSize = Math.max(1, maxPageSize);
+        long nextSequence = 0;
+        if (enabled) {
+            try {
+                Files.createDirectories(this.directory);
+                loadDictionary();
+                nextSequence = loadBlocks();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open trade history in " + directory, e);
+            }
+            logger.info("Trade history of " + nextSequence + " trades in " + blocks.size() + " blocks at "
+                    + this.directory.toAbsolutePath());
+        }
+        synchronized (this) {
+            brokerIndex = brokers.idOf(brokerId, newEntries);
+            open = new ColumnBlock(nextSequence, this.blockTrades);
+        }
+        this.writer = enabled ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "history-writer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        if (enabled) {
+            writer.scheduleWithFixedDelay(this::sealIfDue, this.flushIntervalMs, this.flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Called once per trade, after it has run; only the append to the open block happens on the caller's thread
+    public void record(String symbol, OrderSide side, int quantity, double price, String clientId) {
+        append(System.currentTimeMillis(), symbol, side, quantity, price, clientId, null);
+    }
+
+    // A trade the broker ran for a client homed here, at the time it ran
+    public void recordForClient(String symbol, OrderSide side, int quantity, double price, String clientId,
+                                String brokerId, long timestampMillis) {
+        append(timestampMillis, symbol, side, quantity, price, clientId, brokerId);
+    }
+
+    // brokerId: null for this broker
+    private void append(long timestamp, String symbol, OrderSide side, int quantity, double price, String clientId,
+                        String brokerId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (open.count == 0) {
+                openedAtMillis = System.currentTimeMillis();
+            }
+            open.add(timestamp, symbols.idOf(symbol, newEntries), side, quantity, price,
+                    clients.idOf(clientId == null ? "" : clientId, newEntries),
+                    brokerId == null ? brokerIndex : brokers.idOf(brokerId, newEntries));
+            if (open.isFull()) {
+                seal();
+            }
+        }
+    }
+
+    // Trades of the symbol this broker ran between fromMillis and toMillis inclusive, oldest first, starting at the
+    // cursor (0 at first)
+    public TradePage symbolTrades(String symbol, long fromMillis, long toMillis, long cursor, int limit) throws IOException {
+        if (!enabled) {
+            return TradePage.empty();
+        }
+        int id;
+        synchronized (this) {
+            id = symbols.find(symbol);
+        }
+        if (id < 0) {
+            return TradePage.empty();
+        }
+        return scan(cursor, limit, new Filter() {
+            @Override
+            public boolean mayMatch(Block block) {
+                return block.maxTimestamp >= fromMillis && block.minTimestamp <= toMillis
+                        && Arrays.binarySearch(block.symbolIds, id) >= 0;
+            }
+
+            @Override
+            public boolean matches(ColumnBlock columns, int row) {
+                return columns.symbols[row] == id && columns.brokers[row] == brokerIndex
+                        && columns.timestamps[row] >= fromMillis && columns.timestamps[row] <= toMillis;
+            }
+        });
+    }
+
+    // Every trade of the client, oldest first, starting at the cursor (0 at first)
+    public TradePage clientTrades(String clientId, long cursor, int limit) throws IOException {
+        if (!enabled) {
+            return TradePage.empty();
+        }
+        int id;
+        synchronized (this) {
+            id = clients.find(clientId == null ? "" : clientId);
+        }
+        if (id < 0) {
+            return TradePage.empty();
+        }
+        return scan(cursor, limit, new Filter() {
+            @Override
+            public boolean mayMatch(Block block) {
+                return Arrays.binarySearch(block.clientIds, id) >= 0;
+            }
+
+            @Override
+            public boolean matches(ColumnBlock columns, int row) {
+                return columns.clients[row] == id;
+            }
+        });
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        if (!enabled) {
+            return snapshot;
+        }
+        long trades;
+        synchronized (this) {
+            trades = open.firstSequence + open.count;
+        }
+        int pending = 0;
+        for (Block block : blocks) {
+            if (block.columns != null) {
+                pending++;
+            }
+        }
+        snapshot.put("trades", trades);
+        snapshot.put("blocks", blocks.size());
+        snapshot.put("unwrittenBlocks", pending);
+        snapshot.put("storedBytes", storedBytes);
+        snapshot.put("encodedBytes", encodedBytes);
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (open.count > 0) {
+                seal();
+            }
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Trade history writer did not finish within 5 s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            data.close();
+            dictionary.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close trade history: " + e.getMessage());
+        }
+        deflater.end();
+    }
+
+    private interface Filter {
+        // From the block's index entry alone; false means no row can match
+        boolean mayMatch(Block block);
+
+        boolean matches(ColumnBlock columns, int row);
+    }
+
+    private TradePage scan(long cursor, int limit, Filter filter) throws IOException {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        List<TradeRecord> page = new ArrayList<>(Math.min(pageSize, 256));
+        long next = Math.max(0, cursor);
+        while (true) {
+            List<Block> sealed = blocks;
+            for (int i = firstBlockAfter(sealed, next); i < sealed.size(); i++) {
+                Block block = sealed.get(i);
+                if (filter.mayMatch(block)) {
+                    ColumnBlock columns = columnsOf(block);
+                    for (int row = (int) Math.max(0, next - block.firstSequence); row < columns.count; row++) {
+                        if (filter.matches(columns, row)) {
+                            if (page.size() == pageSize) {
+                                return new TradePage(page, block.firstSequence + row);
+                            }
+                            page.add(toRecord(columns, row));
+                        }
+                    }
+                }
+                next = block.firstSequence + block.count;
+            }
+            synchronized (this) {
+                // Blocks sealed since the list was read are scanned on the next pass
+                if (open.firstSequence > next) {
+                    continue;
+                }
+                for (int row = (int) (next - open.firstSequence); row < open.count; row++) {
+                    if (filter.matches(open, row)) {
+                        if (page.size() == pageSize) {
+                            return new TradePage(page, open.firstSequence + row);
+                        }
+                        page.add(toRecord(open, row));
+                    }
+                }
+                return new TradePage(page, -1);
+            }
+        }
+    }
+
+    // Index of the first block holding a trade at or after the sequence
+    private static int firstBlockAfter(List<Block> sealed, long sequence) {
+        int low = 0;
+        int high = sealed.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Block block = sealed.get(middle);
+            if (block.firstSequence + block.count <= sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private TradeRecord toRecord(ColumnBlock columns, int row) {
+        return new TradeRecord(columns.firstSequence + row, columns.timestamps[row], symbols.name(columns.symbols[row]),
+                columns.side(row), columns.quantities[row], columns.prices[row], clients.name(columns.clients[row]),
+                brokers.name(columns.brokers[row]));
+    }
+
+    // Caller holds this
+    private void seal() {
+        ColumnBlock sealed = open;
+        Block block = new Block(sealed);
+        List<DictionaryEntry> entries = List.copyOf(newEntries);
+        newEntries.clear();
+        blocks.add(block);
+        open = new ColumnBlock(sealed.firstSequence + sealed.count, blockTrades);
+        writer.execute(() -> store(block, entries));
+    }
+
+    private void sealIfDue() {
+        synchronized (this) {
+            if (open.count > 0 && System.currentTimeMillis() - openedAtMillis >= flushIntervalMs) {
+                seal();
+            }
+        }
+    }
+
+    // Writer thread. Names go to the dictionary before the first block that uses them.
+    private void store(Block block, List<DictionaryEntry> entries) {
+        ColumnBlock columns = block.columns;
+        try {
+            if (!entries.isEmpty()) {
+                ByteArrayOutputStream names = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(names);
+                for (DictionaryEntry entry : entries) {
+                    byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(entry.kind);
+                    out.writeInt(entry.id);
+                    out.writeShort(name.length);
+                    out.write(name);
+                }
+                writeFully(dictionary, ByteBuffer.wrap(names.toByteArray()), dictionary.size());
+                dictionary.force(false);
+            }
+
+            byte[] raw = columns.encode();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+            deflater.reset();
+            try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+                out.write(raw);
+            }
+            byte[] body = compressed.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(body);
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(FIXED_HEADER_BYTES + body.length + 256);
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeInt(BLOCK_MAGIC);
+            out.writeLong(block.firstSequence);
+            out.writeInt(block.count);
+            out.writeLong(block.minTimestamp);
+            out.writeLong(block.maxTimestamp);
+            writeIds(out, block.symbolIds);
+            writeIds(out, block.clientIds);
+            out.writeInt(raw.length);
+            out.writeInt(body.length);
+            out.writeInt((int) crc.getValue());
+            int headerLength = record.size();
+            out.write(body);
+
+            writeFully(data, ByteBuffer.wrap(record.toByteArray()), dataSize);
+            data.force(false);
+            block.bodyOffset = dataSize + headerLength;
+            block.rawLength = raw.length;
+            block.compressedLength = body.length;
+            block.crc = (int) crc.getValue();
+            // Readers that see the columns gone also see where they are on disk
+            block.columns = null;
+            dataSize += record.size();
+            storedBytes = dataSize;
+            encodedBytes += raw.length;
+        } catch (IOException e) {
+            // The block stays in memory, so queries still find it
+            logger.warning("Failed to write trade history block at sequence " + block.firstSequence + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeIds(DataOutputStream out, int[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    private ColumnBlock columnsOf(Block block) throws IOException {
+        ColumnBlock columns = block.columns;
+        if (columns != null) {
+            return columns;
+        }
+        ByteBuffer body = ByteBuffer.allocate(block.compressedLength);
+        while (body.hasRemaining()) {
+            if (data.read(body, block.bodyOffset + body.position()) < 0) {
+                throw new EOFException("Trade history block at sequence " + block.firstSequence + " is cut short");
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        if ((int) crc.getValue() != block.crc) {
+            throw new IOException("Trade history block at sequence " + block.firstSequence + " fails its checksum");
+        }
+        byte[] raw = new byte[block.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body.array());
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Trade history block at sequence " + block.firstSequence + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return ColumnBlock.decode(block.firstSequence, block.count, raw);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // Reads entries up to the first incomplete one and cuts the file there, so appends continue from a clean end
+    private void loadDictionary() throws IOException {
+        Path path = directory.resolve(DICTIONARY_FILE);
+        long valid = 0;
+        if (Files.exists(path)) {
+            try (InputStream file = Files.newInputStream(path)) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+                while (true) {
+                    byte kind = in.readByte();
+                    int id = in.readInt();
+                    byte[] name = new byte[in.readUnsignedShort()];
+                    in.readFully(name);
+                    dictionaryOf(kind).restore(id, new String(name, StandardCharsets.UTF_8));
+                    valid += 1 + 4 + 2 + name.length;
+                }
+            } catch (EOFException e) {
+                // End of the complete entries
+            }
+        }
+        dictionary = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dictionary.truncate(valid);
+    }
+
+    // Rebuilds the index from the block headers, skipping the bodies, and cuts off a block left half-written
+    private long loadBlocks() throws IOException {
+        Path path = directory.resolve(DATA_FILE);
+        data = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = data.size();
+        long position = 0;
+        long nextSequence = 0;
+        try (InputStream file = Files.newInputStream(path)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+            while (position < size) {
+                if (in.readInt() != BLOCK_MAGIC) {
+                    break;
+                }
+                long firstSequence = in.readLong();
+                int count = in.readInt();
+                long minTimestamp = in.readLong();
+                long maxTimestamp = in.readLong();
+                int[] symbolIds = readIds(in);
+                int[] clientIds = readIds(in);
+                int rawLength = in.readInt();
+                int compressedLength = in.readInt();
+                int crc = in.readInt();
+                long bodyOffset = position + FIXED_HEADER_BYTES + 4L * (symbolIds.length + clientIds.length);
+                if (firstSequence != nextSequence || bodyOffset + compressedLength > size) {
+                    break;
+                }
+                in.skipNBytes(compressedLength);
+                blocks.add(new Block(firstSequence, count, minTimestamp, maxTimestamp, symbolIds, clientIds,
+                        bodyOffset, rawLength, compressedLength, crc));
+                position = bodyOffset + compressedLength;
+                nextSequence = firstSequence + count;
+                encodedBytes += rawLength;
+            }
+        } catch (EOFException e) {
+            // A header cut short by a crash
+        }
+        if (position < size) {
+            logger.warning("Trade history: dropping " + (size - position) + " bytes of an incomplete block at the end of " + path);
+            data.truncate(position);
+        }
+        dataSize = position;
+        storedBytes = position;
+        return nextSequence;
+    }
+
+    private static int[] readIds(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > 1 << 24) {
+            throw new EOFException("Bad id count " + count);
+        }
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = in.readInt();
+        }
+        return ids;
+    }
+
+    private Dictionary dictionaryOf(byte kind) {
+        return switch (kind) {
+            case SYMBOLS -> symbols;
+            case CLIENTS -> clients;
+            default -> brokers;
+        };
+    }
+
+    /**
+     * Names to ids for one kind of name. Ids are assigned under the history lock; a name is read by
+     * id without it, which is safe because an id is only found in a block published after the
+     * name was stored.
+     */
+    private static final class Dictionary {
+        private final byte kind;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private volatile String[] names = new String[64];
+        private int size;
+
+        private Dictionary(byte kind) {
+            this.kind = kind;
+        }
+
+        // Caller holds the history lock; a new name is also queued for the dictionary file
+        private int idOf(String name, List<DictionaryEntry> added) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            int assigned = size;
+            restore(assigned, name);
+            added.add(new DictionaryEntry(kind, assigned, name));
+            return assigned;
+        }
+
+        // Caller holds the history lock; -1 for a name never recorded
+        private int find(String name) {
+            Integer id = ids.get(name);
+            return id == null ? -1 : id;
+        }
+
+        private void restore(int id, String name) {
+            String[] current = names;
+            if (id >= current.length) {
+                current = Arrays.copyOf(current, Math.max(id + 1, current.length * 2));
+            }
+            current[id] = name;
+            names = current;
+            ids.put(name, id);
+            size = Math.max(size, id + 1);
+        }
+
+        private String name(int id) {
+            return names[id];
+        }
+    }
+
+    private static final class DictionaryEntry {
+        private final byte kind;
+        private final int id;
+        private final String name;
+
+        private DictionaryEntry(byte kind, int id, String name) {
+            this.kind = kind;
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    // An index entry: the block's header, and its columns until the writer has stored them
+    private static final class Block {
+        private final long firstSequence;
+        private final int count;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private final int[] symbolIds;
+        private final int[] clientIds;
+        private long bodyOffset;
+        private int rawLength;
+        private int compressedLength;
+        private int crc;
+        private volatile ColumnBlock columns;
+
+        private Block(ColumnBlock columns) {
+            this.firstSequence = columns.firstSequence;
+            this.count = columns.count;
+            this.minTimestamp = columns.minTimestamp();
+            this.maxTimestamp = columns.maxTimestamp();
+            this.symbolIds = ColumnBlock.distinct(columns.symbols, columns.count);
+            this.clientIds = ColumnBlock.distinct(columns.clients, columns.count);
+            this.columns = columns;
+        }
+
+        private Block(long firstSequence, int count, long minTimestamp, long maxTimestamp, int[] symbolIds,
+                      int[] clientIds, long bodyOffset, int rawLength, int compressedLength, int crc) {
+            this.firstSequence = firstSequence;
+            this.count = count;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.symbolIds = symbolIds;
+            this.clientIds = clientIds;
+            this.bodyOffset = bodyOffset;
+            this.rawLength = rawLength;
+            this.compressedLength = compressedLength;
+            this.crc = crc;
+        }
+    }
+}
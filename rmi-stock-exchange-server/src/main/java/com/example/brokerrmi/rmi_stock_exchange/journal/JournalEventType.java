@@ -0,0 +1,35 @@
+// JournalEventType.java
+package com.example.brokerrmi.rmi_stock_exchange.journal;
+
+public enum JournalEventType {
+    TRADE((byte) 1),
+    FILL((byte) 2),
+    REPLICATED((byte) 3),
+    // A resting order as it stands after a change; the version field carries the order id
+    ORDER((byte) 4),
+    // A settlement queued for a client's home on another broker; the version field carries its outbox sequence
+    SETTLEMENT((byte) 5),
+    // Every settlement with a sequence below the version field has been delivered
+    SETTLED((byte) 6),
+    // A hold asked of a client's home for trades run here; the version field carries its key
+    GRANT((byte) 7);
+
+    private final byte code;
+
+    JournalEventType(byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static JournalEventType fromCode(byte code) {
+        for (JournalEventType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown journal event type: " + code);
+    }
+}
@@ -0,0 +1,74 @@
+// JournalSegment.java
+package com.example.brokerrmi.rmi_stock_exchange.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+// A pre-allocated, memory-mapped journal file holding records starting at firstSequence
+final class JournalSegment {
+    static final String PREFIX = "journal-";
+    static final String SUFFIX = ".seg";
+
+    private final Path path;
+    private final long firstSequence;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+
+    private JournalSegment(Path path, long firstSequence, RandomAccessFile file, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path dir, long firstSequence, int size) throws IOException {
+        Path path = dir.resolve(fileName(firstSequence));
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        file.setLength(size);
+        MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new JournalSegment(path, firstSequence, file, buffer);
+    }
+
+    static JournalSegment openReadOnly(Path path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+        MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        return new JournalSegment(path, parseFirstSequence(path), file, buffer);
+    }
+
+    static String fileName(long firstSequence) {
+        return String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX);
+    }
+
+    static long parseFirstSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    MappedByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    // Keeps four zero bytes at the end so readers always find a terminator
+    boolean hasRoom(int bytes) {
+        return buffer.position() + bytes + Integer.BYTES <= buffer.capacity();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        file.close();
+    }
+}
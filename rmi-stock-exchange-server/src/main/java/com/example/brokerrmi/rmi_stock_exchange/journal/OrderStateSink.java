@@ -0,0 +1,9 @@
+// OrderStateSink.java
+package com.example.brokerrmi.rmi_stock_exchange.journal;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+
+@FunctionalInterface
+public interface OrderStateSink {
+    void restore(String symbol, long orderId, OrderSide side, double price, long quantity, String clientId);
+}
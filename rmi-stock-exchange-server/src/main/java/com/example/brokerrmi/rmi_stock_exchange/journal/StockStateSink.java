@@ -0,0 +1,7 @@
+// StockStateSink.java
+package com.example.brokerrmi.rmi_stock_exchange.journal;
+
+@FunctionalInterface
+public interface StockStateSink {
+    void restore(String symbol, double price, int quantity, long version);
+}
@@ -0,0 +1,690 @@
+// TradeJournal.java
+package com.example.brokerrmi.rmi_stock_exchange.journal;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Reservation;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Settlement;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only binary journal of stock state changes written through memory-mapped,
+ * pre-allocated segment files.
+ * <p>
+ * Every record carries the full post-change price, quantity and version of one symbol, or the
+ * full remaining state of one resting order, so replay is idempotent: the broker loads the newest
+ * snapshot and re-applies every later record. Settlements still to be delivered to other brokers
+ * and the grants those brokers hold for this one are journaled too, so neither is lost in a restart.
+ * Durability follows {@code journal.fsync}: {@code always} makes {@link #commit()} wait for
+ * a group commit by the flusher thread, {@code interval} forces every
+ * {@code journal.fsync-interval-ms}, and {@code never} leaves write-back to the OS.
+ */
+@Component
+public class TradeJournal {
+    private static final Logger logger = Logger.getLogger(TradeJournal.class.getName());
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int SNAPSHOT_MAGIC = 0x534E4157;
+    private static final int SNAPSHOTS_RETAINED = 2;
+    // type + sequence + timestamp + symbol length + price + quantity + version
+    private static final int FIXED_BODY_BYTES = 1 + 8 + 8 + 2 + 8 + 4 + 8;
+    private static final int MAX_SYMBOL_BYTES = 255;
+    public static final int MAX_CLIENT_ID_BYTES = 255;
+    // Order, settlement and grant records add the side and the client id
+    private static final int MAX_BODY_BYTES = FIXED_BODY_BYTES + MAX_SYMBOL_BYTES + 1 + 2 + MAX_CLIENT_ID_BYTES
+            // Settlement records then add the key, the trade time, both order ids and the last flag
+            + 8 + 8 + 8 + 8 + 1;
+
+    enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final long snapshotEvery;
+
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_BODY_BYTES);
+    private final CRC32 crc = new CRC32();
+    private final Object flushLock = new Object();
+    private final Object snapshotLock = new Object();
+    private final ExecutorService snapshotExecutor;
+
+    // Guarded by this
+    private JournalSegment current;
+    private long nextSequence = 1;
+    private long recordsSinceSnapshot;
+    private boolean snapshotScheduled;
+
+    private volatile long writtenSequence;
+    // Guarded by flushLock
+    private long durableSequence;
+
+    private volatile boolean running = true;
+    private volatile Supplier<List<StockUpdate>> snapshotSource = Collections::emptyList;
+    private volatile Consumer<OrderStateSink> orderSource = sink -> { };
+    private volatile Supplier<List<Settlement>> settlementSource = Collections::emptyList;
+    private volatile Supplier<List<Reservation>> grantSource = Collections::emptyList;
+    private Thread flusher;
+
+    public TradeJournal(
+            @Value("${journal.enabled:true}") boolean enabled,
+            @Value("${journal.dir:data/${broker.id:broker1}}") String directory,
+            @Value("${journal.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${journal.fsync:interval}") String fsyncPolicy,
+            @Value("${journal.fsync-interval-ms:5}") long fsyncIntervalMs,
+            @Value("${journal.snapshot-every:100000}") long snapshotEvery) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.toUpperCase());
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.snapshotEvery = snapshotEvery;
+        this.snapshotExecutor = enabled ? Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setSnapshotSource(Supplier<List<StockUpdate>> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+    }
+
+    // Feeds every resting order to the sink it is given, for snapshots
+    public void setOrderSource(Consumer<OrderStateSink> orderSource) {
+        this.orderSource = orderSource;
+    }
+
+    // Settlements not yet delivered, and grants not yet released, for snapshots
+    public void setSettlementSource(Supplier<List<Settlement>> settlementSource, Supplier<List<Reservation>> grantSource) {
+        this.settlementSource = settlementSource;
+        this.grantSource = grantSource;
+    }
+
+    public boolean replay(StockStateSink sink) {
+        return replay(sink, (symbol, orderId, side, price, quantity, clientId) -> { });
+    }
+
+    public boolean replay(StockStateSink sink, OrderStateSink orderSink) {
+        return replay(sink, orderSink, settlement -> { }, grant -> { });
+    }
+
+    /**
+     * Restores state from the newest readable snapshot plus all later journal records, then
+     * opens a fresh segment for appends. Orders still resting at the end are handed to the order
+     * sink oldest first, settlements not yet delivered to the settlement sink in sequence order,
+     * and grants no settlement released to the grant sink. Returns false if there was nothing to
+     * restore.
+     */
+    public boolean replay(StockStateSink sink, OrderStateSink orderSink, Consumer<Settlement> settlementSink,
+                          Consumer<Reservation> grantSink) {
+        if (!enabled) {
+            return false;
+        }
+        try {
+            Files.createDirectories(directory);
+            long start = System.nanoTime();
+            long snapshotSequence = -1;
+            Map<Long, OrderState> orders = new HashMap<>();
+            TreeMap<Long, Settlement> settlements = new TreeMap<>();
+            Map<Long, Reservation> grants = new HashMap<>();
+            for (Path snapshot : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX, true)) {
+                try {
+                    snapshotSequence = loadSnapshot(snapshot, sink, orders, settlements, grants);
+                    break;
+                } catch (IOException e) {
+                    logger.warning("Skipping unreadable snapshot " + snapshot + ": " + e.getMessage());
+                }
+            }
+
+            long lastSequence = Math.max(snapshotSequence, 0);
+            long replayed = 0;
+            for (Path path : listFiles(JournalSegment.PREFIX, JournalSegment.SUFFIX, false)) {
+                JournalSegment segment = JournalSegment.openReadOnly(path);
+                try {
+                    MappedByteBuffer buffer = segment.getBuffer();
+                    byte[] body = new byte[MAX_BODY_BYTES];
+                    while (buffer.remaining() >= 8) {
+                        int length = buffer.getInt();
+                        if (length <= 0 || length > body.length || buffer.remaining() < length + 4) {
+                            break;
+                        }
+                        int checksum = buffer.getInt();
+                        buffer.get(body, 0, length);
+                        crc.reset();
+                        crc.update(body, 0, length);
+                        // A record shorter than its fixed fields is as torn as one failing its checksum
+                        if ((int) crc.getValue() != checksum || length < FIXED_BODY_BYTES) {
+                            logger.warning("Torn record in " + path + ", stopping replay of this segment");
+                            break;
+                        }
+                        ByteBuffer record = ByteBuffer.wrap(body, 0, length);
+                        byte type = record.get();
+                        long sequence = record.getLong();
+                        record.getLong();
+                        int symbolLength = record.getShort();
+                        String symbol = new String(body, record.position(), symbolLength, StandardCharsets.UTF_8);
+                        record.position(record.position() + symbolLength);
+                        double price = record.getDouble();
+                        int quantity = record.getInt();
+                        long version = record.getLong();
+                        if (sequence > snapshotSequence) {
+                            if (type == JournalEventType.SETTLED.getCode()) {
+                                settlements.headMap(version).clear();
+                            } else if (type == JournalEventType.ORDER.getCode() || type == JournalEventType.SETTLEMENT.getCode()
+                                    || type == JournalEventType.GRANT.getCode()) {
+                                OrderSide side = sideOf(record.get());
+                                int clientLength = record.getShort();
+                                String clientId = new String(body, record.position(), clientLength, StandardCharsets.UTF_8);
+                                record.position(record.position() + clientLength);
+                                if (type == JournalEventType.SETTLEMENT.getCode()) {
+                                    long key = record.getLong();
+                                    long timestamp = record.getLong();
+                                    long orderId = record.getLong();
+                                    long counterOrderId = record.getLong();
+                                    boolean last = record.get() != 0;
+                                    if (last) {
+                                        grants.remove(key);
+                                    }
+                                    settlements.put(version, new Settlement(clientId, key, symbol, side, quantity, price,
+                                            timestamp, last, orderId, counterOrderId).withSequence(version));
+                                } else if (type == JournalEventType.GRANT.getCode()) {
+                                    grants.put(version, new Reservation(clientId, version, symbol, side, quantity, price));
+                                } else if (quantity > 0) {
+                                    orders.put(version, new OrderState(symbol, version, side, price, quantity, clientId));
+                                } else {
+                                    orders.remove(version);
+                                }
+                            } else {
+                                sink.restore(symbol, price, quantity, version);
+                            }
+                            replayed++;
+                        }
+                        lastSequence = Math.max(lastSequence, sequence);
+                    }
+                } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                    logger.warning("Torn record in " + path + ", stopping replay of this segment");
+                } finally {
+                    segment.close();
+                }
+            }
+
+            List<OrderState> resting = new ArrayList<>(orders.values());
+            resting.sort(Comparator.comparingLong(order -> order.orderId));
+            for (OrderState order : resting) {
+                orderSink.restore(order.symbol, order.orderId, order.side, order.price, order.quantity, order.clientId);
+            }
+            Set<Long> releasing = new HashSet<>();
+            for (Settlement settlement : settlements.values()) {
+                if (settlement.isLast()) {
+                    releasing.add(settlement.getKey());
+                }
+                settlementSink.accept(settlement);
+            }
+            for (Reservation grant : grants.values()) {
+                if (!releasing.contains(grant.getKey())) {
+                    grantSink.accept(grant);
+                }
+            }
+
+            synchronized (this) {
+                nextSequence = lastSequence + 1;
+                writtenSequence = lastSequence;
+                current = JournalSegment.create(directory, nextSequence, segmentSize);
+            }
+            synchronized (flushLock) {
+                durableSequence = lastSequence;
+            }
+            startFlusher();
+            logger.info(String.format("Journal replayed snapshot@%d + %d records in %d ms from %s, %d orders resting,"
+                            + " %d settlements undelivered", snapshotSequence, replayed,
+                    (System.nanoTime() - start) / 1_000_000, directory.toAbsolutePath(), resting.size(), settlements.size()));
+            return snapshotSequence >= 0 || replayed > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay journal in " + directory, e);
+        }
+    }
+
+    public void append(JournalEventType type, String symbol, double price, int quantity, long version) {
+        if (enabled) {
+            write(type, symbol, price, quantity, version, null, null, null);
+        }
+    }
+
+    // A resting order after it was added, partly filled or removed; remaining 0 drops it on replay
+    public void appendOrder(String symbol, long orderId, OrderSide side, double price, long remaining, String clientId) {
+        if (!enabled) {
+            return;
+        }
+        write(JournalEventType.ORDER, symbol, price, (int) remaining, orderId, side, clientBytes(clientId), null);
+    }
+
+    // A settlement queued for delivery, under the sequence it carries
+    public void appendSettlement(Settlement settlement) {
+        if (enabled) {
+            write(JournalEventType.SETTLEMENT, settlement.getSymbol(), settlement.getPrice(), settlement.getQuantity(),
+                    settlement.getSequence(), settlement.getSide(), clientBytes(settlement.getClientId()), settlement);
+        }
+    }
+
+    // Every settlement below the sequence has been delivered and is dropped on replay
+    public void appendSettled(long below) {
+        if (enabled) {
+            write(JournalEventType.SETTLED, "", 0.0, 0, below, null, null, null);
+        }
+    }
+
+    // A grant about to be asked for; it stays open on replay until a last settlement under its key releases it
+    public void appendGrant(Reservation grant) {
+        if (enabled) {
+            write(JournalEventType.GRANT, grant.getSymbol(), grant.getPrice(), grant.getQuantity(), grant.getKey(),
+                    grant.getSide(), clientBytes(grant.getClientId()), null);
+        }
+    }
+
+    private static byte[] clientBytes(String clientId) {
+        byte[] clientBytes = (clientId == null ? "" : clientId).getBytes(StandardCharsets.UTF_8);
+        if (clientBytes.length > MAX_CLIENT_ID_BYTES) {
+            throw new IllegalArgumentException("Client id too long for journal: " + clientId);
+        }
+        return clientBytes;
+    }
+
+    private void write(JournalEventType type, String symbol, double price, int quantity, long version,
+                       OrderSide side, byte[] clientBytes, Settlement settlement) {
+        byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+        if (symbolBytes.length > MAX_SYMBOL_BYTES) {
+            throw new IllegalArgumentException("Symbol too long for journal: " + symbol);
+        }
+
+        synchronized (this) {
+            if (current == null) {
+                throw new IllegalStateException("Journal must be replayed before appending");
+            }
+            long sequence = nextSequence;
+            scratch.clear();
+            scratch.put(type.getCode())
+                    .putLong(sequence)
+                    .putLong(System.currentTimeMillis())
+                    .putShort((short) symbolBytes.length)
+                    .put(symbolBytes)
+                    .putDouble(price)
+                    .putInt(quantity)
+                    .putLong(version);
+            if (clientBytes != null) {
+                scratch.put(side == null ? 0 : side == OrderSide.BUY ? (byte) 1 : (byte) 2)
+                        .putShort((short) clientBytes.length)
+                        .put(clientBytes);
+            }
+            if (settlement != null) {
+                scratch.putLong(settlement.getKey())
+                        .putLong(settlement.getTimestamp())
+                        .putLong(settlement.getOrderId())
+                        .putLong(settlement.getCounterOrderId())
+                        .put(settlement.isLast() ? (byte) 1 : (byte) 0);
+            }
+            int length = scratch.position();
+            crc.reset();
+            crc.update(scratch.array(), 0, length);
+
+            if (!current.hasRoom(length + 8)) {
+                roll();
+            }
+            MappedByteBuffer buffer = current.getBuffer();
+            buffer.putInt(length).putInt((int) crc.getValue()).put(scratch.array(), 0, length);
+
+            nextSequence = sequence + 1;
+            writtenSequence = sequence;
+            if (++recordsSinceSnapshot >= snapshotEvery && !snapshotScheduled) {
+                snapshotScheduled = true;
+                snapshotExecutor.execute(this::snapshot);
+            }
+        }
+    }
+
+    // Waits until everything appended so far is durable when running with journal.fsync=always
+    public void commit() {
+        if (!enabled || fsyncPolicy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        long target = writtenSequence;
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+            while (durableSequence < target && running) {
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public void snapshot() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            // State read after this point already reflects every record up to the sequence
+            long sequence = writtenSequence;
+            List<StockUpdate> state = snapshotSource.get();
+            List<OrderState> orders = new ArrayList<>();
+            orderSource.accept((symbol, orderId, side, price, quantity, clientId) ->
+                    orders.add(new OrderState(symbol, orderId, side, price, quantity, clientId)));
+            List<Settlement> settlements = settlementSource.get();
+            List<Reservation> grants = grantSource.get();
+            Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+            Path temp = directory.resolve(target.getFileName() + ".tmp");
+            try {
+                FileOutputStream file = new FileOutputStream(temp.toFile());
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(sequence);
+                out.writeInt(state.size());
+                for (StockUpdate update : state) {
+                    out.writeUTF(update.getSymbol());
+                    out.writeDouble(update.getPrice());
+                    out.writeInt(update.getQuantity());
+                    out.writeLong(update.getVersion());
+                }
+                out.writeInt(orders.size());
+                for (OrderState order : orders) {
+                    out.writeUTF(order.symbol);
+                    out.writeLong(order.orderId);
+                    out.writeBoolean(order.side == OrderSide.BUY);
+                    out.writeDouble(order.price);
+                    out.writeLong(order.quantity);
+                    out.writeUTF(order.clientId == null ? "" : order.clientId);
+                }
+                out.writeInt(settlements.size());
+                for (Settlement settlement : settlements) {
+                    out.writeUTF(settlement.getClientId() == null ? "" : settlement.getClientId());
+                    out.writeLong(settlement.getKey());
+                    out.writeUTF(settlement.getSymbol());
+                    out.writeBoolean(settlement.getSide() == OrderSide.BUY);
+                    out.writeInt(settlement.getQuantity());
+                    out.writeDouble(settlement.getPrice());
+                    out.writeLong(settlement.getTimestamp());
+                    out.writeBoolean(settlement.isLast());
+                    out.writeLong(settlement.getOrderId());
+                    out.writeLong(settlement.getCounterOrderId());
+                    out.writeLong(settlement.getSequence());
+                }
+                out.writeInt(grants.size());
+                for (Reservation grant : grants) {
+                    out.writeUTF(grant.getClientId() == null ? "" : grant.getClientId());
+                    out.writeLong(grant.getKey());
+                    out.writeUTF(grant.getSymbol());
+                    out.writeBoolean(grant.getSide() == OrderSide.BUY);
+                    out.writeInt(grant.getQuantity());
+                    out.writeDouble(grant.getPrice());
+                }
+                out.flush();
+                out.writeLong(checked.getChecksum().getValue());
+                out.flush();
+                file.getFD().sync();
+                out.close();
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                logger.info("Journal snapshot of " + state.size() + " symbols, " + orders.size() + " resting orders and "
+                        + settlements.size() + " undelivered settlements at sequence " + sequence);
+                pruneBefore();
+            } catch (IOException e) {
+                logger.warning("Failed to write journal snapshot: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    recordsSinceSnapshot = 0;
+                    snapshotScheduled = false;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        snapshotExecutor.shutdown();
+        synchronized (this) {
+            if (current != null) {
+                current.force();
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    logger.warning("Failed to close journal segment: " + e.getMessage());
+                }
+                current = null;
+            }
+        }
+    }
+
+    private void roll() {
+        try {
+            current.force();
+            current.close();
+            current = JournalSegment.create(directory, nextSequence, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll journal segment", e);
+        }
+    }
+
+    private void startFlusher() {
+        if (fsyncPolicy == FsyncPolicy.NEVER) {
+            return;
+        }
+        flusher = new Thread(() -> {
+            while (running) {
+                long target = writtenSequence;
+                boolean dirty;
+                synchronized (flushLock) {
+                    dirty = target > durableSequence;
+                }
+                if (dirty) {
+                    // One force covers every record appended since the last one (group commit)
+                    JournalSegment segment;
+                    synchronized (this) {
+                        segment = current;
+                    }
+                    if (segment != null) {
+                        segment.force();
+                    }
+                    synchronized (flushLock) {
+                        durableSequence = target;
+                        flushLock.notifyAll();
+                    }
+                }
+                synchronized (flushLock) {
+                    try {
+                        if (writtenSequence <= durableSequence && running) {
+                            flushLock.wait(fsyncPolicy == FsyncPolicy.ALWAYS ? 0 : fsyncIntervalMs);
+                        } else if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+                            flushLock.wait(fsyncIntervalMs);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private long loadSnapshot(Path path, StockStateSink sink, Map<Long, OrderState> orders,
+                              Map<Long, Settlement> settlements, Map<Long, Reservation> grants) throws IOException {
+        try (InputStream file = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            int magic = in.readInt();
+            if (magic != SNAPSHOT_MAGIC) {
+                throw new IOException("Bad snapshot header");
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            String[] symbols = new String[count];
+            double[] prices = new double[count];
+            int[] quantities = new int[count];
+            long[] versions = new long[count];
+            for (int i = 0; i < count; i++) {
+                symbols[i] = in.readUTF();
+                prices[i] = in.readDouble();
+                quantities[i] = in.readInt();
+                versions[i] = in.readLong();
+            }
+            int orderCount = in.readInt();
+            List<OrderState> resting = new ArrayList<>(orderCount);
+            for (int i = 0; i < orderCount; i++) {
+                String symbol = in.readUTF();
+                long orderId = in.readLong();
+                OrderSide side = in.readBoolean() ? OrderSide.BUY : OrderSide.SELL;
+                resting.add(new OrderState(symbol, orderId, side, in.readDouble(), in.readLong(), in.readUTF()));
+            }
+            int settlementCount = in.readInt();
+            List<Settlement> undelivered = new ArrayList<>(settlementCount);
+            for (int i = 0; i < settlementCount; i++) {
+                String clientId = in.readUTF();
+                long key = in.readLong();
+                String symbol = in.readUTF();
+                OrderSide side = in.readBoolean() ? OrderSide.BUY : OrderSide.SELL;
+                undelivered.add(new Settlement(clientId, key, symbol, side, in.readInt(), in.readDouble(), in.readLong(),
+                        in.readBoolean(), in.readLong(), in.readLong()).withSequence(in.readLong()));
+            }
+            int grantCount = in.readInt();
+            List<Reservation> open = new ArrayList<>(grantCount);
+            for (int i = 0; i < grantCount; i++) {
+                String clientId = in.readUTF();
+                long key = in.readLong();
+                String symbol = in.readUTF();
+                OrderSide side = in.readBoolean() ? OrderSide.BUY : OrderSide.SELL;
+                open.add(new Reservation(clientId, key, symbol, side, in.readInt(), in.readDouble()));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            // Only apply once the whole file has been validated
+            for (int i = 0; i < count; i++) {
+                sink.restore(symbols[i], prices[i], quantities[i], versions[i]);
+            }
+            for (OrderState order : resting) {
+                orders.put(order.orderId, order);
+            }
+            for (Settlement settlement : undelivered) {
+                settlements.put(settlement.getSequence(), settlement);
+            }
+            for (Reservation grant : open) {
+                grants.put(grant.getKey(), grant);
+            }
+            return sequence;
+        }
+    }
+
+    // Keeps the newest snapshots and drops segments whose records they fully cover
+    private void pruneBefore() throws IOException {
+        List<Path> snapshots = listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX, true);
+        for (int i = SNAPSHOTS_RETAINED; i < snapshots.size(); i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        Path oldestRetained = snapshots.get(Math.min(SNAPSHOTS_RETAINED, snapshots.size()) - 1);
+        String name = oldestRetained.getFileName().toString();
+        long covered = Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+
+        List<Path> segments = listFiles(JournalSegment.PREFIX, JournalSegment.SUFFIX, false);
+        long currentFirst;
+        synchronized (this) {
+            currentFirst = current != null ? current.getFirstSequence() : Long.MAX_VALUE;
+        }
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            long first = JournalSegment.parseFirstSequence(segments.get(i));
+            long nextFirst = JournalSegment.parseFirstSequence(segments.get(i + 1));
+            if (first < currentFirst && nextFirst - 1 <= covered) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    private static OrderSide sideOf(byte code) {
+        return code == 1 ? OrderSide.BUY : code == 2 ? OrderSide.SELL : null;
+    }
+
+    // File names embed zero-padded sequences, so name order is sequence order
+    private List<Path> listFiles(String prefix, String suffix, boolean newestFirst) throws IOException {
+        Comparator<Path> byName = Comparator.comparing(path -> path.getFileName().toString());
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted(newestFirst ? byName.reversed() : byName)
+                    .toList();
+        }
+    }
+
+    private static final class OrderState {
+        private final String symbol;
+        private final long orderId;
+        private final OrderSide side;
+        private final double price;
+        private final long quantity;
+        private final String clientId;
+
+        private OrderState(String symbol, long orderId, OrderSide side, double price, long quantity, String clientId) {
+            this.symbol = symbol;
+            this.orderId = orderId;
+            this.side = side;
+            this.price = price;
+            this.quantity = quantity;
+            this.clientId = clientId;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+// TradeLogger.java
+package com.example.brokerrmi.rmi_stock_exchange.logging;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-trade log lines kept off the trade path. Callers check {@link #sample()} first, so unsampled
+ * trades build no strings at all; sampled lines are queued unformatted and written by a background
+ * thread at no more than {@code tradelog.max-per-second}. A full queue drops the line rather than
+ * blocking the trade, and both drops and rate-limited lines are counted.
+ */
+@Component
+public class TradeLogger {
+    private static final Logger logger = Logger.getLogger(TradeLogger.class.getName());
+
+    private final int sampleEvery;
+    private final int maxPerSecond;
+    private final BlockingQueue<Entry> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public TradeLogger(
+            @Value("${tradelog.sample-every:1000}") int sampleEvery,
+            @Value("${tradelog.max-per-second:100}") int maxPerSecond,
+            @Value("${tradelog.queue-size:1024}") int queueSize) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.maxPerSecond = maxPerSecond;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.writer = new Thread(this::writeLoop, "trade-logger");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // True for roughly one call in sampleEvery
+    public boolean sample() {
+        return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+
+    // Formatting with String.format happens on the writer thread
+    public void log(Level level, String format, Object... args) {
+        if (!logger.isLoggable(level)) {
+            return;
+        }
+        if (!queue.offer(new Entry(level, format, args))) {
+            dropped.increment();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+    }
+
+    private void writeLoop() {
+        long windowStart = System.nanoTime();
+        int writtenInWindow = 0;
+        long suppressedInWindow = 0;
+        while (running) {
+            Entry entry;
+            try {
+                entry = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+                if (suppressedInWindow > 0) {
+                    logger.info("Rate limit suppressed " + suppressedInWindow + " trade log lines");
+                }
+                windowStart = now;
+                writtenInWindow = 0;
+                suppressedInWindow = 0;
+            }
+            if (entry == null) {
+                continue;
+            }
+            if (maxPerSecond > 0 && writtenInWindow >= maxPerSecond) {
+                suppressed.increment();
+                suppressedInWindow++;
+                continue;
+            }
+            writtenInWindow++;
+            try {
+                logger.log(entry.level, String.format(entry.format, entry.args));
+            } catch (RuntimeException e) {
+                logger.warning("Could not format trade log line '" + entry.format + "': " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Level level;
+        private final String format;
+        private final Object[] args;
+
+        private Entry(Level level, String format, Object[] args) {
+            this.level = level;
+            this.format = format;
+            this.args = args;
+        }
+    }
+}
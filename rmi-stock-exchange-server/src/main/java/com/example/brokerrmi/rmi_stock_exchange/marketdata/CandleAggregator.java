@@ -0,0 +1,233 @@
+// CandleAggregator.java
+package com.example.brokerrmi.rmi_stock_exchange.marketdata;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.CandleSeries;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OHLCV bars per symbol at each of {@code candles.intervals}, built from every trade as it runs.
+ * A symbol gets its rings on its first trade: for each interval, the last {@code candles.bars}
+ * bars in flat primitive arrays reused in place, so a trade updates one bar per interval and
+ * allocates nothing. Each bar also keeps its notional for its VWAP, and each symbol a running
+ * VWAP and volume for the current UTC day. Symbols are indexed by {@link SymbolStore} id.
+ */
+@Component
+public class CandleAggregator {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final boolean enabled;
+    private final long[] intervals;
+    private final int bars;
+    private final SymbolStore symbolStore;
+    // Grown and filled under this; a symbol's rings are guarded by themselves
+    private volatile SymbolCandles[] bySymbol = new SymbolCandles[0];
+
+    public CandleAggregator(
+            @Value("${candles.enabled:true}") boolean enabled,
+            @Value("${candles.intervals:1s,1m,5m}") String intervals,
+            @Value("${candles.bars:300}") int bars,
+            SymbolStore symbolStore) {
+        this.enabled = enabled;
+        this.intervals = Arrays.stream(intervals.split(","))
+                .map(String::trim)
+                .filter(interval -> !interval.isEmpty())
+                .mapToLong(CandleAggregator::parseInterval)
+                .toArray();
+        this.bars = Math.max(1, bars);
+        this.symbolStore = symbolStore;
+    }
+
+    // "500ms", "1s", "5m" or "1h"
+    private static long parseInterval(String interval) {
+        long millis;
+        if (interval.endsWith("ms")) {
+            millis = Long.parseLong(interval.substring(0, interval.length() - 2));
+        } else if (interval.endsWith("s")) {
+            millis = TimeUnit.SECONDS.toMillis(Long.parseLong(interval.substring(0, interval.length() - 1)));
+        } else if (interval.endsWith("m")) {
+            millis = TimeUnit.MINUTES.toMillis(Long.parseLong(interval.substring(0, interval.length() - 1)));
+        } else if (interval.endsWith("h")) {
+            millis = TimeUnit.HOURS.toMillis(Long.parseLong(interval.substring(0, interval.length() - 1)));
+        } else {
+            millis = Long.parseLong(interval);
+        }
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Candle interval must be positive: " + interval);
+        }
+        return millis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Called once per trade with the price it ran at; a trade older than a symbol's latest bar counts toward that bar
+    public void record(int symbolId, double price, int quantity, long timestampMillis) {
+        if (!enabled || symbolId < 0) {
+            return;
+        }
+        SymbolCandles candles = candlesFor(symbolId, true);
+        synchronized (candles) {
+            candles.add(timestampMillis, price, quantity);
+        }
+    }
+
+    // The latest count bars at the interval, oldest first; empty for an interval that is not kept
+    public CandleSeries latest(String symbol, long intervalMillis, int count) {
+        int interval = indexOf(intervalMillis);
+        int id = symbolStore.idOf(symbol);
+        SymbolCandles candles = enabled && interval >= 0 && id >= 0 ? candlesFor(id, false) : null;
+        if (candles == null) {
+            return CandleSeries.empty(symbol, intervalMillis);
+        }
+        synchronized (candles) {
+            int size = Math.max(0, Math.min(count, candles.counts[interval]));
+            long[] startTimes = new long[size];
+            double[] opens = new double[size];
+            double[] highs = new double[size];
+            double[] lows = new double[size];
+            double[] closes = new double[size];
+            long[] volumes = new long[size];
+            double[] vwaps = new double[size];
+            int base = interval * bars;
+            for (int i = 0; i < size; i++) {
+                int slot = base + Math.floorMod(candles.heads[interval] - (size - 1 - i), bars);
+                startTimes[i] = candles.starts[slot];
+                opens[i] = candles.opens[slot];
+                highs[i] = candles.highs[slot];
+                lows[i] = candles.lows[slot];
+                closes[i] = candles.closes[slot];
+                volumes[i] = candles.volumes[slot];
+                vwaps[i] = candles.notionals[slot] / candles.volumes[slot];
+            }
+            long today = Math.floorDiv(System.currentTimeMillis(), DAY_MILLIS);
+            boolean current = candles.day == today && candles.dayVolume > 0;
+            return new CandleSeries(symbol, intervalMillis, startTimes, opens, highs, lows, closes, volumes, vwaps,
+                    current ? candles.dayNotional / candles.dayVolume : 0.0, current ? candles.dayVolume : 0);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        if (!enabled) {
+            return snapshot;
+        }
+        int symbols = 0;
+        for (SymbolCandles candles : bySymbol) {
+            if (candles != null) {
+                symbols++;
+            }
+        }
+        snapshot.put("intervalsMs", intervals);
+        snapshot.put("bars", bars);
+        snapshot.put("symbols", symbols);
+        return snapshot;
+    }
+
+    private int indexOf(long intervalMillis) {
+        for (int i = 0; i < intervals.length; i++) {
+            if (intervals[i] == intervalMillis) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private SymbolCandles candlesFor(int id, boolean create) {
+        SymbolCandles[] current = bySymbol;
+        SymbolCandles candles = id < current.length ? current[id] : null;
+        if (candles != null) {
+            return candles;
+        }
+        synchronized (this) {
+            current = bySymbol;
+            candles = id < current.length ? current[id] : null;
+            if (candles != null || !create) {
+                return candles;
+            }
+            if (id >= current.length) {
+                current = Arrays.copyOf(current, Math.max(id + 1, Math.max(16, current.length * 2)));
+            }
+            candles = new SymbolCandles(intervals, bars);
+            current[id] = candles;
+            // Written again so lock-free readers see the new element
+            bySymbol = current;
+            return candles;
+        }
+    }
+
+    // One ring of bars per interval, flattened: interval i owns slots [i * bars, (i + 1) * bars)
+    private static final class SymbolCandles {
+        private final long[] intervals;
+        private final int bars;
+        private final long[] starts;
+        private final double[] opens;
+        private final double[] highs;
+        private final double[] lows;
+        private final double[] closes;
+        private final long[] volumes;
+        private final double[] notionals;
+        private final int[] heads;
+        private final int[] counts;
+        private long day = Long.MIN_VALUE;
+        private double dayNotional;
+        private long dayVolume;
+
+        private SymbolCandles(long[] intervals, int bars) {
+            this.intervals = intervals;
+            this.bars = bars;
+            int slots = intervals.length * bars;
+            this.starts = new long[slots];
+            this.opens = new double[slots];
+            this.highs = new double[slots];
+            this.lows = new double[slots];
+            this.closes = new double[slots];
+            this.volumes = new long[slots];
+            this.notionals = new double[slots];
+            this.heads = new int[intervals.length];
+            this.counts = new int[intervals.length];
+        }
+
+        private void add(long timestamp, double price, int quantity) {
+            for (int i = 0; i < intervals.length; i++) {
+                long start = timestamp - Math.floorMod(timestamp, intervals[i]);
+                int slot = i * bars + heads[i];
+                if (counts[i] == 0 || start > starts[slot]) {
+                    if (counts[i] > 0) {
+                        heads[i] = (heads[i] + 1) % bars;
+                        slot = i * bars + heads[i];
+                    }
+                    counts[i] = Math.min(counts[i] + 1, bars);
+                    starts[slot] = start;
+                    opens[slot] = price;
+                    highs[slot] = price;
+                    lows[slot] = price;
+                    volumes[slot] = 0;
+                    notionals[slot] = 0;
+                } else {
+                    highs[slot] = Math.max(highs[slot], price);
+                    lows[slot] = Math.min(lows[slot], price);
+                }
+                closes[slot] = price;
+                volumes[slot] += quantity;
+                notionals[slot] += price * quantity;
+            }
+            long today = Math.floorDiv(timestamp, DAY_MILLIS);
+            if (today > day) {
+                day = today;
+                dayNotional = 0;
+                dayVolume = 0;
+            }
+            dayNotional += price * quantity;
+            dayVolume += quantity;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+// MarketDataPublisher.java
+package com.example.brokerrmi.rmi_stock_exchange.marketdata;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.MarketDataUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.broker.MarketDataListener;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Pushes price and quantity changes to subscribed clients. Publishing only touches the in-memory
+ * queues of interested subscriptions; delivery happens on a small sender pool, conflated and
+ * rate limited per subscriber (see {@link Subscription}).
+ */
+@Component
+public class MarketDataPublisher {
+    private static final Logger logger = Logger.getLogger(MarketDataPublisher.class.getName());
+
+    private final long minIntervalNanos;
+    private final int maxFailures;
+    private final ScheduledExecutorService senders;
+    private final AtomicLong subscriptionIds = new AtomicLong();
+    private final Map<Long, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, CopyOnWriteArrayList<Subscription>> bySymbol = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Subscription> allSymbols = new CopyOnWriteArrayList<>();
+
+    private volatile Supplier<List<StockUpdate>> snapshotSource = Collections::emptyList;
+
+    public MarketDataPublisher(
+            @Value("${marketdata.max-batches-per-second:20}") int maxBatchesPerSecond,
+            @Value("${marketdata.max-failures:3}") int maxFailures,
+            @Value("${marketdata.sender-threads:2}") int senderThreads) {
+        this.minIntervalNanos = maxBatchesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxBatchesPerSecond : 0;
+        this.maxFailures = maxFailures;
+        AtomicInteger senderIds = new AtomicInteger();
+        this.senders = Executors.newScheduledThreadPool(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "marketdata-sender-" + senderIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setSnapshotSource(Supplier<List<StockUpdate>> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+    }
+
+    // An empty symbol list subscribes to every symbol; the first batch is a snapshot of current state
+    public long subscribe(MarketDataListener listener, Collection<String> symbols) {
+        long id = subscriptionIds.incrementAndGet();
+        Set<String> symbolSet = symbols == null ? Set.of() : Set.copyOf(symbols);
+        Subscription subscription = new Subscription(id, listener, symbolSet, senders,
+                minIntervalNanos, maxFailures, () -> unsubscribe(id));
+        subscriptions.put(id, subscription);
+        if (subscription.isAllSymbols()) {
+            allSymbols.add(subscription);
+        } else {
+            symbolSet.forEach(symbol -> bySymbol.computeIfAbsent(symbol, s -> new CopyOnWriteArrayList<>()).add(subscription));
+        }
+
+        long now = System.currentTimeMillis();
+        for (StockUpdate update : snapshotSource.get()) {
+            if (subscription.isAllSymbols() || symbolSet.contains(update.getSymbol())) {
+                subscription.offer(new MarketDataUpdate(update.getSymbol(), update.getPrice(), update.getQuantity(), now));
+            }
+        }
+        logger.info("Market data subscription " + id + " opened for "
+                + (subscription.isAllSymbols() ? "all symbols" : symbolSet));
+        return id;
+    }
+
+    public boolean unsubscribe(long subscriptionId) {
+        Subscription subscription = subscriptions.remove(subscriptionId);
+        if (subscription == null) {
+            return false;
+        }
+        subscription.cancel();
+        if (subscription.isAllSymbols()) {
+            allSymbols.remove(subscription);
+        } else {
+            subscription.getSymbols().forEach(symbol -> {
+                List<Subscription> list = bySymbol.get(symbol);
+                if (list != null) {
+                    list.remove(subscription);
+                }
+            });
+        }
+        logger.info("Market data subscription " + subscriptionId + " closed");
+        return true;
+    }
+
+    // Called on every stock change; free when nobody is subscribed
+    public void publish(String symbol, double price, int quantity) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        List<Subscription> interested = bySymbol.get(symbol);
+        if (allSymbols.isEmpty() && (interested == null || interested.isEmpty())) {
+            return;
+        }
+        MarketDataUpdate update = new MarketDataUpdate(symbol, price, quantity, System.currentTimeMillis());
+        allSymbols.forEach(subscription -> subscription.offer(update));
+        if (interested != null) {
+            interested.forEach(subscription -> subscription.offer(update));
+        }
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.values().forEach(Subscription::cancel);
+        senders.shutdownNow();
+    }
+}
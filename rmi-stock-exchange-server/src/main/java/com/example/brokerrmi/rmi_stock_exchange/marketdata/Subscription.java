@@ -0,0 +1,145 @@
+// Subscription.java
+package com.example.brokerrmi.rmi_stock_exchange.marketdata;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.MarketDataUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.broker.MarketDataListener;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * One subscriber's outbound queue. Updates are conflated per symbol while a send is pending, and
+ * sends are spaced at least {@code minIntervalNanos} apart, so a slow subscriber receives fewer,
+ * fuller batches instead of an unbounded backlog. At most one send per subscription is scheduled
+ * or running at a time, which keeps batches and their sequence numbers in order.
+ */
+class Subscription {
+    private static final Logger logger = Logger.getLogger(Subscription.class.getName());
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final long id;
+    private final MarketDataListener listener;
+    private final Set<String> symbols;
+    private final ScheduledExecutorService senders;
+    private final long minIntervalNanos;
+    private final int maxFailures;
+    private final Runnable onGiveUp;
+
+    // Guarded by this
+    private LinkedHashMap<String, MarketDataUpdate> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+    private long nextSendNanos;
+
+    // Sender thread only; the scheduled flag keeps sends from overlapping
+    private long sequence;
+    private int failures;
+    private volatile boolean active = true;
+
+    // An empty symbol set subscribes to every symbol
+    Subscription(long id, MarketDataListener listener, Set<String> symbols, ScheduledExecutorService senders,
+                 long minIntervalNanos, int maxFailures, Runnable onGiveUp) {
+        this.id = id;
+        this.listener = listener;
+        this.symbols = symbols;
+        this.senders = senders;
+        this.minIntervalNanos = minIntervalNanos;
+        this.maxFailures = maxFailures;
+        this.onGiveUp = onGiveUp;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    Set<String> getSymbols() {
+        return symbols;
+    }
+
+    boolean isAllSymbols() {
+        return symbols.isEmpty();
+    }
+
+    void cancel() {
+        active = false;
+    }
+
+    void offer(MarketDataUpdate update) {
+        long delayNanos;
+        synchronized (this) {
+            pending.put(update.getSymbol(), update);
+            if (scheduled || !active) {
+                return;
+            }
+            scheduled = true;
+            delayNanos = Math.max(0, nextSendNanos - System.nanoTime());
+        }
+        schedule(delayNanos);
+    }
+
+    private void schedule(long delayNanos) {
+        try {
+            senders.schedule(this::send, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Publisher is shutting down
+            active = false;
+        }
+    }
+
+    private void send() {
+        List<MarketDataUpdate> batch;
+        synchronized (this) {
+            if (!active) {
+                return;
+            }
+            batch = new ArrayList<>(pending.values());
+            pending = new LinkedHashMap<>();
+        }
+
+        long delayNanos = minIntervalNanos;
+        try {
+            listener.onMarketData(id, ++sequence, batch);
+            failures = 0;
+        } catch (RemoteException e) {
+            failures++;
+            if (failures >= maxFailures) {
+                logger.warning("Dropping market data subscription " + id + " after " + failures
+                        + " failed deliveries: " + e.getMessage());
+                active = false;
+                onGiveUp.run();
+                return;
+            }
+            requeue(batch);
+            delayNanos = Math.min(Math.max(minIntervalNanos, MIN_BACKOFF_NANOS) << failures, MAX_BACKOFF_NANOS);
+        }
+
+        synchronized (this) {
+            nextSendNanos = System.nanoTime() + delayNanos;
+            if (pending.isEmpty() || !active) {
+                scheduled = false;
+                return;
+            }
+        }
+        schedule(delayNanos);
+    }
+
+    // Failed updates go back in front of newer ones unless a newer update for the symbol arrived
+    private synchronized void requeue(List<MarketDataUpdate> batch) {
+        LinkedHashMap<String, MarketDataUpdate> merged = new LinkedHashMap<>();
+        for (MarketDataUpdate update : batch) {
+            merged.put(update.getSymbol(), update);
+        }
+        for (Map.Entry<String, MarketDataUpdate> entry : pending.entrySet()) {
+            merged.put(entry.getKey(), entry.getValue());
+        }
+        pending = merged;
+    }
+}
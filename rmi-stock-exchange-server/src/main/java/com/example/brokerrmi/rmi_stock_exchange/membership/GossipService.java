@@ -0,0 +1,12 @@
+// GossipService.java
+package com.example.brokerrmi.rmi_stock_exchange.membership;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Broker-to-broker membership gossip; the broker's TradingService stub implements this too, clients never use it
+public interface GossipService extends Remote {
+    // Push-pull: the receiver merges the sender's view of the cluster and answers with its own
+    List<MemberState> gossip(String senderId, List<MemberState> view) throws RemoteException;
+}
@@ -0,0 +1,34 @@
+// MemberState.java
+package com.example.brokerrmi.rmi_stock_exchange.membership;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+
+import java.io.Serializable;
+
+// One broker as seen in a gossip message
+public class MemberState implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String brokerId;
+    private final TradingService service;
+    // Start time of the broker process, so a restarted broker supersedes everything known about the old one
+    private final long incarnation;
+    // Counted up by the broker itself every heartbeat interval
+    private final long heartbeat;
+
+    public MemberState(String brokerId, TradingService service, long incarnation, long heartbeat) {
+        this.brokerId = brokerId;
+        this.service = service;
+        this.incarnation = incarnation;
+        this.heartbeat = heartbeat;
+    }
+
+    public String getBrokerId() { return brokerId; }
+    public TradingService getService() { return service; }
+    public long getIncarnation() { return incarnation; }
+    public long getHeartbeat() { return heartbeat; }
+
+    public boolean isNewerThan(long incarnation, long heartbeat) {
+        return this.incarnation > incarnation || (this.incarnation == incarnation && this.heartbeat > heartbeat);
+    }
+}
@@ -0,0 +1,13 @@
+// MembershipListener.java
+package com.example.brokerrmi.rmi_stock_exchange.membership;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+
+// Called one event at a time, in order, on the membership event thread
+public interface MembershipListener {
+    // A broker joined, came back after being declared dead, or restarted with a new stub
+    void memberUp(String brokerId, TradingService service);
+
+    // A broker was declared dead, or its old stub was replaced after a restart
+    void memberDown(String brokerId, TradingService service);
+}
@@ -0,0 +1,431 @@
+// MembershipService.java
+package com.example.brokerrmi.rmi_stock_exchange.membership;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cluster membership by gossip, with a phi-accrual failure detector per member. Every heartbeat
+ * interval this broker counts its own heartbeat up and swaps its view of the cluster with a few
+ * random members (push-pull), so brokers learn about each other from anyone they are connected
+ * to. A member whose heartbeat counter moves on is alive; one that goes quiet becomes SUSPECT
+ * once its phi passes {@code membership.phi-suspect}, and DEAD once it also passes
+ * {@code membership.phi-dead} after being suspected for {@code membership.suspect-timeout-ms}.
+ * A suspect that speaks again is simply ALIVE, so short blips change nothing. A dead member is
+ * still probed each round and comes back the moment its heartbeat moves on, and a restarted
+ * broker (new incarnation, new stub) replaces its old self. The listener hears when a member is
+ * up or down and does the mode-specific joining, catching up and leaving.
+ */
+@Component
+public class MembershipService {
+    private static final Logger logger = Logger.getLogger(MembershipService.class.getName());
+
+    public enum Status { ALIVE, SUSPECT, DEAD }
+
+    private final String brokerId;
+    private final long incarnation = System.currentTimeMillis();
+    private final long intervalMs;
+    private final long stallNanos;
+    private final int fanout;
+    private final double suspectPhi;
+    private final double deadPhi;
+    private final long suspectTimeoutNanos;
+    private final long acceptablePauseMs;
+    private final long minStdDevMs;
+    private final int windowSize;
+    // Entries are changed while holding this
+    private final Map<String, Member> members = new ConcurrentHashMap<>();
+    private final ExecutorService rpcExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService events = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "membership-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder exchanges = new LongAdder();
+    private final LongAdder exchangeFailures = new LongAdder();
+    private final LongAdder suspicions = new LongAdder();
+    private final LongAdder deaths = new LongAdder();
+    private final LongAdder rejoins = new LongAdder();
+
+    // Guarded by this
+    private long heartbeat;
+    private long lastTickNanos = System.nanoTime();
+    private volatile TradingService self;
+    private volatile MembershipListener listener;
+    private volatile boolean running;
+    private Thread ticker;
+
+    public MembershipService(
+            @Value("${broker.id:broker1}") String brokerId,
+            @Value("${membership.heartbeat-interval-ms:250}") long intervalMs,
+            @Value("${membership.fanout:2}") int fanout,
+            @Value("${membership.phi-suspect:5}") double suspectPhi,
+            @Value("${membership.phi-dead:8}") double deadPhi,
+            @Value("${membership.suspect-timeout-ms:3000}") long suspectTimeoutMs,
+            @Value("${membership.acceptable-pause-ms:500}") long acceptablePauseMs,
+            @Value("${membership.min-std-dev-ms:100}") long minStdDevMs,
+            @Value("${membership.window-size:100}") int windowSize) {
+        this.brokerId = brokerId;
+        this.intervalMs = Math.max(1, intervalMs);
+        this.fanout = Math.max(1, fanout);
+        this.suspectPhi = suspectPhi;
+        this.deadPhi = Math.max(suspectPhi, deadPhi);
+        this.suspectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(suspectTimeoutMs);
+        this.acceptablePauseMs = acceptablePauseMs;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(2 * this.intervalMs + acceptablePauseMs);
+        this.minStdDevMs = minStdDevMs;
+        this.windowSize = windowSize;
+    }
+
+    public synchronized void start(TradingService self, MembershipListener listener) {
+        if (running) {
+            return;
+        }
+        this.self = self;
+        this.listener = listener;
+        running = true;
+        ticker = new Thread(this::tickLoop, "membership-ticker");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * A broker connected to this one. It is taken as alive straight away and swaps views with this
+     * broker at once, which is how it learns about the rest of the cluster.
+     */
+    public void join(String peerId, TradingService peer) {
+        if (brokerId.equals(peerId) || peer == null) {
+            return;
+        }
+        List<Runnable> fired = new ArrayList<>();
+        Member member;
+        synchronized (this) {
+            long now = System.nanoTime();
+            member = members.get(peerId);
+            if (member == null) {
+                member = new Member(peerId, peer, 0, 0, newDetector(now));
+                members.put(peerId, member);
+                logger.info("Broker " + brokerId + ": " + peerId + " joined");
+                fired.add(up(member));
+            } else if (!peer.equals(member.service)) {
+                // The old incarnation's state is out of date from here on, wherever it is gossiped from
+                replace(member, peer, member.incarnation + 1, 0, now, fired);
+            } else if (member.status == Status.DEAD) {
+                revive(member, now, fired);
+            }
+        }
+        dispatch(fired);
+        exchange(member);
+    }
+
+    // Incoming half of a push-pull round
+    public List<MemberState> gossip(String senderId, List<MemberState> view) {
+        merge(view);
+        return view();
+    }
+
+    /**
+     * A replicator or a forwarded request gave up on the peer. It is declared dead at once (if
+     * the stub is still its current one) and comes back as soon as its heartbeat moves on again.
+     */
+    public void reportUnreachable(String peerId, TradingService peer) {
+        List<Runnable> fired = new ArrayList<>();
+        synchronized (this) {
+            Member member = members.get(peerId);
+            if (member != null && member.status != Status.DEAD && member.service.equals(peer)) {
+                kill(member, "unreachable", fired);
+            }
+        }
+        dispatch(fired);
+    }
+
+    public Status status(String peerId) {
+        Member member = members.get(peerId);
+        return member == null ? null : member.status;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        Map<String, Object> view = new TreeMap<>();
+        synchronized (this) {
+            snapshot.put("incarnation", incarnation);
+            snapshot.put("heartbeat", heartbeat);
+            for (Member member : members.values()) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("status", member.status.name());
+                // Capped so an infinite phi still serializes as a number
+                entry.put("phi", Math.round(Math.min(member.detector.phi(now), 999.0) * 100) / 100.0);
+                entry.put("silentMs", member.detector.millisSinceLastHeartbeat(now));
+                entry.put("incarnation", member.incarnation);
+                entry.put("heartbeat", member.heartbeat);
+                view.put(member.id, entry);
+            }
+        }
+        snapshot.put("members", view);
+        snapshot.put("exchanges", exchanges.sum());
+        snapshot.put("exchangeFailures", exchangeFailures.sum());
+        snapshot.put("suspicions", suspicions.sum());
+        snapshot.put("deaths", deaths.sum());
+        snapshot.put("rejoins", rejoins.sum());
+        return snapshot;
+    }
+
+    private void tickLoop() {
+        while (running) {
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            tick(System.nanoTime());
+        }
+    }
+
+    private void tick(long now) {
+        List<Runnable> fired = new ArrayList<>();
+        List<Member> live = new ArrayList<>();
+        List<Member> dead = new ArrayList<>();
+        synchronized (this) {
+            heartbeat++;
+            if (stalled(now)) {
+                // This broker was paused (GC, a stopped process, a starved host), not its members
+                logger.warning("Broker " + brokerId + ": membership ticker stalled for "
+                        + TimeUnit.NANOSECONDS.toMillis(now - lastTickNanos) + " ms, restarting failure detection");
+                members.values().forEach(member -> member.detector.reset(now));
+            }
+            lastTickNanos = now;
+            for (Member member : members.values()) {
+                double phi = member.detector.phi(now);
+                if (member.status == Status.ALIVE && phi >= suspectPhi) {
+                    member.status = Status.SUSPECT;
+                    member.suspectedSinceNanos = now;
+                    suspicions.increment();
+                    logger.warning("Broker " + brokerId + ": suspecting " + member.id + " (phi "
+                            + String.format("%.1f", phi) + ", silent for " + member.detector.millisSinceLastHeartbeat(now) + " ms)");
+                } else if (member.status == Status.SUSPECT && phi < suspectPhi) {
+                    member.status = Status.ALIVE;
+                    logger.info("Broker " + brokerId + ": " + member.id + " recovered");
+                } else if (member.status == Status.SUSPECT && phi >= deadPhi
+                        && now - member.suspectedSinceNanos >= suspectTimeoutNanos) {
+                    kill(member, "silent for " + member.detector.millisSinceLastHeartbeat(now) + " ms", fired);
+                }
+                (member.status == Status.DEAD ? dead : live).add(member);
+            }
+        }
+        dispatch(fired);
+
+        Collections.shuffle(live, ThreadLocalRandom.current());
+        for (int i = 0; i < Math.min(fanout, live.size()); i++) {
+            exchange(live.get(i));
+        }
+        // Dead members are probed too, so one that only lost this broker's link is found again
+        if (!dead.isEmpty()) {
+            exchange(dead.get(ThreadLocalRandom.current().nextInt(dead.size())));
+        }
+    }
+
+    // Asynchronous; at most one exchange per member is in flight, so an unresponsive member holds no more than one thread
+    private void exchange(Member member) {
+        TradingService target = member.service;
+        if (!running || !(target instanceof GossipService gossip) || !member.exchanging.compareAndSet(false, true)) {
+            return;
+        }
+        List<MemberState> view = view();
+        try {
+            rpcExecutor.execute(() -> {
+                try {
+                    merge(gossip.gossip(brokerId, view));
+                    exchanges.increment();
+                } catch (RemoteException e) {
+                    exchangeFailures.increment();
+                } finally {
+                    member.exchanging.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Rejected during shutdown
+            member.exchanging.set(false);
+        }
+    }
+
+    // This broker and every member not declared dead
+    private synchronized List<MemberState> view() {
+        List<MemberState> view = new ArrayList<>(members.size() + 1);
+        view.add(new MemberState(brokerId, self, incarnation, heartbeat));
+        for (Member member : members.values()) {
+            if (member.status != Status.DEAD) {
+                view.add(new MemberState(member.id, member.service, member.incarnation, member.heartbeat));
+            }
+        }
+        return view;
+    }
+
+    private void merge(List<MemberState> view) {
+        List<Runnable> fired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (MemberState state : view) {
+                merge(state, now, fired);
+            }
+        }
+        dispatch(fired);
+    }
+
+    // Caller holds this
+    private void merge(MemberState state, long now, List<Runnable> fired) {
+        String id = state.getBrokerId();
+        if (brokerId.equals(id) || state.getService() == null) {
+            return;
+        }
+        Member member = members.get(id);
+        if (member == null) {
+            member = new Member(id, state.getService(), state.getIncarnation(), state.getHeartbeat(), newDetector(now));
+            members.put(id, member);
+            logger.info("Broker " + brokerId + ": learned about " + id + " through gossip");
+            fired.add(up(member));
+            return;
+        }
+        if (!state.isNewerThan(member.incarnation, member.heartbeat)) {
+            return;
+        }
+        if (!state.getService().equals(member.service)) {
+            replace(member, state.getService(), state.getIncarnation(), state.getHeartbeat(), now, fired);
+            return;
+        }
+        member.incarnation = state.getIncarnation();
+        member.heartbeat = state.getHeartbeat();
+        if (member.status == Status.DEAD) {
+            revive(member, now, fired);
+            return;
+        }
+        if (stalled(now)) {
+            member.detector.reset(now);
+        } else {
+            member.detector.heartbeat(now);
+        }
+        if (member.status == Status.SUSPECT) {
+            member.status = Status.ALIVE;
+            logger.info("Broker " + brokerId + ": " + id + " recovered");
+        }
+    }
+
+    // Caller holds this. A gap that includes this broker's own stall is not a sample of the member's heartbeat rate
+    private boolean stalled(long now) {
+        return now - lastTickNanos > stallNanos;
+    }
+
+    // Caller holds this: a restarted member, whose old stub is gone with the old process
+    private void replace(Member member, TradingService service, long incarnation, long heartbeat, long now, List<Runnable> fired) {
+        if (member.status != Status.DEAD) {
+            fired.add(down(member.id, member.service));
+        }
+        member.service = service;
+        member.incarnation = incarnation;
+        member.heartbeat = heartbeat;
+        member.status = Status.ALIVE;
+        member.detector = newDetector(now);
+        rejoins.increment();
+        logger.info("Broker " + brokerId + ": " + member.id + " restarted, rejoining");
+        fired.add(up(member));
+    }
+
+    // Caller holds this; the silence while dead says nothing about the member's heartbeat rate, so learning starts over
+    private void revive(Member member, long now, List<Runnable> fired) {
+        member.status = Status.ALIVE;
+        member.detector = newDetector(now);
+        rejoins.increment();
+        logger.info("Broker " + brokerId + ": " + member.id + " is back, rejoining");
+        fired.add(up(member));
+    }
+
+    // Caller holds this
+    private void kill(Member member, String reason, List<Runnable> fired) {
+        member.status = Status.DEAD;
+        deaths.increment();
+        logger.warning("Broker " + brokerId + ": declaring " + member.id + " dead (" + reason + ")");
+        fired.add(down(member.id, member.service));
+    }
+
+    private Runnable up(Member member) {
+        String id = member.id;
+        TradingService service = member.service;
+        return () -> listener.memberUp(id, service);
+    }
+
+    private Runnable down(String id, TradingService service) {
+        return () -> listener.memberDown(id, service);
+    }
+
+    // Outside the lock: listeners make remote calls and report back into this service
+    private void dispatch(List<Runnable> fired) {
+        for (Runnable event : fired) {
+            try {
+                events.execute(() -> {
+                    try {
+                        event.run();
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Broker " + brokerId + ": membership listener failed", e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Rejected during shutdown
+                return;
+            }
+        }
+    }
+
+    private PhiAccrualDetector newDetector(long now) {
+        return new PhiAccrualDetector(windowSize, intervalMs, acceptablePauseMs, minStdDevMs, now);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+        rpcExecutor.shutdownNow();
+        events.shutdownNow();
+    }
+
+    private static final class Member {
+        final String id;
+        final AtomicBoolean exchanging = new AtomicBoolean();
+        // Guarded by the service
+        volatile TradingService service;
+        long incarnation;
+        long heartbeat;
+        volatile Status status = Status.ALIVE;
+        long suspectedSinceNanos;
+        PhiAccrualDetector detector;
+
+        Member(String id, TradingService service, long incarnation, long heartbeat, PhiAccrualDetector detector) {
+            this.id = id;
+            this.service = service;
+            this.incarnation = incarnation;
+            this.heartbeat = heartbeat;
+            this.detector = detector;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+// PhiAccrualDetector.java
+package com.example.brokerrmi.rmi_stock_exchange.membership;
+
+/**
+ * Phi-accrual failure detector for one member (Hayashibara et al.). Keeps a sliding window of
+ * heartbeat inter-arrival times and reports how unlikely the current silence is under a normal
+ * distribution fitted to them: phi = -log10(P(silence this long)). The caller picks thresholds
+ * rather than a fixed timeout, so a member whose heartbeats arrive irregularly is given more slack
+ * than one whose heartbeats are steady. Not thread-safe; {@link MembershipService} guards it.
+ */
+final class PhiAccrualDetector {
+    private final long[] intervals;
+    private final double acceptablePauseMs;
+    private final double minStdDevMs;
+    private int count;
+    private int next;
+    private double sum;
+    private double sumOfSquares;
+    private long lastArrivalNanos;
+
+    // Seeded with two samples around the expected interval so a new member starts with a sane estimate
+    PhiAccrualDetector(int windowSize, long expectedIntervalMs, long acceptablePauseMs, long minStdDevMs, long nowNanos) {
+        this.intervals = new long[Math.max(2, windowSize)];
+        this.acceptablePauseMs = acceptablePauseMs;
+        this.minStdDevMs = Math.max(1, minStdDevMs);
+        this.lastArrivalNanos = nowNanos;
+        long spread = expectedIntervalMs / 4;
+        add(expectedIntervalMs - spread);
+        add(expectedIntervalMs + spread);
+    }
+
+    void heartbeat(long nowNanos) {
+        add((nowNanos - lastArrivalNanos) / 1_000_000);
+        lastArrivalNanos = nowNanos;
+    }
+
+    // Restarts the silence from now, keeping the learned intervals
+    void reset(long nowNanos) {
+        lastArrivalNanos = nowNanos;
+    }
+
+    double phi(long nowNanos) {
+        double elapsedMs = (nowNanos - lastArrivalNanos) / 1e6;
+        double mean = sum / count;
+        double stdDev = Math.max(Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean)), minStdDevMs);
+        // Logistic approximation of the normal CDF, as used by Akka and Cassandra
+        double y = (elapsedMs - mean - acceptablePauseMs) / stdDev;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        return elapsedMs > mean + acceptablePauseMs
+                ? -Math.log10(e / (1.0 + e))
+                : -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    long millisSinceLastHeartbeat(long nowNanos) {
+        return (nowNanos - lastArrivalNanos) / 1_000_000;
+    }
+
+    private void add(long intervalMs) {
+        if (count == intervals.length) {
+            long evicted = intervals[next];
+            sum -= evicted;
+            sumOfSquares -= (double) evicted * evicted;
+        } else {
+            count++;
+        }
+        intervals[next] = intervalMs;
+        next = (next + 1) % intervals.length;
+        sum += intervalMs;
+        sumOfSquares += (double) intervalMs * intervalMs;
+    }
+}
@@ -0,0 +1,122 @@
+// LatencyHistogram.java
+package com.example.brokerrmi.rmi_stock_exchange.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets: every power of two is split into
+ * 32 linear sub-buckets, so any recorded value is reported within about 3% of its true value from
+ * one nanosecond up to days. Recording is a bucket index computation and a few atomic adds; it never
+ * allocates and never blocks, so it is safe on the trade path.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below 2 * SUB_BUCKETS get a bucket each; every higher power of two gets SUB_BUCKETS
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long count = totalCount.get();
+        return count == 0 ? 0.0 : (double) totalNanos.get() / count;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100); concurrent records may be partly seen
+    public long percentileNanos(double percentile) {
+        long[] snapshot = snapshot();
+        return percentileNanos(snapshot, sum(snapshot), percentile);
+    }
+
+    // Count, mean, max and the usual percentiles in microseconds, read from one pass over the buckets
+    public Map<String, Object> summary() {
+        long[] snapshot = snapshot();
+        long count = sum(snapshot);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        summary.put("meanMicros", round(getMeanNanos() / 1000.0));
+        summary.put("p50Micros", round(percentileNanos(snapshot, count, 50.0) / 1000.0));
+        summary.put("p90Micros", round(percentileNanos(snapshot, count, 90.0) / 1000.0));
+        summary.put("p99Micros", round(percentileNanos(snapshot, count, 99.0) / 1000.0));
+        summary.put("p999Micros", round(percentileNanos(snapshot, count, 99.9) / 1000.0));
+        summary.put("maxMicros", round(maxNanos.get() / 1000.0));
+        return summary;
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    private static long sum(long[] snapshot) {
+        long sum = 0;
+        for (long count : snapshot) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    private long percentileNanos(long[] snapshot, long count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10.0) / 10.0;
+    }
+}
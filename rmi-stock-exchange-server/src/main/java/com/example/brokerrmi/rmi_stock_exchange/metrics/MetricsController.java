@@ -0,0 +1,110 @@
+// MetricsController.java
+package com.example.brokerrmi.rmi_stock_exchange.metrics;
+
+import com.example.brokerrmi.rmi_stock_exchange.account.AccountLedger;
+import com.example.brokerrmi.rmi_stock_exchange.account.Allowances;
+import com.example.brokerrmi.rmi_stock_exchange.admission.AdmissionController;
+import com.example.brokerrmi.rmi_stock_exchange.consensus.RaftNode;
+import com.example.brokerrmi.rmi_stock_exchange.dedup.DedupWindow;
+import com.example.brokerrmi.rmi_stock_exchange.history.TradeHistory;
+import com.example.brokerrmi.rmi_stock_exchange.logging.TradeLogger;
+import com.example.brokerrmi.rmi_stock_exchange.marketdata.CandleAggregator;
+import com.example.brokerrmi.rmi_stock_exchange.marketdata.MarketDataPublisher;
+import com.example.brokerrmi.rmi_stock_exchange.membership.MembershipService;
+import com.example.brokerrmi.rmi_stock_exchange.partition.PartitionManager;
+import com.example.brokerrmi.rmi_stock_exchange.replication.ReplicationPipeline;
+import com.example.brokerrmi.rmi_stock_exchange.replication.SettlementOutbox;
+import com.example.brokerrmi.rmi_stock_exchange.store.PriceSnapshotPublisher;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Serves the broker's metrics as JSON on the embedded web server (server.port)
+@RestController
+public class MetricsController {
+    private final String brokerId;
+    private final TradingMetrics tradingMetrics;
+    private final TradeLogger tradeLogger;
+    private final ReplicationPipeline replicationPipeline;
+    private final MarketDataPublisher marketDataPublisher;
+    private final SymbolStore symbolStore;
+    private final AdmissionController admissionController;
+    private final PriceSnapshotPublisher priceSnapshots;
+    private final RaftNode raftNode;
+    private final PartitionManager partitions;
+    private final MembershipService membership;
+    private final DedupWindow dedup;
+    private final AccountLedger accounts;
+    private final Allowances allowances;
+    private final SettlementOutbox settlementOutbox;
+    private final TradeHistory history;
+    private final CandleAggregator candles;
+
+    public MetricsController(
+            @Value("${broker.id:broker1}") String brokerId,
+            TradingMetrics tradingMetrics,
+            TradeLogger tradeLogger,
+            ReplicationPipeline replicationPipeline,
+            MarketDataPublisher marketDataPublisher,
+            SymbolStore symbolStore,
+            AdmissionController admissionController,
+            PriceSnapshotPublisher priceSnapshots,
+            RaftNode raftNode,
+            PartitionManager partitions,
+            MembershipService membership,
+            DedupWindow dedup,
+            AccountLedger accounts,
+            Allowances allowances,
+            SettlementOutbox settlementOutbox,
+            TradeHistory history,
+            CandleAggregator candles) {
+        this.brokerId = brokerId;
+        this.tradingMetrics = tradingMetrics;
+        this.tradeLogger = tradeLogger;
+        this.replicationPipeline = replicationPipeline;
+        this.marketDataPublisher = marketDataPublisher;
+        this.symbolStore = symbolStore;
+        this.admissionController = admissionController;
+        this.priceSnapshots = priceSnapshots;
+        this.raftNode = raftNode;
+        this.partitions = partitions;
+        this.membership = membership;
+        this.dedup = dedup;
+        this.accounts = accounts;
+        this.allowances = allowances;
+        this.settlementOutbox = settlementOutbox;
+        this.history = history;
+        this.candles = candles;
+    }
+
+    @GetMapping("/metrics")
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("brokerId", brokerId);
+        metrics.put("symbols", symbolStore.size());
+        metrics.put("priceSnapshotVersion", priceSnapshots.current().getVersion());
+        metrics.put("marketDataSubscriptions", marketDataPublisher.getSubscriptionCount());
+        metrics.put("replicationPending", replicationPipeline.getPendingCounts());
+        metrics.put("consensus", raftNode.snapshot());
+        metrics.put("partitions", partitions.snapshot());
+        metrics.put("membership", membership.snapshot());
+        metrics.put("dedup", dedup.snapshot());
+        metrics.put("accounts", accounts.snapshot());
+        metrics.put("allowances", allowances.snapshot());
+        metrics.put("settlements", settlementOutbox.snapshot());
+        metrics.put("history", history.snapshot());
+        metrics.put("candles", candles.snapshot());
+        metrics.putAll(tradingMetrics.snapshot());
+        metrics.put("admission", admissionController.snapshot());
+
+        Map<String, Object> tradeLog = new LinkedHashMap<>();
+        tradeLog.put("dropped", tradeLogger.getDroppedCount());
+        tradeLog.put("rateLimited", tradeLogger.getSuppressedCount());
+        metrics.put("tradeLog", tradeLog);
+        return metrics;
+    }
+}
@@ -0,0 +1,22 @@
+// Operation.java
+package com.example.brokerrmi.rmi_stock_exchange.metrics;
+
+// TradingService operations with their own latency histogram
+public enum Operation {
+    BUY_STOCK,
+    SELL_STOCK,
+    EXECUTE_TRADES,
+    GET_PRICE,
+    GET_ALL_STOCKS,
+    GET_PRICES,
+    SUBMIT_ORDER,
+    CANCEL_ORDER,
+    APPLY_STOCK_UPDATES,
+    GET_SYNC_DIGEST,
+    GET_STOCK_UPDATES,
+    CATCH_UP,
+    APPEND_ENTRIES,
+    INSTALL_SNAPSHOT,
+    // The account check of a trade or order for a client homed on another broker, within BUY_STOCK and the rest
+    RISK_CHECK
+}
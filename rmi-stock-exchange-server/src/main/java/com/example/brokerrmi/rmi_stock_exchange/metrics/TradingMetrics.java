@@ -0,0 +1,97 @@
+// TradingMetrics.java
+package com.example.brokerrmi.rmi_stock_exchange.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counters for every TradingService operation and for replication to each
+ * peer. All recording methods are lock-free and allocation-free once a peer has been seen, so they
+ * can be called on every trade; {@link #snapshot()} does the aggregation when metrics are read.
+ */
+@Component
+public class TradingMetrics {
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] failures = new LongAdder[OPERATIONS.length];
+    private final LongAdder tradesExecuted = new LongAdder();
+    private final LongAdder tradesRejected = new LongAdder();
+    private final Map<String, PeerStats> replication = new ConcurrentHashMap<>();
+
+    public TradingMetrics() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    // Records the time since startNanos, taken from System.nanoTime() when the operation began
+    public void record(Operation operation, long startNanos) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public void recordFailure(Operation operation) {
+        failures[operation.ordinal()].increment();
+    }
+
+    public void recordTrade(boolean executed) {
+        (executed ? tradesExecuted : tradesRejected).increment();
+    }
+
+    // One replication call to a peer: a batch of live updates or a chunk of a snapshot catch-up
+    public void recordReplication(String peerId, int updates, long nanos, boolean success) {
+        PeerStats stats = replication.get(peerId);
+        if (stats == null) {
+            stats = replication.computeIfAbsent(peerId, id -> new PeerStats());
+        }
+        if (success) {
+            stats.latency.record(nanos);
+            stats.updates.add(updates);
+        } else {
+            stats.failures.increment();
+        }
+    }
+
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            Map<String, Object> summary = latencies[operation.ordinal()].summary();
+            summary.put("failures", failures[operation.ordinal()].sum());
+            operations.put(operation.name(), summary);
+        }
+
+        Map<String, Object> trades = new LinkedHashMap<>();
+        trades.put("executed", tradesExecuted.sum());
+        trades.put("rejected", tradesRejected.sum());
+
+        Map<String, Object> peers = new TreeMap<>();
+        replication.forEach((peerId, stats) -> {
+            Map<String, Object> summary = stats.latency.summary();
+            summary.put("updates", stats.updates.sum());
+            summary.put("failures", stats.failures.sum());
+            peers.put(peerId, summary);
+        });
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("operations", operations);
+        snapshot.put("trades", trades);
+        snapshot.put("replication", peers);
+        return snapshot;
+    }
+
+    private static final class PeerStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder updates = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+    }
+}
@@ -0,0 +1,163 @@
+// PartitionManager.java
+package com.example.brokerrmi.rmi_stock_exchange.partition;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.PartitionMap;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Membership and symbol ownership for {@code replication.mode=partitioned}. The members are this
+ * broker and every peer that registered with it; each change rebuilds the {@link PartitionMap}
+ * and hands the old and new maps to the rebalance listener, which moves symbols to the brokers
+ * that now own them. Versioned mode keeps the same ring only to give every client one home broker,
+ * the primary its id would have if partitioned, where its account lives. Symbols have homes in
+ * partitioned mode, their primaries, and in versioned mode only with {@code partition.symbol-homes}.
+ */
+@Component
+public class PartitionManager {
+    private static final Logger logger = Logger.getLogger(PartitionManager.class.getName());
+
+    private final boolean enabled;
+    private final boolean clientHomes;
+    private final boolean symbolHomes;
+    private final String brokerId;
+    private final int replicas;
+    private final int virtualNodes;
+    private final Map<String, TradingService> members = new ConcurrentHashMap<>();
+    private final LongAdder forwarded = new LongAdder();
+
+    private volatile PartitionMap map;
+    private volatile BiConsumer<PartitionMap, PartitionMap> rebalanceListener = (before, after) -> { };
+
+    public PartitionManager(
+            @Value("${replication.mode:versioned}") String mode,
+            @Value("${broker.id:broker1}") String brokerId,
+            @Value("${partition.replicas:2}") int replicas,
+            @Value("${partition.virtual-nodes:128}") int virtualNodes,
+            @Value("${partition.symbol-homes:false}") boolean symbolHomes) {
+        this.enabled = "partitioned".equalsIgnoreCase(mode);
+        // Consensus mode runs everything on the leader instead
+        this.clientHomes = !"consensus".equalsIgnoreCase(mode);
+        this.symbolHomes = enabled || clientHomes && symbolHomes;
+        this.brokerId = brokerId;
+        this.replicas = Math.max(1, replicas);
+        this.virtualNodes = Math.max(1, virtualNodes);
+        this.map = new PartitionMap(0, List.of(brokerId), this.replicas, this.virtualNodes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public PartitionMap current() {
+        return map;
+    }
+
+    // Called with the map before and after each membership change, while further changes wait
+    public void setRebalanceListener(BiConsumer<PartitionMap, PartitionMap> rebalanceListener) {
+        this.rebalanceListener = rebalanceListener;
+    }
+
+    public TradingService member(String peerId) {
+        return members.get(peerId);
+    }
+
+    // Peers only, this broker is not included
+    public Map<String, TradingService> getMembers() {
+        return Map.copyOf(members);
+    }
+
+    // A peer that registers again with a new stub (after a restart) keeps its place in the map
+    public synchronized void addMember(String peerId, TradingService peer) {
+        if (members.put(peerId, peer) == null) {
+            rebuild("joined", peerId);
+        }
+    }
+
+    // Only removes the peer if it has not registered again since the stub was handed out
+    public synchronized void removeMember(String peerId, TradingService peer) {
+        if (members.remove(peerId, peer)) {
+            rebuild("left", peerId);
+        }
+    }
+
+    // Null when this broker is the client's home, and always in consensus mode
+    public String clientHomePeer(String clientId) {
+        return clientHomes ? primaryPeer(clientId) : null;
+    }
+
+    // Null when this broker is the symbol's home, and always when symbols have no homes
+    public String symbolHomePeer(String symbol) {
+        return symbolHomes ? primaryPeer(symbol) : null;
+    }
+
+    // True if a symbol's trades, order book, history and bars are kept on its home alone
+    public boolean hasSymbolHomes() {
+        return symbolHomes;
+    }
+
+    // Null when this broker is the symbol's primary
+    public String primaryPeer(String symbol) {
+        String primary = map.primary(symbol);
+        return brokerId.equals(primary) ? null : primary;
+    }
+
+    // True if this broker is the symbol's primary or one of its replicas
+    public boolean holds(String symbol) {
+        return map.isOwner(brokerId, symbol);
+    }
+
+    // The symbol's other owners, which receive this broker's updates to it
+    public List<String> replicaPeers(String symbol) {
+        List<String> owners = map.owners(symbol);
+        List<String> peers = new ArrayList<>(owners.size());
+        for (String owner : owners) {
+            if (!owner.equals(brokerId)) {
+                peers.add(owner);
+            }
+        }
+        return peers;
+    }
+
+    public void recordForward() {
+        forwarded.increment();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        if (!clientHomes) {
+            return snapshot;
+        }
+        snapshot.put("symbolHomes", symbolHomes);
+        PartitionMap current = map;
+        snapshot.put("epoch", current.getEpoch());
+        snapshot.put("members", current.getBrokerIds());
+        snapshot.put("replicas", current.getReplicas());
+        snapshot.put("virtualNodes", virtualNodes);
+        snapshot.put("forwarded", forwarded.sum());
+        return snapshot;
+    }
+
+    // Caller holds this
+    private void rebuild(String change, String peerId) {
+        List<String> ids = new ArrayList<>(members.keySet());
+        ids.add(brokerId);
+        PartitionMap before = map;
+        PartitionMap after = new PartitionMap(before.getEpoch() + 1, ids, replicas, virtualNodes);
+        map = after;
+        logger.info("Broker " + brokerId + ": " + peerId + " " + change + ", partition map epoch " + after.getEpoch()
+                + " over " + after.getBrokerIds() + " with " + after.getReplicas() + " replicas");
+        rebalanceListener.accept(before, after);
+    }
+}
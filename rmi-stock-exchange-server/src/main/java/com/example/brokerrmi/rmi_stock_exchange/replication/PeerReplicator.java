@@ -0,0 +1,264 @@
+// PeerReplicator.java
+package com.example.brokerrmi.rmi_stock_exchange.replication;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountState;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeOutcome;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Ships coalesced stock updates to a single peer broker on its own sender thread.
+ * Only the latest update per symbol is kept while the peer is busy; if the backlog
+ * grows past {@code maxPending} symbols the queue is dropped and the peer is caught
+ * up from a full snapshot instead. Outcomes of keyed trades queue separately, in order, and are
+ * sent ahead of the updates; past {@code maxPending} the oldest are dropped, since they only
+ * save a retry from running twice. Accounts handed over to the peer as their clients' new home
+ * queue the same way but are never dropped. Settlements have their own outbox.
+ */
+class PeerReplicator implements Runnable {
+    private static final Logger logger = Logger.getLogger(PeerReplicator.class.getName());
+
+    private final String peerId;
+    private final TradingService peer;
+    private final String sourceBrokerId;
+    private final Supplier<List<StockUpdate>> snapshotSource;
+    private final int batchSize;
+    private final int maxPending;
+    private final long retryBackoffMs;
+    private final int maxFailures;
+    private final Runnable onGiveUp;
+    private final ReplicationObserver observer;
+
+    // Guarded by this
+    private final LinkedHashMap<String, StockUpdate> pending = new LinkedHashMap<>();
+    private final ArrayDeque<TradeOutcome> outcomes = new ArrayDeque<>();
+    private final ArrayDeque<AccountState> accounts = new ArrayDeque<>();
+    private boolean resyncRequired;
+    private volatile boolean running = true;
+
+    private Thread thread;
+
+    PeerReplicator(String peerId, TradingService peer, String sourceBrokerId,
+                   Supplier<List<StockUpdate>> snapshotSource, int batchSize, int maxPending,
+                   long retryBackoffMs, int maxFailures, Runnable onGiveUp, ReplicationObserver observer) {
+        this.peerId = peerId;
+        this.peer = peer;
+        this.sourceBrokerId = sourceBrokerId;
+        this.snapshotSource = snapshotSource;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxFailures = maxFailures;
+        this.onGiveUp = onGiveUp;
+        this.observer = observer;
+    }
+
+    void start() {
+        thread = new Thread(this, "replicator-" + peerId);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    String getPeerId() {
+        return peerId;
+    }
+
+    TradingService getPeer() {
+        return peer;
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    synchronized void enqueue(StockUpdate update) {
+        if (resyncRequired) {
+            // The snapshot taken at resync time will include this update
+            return;
+        }
+        pending.put(update.getSymbol(), update);
+        if (pending.size() > maxPending) {
+            logger.warning("Peer " + peerId + " is lagging (" + pending.size()
+                    + " pending symbols), switching to snapshot catch-up");
+            pending.clear();
+            resyncRequired = true;
+        }
+        notifyAll();
+    }
+
+    synchronized void enqueueOutcome(TradeOutcome outcome) {
+        if (outcomes.size() >= maxPending) {
+            outcomes.pollFirst();
+        }
+        outcomes.addLast(outcome);
+        notifyAll();
+    }
+
+    synchronized void enqueueAccounts(List<AccountState> states) {
+        accounts.addAll(states);
+        notifyAll();
+    }
+
+    synchronized void requestResync() {
+        pending.clear();
+        resyncRequired = true;
+        notifyAll();
+    }
+
+    @Override
+    public void run() {
+        int failures = 0;
+        while (running) {
+            List<StockUpdate> batch;
+            List<TradeOutcome> outcomeBatch;
+            List<AccountState> accountBatch;
+            boolean resync;
+            try {
+                synchronized (this) {
+                    while (running && pending.isEmpty() && outcomes.isEmpty() && accounts.isEmpty()
+                            && !resyncRequired) {
+                        wait();
+                    }
+                    resync = resyncRequired;
+                    resyncRequired = false;
+                    batch = resync ? null : drain();
+                    outcomeBatch = drain(outcomes);
+                    accountBatch = drain(accounts);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!running) {
+                return;
+            }
+
+            try {
+                if (!outcomeBatch.isEmpty()) {
+                    peer.applyTradeOutcomes(outcomeBatch, sourceBrokerId);
+                    outcomeBatch = null;
+                }
+                if (!accountBatch.isEmpty()) {
+                    peer.adoptAccounts(accountBatch, sourceBrokerId);
+                    accountBatch = null;
+                }
+                if (resync) {
+                    sendSnapshot();
+                } else if (!batch.isEmpty()) {
+                    send(batch);
+                }
+                failures = 0;
+            } catch (RemoteException e) {
+                failures++;
+                logger.warning("Failed to replicate to broker " + peerId + " (attempt " + failures
+                        + "): " + e.getMessage());
+                if (outcomeBatch != null) {
+                    requeueOutcomes(outcomeBatch);
+                }
+                if (accountBatch != null) {
+                    requeue(accounts, accountBatch);
+                }
+                if (resync) {
+                    requestResync();
+                } else {
+                    requeue(batch);
+                }
+                if (failures >= maxFailures) {
+                    logger.warning("Giving up on broker " + peerId + " after " + failures + " failures");
+                    running = false;
+                    onGiveUp.run();
+                    return;
+                }
+                try {
+                    Thread.sleep(Math.min(retryBackoffMs << Math.min(failures - 1, 6), 10_000L));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<StockUpdate> drain() {
+        List<StockUpdate> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<StockUpdate> it = pending.values().iterator();
+        while (it.hasNext() && batch.size() < batchSize) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+
+    private <T> List<T> drain(ArrayDeque<T> queue) {
+        List<T> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+        while (!queue.isEmpty() && batch.size() < batchSize) {
+            batch.add(queue.pollFirst());
+        }
+        return batch;
+    }
+
+    private synchronized <T> void requeue(ArrayDeque<T> queue, List<T> batch) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            queue.addFirst(batch.get(i));
+        }
+    }
+
+    private synchronized void requeueOutcomes(List<TradeOutcome> batch) {
+        for (int i = batch.size() - 1; i >= 0 && outcomes.size() < maxPending; i--) {
+            outcomes.addFirst(batch.get(i));
+        }
+    }
+
+    private synchronized void requeue(List<StockUpdate> batch) {
+        if (resyncRequired) {
+            return;
+        }
+        // Put failed updates back in front of anything that arrived since, unless superseded
+        LinkedHashMap<String, StockUpdate> merged = new LinkedHashMap<>();
+        for (StockUpdate update : batch) {
+            merged.put(update.getSymbol(), update);
+        }
+        for (Map.Entry<String, StockUpdate> entry : pending.entrySet()) {
+            merged.put(entry.getKey(), entry.getValue());
+        }
+        pending.clear();
+        pending.putAll(merged);
+    }
+
+    private void sendSnapshot() throws RemoteException {
+        List<StockUpdate> snapshot = snapshotSource.get();
+        for (int from = 0; from < snapshot.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, snapshot.size());
+            send(new ArrayList<>(snapshot.subList(from, to)));
+        }
+        logger.info("Caught up broker " + peerId + " with snapshot of " + snapshot.size() + " symbols");
+    }
+
+    private void send(List<StockUpdate> updates) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            peer.applyStockUpdates(updates, sourceBrokerId);
+        } catch (RemoteException e) {
+            observer.onSend(peerId, updates.size(), System.nanoTime() - start, false);
+            throw e;
+        }
+        observer.onSend(peerId, updates.size(), System.nanoTime() - start, true);
+    }
+}
@@ -0,0 +1,8 @@
+// ReplicationObserver.java
+package com.example.brokerrmi.rmi_stock_exchange.replication;
+
+// Told about every applyStockUpdates call made to a peer; runs on the peer's sender thread
+@FunctionalInterface
+public interface ReplicationObserver {
+    void onSend(String peerId, int updates, long nanos, boolean success);
+}
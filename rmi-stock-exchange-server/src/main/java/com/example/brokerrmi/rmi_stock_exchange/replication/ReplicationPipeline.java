@@ -0,0 +1,146 @@
+// ReplicationPipeline.java
+package com.example.brokerrmi.rmi_stock_exchange.replication;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountState;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeOutcome;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+@Component
+public class ReplicationPipeline {
+    private static final Logger logger = Logger.getLogger(ReplicationPipeline.class.getName());
+
+    private final String brokerId;
+    private final int batchSize;
+    private final int maxPending;
+    private final long retryBackoffMs;
+    private final int maxFailures;
+    private final int syncChunkSize;
+    private final Map<String, PeerReplicator> replicators = new ConcurrentHashMap<>();
+
+    private volatile Function<String, List<StockUpdate>> snapshotSource = peerId -> Collections.emptyList();
+    private volatile BiConsumer<String, TradingService> peerLostListener = (peerId, peer) -> { };
+    private volatile ReplicationObserver observer = (peerId, updates, nanos, success) -> { };
+
+    public ReplicationPipeline(
+            @Value("${broker.id:broker1}") String brokerId,
+            @Value("${replication.batch-size:256}") int batchSize,
+            @Value("${replication.max-pending:10000}") int maxPending,
+            @Value("${replication.retry-backoff-ms:100}") long retryBackoffMs,
+            @Value("${replication.max-failures:5}") int maxFailures,
+            @Value("${replication.sync-chunk-size:2048}") int syncChunkSize) {
+        this.brokerId = brokerId;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxFailures = maxFailures;
+        this.syncChunkSize = syncChunkSize;
+    }
+
+    // Symbols per call when catching a peer up from digests
+    public int getSyncChunkSize() {
+        return syncChunkSize;
+    }
+
+    // Given the peer's id, returns the state that peer should hold
+    public void setSnapshotSource(Function<String, List<StockUpdate>> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+    }
+
+    public void setPeerLostListener(BiConsumer<String, TradingService> peerLostListener) {
+        this.peerLostListener = peerLostListener;
+    }
+
+    public void setObserver(ReplicationObserver observer) {
+        this.observer = observer;
+    }
+
+    public void addPeer(String peerId, TradingService peer) {
+        replicators.computeIfAbsent(peerId, id -> {
+            PeerReplicator replicator = new PeerReplicator(id, peer, brokerId, () -> snapshotSource.apply(id),
+                    batchSize, maxPending, retryBackoffMs, maxFailures, () -> removePeer(id),
+                    (target, updates, nanos, success) -> observer.onSend(target, updates, nanos, success));
+            replicator.start();
+            logger.info("Started replication to broker " + id);
+            return replicator;
+        });
+    }
+
+    public void removePeer(String peerId) {
+        PeerReplicator replicator = replicators.remove(peerId);
+        if (replicator != null) {
+            replicator.stop();
+            peerLostListener.accept(peerId, replicator.getPeer());
+        }
+    }
+
+    // Never blocks on the network: updates are coalesced per peer and shipped by the sender threads
+    public void publish(String symbol, double price, int quantity, long version) {
+        if (replicators.isEmpty()) {
+            return;
+        }
+        StockUpdate update = new StockUpdate(symbol, price, quantity, version);
+        replicators.values().forEach(replicator -> replicator.enqueue(update));
+    }
+
+    // Partitioned mode: only the given peers, the symbol's other owners, receive the update
+    public void publish(String symbol, double price, int quantity, long version, Collection<String> peerIds) {
+        if (peerIds.isEmpty()) {
+            return;
+        }
+        StockUpdate update = new StockUpdate(symbol, price, quantity, version);
+        for (String peerId : peerIds) {
+            PeerReplicator replicator = replicators.get(peerId);
+            if (replicator != null) {
+                replicator.enqueue(update);
+            }
+        }
+    }
+
+    // Outcomes are queued in order rather than coalesced; peerIds null = every peer
+    public void publishOutcome(TradeOutcome outcome, Collection<String> peerIds) {
+        if (peerIds == null) {
+            replicators.values().forEach(replicator -> replicator.enqueueOutcome(outcome));
+            return;
+        }
+        for (String peerId : peerIds) {
+            PeerReplicator replicator = replicators.get(peerId);
+            if (replicator != null) {
+                replicator.enqueueOutcome(outcome);
+            }
+        }
+    }
+
+    public boolean publishAccounts(List<AccountState> accounts, String peerId) {
+        PeerReplicator replicator = replicators.get(peerId);
+        if (replicator == null) {
+            return false;
+        }
+        replicator.enqueueAccounts(accounts);
+        return true;
+    }
+
+    public Map<String, Integer> getPendingCounts() {
+        Map<String, Integer> counts = new ConcurrentHashMap<>();
+        replicators.forEach((peerId, replicator) -> counts.put(peerId, replicator.getPendingCount()));
+        return counts;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        replicators.values().forEach(PeerReplicator::stop);
+        replicators.clear();
+    }
+}
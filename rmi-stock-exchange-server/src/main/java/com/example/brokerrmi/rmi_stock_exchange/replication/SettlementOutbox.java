@@ -0,0 +1,242 @@
+// SettlementOutbox.java
+package com.example.brokerrmi.rmi_stock_exchange.replication;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.Settlement;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import com.example.brokerrmi.rmi_stock_exchange.journal.TradeJournal;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Delivers settlements of trades run here to the home brokers of their clients. Each settlement
+ * is numbered and journaled before it is queued, and stays queued until its home has applied it:
+ * a home that cannot be reached or no longer homes the client is retried with backoff, and looked
+ * up again each time, for as long as it takes. Settlements left when the broker stops are sent
+ * again on the next start. Homes skip settlements they already applied from the same source
+ * (see {@link #fresh}), so one that is sent twice is booked once.
+ *
+ * <p>Sequences start from the wall clock in milliseconds shifted left by 20 bits, so a restarted
+ * broker numbers past everything it sent before without keeping a counter.
+ */
+@Component
+public class SettlementOutbox implements Runnable {
+    private static final Logger logger = Logger.getLogger(SettlementOutbox.class.getName());
+
+    private final String brokerId;
+    private final int batchSize;
+    private final long retryBackoffMs;
+    private final TradeJournal journal;
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    // Home side: per source broker, the sequences applied at or above its last reported watermark
+    private final Map<String, TreeSet<Long>> applied = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final TreeMap<Long, Settlement> pending = new TreeMap<>();
+    private long nextSequence = System.currentTimeMillis() << 20;
+    private long journaledBelow;
+
+    // Sender thread only: when each failing home may be tried again, and how often it failed in a row
+    private final Map<String, Long> retryAt = new HashMap<>();
+    private final Map<String, Integer> failuresInRow = new HashMap<>();
+
+    private volatile Function<String, String> homeOf = clientId -> null;
+    private volatile Function<String, TradingService> members = peerId -> null;
+    private volatile Consumer<List<Settlement>> localSink = settlements -> { };
+    private volatile boolean running;
+    private Thread thread;
+
+    public SettlementOutbox(
+            @Value("${broker.id:broker1}") String brokerId,
+            @Value("${replication.batch-size:256}") int batchSize,
+            @Value("${replication.retry-backoff-ms:100}") long retryBackoffMs,
+            TradeJournal journal) {
+        this.brokerId = brokerId;
+        this.batchSize = Math.max(1, batchSize);
+        this.retryBackoffMs = Math.max(1, retryBackoffMs);
+        this.journal = journal;
+    }
+
+    /**
+     * homeOf gives the peer that is a client's home, null if it is this broker, and members the
+     * stub for a peer, null if it is not a member; settlements whose client is homed here by the
+     * time they are sent go to localSink instead.
+     */
+    public void start(Function<String, String> homeOf, Function<String, TradingService> members,
+                      Consumer<List<Settlement>> localSink) {
+        this.homeOf = homeOf;
+        this.members = members;
+        this.localSink = localSink;
+        running = true;
+        thread = new Thread(this, "settlement-outbox");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // A settlement journaled before the broker stopped and not yet delivered; called during replay
+    public synchronized void restore(Settlement settlement) {
+        pending.put(settlement.getSequence(), settlement);
+        nextSequence = Math.max(nextSequence, settlement.getSequence() + 1);
+    }
+
+    // Numbers, journals and queues the settlement; the caller's journal commit makes it durable
+    public synchronized void publish(Settlement settlement) {
+        Settlement numbered = settlement.withSequence(nextSequence++);
+        // Queued before it is journaled, so a snapshot that covers the record also holds the settlement
+        pending.put(numbered.getSequence(), numbered);
+        journal.appendSettlement(numbered);
+        notifyAll();
+    }
+
+    // Settlements not yet delivered, for journal snapshots
+    public synchronized List<Settlement> undelivered() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Home side: the settlements of a batch from sourceBrokerId that were not applied here
+     * already. Every settlement below settledBelow has been acknowledged to the source, which
+     * never sends it again, so only sequences from there up are remembered.
+     */
+    public List<Settlement> fresh(List<Settlement> settlements, long settledBelow, String sourceBrokerId) {
+        TreeSet<Long> seen = applied.computeIfAbsent(sourceBrokerId, id -> new TreeSet<>());
+        List<Settlement> fresh = new ArrayList<>(settlements.size());
+        synchronized (seen) {
+            seen.headSet(settledBelow).clear();
+            for (Settlement settlement : settlements) {
+                if (seen.add(settlement.getSequence())) {
+                    fresh.add(settlement);
+                }
+            }
+        }
+        return fresh;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            List<Settlement> batch;
+            long settledBelow;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            synchronized (this) {
+                settledBelow = pending.isEmpty() ? nextSequence : pending.firstKey();
+            }
+            Map<String, List<Settlement>> byHome = new LinkedHashMap<>();
+            List<Settlement> local = new ArrayList<>();
+            for (Settlement settlement : batch) {
+                String homeId = homeOf.apply(settlement.getClientId());
+                if (homeId == null) {
+                    local.add(settlement);
+                } else {
+                    byHome.computeIfAbsent(homeId, id -> new ArrayList<>()).add(settlement);
+                }
+            }
+            if (!local.isEmpty()) {
+                localSink.accept(local);
+                acknowledge(local);
+            }
+            byHome.forEach((homeId, settlements) -> send(homeId, settlements, settledBelow));
+        }
+    }
+
+    // Waits for settlements whose homes are not backing off, oldest first
+    private List<Settlement> nextBatch() throws InterruptedException {
+        synchronized (this) {
+            while (running) {
+                long now = System.currentTimeMillis();
+                long wakeAt = Long.MAX_VALUE;
+                List<Settlement> batch = new ArrayList<>();
+                for (Settlement settlement : pending.values()) {
+                    String homeId = homeOf.apply(settlement.getClientId());
+                    Long at = homeId == null ? null : retryAt.get(homeId);
+                    if (at != null && at > now) {
+                        wakeAt = Math.min(wakeAt, at);
+                        continue;
+                    }
+                    batch.add(settlement);
+                    if (batch.size() == batchSize) {
+                        break;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    return batch;
+                }
+                wait(wakeAt == Long.MAX_VALUE ? 0 : Math.max(1, wakeAt - now));
+            }
+            return List.of();
+        }
+    }
+
+    private void send(String homeId, List<Settlement> settlements, long settledBelow) {
+        TradingService home = members.apply(homeId);
+        try {
+            if (home == null) {
+                throw new RemoteException(homeId + " is not a member");
+            }
+            home.applySettlements(settlements, settledBelow, brokerId);
+            retryAt.remove(homeId);
+            failuresInRow.remove(homeId);
+            acknowledge(settlements);
+        } catch (RemoteException e) {
+            // Kept in the queue; the next attempt looks the clients' homes up again
+            failures.increment();
+            int inRow = failuresInRow.merge(homeId, 1, Integer::sum);
+            retryAt.put(homeId, System.currentTimeMillis() + Math.min(retryBackoffMs << Math.min(inRow - 1, 6), 10_000L));
+            if (inRow == 1 || inRow % 100 == 0) {
+                logger.warning("Broker " + brokerId + ": " + settlements.size() + " settlements for " + homeId
+                        + " not delivered (attempt " + inRow + "), retrying: " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void acknowledge(List<Settlement> settlements) {
+        for (Settlement settlement : settlements) {
+            pending.remove(settlement.getSequence());
+        }
+        delivered.add(settlements.size());
+        long below = pending.isEmpty() ? nextSequence : pending.firstKey();
+        if (below > journaledBelow) {
+            journaledBelow = below;
+            journal.appendSettled(below);
+        }
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("pending", pending.size());
+        snapshot.put("delivered", delivered.sum());
+        snapshot.put("failedSends", failures.sum());
+        if (!pending.isEmpty()) {
+            snapshot.put("oldestPendingMs", System.currentTimeMillis() - pending.firstEntry().getValue().getTimestamp());
+        }
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
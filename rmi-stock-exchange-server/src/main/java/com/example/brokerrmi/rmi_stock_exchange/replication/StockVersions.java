@@ -0,0 +1,29 @@
+// StockVersions.java
+package com.example.brokerrmi.rmi_stock_exchange.replication;
+
+/**
+ * Per-symbol replication versions: a Lamport counter in the high 48 bits and the tag of the
+ * broker that made the change in the low 16. Every local change moves the counter one past the
+ * highest version seen for the symbol, so comparing two versions as plain longs orders changes
+ * causally and breaks ties between concurrent changes the same way on every broker.
+ */
+public final class StockVersions {
+    private static final int TAG_BITS = 16;
+    private static final long TAG_MASK = (1L << TAG_BITS) - 1;
+
+    private StockVersions() {
+    }
+
+    public static int tagOf(String brokerId) {
+        int hash = brokerId.hashCode();
+        return (int) ((hash ^ (hash >>> TAG_BITS)) & TAG_MASK);
+    }
+
+    public static long next(long current, int brokerTag) {
+        return (((current >>> TAG_BITS) + 1) << TAG_BITS) | brokerTag;
+    }
+
+    public static boolean isNewer(long candidate, long current) {
+        return candidate > current;
+    }
+}
@@ -0,0 +1,51 @@
+// SyncDigest.java
+package com.example.brokerrmi.rmi_stock_exchange.replication;
+
+/**
+ * Bucketed digests of (symbol, version) pairs. Two brokers that agree on the bucket count can
+ * compare digests and transfer only the symbols in buckets that differ. A bucket's digest is
+ * the sum of its entry hashes, so it does not depend on iteration order.
+ */
+public final class SyncDigest {
+    private static final int MIN_BUCKETS = 16;
+    private static final int MAX_BUCKETS = 1 << 16;
+    private static final int TARGET_SYMBOLS_PER_BUCKET = 16;
+
+    private SyncDigest() {
+    }
+
+    // Power of two sized so a differing bucket costs a handful of symbols to transfer
+    public static int bucketCount(int symbols) {
+        int wanted = Math.max(symbols / TARGET_SYMBOLS_PER_BUCKET, 1);
+        int rounded = Integer.highestOneBit(wanted);
+        return Math.max(MIN_BUCKETS, Math.min(MAX_BUCKETS, rounded));
+    }
+
+    public static void checkBucketCount(int bucketCount) {
+        if (bucketCount < 1 || bucketCount > MAX_BUCKETS || Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("Bucket count must be a power of two up to " + MAX_BUCKETS + ": " + bucketCount);
+        }
+    }
+
+    public static long[] create(int bucketCount) {
+        checkBucketCount(bucketCount);
+        return new long[bucketCount];
+    }
+
+    public static int bucketOf(String symbol, int bucketCount) {
+        return (int) (mix(symbol.hashCode()) & (bucketCount - 1));
+    }
+
+    public static void add(long[] digest, String symbol, long version) {
+        int hash = symbol.hashCode();
+        digest[(int) (mix(hash) & (digest.length - 1))] += mix(hash * 0x9E3779B97F4A7C15L ^ version);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,70 @@
+// MpscRingBuffer.java
+package com.example.brokerrmi.rmi_stock_exchange.sequencer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer in the style of the LMAX Disruptor.
+ * Producers claim a sequence with CAS, write the slot, then publish the sequence into the
+ * slot's availability marker; the single consumer reads slots strictly in sequence order.
+ */
+final class MpscRingBuffer<E> {
+    private final Object[] entries;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int capacity;
+
+    // Last claimed and last consumed sequences
+    private final AtomicLong claimed = new AtomicLong(-1L);
+    private final AtomicLong consumed = new AtomicLong(-1L);
+
+    MpscRingBuffer(int requestedCapacity) {
+        capacity = Integer.highestOneBit(Math.max(2, requestedCapacity) - 1) << 1;
+        mask = capacity - 1;
+        entries = new Object[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1L);
+        }
+    }
+
+    // Returns false when the ring is full
+    boolean offer(E element) {
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - capacity > consumed.get()) {
+                return false;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                int index = (int) next & mask;
+                entries[index] = element;
+                published.lazySet(index, next);
+                return true;
+            }
+        }
+    }
+
+    // Consumer thread only
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long next = consumed.get() + 1;
+        int index = (int) next & mask;
+        if (published.get(index) != next) {
+            return null;
+        }
+        E element = (E) entries[index];
+        entries[index] = null;
+        consumed.lazySet(next);
+        return element;
+    }
+
+    boolean isEmpty() {
+        return claimed.get() == consumed.get();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
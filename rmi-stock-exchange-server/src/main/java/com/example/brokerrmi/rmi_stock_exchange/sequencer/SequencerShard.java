@@ -0,0 +1,92 @@
+// SequencerShard.java
+package com.example.brokerrmi.rmi_stock_exchange.sequencer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// A single writer thread that applies every task for its symbols in arrival order
+final class SequencerShard implements Runnable {
+    private static final Logger logger = Logger.getLogger(SequencerShard.class.getName());
+    private static final int SPIN_TRIES = 1000;
+
+    private final MpscRingBuffer<Task<?>> ring;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean sleeping;
+
+    SequencerShard(int index, int ringSize) {
+        this.ring = new MpscRingBuffer<>(ringSize);
+        this.thread = new Thread(this, "sequencer-shard-" + index);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    boolean isShardThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<T> action) {
+        Task<T> task = new Task<>(action);
+        while (!ring.offer(task)) {
+            // Ring full: let the shard drain before claiming again
+            Thread.onSpinWait();
+            if (!running) {
+                task.future.completeExceptionally(new IllegalStateException("Sequencer is stopped"));
+                return task.future;
+            }
+        }
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+        return task.future;
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (running) {
+            Task<?> task = ring.poll();
+            if (task != null) {
+                task.run();
+                idle = 0;
+            } else if (idle++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                sleeping = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+                idle = 0;
+            }
+        }
+    }
+
+    private static final class Task<T> {
+        private final Supplier<T> action;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(Supplier<T> action) {
+            this.action = action;
+        }
+
+        private void run() {
+            try {
+                future.complete(action.get());
+            } catch (Throwable t) {
+                logger.warning("Sequenced task failed: " + t.getMessage());
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
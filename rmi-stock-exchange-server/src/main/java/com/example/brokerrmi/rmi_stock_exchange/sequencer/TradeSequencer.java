@@ -0,0 +1,87 @@
+// TradeSequencer.java
+package com.example.brokerrmi.rmi_stock_exchange.sequencer;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Runs per-symbol state changes either under the symbol's monitor ({@code execution.mode=monitor})
+ * or on a fixed set of single-threaded shards that own disjoint sets of symbols
+ * ({@code execution.mode=sequencer}), in which case no locks are taken at all.
+ */
+@Component
+public class TradeSequencer {
+    private static final Logger logger = Logger.getLogger(TradeSequencer.class.getName());
+
+    private final boolean sequenced;
+    private final SequencerShard[] shards;
+
+    public TradeSequencer(
+            @Value("${execution.mode:monitor}") String mode,
+            @Value("${execution.shards:0}") int shardCount,
+            @Value("${execution.ring-size:4096}") int ringSize) {
+        this.sequenced = "sequencer".equalsIgnoreCase(mode);
+        if (sequenced) {
+            int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+            shards = new SequencerShard[count];
+            for (int i = 0; i < count; i++) {
+                shards[i] = new SequencerShard(i, ringSize);
+                shards[i].start();
+            }
+            logger.info("Trade execution mode: sequencer with " + count + " shards");
+        } else {
+            shards = new SequencerShard[0];
+            logger.info("Trade execution mode: monitor");
+        }
+    }
+
+    public boolean isSequenced() {
+        return sequenced;
+    }
+
+    public <T> T execute(String symbol, Object monitor, Supplier<T> action) {
+        if (!sequenced) {
+            synchronized (monitor) {
+                return action.get();
+            }
+        }
+
+        SequencerShard shard = shards[shardIndex(symbol)];
+        if (shard.isShardThread()) {
+            return action.get();
+        }
+        try {
+            return shard.submit(action).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    public void run(String symbol, Object monitor, Runnable action) {
+        execute(symbol, monitor, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private int shardIndex(String symbol) {
+        int h = symbol.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % shards.length;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (SequencerShard shard : shards) {
+            shard.stop();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+// PriceSnapshot.java
+package com.example.brokerrmi.rmi_stock_exchange.store;
+
+import com.example.brokerrmi.rmi_stock_exchange.transport.BinaryProtocol;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every symbol's price as published by {@link PriceSnapshotPublisher}. Snapshots are immutable and
+ * shared by all readers until the next one replaces them, so serving one takes no lock and builds
+ * nothing; the binary encoding is produced once here and written to clients as is.
+ */
+public final class PriceSnapshot {
+    static final PriceSnapshot EMPTY = new PriceSnapshot(0, new String[0], new double[0], 0);
+
+    private final long version;
+    private final Map<String, Double> prices;
+    private final byte[] encoded;
+
+    PriceSnapshot(long version, String[] symbols, double[] prices, int count) {
+        Map<String, Double> map = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            map.put(symbols[i], prices[i]);
+        }
+        this.version = version;
+        this.prices = Collections.unmodifiableMap(map);
+        this.encoded = BinaryProtocol.encodePrices(version, symbols, prices, count);
+    }
+
+    // Increases by one with every published snapshot
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return prices.size();
+    }
+
+    public Map<String, Double> getPrices() {
+        return prices;
+    }
+
+    // A read-only view of the binary prices body; each caller gets its own position
+    public ByteBuffer encoded() {
+        return ByteBuffer.wrap(encoded).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,88 @@
+// PriceSnapshotPublisher.java
+package com.example.brokerrmi.rmi_stock_exchange.store;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps an up-to-date {@link PriceSnapshot} of the {@link SymbolStore} for bulk price reads.
+ * Writers only mark the store changed; a background thread rebuilds the snapshot and swaps it in
+ * with one volatile write, at most once per {@code snapshot.publish-interval-ms}, so a burst of
+ * trades costs one rebuild and readers see prices at most that old.
+ */
+@Component
+public class PriceSnapshotPublisher {
+    private final SymbolStore symbolStore;
+    private final long publishIntervalNanos;
+    private final AtomicBoolean changed = new AtomicBoolean(true);
+    private final Thread publisher;
+    private volatile PriceSnapshot current = PriceSnapshot.EMPTY;
+    private volatile boolean running = true;
+    private long version;
+
+    public PriceSnapshotPublisher(
+            SymbolStore symbolStore,
+            @Value("${snapshot.publish-interval-ms:5}") long publishIntervalMs) {
+        this.symbolStore = symbolStore;
+        this.publishIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, publishIntervalMs));
+        this.publisher = new Thread(this::publishLoop, "price-snapshot");
+        this.publisher.setDaemon(true);
+        this.publisher.start();
+    }
+
+    public PriceSnapshot current() {
+        return current;
+    }
+
+    // Called on every price change; only the first change after a publish touches the shared flag
+    public void markChanged() {
+        if (!changed.get() && changed.compareAndSet(false, true)) {
+            LockSupport.unpark(publisher);
+        }
+    }
+
+    // Rebuilds on the caller's thread, for state loaded before the first reader arrives
+    public void publishNow() {
+        changed.set(false);
+        publish();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        publisher.interrupt();
+    }
+
+    private void publishLoop() {
+        while (running) {
+            if (!changed.getAndSet(false)) {
+                LockSupport.park(this);
+                continue;
+            }
+            publish();
+            if (publishIntervalNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(publishIntervalNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private synchronized void publish() {
+        int size = symbolStore.size();
+        String[] symbols = new String[size];
+        double[] prices = new double[size];
+        for (int id = 0; id < size; id++) {
+            symbols[id] = symbolStore.symbol(id);
+            prices[id] = symbolStore.price(id);
+        }
+        current = new PriceSnapshot(++version, symbols, prices, size);
+    }
+}
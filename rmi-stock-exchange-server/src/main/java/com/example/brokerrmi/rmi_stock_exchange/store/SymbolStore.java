@@ -0,0 +1,235 @@
+// SymbolStore.java
+package com.example.brokerrmi.rmi_stock_exchange.store;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Per-symbol price, quantity and version held in flat primitive arrays instead of one object per
+ * symbol. Symbols are interned to dense int ids; id {@code i} owns a four-long slot
+ * {@code [seqlock, price bits, quantity, version]} in fixed-size chunks, so growing never copies
+ * existing state and a million symbols cost a few hundred arrays rather than millions of objects.
+ * <p>
+ * Writers must be exclusive per symbol: the {@code TradeSequencer} guarantees this, using
+ * {@link #lockFor(int)} as the monitor in monitor mode. Readers never block; single fields are
+ * read directly and {@link #read(int)} uses the slot's sequence lock for a consistent triple.
+ */
+@Component
+public class SymbolStore {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int SLOT_LONGS = 4;
+    private static final int SEQ = 0;
+    private static final int PRICE = 1;
+    private static final int QUANTITY = 2;
+    private static final int VERSION = 3;
+    private static final int LOCK_STRIPES = 1024;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle STRINGS = MethodHandles.arrayElementVarHandle(String[].class);
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    // Replaced, never mutated in place once published, except for appends under the store lock
+    private volatile long[][] slots = new long[0][];
+    private volatile String[][] symbols = new String[0][];
+    private volatile Index index;
+    private volatile int size;
+
+    public SymbolStore(@Value("${store.initial-capacity:1024}") int initialCapacity) {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        index = new Index(Math.max(16, Integer.highestOneBit(Math.max(initialCapacity, 1) * 2 - 1) * 2));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns -1 for unknown symbols
+    public int idOf(String symbol) {
+        return index.get(symbol);
+    }
+
+    /**
+     * Interns a new symbol with its initial state. Returns the new id, or {@code -(id + 1)} of
+     * the existing entry if the symbol is already known, in which case nothing is changed.
+     */
+    public synchronized int add(String symbol, double price, int quantity, long version) {
+        int existing = index.get(symbol);
+        if (existing >= 0) {
+            return -(existing + 1);
+        }
+        int id = size;
+        int chunk = id >>> CHUNK_BITS;
+        if (chunk == slots.length) {
+            long[][] grownSlots = Arrays.copyOf(slots, chunk + 1);
+            grownSlots[chunk] = new long[CHUNK_SIZE * SLOT_LONGS];
+            String[][] grownSymbols = Arrays.copyOf(symbols, chunk + 1);
+            grownSymbols[chunk] = new String[CHUNK_SIZE];
+            slots = grownSlots;
+            symbols = grownSymbols;
+        }
+        long[] slot = slots[chunk];
+        int base = (id & CHUNK_MASK) * SLOT_LONGS;
+        slot[base + PRICE] = Double.doubleToRawLongBits(price);
+        slot[base + QUANTITY] = quantity;
+        slot[base + VERSION] = version;
+        symbols[chunk][id & CHUNK_MASK] = symbol;
+
+        if ((id + 1) * 2 > index.capacity()) {
+            index = index.grow(symbols, id);
+        }
+        // Publishing the key (release) makes the slot written above visible to readers that find it
+        index.put(symbol, id);
+        size = id + 1;
+        return id;
+    }
+
+    public int getOrAdd(String symbol, double price, int quantity, long version) {
+        int id = idOf(symbol);
+        if (id >= 0) {
+            return id;
+        }
+        id = add(symbol, price, quantity, version);
+        return id >= 0 ? id : -id - 1;
+    }
+
+    public String symbol(int id) {
+        return symbols[id >>> CHUNK_BITS][id & CHUNK_MASK];
+    }
+
+    public double price(int id) {
+        return Double.longBitsToDouble((long) LONGS.getOpaque(slots[id >>> CHUNK_BITS], base(id) + PRICE));
+    }
+
+    public int quantity(int id) {
+        return (int) (long) LONGS.getOpaque(slots[id >>> CHUNK_BITS], base(id) + QUANTITY);
+    }
+
+    public long version(int id) {
+        return (long) LONGS.getOpaque(slots[id >>> CHUNK_BITS], base(id) + VERSION);
+    }
+
+    // Caller must be the symbol's only writer
+    public void set(int id, double price, int quantity, long version) {
+        long[] slot = slots[id >>> CHUNK_BITS];
+        int base = base(id);
+        long seq = slot[base + SEQ];
+        LONGS.setOpaque(slot, base + SEQ, seq + 1);
+        VarHandle.storeStoreFence();
+        LONGS.setOpaque(slot, base + PRICE, Double.doubleToRawLongBits(price));
+        LONGS.setOpaque(slot, base + QUANTITY, (long) quantity);
+        LONGS.setOpaque(slot, base + VERSION, version);
+        LONGS.setRelease(slot, base + SEQ, seq + 2);
+    }
+
+    // Consistent price, quantity and version of one symbol without taking its lock
+    public StockUpdate read(int id) {
+        long[] slot = slots[id >>> CHUNK_BITS];
+        int base = base(id);
+        while (true) {
+            long before = (long) LONGS.getAcquire(slot, base + SEQ);
+            long price = (long) LONGS.getOpaque(slot, base + PRICE);
+            long quantity = (long) LONGS.getOpaque(slot, base + QUANTITY);
+            long version = (long) LONGS.getOpaque(slot, base + VERSION);
+            VarHandle.loadLoadFence();
+            long after = (long) LONGS.getOpaque(slot, base + SEQ);
+            if ((before & 1) == 0 && before == after) {
+                return new StockUpdate(symbol(id), Double.longBitsToDouble(price), (int) quantity, version);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // read(int) into row index of the caller's arrays, without allocating
+    public void read(int id, double[] prices, int[] quantities, long[] versions, int index) {
+        long[] slot = slots[id >>> CHUNK_BITS];
+        int base = base(id);
+        while (true) {
+            long before = (long) LONGS.getAcquire(slot, base + SEQ);
+            long price = (long) LONGS.getOpaque(slot, base + PRICE);
+            long quantity = (long) LONGS.getOpaque(slot, base + QUANTITY);
+            long version = (long) LONGS.getOpaque(slot, base + VERSION);
+            VarHandle.loadLoadFence();
+            long after = (long) LONGS.getOpaque(slot, base + SEQ);
+            if ((before & 1) == 0 && before == after) {
+                prices[index] = Double.longBitsToDouble(price);
+                quantities[index] = (int) quantity;
+                versions[index] = version;
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Striped monitor for callers that serialize writers with locks rather than shards
+    public Object lockFor(int id) {
+        return locks[id & (LOCK_STRIPES - 1)];
+    }
+
+    private static int base(int id) {
+        return (id & CHUNK_MASK) * SLOT_LONGS;
+    }
+
+    // Open-addressing symbol -> id table; only the store lock writes, readers probe lock-free
+    private static final class Index {
+        private final String[] keys;
+        private final int[] ids;
+        private final int mask;
+
+        private Index(int capacity) {
+            keys = new String[capacity];
+            ids = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return keys.length;
+        }
+
+        private int get(String symbol) {
+            int slot = spread(symbol.hashCode()) & mask;
+            while (true) {
+                String key = (String) STRINGS.getAcquire(keys, slot);
+                if (key == null) {
+                    return -1;
+                }
+                if (key.equals(symbol)) {
+                    return ids[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void put(String symbol, int id) {
+            int slot = spread(symbol.hashCode()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            STRINGS.setRelease(keys, slot, symbol);
+        }
+
+        // Rebuilds from the id-ordered symbol chunks; ids below count are already interned
+        private Index grow(String[][] symbols, int count) {
+            Index grown = new Index(keys.length * 2);
+            for (int id = 0; id < count; id++) {
+                grown.put(symbols[id >>> CHUNK_BITS][id & CHUNK_MASK], id);
+            }
+            return grown;
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
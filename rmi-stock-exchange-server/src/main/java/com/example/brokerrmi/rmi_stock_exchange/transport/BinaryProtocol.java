@@ -0,0 +1,110 @@
+// BinaryProtocol.java
+package com.example.brokerrmi.rmi_stock_exchange.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fixed-layout frames for the binary trading transport.
+ * <pre>
+ * frame    := length:int32 type:int8 correlationId:int64 payload
+ * string   := length:int16 utf8-bytes
+ * BUY/SELL := symbol:string quantity:int32 clientId:string [idempotencyKey:int64]
+ *                                                           -> status:int8 success:int8
+ * PRICE    := symbol:string                                 -> status:int8 price:float64
+ * ALIVE    := (empty)                                       -> status:int8 alive:int8
+ * BROKER   := (empty)                                       -> status:int8 brokerId:string
+ * ALL      := (empty)                                       -> status:int8 prices
+ * prices   := version:int64 count:int32 (symbol:string price:float64){count}
+ * </pre>
+ * {@code length} counts every byte after the length field. Responses reuse the request type with
+ * the high bit set and echo its correlation id, so requests can be pipelined on one connection.
+ * A status other than {@link #STATUS_OK} is followed by an error message string. Requests are
+ * limited to {@link #MAX_FRAME_BYTES}; responses may be up to {@link #MAX_RESPONSE_BYTES}.
+ */
+public final class BinaryProtocol {
+    public static final byte BUY = 1;
+    public static final byte SELL = 2;
+    public static final byte GET_PRICE = 3;
+    public static final byte IS_ALIVE = 4;
+    public static final byte GET_BROKER_ID = 5;
+    public static final byte GET_ALL_STOCKS = 6;
+
+    public static final byte RESPONSE_FLAG = (byte) 0x80;
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    // Rejected by admission control without being executed
+    public static final byte STATUS_BUSY = 2;
+
+    public static final int LENGTH_BYTES = 4;
+    public static final int HEADER_BYTES = 1 + 8;
+    public static final int MAX_FRAME_BYTES = 64 * 1024;
+    public static final int MAX_RESPONSE_BYTES = 64 * 1024 * 1024;
+
+    private BinaryProtocol() {
+    }
+
+    // Reserves the length field; call endFrame once the payload is written
+    public static int beginFrame(ByteBuffer buffer, byte type, long correlationId) {
+        int start = buffer.position();
+        buffer.putInt(0).put(type).putLong(correlationId);
+        return start;
+    }
+
+    public static void endFrame(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - LENGTH_BYTES);
+    }
+
+    public static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    public static int stringBytes(String value) {
+        return 2 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // The prices body of an ALL response; encoded once per price snapshot, not per request
+    public static byte[] encodePrices(long version, String[] symbols, double[] prices, int count) {
+        byte[][] names = new byte[count][];
+        int size = 8 + 4;
+        for (int i = 0; i < count; i++) {
+            names[i] = symbols[i].getBytes(StandardCharsets.UTF_8);
+            size += 2 + names[i].length + 8;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(version).putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.putShort((short) names[i].length).put(names[i]).putDouble(prices[i]);
+        }
+        return buffer.array();
+    }
+
+    public static Map<String, Double> decodePrices(ByteBuffer buffer) {
+        buffer.getLong();
+        int count = buffer.getInt();
+        Map<String, Double> prices = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String symbol = getString(buffer);
+            prices.put(symbol, buffer.getDouble());
+        }
+        return prices;
+    }
+
+    public static boolean isResponse(byte type) {
+        return (type & RESPONSE_FLAG) != 0;
+    }
+
+    public static byte responseType(byte requestType) {
+        return (byte) (requestType | RESPONSE_FLAG);
+    }
+}
@@ -0,0 +1,247 @@
+// BinaryTradingClient.java
+package com.example.brokerrmi.rmi_stock_exchange.transport;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.ServerBusyException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Pipelined client for the binary trading transport. Any number of requests may be in flight on
+ * the single connection; a reader thread completes them by correlation id as responses arrive.
+ */
+public class BinaryTradingClient implements AutoCloseable {
+    private static final long DEFAULT_TIMEOUT_MS = 5000;
+
+    private final SocketChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(BinaryProtocol.MAX_FRAME_BYTES);
+    private final Map<Long, Pending<?>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong correlationIds = new AtomicLong();
+    private final Thread reader;
+    private volatile boolean open = true;
+
+    public BinaryTradingClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        reader = new Thread(this::readLoop, "binary-client-" + host + ":" + port);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public CompletableFuture<Boolean> buyStockAsync(String symbol, int quantity, String clientId) {
+        return buyStockAsync(symbol, quantity, clientId, 0);
+    }
+
+    public CompletableFuture<Boolean> sellStockAsync(String symbol, int quantity, String clientId) {
+        return sellStockAsync(symbol, quantity, clientId, 0);
+    }
+
+    public CompletableFuture<Boolean> buyStockAsync(String symbol, int quantity, String clientId, long idempotencyKey) {
+        return trade(BinaryProtocol.BUY, symbol, quantity, clientId, idempotencyKey);
+    }
+
+    public CompletableFuture<Boolean> sellStockAsync(String symbol, int quantity, String clientId, long idempotencyKey) {
+        return trade(BinaryProtocol.SELL, symbol, quantity, clientId, idempotencyKey);
+    }
+
+    public CompletableFuture<Double> getPriceAsync(String symbol) {
+        return send(BinaryProtocol.GET_PRICE, buffer -> BinaryProtocol.putString(buffer, symbol), ByteBuffer::getDouble);
+    }
+
+    public CompletableFuture<Map<String, Double>> getAllStocksAsync() {
+        return send(BinaryProtocol.GET_ALL_STOCKS, buffer -> { }, BinaryProtocol::decodePrices);
+    }
+
+    public CompletableFuture<Boolean> isAliveAsync() {
+        return send(BinaryProtocol.IS_ALIVE, buffer -> { }, buffer -> buffer.get() != 0);
+    }
+
+    public CompletableFuture<String> getBrokerIdAsync() {
+        return send(BinaryProtocol.GET_BROKER_ID, buffer -> { }, BinaryProtocol::getString);
+    }
+
+    public boolean buyStock(String symbol, int quantity, String clientId) throws IOException {
+        return await(buyStockAsync(symbol, quantity, clientId));
+    }
+
+    public boolean sellStock(String symbol, int quantity, String clientId) throws IOException {
+        return await(sellStockAsync(symbol, quantity, clientId));
+    }
+
+    public boolean buyStock(String symbol, int quantity, String clientId, long idempotencyKey) throws IOException {
+        return await(buyStockAsync(symbol, quantity, clientId, idempotencyKey));
+    }
+
+    public boolean sellStock(String symbol, int quantity, String clientId, long idempotencyKey) throws IOException {
+        return await(sellStockAsync(symbol, quantity, clientId, idempotencyKey));
+    }
+
+    public double getPrice(String symbol) throws IOException {
+        return await(getPriceAsync(symbol));
+    }
+
+    public Map<String, Double> getAllStocks() throws IOException {
+        return await(getAllStocksAsync());
+    }
+
+    public boolean isAlive() throws IOException {
+        return await(isAliveAsync());
+    }
+
+    public String getBrokerId() throws IOException {
+        return await(getBrokerIdAsync());
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+        failAll(new IOException("Connection closed"));
+    }
+
+    private CompletableFuture<Boolean> trade(byte type, String symbol, int quantity, String clientId, long idempotencyKey) {
+        return send(type, buffer -> {
+            BinaryProtocol.putString(buffer, symbol);
+            buffer.putInt(quantity);
+            BinaryProtocol.putString(buffer, clientId);
+            buffer.putLong(idempotencyKey);
+        }, buffer -> buffer.get() != 0);
+    }
+
+    private <T> CompletableFuture<T> send(byte type, Consumer<ByteBuffer> payload,
+                                          Function<ByteBuffer, T> decoder) {
+        long correlationId = correlationIds.incrementAndGet();
+        Pending<T> request = new Pending<>(decoder);
+        if (!open) {
+            request.future.completeExceptionally(new IOException("Connection closed"));
+            return request.future;
+        }
+        pending.put(correlationId, request);
+        try {
+            synchronized (writeBuffer) {
+                writeBuffer.clear();
+                int start = BinaryProtocol.beginFrame(writeBuffer, type, correlationId);
+                payload.accept(writeBuffer);
+                BinaryProtocol.endFrame(writeBuffer, start);
+                writeBuffer.flip();
+                while (writeBuffer.hasRemaining()) {
+                    channel.write(writeBuffer);
+                }
+            }
+        } catch (IOException e) {
+            pending.remove(correlationId);
+            request.future.completeExceptionally(e);
+            close();
+        }
+        return request.future;
+    }
+
+    private void readLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryProtocol.MAX_FRAME_BYTES * 2);
+        try {
+            while (open) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.remaining() >= BinaryProtocol.LENGTH_BYTES) {
+                    int length = buffer.getInt(buffer.position());
+                    if (length < BinaryProtocol.HEADER_BYTES || length > BinaryProtocol.MAX_RESPONSE_BYTES) {
+                        throw new IOException("Invalid response frame length " + length);
+                    }
+                    if (buffer.remaining() < BinaryProtocol.LENGTH_BYTES + length) {
+                        break;
+                    }
+                    int end = buffer.position() + BinaryProtocol.LENGTH_BYTES + length;
+                    buffer.getInt();
+                    buffer.get();
+                    long correlationId = buffer.getLong();
+                    Pending<?> request = pending.remove(correlationId);
+                    if (request != null) {
+                        request.complete(buffer);
+                    }
+                    buffer.position(end);
+                }
+                buffer.compact();
+                buffer = ensureCapacity(buffer);
+            }
+        } catch (IOException e) {
+            // Fall through and fail whatever is still pending
+        } finally {
+            open = false;
+            failAll(new IOException("Connection closed by broker"));
+        }
+    }
+
+    // Grows the read buffer when the frame at its head (it is in write mode, after compact) cannot fit
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer) {
+        if (buffer.position() < BinaryProtocol.LENGTH_BYTES) {
+            return buffer;
+        }
+        int needed = BinaryProtocol.LENGTH_BYTES + buffer.getInt(0);
+        if (needed <= buffer.capacity()) {
+            return buffer;
+        }
+        buffer.flip();
+        return ByteBuffer.allocate(needed).put(buffer);
+    }
+
+    private void failAll(IOException cause) {
+        pending.values().forEach(request -> request.future.completeExceptionally(cause));
+        pending.clear();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for broker", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for broker", e);
+        }
+    }
+
+    private static final class Pending<T> {
+        private final Function<ByteBuffer, T> decoder;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Pending(Function<ByteBuffer, T> decoder) {
+            this.decoder = decoder;
+        }
+
+        // Runs on the reader thread while the buffer is positioned at the status byte
+        private void complete(ByteBuffer buffer) {
+            byte status = buffer.get();
+            if (status == BinaryProtocol.STATUS_OK) {
+                future.complete(decoder.apply(buffer));
+            } else if (status == BinaryProtocol.STATUS_BUSY) {
+                future.completeExceptionally(new ServerBusyException(BinaryProtocol.getString(buffer)));
+            } else {
+                future.completeExceptionally(new IOException(BinaryProtocol.getString(buffer)));
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+// BinaryTradingServer.java
+package com.example.brokerrmi.rmi_stock_exchange.transport;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.ServerBusyException;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import com.example.brokerrmi.rmi_stock_exchange.store.PriceSnapshotPublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * NIO server for {@link BinaryProtocol}. One selector thread does all socket I/O and frame
+ * decoding; each decoded request runs on its own virtual thread and its response is queued back
+ * to the selector, so a connection can keep many pipelined requests in flight. How many of them
+ * execute at once is bounded by the broker's admission control, not by a worker pool size.
+ * {@code GET_ALL_STOCKS} is answered on the selector thread itself by queueing the current price
+ * snapshot's pre-encoded bytes behind a small header, with no worker and no copy.
+ */
+@Component
+public class BinaryTradingServer {
+    private static final Logger logger = Logger.getLogger(BinaryTradingServer.class.getName());
+    private static final int RESPONSE_BUFFER_BYTES = 1024;
+    private static final int MAX_ERROR_CHARS = 256;
+
+    private final TradingService tradingService;
+    private final PriceSnapshotPublisher priceSnapshots;
+    private final boolean enabled;
+    private final int port;
+
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public BinaryTradingServer(
+            TradingService tradingService,
+            PriceSnapshotPublisher priceSnapshots,
+            @Value("${transport.binary.enabled:false}") boolean enabled,
+            @Value("${transport.binary.port:0}") int port,
+            @Value("${rmi.port:1099}") int rmiPort) {
+        this.tradingService = tradingService;
+        this.priceSnapshots = priceSnapshots;
+        this.enabled = enabled;
+        // By default the binary port sits 1000 above the RMI registry port
+        this.port = port > 0 ? port : rmiPort + 1000;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("binary-worker-", 0).factory());
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "binary-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        logger.info("Binary trading transport listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : port;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        workers.shutdownNow();
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close binary transport: " + e.getMessage());
+        }
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+                Connection connection;
+                while ((connection = pendingWrites.poll()) != null) {
+                    connection.flush();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection target = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            target.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            target.flush();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.warning("Binary transport selector error: " + e.getMessage());
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // Shutting down
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private byte[] handle(byte type, long correlationId, ByteBuffer request) {
+        ByteBuffer response = ByteBuffer.allocate(RESPONSE_BUFFER_BYTES);
+        int start = BinaryProtocol.beginFrame(response, BinaryProtocol.responseType(type), correlationId);
+        try {
+            switch (type) {
+                case BinaryProtocol.BUY, BinaryProtocol.SELL -> {
+                    String symbol = BinaryProtocol.getString(request);
+                    int quantity = request.getInt();
+                    String clientId = BinaryProtocol.getString(request);
+                    // Optional, so frames from clients without idempotency keys still parse
+                    long idempotencyKey = request.remaining() >= 8 ? request.getLong() : 0;
+                    boolean success = type == BinaryProtocol.BUY
+                            ? tradingService.buyStock(symbol, quantity, clientId, idempotencyKey)
+                            : tradingService.sellStock(symbol, quantity, clientId, idempotencyKey);
+                    response.put(BinaryProtocol.STATUS_OK).put((byte) (success ? 1 : 0));
+                }
+                case BinaryProtocol.GET_PRICE -> {
+                    double price = tradingService.getPrice(BinaryProtocol.getString(request));
+                    response.put(BinaryProtocol.STATUS_OK).putDouble(price);
+                }
+                case BinaryProtocol.IS_ALIVE ->
+                        response.put(BinaryProtocol.STATUS_OK).put((byte) (tradingService.isAlive() ? 1 : 0));
+                case BinaryProtocol.GET_BROKER_ID -> {
+                    response.put(BinaryProtocol.STATUS_OK);
+                    BinaryProtocol.putString(response, tradingService.getBrokerId());
+                }
+                default -> throw new IllegalArgumentException("Unknown message type " + type);
+            }
+        } catch (Exception e) {
+            response.position(start + BinaryProtocol.LENGTH_BYTES + BinaryProtocol.HEADER_BYTES);
+            response.put(e instanceof ServerBusyException ? BinaryProtocol.STATUS_BUSY : BinaryProtocol.STATUS_ERROR);
+            String message = String.valueOf(e.getMessage());
+            BinaryProtocol.putString(response, message.substring(0, Math.min(message.length(), MAX_ERROR_CHARS)));
+        }
+        BinaryProtocol.endFrame(response, start);
+        byte[] frame = new byte[response.position()];
+        response.flip();
+        response.get(frame);
+        return frame;
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(BinaryProtocol.MAX_FRAME_BYTES * 2);
+        // Guarded by this; filled by workers, drained by the selector thread
+        private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() {
+            try {
+                if (channel.read(readBuffer) < 0) {
+                    close();
+                    return;
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+
+            readBuffer.flip();
+            while (readBuffer.remaining() >= BinaryProtocol.LENGTH_BYTES) {
+                int length = readBuffer.getInt(readBuffer.position());
+                if (length < BinaryProtocol.HEADER_BYTES || length > BinaryProtocol.MAX_FRAME_BYTES) {
+                    logger.warning("Dropping connection with invalid frame length " + length);
+                    close();
+                    return;
+                }
+                if (readBuffer.remaining() < BinaryProtocol.LENGTH_BYTES + length) {
+                    break;
+                }
+                readBuffer.getInt();
+                byte type = readBuffer.get();
+                long correlationId = readBuffer.getLong();
+                byte[] payload = new byte[length - BinaryProtocol.HEADER_BYTES];
+                readBuffer.get(payload);
+                if (type == BinaryProtocol.GET_ALL_STOCKS) {
+                    respondWithSnapshot(correlationId);
+                } else {
+                    workers.execute(() -> respond(handle(type, correlationId, ByteBuffer.wrap(payload))));
+                }
+            }
+            readBuffer.compact();
+        }
+
+        private void respond(byte[] frame) {
+            synchronized (this) {
+                outbound.addLast(ByteBuffer.wrap(frame));
+            }
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        // Selector thread only, so the frame can be flushed straight away
+        private void respondWithSnapshot(long correlationId) {
+            ByteBuffer prices = priceSnapshots.current().encoded();
+            ByteBuffer header = ByteBuffer.allocate(BinaryProtocol.LENGTH_BYTES + BinaryProtocol.HEADER_BYTES + 1);
+            header.putInt(BinaryProtocol.HEADER_BYTES + 1 + prices.remaining())
+                    .put(BinaryProtocol.responseType(BinaryProtocol.GET_ALL_STOCKS))
+                    .putLong(correlationId)
+                    .put(BinaryProtocol.STATUS_OK)
+                    .flip();
+            synchronized (this) {
+                outbound.addLast(header);
+                outbound.addLast(prices);
+            }
+            flush();
+        }
+
+        // Selector thread only
+        private void flush() {
+            try {
+                synchronized (this) {
+                    while (!outbound.isEmpty()) {
+                        ByteBuffer head = outbound.peekFirst();
+                        channel.write(head);
+                        if (head.hasRemaining()) {
+                            break;
+                        }
+                        outbound.pollFirst();
+                    }
+                    if (key.isValid()) {
+                        key.interestOps(outbound.isEmpty()
+                                ? SelectionKey.OP_READ
+                                : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+}
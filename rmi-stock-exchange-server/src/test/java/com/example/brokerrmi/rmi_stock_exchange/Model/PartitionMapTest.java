@@ -0,0 +1,89 @@
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionMapTest {
+
+	private static final int KEYS = 100_000;
+
+	private static PartitionMap ring(String... brokerIds) {
+		return new PartitionMap(1, List.of(brokerIds), 2, 128);
+	}
+
+	private static String key(int i) {
+		return "SYM" + i;
+	}
+
+	@Test
+	void joinMovesAboutOneNthOfTheKeysAllToTheNewBroker() {
+		PartitionMap before = ring("broker1", "broker2", "broker3", "broker4");
+		PartitionMap after = ring("broker1", "broker2", "broker3", "broker4", "broker5");
+
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String primary = after.primary(key(i));
+			if (!primary.equals(before.primary(key(i)))) {
+				assertEquals("broker5", primary);
+				moved++;
+			}
+		}
+		double share = (double) moved / KEYS;
+		assertTrue(share > 0.15 && share < 0.25, "moved " + share);
+	}
+
+	@Test
+	void leaveMovesOnlyTheLeaversKeys() {
+		PartitionMap before = ring("broker1", "broker2", "broker3", "broker4", "broker5");
+		PartitionMap after = ring("broker1", "broker2", "broker4", "broker5");
+
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String previous = before.primary(key(i));
+			if (!previous.equals(after.primary(key(i)))) {
+				assertEquals("broker3", previous);
+				moved++;
+			}
+		}
+		double share = (double) moved / KEYS;
+		assertTrue(share > 0.15 && share < 0.25, "moved " + share);
+	}
+
+	@Test
+	void primariesAreSpreadEvenly() {
+		PartitionMap map = ring("broker1", "broker2", "broker3", "broker4");
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(map.primary(key(i)), 1, Integer::sum);
+		}
+
+		assertEquals(4, counts.size());
+		for (int count : counts.values()) {
+			assertTrue(count > KEYS / 4 * 0.7 && count < KEYS / 4 * 1.3, "primary of " + count);
+		}
+	}
+
+	@Test
+	void ownersAreDistinctPrimaryFirstAndTheSameWhateverTheMemberOrder() {
+		PartitionMap map = ring("broker1", "broker2", "broker3");
+		PartitionMap shuffled = new PartitionMap(7, List.of("broker3", "broker1", "broker2"), 2, 128);
+
+		for (int i = 0; i < 1_000; i++) {
+			List<String> owners = map.owners(key(i));
+			assertEquals(2, owners.size());
+			assertNotEquals(owners.get(0), owners.get(1));
+			assertEquals(map.primary(key(i)), owners.get(0));
+			assertEquals(owners, shuffled.owners(key(i)));
+		}
+		assertEquals(1, new PartitionMap(1, List.of("broker1"), 3, 128).getReplicas());
+		assertNull(new PartitionMap(1, List.of(), 2, 128).primary("AAPL"));
+	}
+}
@@ -0,0 +1,111 @@
+package com.example.brokerrmi.rmi_stock_exchange.account;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountSnapshot;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AccountLedgerTest {
+
+	private final SymbolStore symbols = new SymbolStore(16);
+	private final int aapl = symbols.add("AAPL", 100.0, 1000, 0);
+	// 10,000 cash, orders of at most 500 shares, positions down to -50
+	private final AccountLedger ledger = new AccountLedger(true, 4, 10_000, 500, 50, 0.05, symbols);
+
+	@Test
+	void sizeOfZeroOrLessIsRefusedEverywhere() {
+		assertNotNull(ledger.book("alice", aapl, OrderSide.BUY, -10_000, 100.0));
+		assertNotNull(ledger.book("alice", aapl, OrderSide.SELL, -10_000, 100.0));
+		assertNotNull(ledger.book("alice", aapl, OrderSide.BUY, 0, 100.0));
+		assertNotNull(ledger.check("alice", aapl, OrderSide.BUY, -1, 100.0));
+		assertNotNull(ledger.reserve("alice", 1, aapl, OrderSide.SELL, -1, 100.0));
+		ledger.settle("alice", aapl, OrderSide.BUY, -10_000, 100.0);
+
+		AccountSnapshot account = ledger.account("alice");
+		assertEquals(10_000, account.getCash(), 1e-9);
+		assertEquals(Map.of(), account.getPositions());
+	}
+
+	@Test
+	void buyIsRefusedBeyondBuyingPower() {
+		assertNull(ledger.book("alice", aapl, OrderSide.BUY, 60, 100.0));
+		assertNotNull(ledger.book("alice", aapl, OrderSide.BUY, 41, 100.0));
+		assertNull(ledger.book("alice", aapl, OrderSide.BUY, 40, 100.0));
+
+		AccountSnapshot account = ledger.account("alice");
+		assertEquals(0, account.getCash(), 1e-9);
+		assertEquals(Map.of("AAPL", 100L), account.getPositions());
+	}
+
+	@Test
+	void sizeAboveTheLimitIsRefused() {
+		assertNotNull(ledger.book("alice", aapl, OrderSide.SELL, 501, 1.0));
+		assertNull(ledger.book("alice", aapl, OrderSide.BUY, 500, 1.0));
+	}
+
+	@Test
+	void saleIsRefusedPastTheShortLimit() {
+		assertNull(ledger.book("alice", aapl, OrderSide.SELL, 50, 100.0));
+		assertNotNull(ledger.book("alice", aapl, OrderSide.SELL, 1, 100.0));
+
+		assertEquals(15_000, ledger.account("alice").getCash(), 1e-9);
+		assertEquals(Map.of("AAPL", -50L), ledger.account("alice").getPositions());
+	}
+
+	@Test
+	void holdsCountAgainstLaterChecksUntilReleased() {
+		assertNull(ledger.reserve("alice", 7, aapl, OrderSide.BUY, 80, 100.0));
+		assertNotNull(ledger.check("alice", aapl, OrderSide.BUY, 21, 100.0));
+		assertNull(ledger.check("alice", aapl, OrderSide.BUY, 20, 100.0));
+
+		ledger.release("alice", 7);
+		assertNull(ledger.check("alice", aapl, OrderSide.BUY, 100, 100.0));
+	}
+
+	@Test
+	void settlingTakesTheTradeOffItsHold() {
+		assertNull(ledger.reserve("alice", 7, aapl, OrderSide.SELL, 30, 100.0));
+		ledger.settle("alice", 7, aapl, OrderSide.SELL, 10, 90.0);
+
+		// 20 shares still held, 10 sold: 20 more may go before the short limit
+		assertNotNull(ledger.check("alice", aapl, OrderSide.SELL, 21, 100.0));
+		assertNull(ledger.check("alice", aapl, OrderSide.SELL, 20, 100.0));
+		assertEquals(10_900, ledger.account("alice").getCash(), 1e-9);
+
+		ledger.release("alice", 7);
+		assertNull(ledger.check("alice", aapl, OrderSide.SELL, 40, 100.0));
+	}
+
+	@Test
+	void grantHoldsWhatFitsUpToTheQuantityAsked() {
+		assertEquals(60, ledger.grant("alice", 1, aapl, OrderSide.BUY, 60, 100.0));
+		assertEquals(40, ledger.grant("alice", 2, aapl, OrderSide.BUY, 60, 100.0));
+		assertEquals(0, ledger.grant("alice", 3, aapl, OrderSide.BUY, 60, 100.0));
+		assertEquals(50, ledger.grant("alice", 4, aapl, OrderSide.SELL, 80, 100.0));
+
+		// A grant is a hold, settled by the trades drawn from it and released with what is left
+		ledger.settle("alice", 1, aapl, OrderSide.BUY, 10, 100.0);
+		ledger.release("alice", 1);
+		assertEquals(50, ledger.grant("alice", 5, aapl, OrderSide.BUY, 60, 100.0));
+		assertEquals(9_000, ledger.account("alice").getCash(), 1e-9);
+	}
+
+	@Test
+	void exportedAccountIsAddedToWhatTheAdopterBooked() {
+		ledger.book("alice", aapl, OrderSide.BUY, 10, 100.0);
+		AccountLedger other = new AccountLedger(true, 4, 10_000, 500, 50, 0.05, symbols);
+		other.book("alice", aapl, OrderSide.SELL, 5, 100.0);
+
+		ledger.export(client -> true).forEach(state -> other.adopt(state, symbols::idOf));
+
+		assertEquals(9_500, other.account("alice").getCash(), 1e-9);
+		assertEquals(Map.of("AAPL", 5L), other.account("alice").getPositions());
+		assertEquals(10_000, ledger.account("alice").getCash(), 1e-9);
+	}
+}
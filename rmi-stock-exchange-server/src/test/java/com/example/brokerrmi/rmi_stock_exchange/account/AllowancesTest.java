@@ -0,0 +1,115 @@
+package com.example.brokerrmi.rmi_stock_exchange.account;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Reservation;
+import com.example.brokerrmi.rmi_stock_exchange.journal.TradeJournal;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AllowancesTest {
+
+	private final SymbolStore symbols = new SymbolStore(16);
+	private final int aapl = symbols.add("AAPL", 100.0, 1000, 0);
+	// The client's home: 10,000 cash, orders of at most 500 shares, positions down to -50
+	private final AccountLedger home = new AccountLedger(true, 4, 10_000, 500, 50, 0.05, symbols);
+	private final List<Reservation> asked = new CopyOnWriteArrayList<>();
+	private final List<Long> released = new CopyOnWriteArrayList<>();
+	private final AtomicLong keys = new AtomicLong();
+	private Allowances allowances;
+
+	@AfterEach
+	void tearDown() {
+		allowances.stop();
+	}
+
+	// Grants for 10 trades, released after idleMillis
+	private Allowances start(long idleMillis) {
+		allowances = new Allowances(true, 10, idleMillis, new TradeJournal(false, "unused", 1, "never", 5, Long.MAX_VALUE),
+				symbols);
+		allowances.start(keys::incrementAndGet, wanted -> {
+			asked.addAll(wanted);
+			int[] granted = new int[wanted.size()];
+			for (int i = 0; i < granted.length; i++) {
+				Reservation grant = wanted.get(i);
+				granted[i] = home.grant(grant.getClientId(), grant.getKey(), symbols.idOf(grant.getSymbol()), grant.getSide(),
+						grant.getQuantity(), grant.getPrice());
+			}
+			return granted;
+		}, (clientId, key, symbol) -> {
+			released.add(key);
+			home.release(clientId, key);
+		});
+		return allowances;
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	void tradesDrawFromOneGrantAndRefillBeforeItRunsOut() throws Exception {
+		start(60_000);
+		long key = allowances.draw("alice", aapl, OrderSide.BUY, 2, 100.0, 105.0);
+		assertEquals(1, asked.size());
+		assertEquals(20, asked.get(0).getQuantity());
+
+		// 18 of 20 left: four more draws leave 10, still half a grant
+		for (int i = 0; i < 4; i++) {
+			assertEquals(key, allowances.draw("alice", aapl, OrderSide.BUY, 2, 100.0, 105.0));
+		}
+		assertEquals(1, asked.size());
+
+		allowances.draw("alice", aapl, OrderSide.BUY, 2, 100.0, 105.0);
+		awaitTrue(() -> asked.size() == 2);
+		assertEquals(1L, allowances.snapshot().get("misses"));
+	}
+
+	@Test
+	void buyAboveTheGrantPriceAsksForANewGrant() throws Exception {
+		start(60_000);
+		long key = allowances.draw("alice", aapl, OrderSide.BUY, 1, 100.0, 105.0);
+		assertEquals(105.0, allowances.priceOf("alice", key));
+
+		assertNotEquals(key, allowances.draw("alice", aapl, OrderSide.BUY, 1, 110.0, 115.5));
+		assertEquals(2, asked.size());
+	}
+
+	@Test
+	void grantShortOfTheTradeIsKeptForSmallerOnes() throws Exception {
+		start(60_000);
+		// 50 shares may be sold short, so a grant asked for 10 sales of 60 holds 50
+		assertEquals(0, allowances.draw("alice", aapl, OrderSide.SELL, 60, 100.0, 100.0));
+		assertEquals(1, asked.size());
+		assertEquals(0, home.grant("alice", 99, aapl, OrderSide.SELL, 1, 100.0));
+
+		long key = allowances.draw("alice", aapl, OrderSide.SELL, 10, 100.0, 100.0);
+		assertNotEquals(0, key);
+		assertEquals(asked.get(0).getKey(), key);
+	}
+
+	@Test
+	void idleGrantsAreReleasedOnceNothingIsOutstanding() throws Exception {
+		start(20);
+		long key = allowances.draw("alice", aapl, OrderSide.BUY, 1, 100.0, 105.0);
+		Thread.sleep(100);
+		assertEquals(List.of(), released);
+
+		allowances.settled("alice", key, 1);
+		awaitTrue(() -> released.equals(List.of(key)));
+		assertEquals(List.of(), allowances.openGrants());
+	}
+}
@@ -0,0 +1,235 @@
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.rmi.ConnectException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Three nodes in one JVM, wired to each other through stubs that call the handlers directly or fail like a lost connection
+class RaftNodeTest {
+
+	private static final long TIMEOUT_MS = 10_000;
+
+	@TempDir
+	Path directory;
+
+	private final Map<String, RaftNode> nodes = new LinkedHashMap<>();
+	private final Map<String, AppliedLog> applied = new LinkedHashMap<>();
+	private final Set<String> isolated = ConcurrentHashMap.newKeySet();
+
+	@BeforeEach
+	void setUp() {
+		for (String id : List.of("broker1", "broker2", "broker3")) {
+			nodes.put(id, new RaftNode("consensus", id, 3, 150, 20, 0.8, 64, 4, 5000, 100_000, false, false, false,
+					directory.resolve(id).toString()));
+			applied.put(id, new AppliedLog());
+		}
+		nodes.forEach((id, node) -> nodes.keySet().stream()
+				.filter(peerId -> !peerId.equals(id))
+				.forEach(peerId -> node.addPeer(peerId, stub(id, peerId))));
+		nodes.forEach((id, node) -> node.start(applied.get(id), 0));
+	}
+
+	@AfterEach
+	void tearDown() {
+		nodes.values().forEach(RaftNode::shutdown);
+	}
+
+	// A peer as seen from one node; calls fail while either end is isolated
+	private TradingService stub(String from, String to) {
+		return (TradingService) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {TradingService.class, ConsensusService.class}, (proxy, method, args) -> {
+					switch (method.getName()) {
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "toString":
+							return from + "->" + to;
+						default:
+							break;
+					}
+					if (isolated.contains(from) || isolated.contains(to)) {
+						throw new ConnectException(from + " cannot reach " + to);
+					}
+					RaftNode target = nodes.get(to);
+					return switch (method.getName()) {
+						case "appendEntries" -> target.handleAppendEntries((AppendEntriesRequest) args[0]);
+						case "requestVote" -> target.handleRequestVote((VoteRequest) args[0]);
+						case "installSnapshot" -> target.handleInstallSnapshot((InstallSnapshotRequest) args[0]);
+						case "readIndex" -> target.handleReadIndex();
+						default -> throw new UnsupportedOperationException(method.getName());
+					};
+				});
+	}
+
+	private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Timed out waiting for " + what);
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	// Waits until exactly one of the given nodes leads, and returns its id
+	private String awaitLeader(List<String> among) throws InterruptedException {
+		String[] leader = new String[1];
+		await("a leader among " + among, () -> {
+			List<String> leaders = among.stream().filter(id -> nodes.get(id).isLeader()).toList();
+			leader[0] = leaders.size() == 1 ? leaders.get(0) : null;
+			return leader[0] != null;
+		});
+		return leader[0];
+	}
+
+	private static long term(RaftNode node) {
+		return ((Number) node.snapshot().get("term")).longValue();
+	}
+
+	private static LogEntry trade(String clientId) {
+		return new LogEntry(0, 0, LogEntry.Type.BUY, "AAPL", 1, 0.0, clientId);
+	}
+
+	private void awaitApplied(String id, List<String> expected) throws InterruptedException {
+		await(id + " to apply " + expected, () -> applied.get(id).clients().equals(expected));
+	}
+
+	@Test
+	void electsOneLeaderThatReplicatesToEveryNode() throws Exception {
+		String leader = awaitLeader(List.copyOf(nodes.keySet()));
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 1; i <= 5; i++) {
+			TradeResult result = nodes.get(leader).propose(trade("client-" + i));
+			assertTrue(result.isSuccess());
+			expected.add("client-" + i);
+		}
+
+		for (String id : nodes.keySet()) {
+			awaitApplied(id, expected);
+			assertEquals(term(nodes.get(leader)), term(nodes.get(id)));
+		}
+	}
+
+	@Test
+	void remainingMajorityElectsANewLeaderWhenTheLeaderIsCutOff() throws Exception {
+		String oldLeader = awaitLeader(List.copyOf(nodes.keySet()));
+		nodes.get(oldLeader).propose(trade("before"));
+		long oldTerm = term(nodes.get(oldLeader));
+
+		isolated.add(oldLeader);
+		List<String> rest = nodes.keySet().stream().filter(id -> !id.equals(oldLeader)).toList();
+		String newLeader = awaitLeader(rest);
+		assertTrue(term(nodes.get(newLeader)) > oldTerm);
+		assertTrue(nodes.get(newLeader).propose(trade("after")).isSuccess());
+		await(oldLeader + " to step down", () -> !nodes.get(oldLeader).isLeader());
+
+		isolated.clear();
+		for (String id : nodes.keySet()) {
+			awaitApplied(id, List.of("before", "after"));
+		}
+		assertEquals(newLeader, awaitLeader(List.copyOf(nodes.keySet())));
+	}
+
+	@Test
+	void followerThatMissedEntriesIsRepairedWhenItReturns() throws Exception {
+		String leader = awaitLeader(List.copyOf(nodes.keySet()));
+		String follower = nodes.keySet().stream().filter(id -> !id.equals(leader)).findFirst().orElseThrow();
+
+		isolated.add(follower);
+		List<String> expected = new ArrayList<>();
+		List<LogEntry> batch = new ArrayList<>();
+		for (int i = 1; i <= 200; i++) {
+			batch.add(trade("client-" + i));
+			expected.add("client-" + i);
+		}
+		// More than one batch of 64, so the repair takes several appends
+		for (CompletableFuture<TradeResult> result : nodes.get(leader).proposeAll(batch)) {
+			assertTrue(nodes.get(leader).await(result).isSuccess());
+		}
+		assertTrue(applied.get(follower).clients().isEmpty());
+
+		isolated.clear();
+		awaitApplied(follower, expected);
+		assertEquals(leader, awaitLeader(List.copyOf(nodes.keySet())));
+	}
+
+	@Test
+	void uncommittedEntriesOfACutOffLeaderAreReplaced() throws Exception {
+		String oldLeader = awaitLeader(List.copyOf(nodes.keySet()));
+		nodes.get(oldLeader).propose(trade("committed"));
+
+		isolated.add(oldLeader);
+		// Appended to the old leader's log only, so they can never reach a majority
+		List<CompletableFuture<TradeResult>> stale = nodes.get(oldLeader).proposeAll(List.of(trade("stale-1"), trade("stale-2")));
+
+		List<String> rest = nodes.keySet().stream().filter(id -> !id.equals(oldLeader)).toList();
+		String newLeader = awaitLeader(rest);
+		assertNotEquals(oldLeader, newLeader);
+		nodes.get(newLeader).propose(trade("fresh-1"));
+		nodes.get(newLeader).propose(trade("fresh-2"));
+		nodes.get(newLeader).propose(trade("fresh-3"));
+
+		isolated.clear();
+		List<String> expected = List.of("committed", "fresh-1", "fresh-2", "fresh-3");
+		for (String id : nodes.keySet()) {
+			awaitApplied(id, expected);
+		}
+		for (CompletableFuture<TradeResult> result : stale) {
+			await("the stale proposal to fail", result::isDone);
+			assertTrue(result.isCompletedExceptionally());
+		}
+		assertFalse(nodes.get(oldLeader).isLeader());
+	}
+
+	// Records the client of each applied trade, in log order
+	private static final class AppliedLog implements StateMachine {
+		private final List<String> clients = new ArrayList<>();
+
+		@Override
+		public synchronized TradeResult apply(LogEntry entry) {
+			clients.add(entry.getClientId());
+			return new TradeResult(true, entry.getIndex(), null);
+		}
+
+		synchronized List<String> clients() {
+			return new ArrayList<>(clients);
+		}
+
+		@Override
+		public List<StockUpdate> capture() {
+			return List.of();
+		}
+
+		@Override
+		public void restore(List<StockUpdate> state) {
+		}
+
+		@Override
+		public void checkpoint() {
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.example.brokerrmi.rmi_stock_exchange.dedup;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeOutcome;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+import org.junit.jupiter.api.Test;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DedupWindowTest {
+
+	private final AtomicInteger runs = new AtomicInteger();
+
+	// Counts each run and succeeds at a price that tells the runs apart
+	private TradeResult submit(DedupWindow dedup, String clientId, long key) throws RemoteException {
+		return DedupWindow.join(dedup.submit(clientId, key, "AAPL",
+				() -> CompletableFuture.completedFuture(new TradeResult(true, runs.incrementAndGet(), null))));
+	}
+
+	@Test
+	void repeatedKeyGetsTheFirstResult() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(true, 60_000, 16);
+
+		TradeResult first = submit(dedup, "client", 1);
+		TradeResult again = submit(dedup, "client", 1);
+
+		assertEquals(1, runs.get());
+		assertEquals(first.getPrice(), again.getPrice());
+		assertEquals(1L, dedup.snapshot().get("duplicates"));
+	}
+
+	@Test
+	void keysAreScopedToTheClient() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(true, 60_000, 16);
+
+		submit(dedup, "client-a", 1);
+		submit(dedup, "client-b", 1);
+
+		assertEquals(2, runs.get());
+	}
+
+	@Test
+	void tradesWithoutAKeyAlwaysRun() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(true, 60_000, 16);
+
+		submit(dedup, "client", 0);
+		submit(dedup, "client", 0);
+
+		assertEquals(2, runs.get());
+		assertNull(dedup.lookup("client", 0));
+	}
+
+	@Test
+	void duplicateWhileTheFirstIsRunningWaitsForItsResult() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(true, 60_000, 16);
+		CompletableFuture<TradeResult> running = new CompletableFuture<>();
+
+		CompletableFuture<TradeResult> first = dedup.submit("client", 1, "AAPL", () -> {
+			runs.incrementAndGet();
+			return running;
+		});
+		CompletableFuture<TradeResult> duplicate = dedup.submit("client", 1, "AAPL", () -> {
+			runs.incrementAndGet();
+			return CompletableFuture.completedFuture(new TradeResult(false, 0.0, "ran twice"));
+		});
+
+		assertEquals(1, runs.get());
+		assertFalse(duplicate.isDone());
+		running.complete(new TradeResult(true, 150.0, null));
+		assertEquals(150.0, DedupWindow.join(duplicate).getPrice());
+		assertEquals(150.0, DedupWindow.join(first).getPrice());
+		assertEquals(150.0, dedup.lookup("client", 1).getPrice());
+	}
+
+	@Test
+	void tradeThatCouldNotStartIsForgotten() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(true, 60_000, 16);
+
+		assertThrows(RemoteException.class, () -> dedup.submit("client", 1, "AAPL", () -> {
+			throw new RemoteException("busy");
+		}));
+		submit(dedup, "client", 1);
+
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	void tradeThatFailedAfterStartingStaysClaimedUntilItsOutcomeIsKnown() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(true, 60_000, 16);
+
+		CompletableFuture<TradeResult> first = dedup.submit("client", 1, "AAPL",
+				() -> CompletableFuture.failedFuture(new RemoteException("leader stepped down")));
+		assertThrows(RemoteException.class, () -> DedupWindow.join(first));
+
+		assertThrows(RemoteException.class, () -> submit(dedup, "client", 1));
+		assertEquals(0, runs.get());
+		assertEquals(1, dedup.snapshot().get("unresolved"));
+
+		// The entry committed after all, and was recorded as it was applied
+		dedup.record("client", 1, new TradeResult(true, 151.0, null));
+		assertEquals(151.0, submit(dedup, "client", 1).getPrice());
+		assertEquals(0, runs.get());
+		assertEquals(0, dedup.snapshot().get("unresolved"));
+	}
+
+	@Test
+	void outcomesFromPeersAreRemembered() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(true, 60_000, 16);
+
+		dedup.recordReplicated(List.of(new TradeOutcome(DedupWindow.keyOf("client", 1), "AAPL", false, 150.0, "refused")));
+		TradeResult result = submit(dedup, "client", 1);
+
+		assertEquals(0, runs.get());
+		assertFalse(result.isSuccess());
+		assertEquals("refused", result.getMessage());
+	}
+
+	@Test
+	void fullGenerationRotatesEarlyAndTheOneBeforeIsDropped() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(true, 60_000, 2);
+
+		for (long key = 1; key <= 3; key++) {
+			submit(dedup, "client", key);
+		}
+		// Keys 1 and 2 moved to the previous generation when key 3 did not fit
+		assertNotNull(dedup.lookup("client", 1));
+		assertEquals(1L, dedup.snapshot().get("earlyRotations"));
+
+		submit(dedup, "client", 4);
+		submit(dedup, "client", 5);
+
+		assertNull(dedup.lookup("client", 1));
+		assertNotNull(dedup.lookup("client", 3));
+		assertEquals(2L, dedup.snapshot().get("earlyRotations"));
+	}
+
+	@Test
+	void keyIsRememberedForHalfAWindowAtLeastAndAWholeWindowAtMost() throws Exception {
+		DedupWindow dedup = new DedupWindow(true, 1000, 16);
+		submit(dedup, "client", 1);
+
+		Thread.sleep(600);
+		assertNotNull(dedup.lookup("client", 1));
+
+		Thread.sleep(600);
+		assertNull(dedup.lookup("client", 1));
+		submit(dedup, "client", 1);
+		assertEquals(2, runs.get());
+	}
+
+	@Test
+	void disabledWindowRunsEveryTrade() throws RemoteException {
+		DedupWindow dedup = new DedupWindow(false, 60_000, 16);
+
+		submit(dedup, "client", 1);
+		submit(dedup, "client", 1);
+
+		assertEquals(2, runs.get());
+		assertEquals(false, dedup.snapshot().get("enabled"));
+	}
+}
@@ -0,0 +1,99 @@
+package com.example.brokerrmi.rmi_stock_exchange.engine;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.Fill;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderResult;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderStatus;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatchingEngineTest {
+
+	private final MatchingEngine engine = new MatchingEngine(16, 100);
+
+	@Test
+	void limitOrderRestsAndIsPartiallyFilled() {
+		OrderResult resting = engine.submit("AAPL", OrderSide.SELL, OrderType.LIMIT, 100.0, 10, "seller");
+		assertEquals(OrderStatus.NEW, resting.getStatus());
+
+		OrderResult taker = engine.submit("AAPL", OrderSide.BUY, OrderType.LIMIT, 100.0, 4, "buyer");
+		assertEquals(OrderStatus.FILLED, taker.getStatus());
+		assertEquals(4, taker.getFilledQuantity());
+		assertEquals(1, taker.getFills().size());
+		assertEquals(resting.getOrderId(), taker.getFills().get(0).getCounterOrderId());
+
+		OrderResult rest = engine.submit("AAPL", OrderSide.BUY, OrderType.LIMIT, 100.0, 10, "buyer");
+		assertEquals(OrderStatus.PARTIALLY_FILLED, rest.getStatus());
+		assertEquals(6, rest.getFilledQuantity());
+	}
+
+	@Test
+	void unfilledMarketQuantityIsCancelled() {
+		engine.submit("AAPL", OrderSide.SELL, OrderType.LIMIT, 100.0, 3, "seller");
+
+		OrderResult market = engine.submit("AAPL", OrderSide.BUY, OrderType.MARKET, 0.0, 5, "buyer");
+
+		assertEquals(OrderStatus.CANCELLED, market.getStatus());
+		assertEquals(3, market.getFilledQuantity());
+		assertEquals(2, market.getRemainingQuantity());
+	}
+
+	@Test
+	void limitOrderDoesNotRestWhenRestingIsOff() {
+		OrderResult result = engine.submit("AAPL", OrderSide.SELL, OrderType.LIMIT, 100.0, 3, "seller", false);
+
+		assertEquals(OrderStatus.CANCELLED, result.getStatus());
+		assertTrue(engine.submit("AAPL", OrderSide.BUY, OrderType.MARKET, 0.0, 1, "buyer").getFills().isEmpty());
+	}
+
+	@Test
+	void bothSidesOfAMatchAreKeptForGetFills() {
+		OrderResult resting = engine.submit("AAPL", OrderSide.SELL, OrderType.LIMIT, 100.0, 5, "seller");
+		engine.submit("AAPL", OrderSide.BUY, OrderType.LIMIT, 100.0, 2, "buyer");
+
+		List<Fill> sellerFills = engine.getFills("seller", 0);
+		List<Fill> buyerFills = engine.getFills("buyer", 0);
+		assertEquals(1, sellerFills.size());
+		assertEquals(resting.getOrderId(), sellerFills.get(0).getOrderId());
+		assertEquals(OrderSide.SELL, sellerFills.get(0).getSide());
+		assertEquals(1, buyerFills.size());
+		assertTrue(engine.getFills("buyer", buyerFills.get(0).getSequence()).isEmpty());
+	}
+
+	@Test
+	void fillWithoutSequenceIsNumberedOnArrival() {
+		engine.submit("AAPL", OrderSide.SELL, OrderType.LIMIT, 100.0, 5, "seller");
+		engine.submit("AAPL", OrderSide.BUY, OrderType.LIMIT, 100.0, 2, "buyer");
+		long last = engine.getFills("buyer", 0).get(0).getSequence();
+
+		engine.recordFill(new Fill(0, "MSFT", 7, 8, OrderSide.BUY, 300.0, 1, "buyer", 0));
+
+		List<Fill> newer = engine.getFills("buyer", last);
+		assertEquals(1, newer.size());
+		assertTrue(newer.get(0).getSequence() > last);
+	}
+
+	@Test
+	void cancelChecksTheClient() {
+		OrderResult resting = engine.submit("AAPL", OrderSide.BUY, OrderType.LIMIT, 99.0, 5, "buyer");
+
+		assertFalse(engine.cancel("AAPL", resting.getOrderId(), "someone-else"));
+		assertTrue(engine.cancel("AAPL", resting.getOrderId(), "buyer"));
+		assertFalse(engine.cancel("AAPL", resting.getOrderId(), "buyer"));
+	}
+
+	@Test
+	void orderWithoutAClientIsRejectedAndCancelWithoutOneMatchesNothing() {
+		assertEquals(OrderStatus.REJECTED, engine.submit("AAPL", OrderSide.BUY, OrderType.LIMIT, 99.0, 5, null).getStatus());
+		OrderResult resting = engine.submit("AAPL", OrderSide.BUY, OrderType.LIMIT, 99.0, 5, "buyer");
+
+		assertFalse(engine.cancel("AAPL", resting.getOrderId(), null));
+		assertTrue(engine.cancel("AAPL", resting.getOrderId(), "buyer"));
+	}
+}
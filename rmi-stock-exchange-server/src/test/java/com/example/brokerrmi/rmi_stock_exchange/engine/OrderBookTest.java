@@ -0,0 +1,119 @@
+package com.example.brokerrmi.rmi_stock_exchange.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderBookTest {
+
+	private OrderBook book;
+	private List<long[]> fills;
+
+	@BeforeEach
+	void setUp() {
+		book = new OrderBook("AAPL", 16);
+		fills = new ArrayList<>();
+	}
+
+	// Records each fill as {maker order id, price ticks, quantity}
+	private long match(boolean buy, long limitTicks, long quantity) {
+		return book.match(buy, limitTicks, quantity,
+				(makerOrderId, makerClientId, priceTicks, traded) -> fills.add(new long[] {makerOrderId, priceTicks, traded}));
+	}
+
+	@Test
+	void matchesBestPriceFirstThenOldestAtEachPrice() {
+		book.add(1, false, 10100, 5, "a");
+		book.add(2, false, 10000, 5, "b");
+		book.add(3, false, 10000, 5, "c");
+
+		long remaining = match(true, OrderBook.MARKET_BUY, 12);
+
+		assertEquals(0, remaining);
+		assertEquals(3, fills.size());
+		assertEquals(List.of(2L, 10000L, 5L), List.of(fills.get(0)[0], fills.get(0)[1], fills.get(0)[2]));
+		assertEquals(List.of(3L, 10000L, 5L), List.of(fills.get(1)[0], fills.get(1)[1], fills.get(1)[2]));
+		assertEquals(List.of(1L, 10100L, 2L), List.of(fills.get(2)[0], fills.get(2)[1], fills.get(2)[2]));
+		assertEquals(3, book.remaining(1));
+		assertEquals(10100, book.bestAsk());
+		assertEquals(1, book.askLevels());
+	}
+
+	@Test
+	void bidsMatchHighestFirst() {
+		book.add(1, true, 9900, 5, "a");
+		book.add(2, true, 10000, 5, "b");
+
+		match(false, OrderBook.MARKET_SELL, 7);
+
+		assertEquals(2, fills.get(0)[0]);
+		assertEquals(1, fills.get(1)[0]);
+		assertEquals(3, book.remaining(1));
+		assertEquals(9900, book.bestBid());
+	}
+
+	@Test
+	void limitStopsAtItsPrice() {
+		book.add(1, false, 10000, 5, "a");
+		book.add(2, false, 10100, 5, "b");
+
+		long remaining = match(true, 10000, 8);
+
+		assertEquals(3, remaining);
+		assertEquals(1, fills.size());
+		assertEquals(0, book.remaining(1));
+		assertEquals(5, book.remaining(2));
+		assertEquals(1, book.restingOrders());
+	}
+
+	@Test
+	void partialFillKeepsTheMakerAtTheFrontOfItsLevel() {
+		book.add(1, false, 10000, 10, "a");
+		book.add(2, false, 10000, 10, "b");
+
+		match(true, 10000, 4);
+		match(true, 10000, 4);
+
+		assertEquals(2, book.remaining(1));
+		assertEquals(10, book.remaining(2));
+		assertEquals(1L, fills.get(1)[0]);
+		assertEquals(2, book.restingOrders());
+	}
+
+	@Test
+	void cancelRemovesOnlyTheOwnersOrder() {
+		book.add(1, false, 10000, 5, "a");
+		book.add(2, false, 10100, 5, "b");
+
+		assertEquals(0, book.cancel(1, "b"));
+		assertEquals(0, book.cancel(1, null));
+		assertEquals(5, book.remaining(1));
+
+		assertEquals(5, book.cancel(1, "a"));
+		assertEquals(0, book.remaining(1));
+		assertEquals(0, book.cancel(1, "a"));
+		assertEquals(10100, book.bestAsk());
+		assertEquals(1, book.askLevels());
+
+		match(true, OrderBook.MARKET_BUY, 5);
+		assertEquals(2, fills.get(0)[0]);
+		assertEquals(0, book.restingOrders());
+	}
+
+	@Test
+	void cancelledNodeIsReusedWithoutDisturbingTheLevel() {
+		book.add(1, false, 10000, 5, "a");
+		book.add(2, false, 10000, 5, "b");
+		book.add(3, false, 10000, 5, "c");
+		book.cancel(2, "b");
+		book.add(4, false, 10000, 5, "d");
+
+		match(true, 10000, 20);
+
+		assertEquals(List.of(1L, 3L, 4L), fills.stream().map(fill -> fill[0]).toList());
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.brokerrmi.rmi_stock_exchange.history;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnBlockTest {
+
+	private static void assertSameRows(ColumnBlock expected, ColumnBlock actual) {
+		assertEquals(expected.count, actual.count);
+		for (int row = 0; row < expected.count; row++) {
+			assertEquals(expected.timestamps[row], actual.timestamps[row]);
+			assertEquals(expected.symbols[row], actual.symbols[row]);
+			assertEquals(expected.side(row), actual.side(row));
+			assertEquals(expected.quantities[row], actual.quantities[row]);
+			assertEquals(Double.doubleToRawLongBits(expected.prices[row]), Double.doubleToRawLongBits(actual.prices[row]));
+			assertEquals(expected.clients[row], actual.clients[row]);
+			assertEquals(expected.brokers[row], actual.brokers[row]);
+		}
+	}
+
+	@Test
+	void decodesWhatItEncoded() {
+		Random random = new Random(42);
+		ColumnBlock block = new ColumnBlock(4096, 1000);
+		long timestamp = 1_700_000_000_000L;
+		double[] prices = {150.0, 300.0, 0.01, 99_999.99};
+		while (!block.isFull()) {
+			// Trades may arrive out of time order, so deltas go both ways
+			timestamp += random.nextInt(200) - 50;
+			int symbol = random.nextInt(prices.length);
+			prices[symbol] += (random.nextInt(5) - 2) * 0.01;
+			block.add(timestamp, symbol, random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL, 1 + random.nextInt(10_000),
+					prices[symbol], random.nextInt(100_000), random.nextInt(3));
+		}
+
+		byte[] encoded = block.encode();
+		ColumnBlock decoded = ColumnBlock.decode(4096, block.count, encoded);
+
+		assertSameRows(block, decoded);
+		assertEquals(4096, decoded.firstSequence);
+		assertEquals(block.minTimestamp(), decoded.minTimestamp());
+		assertEquals(block.maxTimestamp(), decoded.maxTimestamp());
+		assertTrue(encoded.length < block.count * 40);
+	}
+
+	@Test
+	void partBlockAndExtremeValuesRoundTrip() {
+		ColumnBlock block = new ColumnBlock(0, 8);
+		block.add(Long.MAX_VALUE, Integer.MAX_VALUE, OrderSide.SELL, Integer.MAX_VALUE, Double.MAX_VALUE, Integer.MAX_VALUE, 0);
+		block.add(0, 0, OrderSide.BUY, 0, -0.0, 0, Integer.MAX_VALUE);
+		block.add(Long.MIN_VALUE, 0, OrderSide.BUY, 1, Double.NaN, 1, 1);
+
+		assertSameRows(block, ColumnBlock.decode(0, block.count, block.encode()));
+	}
+
+	@Test
+	void distinctIdsAreSortedAndCoverOnlyTheRowsFilled() {
+		int[] column = {5, 3, 5, 1, 3, 9};
+
+		assertArrayEquals(new int[] {1, 3, 5}, ColumnBlock.distinct(column, 5));
+	}
+}
@@ -0,0 +1,94 @@
+package com.example.brokerrmi.rmi_stock_exchange.history;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradePage;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TradeHistoryTest {
+
+	@TempDir
+	Path directory;
+
+	private final List<TradeHistory> opened = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		opened.forEach(TradeHistory::close);
+	}
+
+	// Blocks of 4 trades, sealed only when full, pages of at most 3
+	private TradeHistory open() {
+		TradeHistory history = new TradeHistory(true, "broker1", directory.toString(), 4, 60_000, 3);
+		opened.add(history);
+		return history;
+	}
+
+	private interface PageSource {
+		TradePage page(long cursor) throws IOException;
+	}
+
+	// Every page from the first cursor to the last, as "symbol quantity" per trade
+	private static List<String> pageThrough(PageSource source) throws IOException {
+		List<String> trades = new ArrayList<>();
+		long cursor = 0;
+		do {
+			TradePage page = source.page(cursor);
+			assertTrue(page.getTrades().size() <= 3);
+			for (TradeRecord trade : page.getTrades()) {
+				trades.add(trade.getSymbol() + " " + trade.getQuantity());
+			}
+			cursor = page.getNextCursor();
+		} while (cursor >= 0);
+		return trades;
+	}
+
+	private static void recordTrades(TradeHistory history) {
+		for (int i = 1; i <= 10; i++) {
+			history.record(i % 2 == 0 ? "AAPL" : "MSFT", OrderSide.BUY, i, 100.0 + i, "client-" + i % 3);
+		}
+		// Ran on broker2 for a client homed here: only client queries see it
+		history.recordForClient("AAPL", OrderSide.SELL, 11, 111.0, "client-1", "broker2", System.currentTimeMillis());
+	}
+
+	@Test
+	void cursorPagesThroughSealedBlocksAndTheOpenOne() throws IOException {
+		TradeHistory history = open();
+		recordTrades(history);
+
+		assertEquals(List.of("AAPL 2", "AAPL 4", "AAPL 6", "AAPL 8", "AAPL 10"),
+				pageThrough(cursor -> history.symbolTrades("AAPL", 0, Long.MAX_VALUE, cursor, 100)));
+		assertEquals(List.of("MSFT 1", "AAPL 4", "MSFT 7", "AAPL 10", "AAPL 11"),
+				pageThrough(cursor -> history.clientTrades("client-1", cursor, 100)));
+		assertEquals(List.of(), pageThrough(cursor -> history.symbolTrades("IBM", 0, Long.MAX_VALUE, cursor, 100)));
+		assertEquals(List.of(), pageThrough(cursor -> history.symbolTrades("AAPL", 0, 1, cursor, 100)));
+	}
+
+	@Test
+	void reopenedHistoryReadsTheBlocksBackFromDisk() throws IOException {
+		TradeHistory history = open();
+		recordTrades(history);
+		history.close();
+		opened.remove(history);
+
+		TradeHistory reopened = open();
+		assertEquals(List.of("AAPL 2", "AAPL 4", "AAPL 6", "AAPL 8", "AAPL 10"),
+				pageThrough(cursor -> reopened.symbolTrades("AAPL", 0, Long.MAX_VALUE, cursor, 100)));
+
+		// New trades continue the sequence after the stored ones
+		reopened.record("AAPL", OrderSide.SELL, 12, 112.0, "client-0");
+		assertEquals(List.of("MSFT 3", "AAPL 6", "MSFT 9", "AAPL 12"),
+				pageThrough(cursor -> reopened.clientTrades("client-0", cursor, 100)));
+		assertEquals(12L, reopened.snapshot().get("trades"));
+	}
+}
@@ -0,0 +1,262 @@
+package com.example.brokerrmi.rmi_stock_exchange.journal;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Reservation;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Settlement;
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TradeJournalTest {
+
+	@TempDir
+	Path directory;
+
+	private final List<TradeJournal> opened = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		opened.forEach(TradeJournal::close);
+	}
+
+	private TradeJournal open() {
+		TradeJournal journal = new TradeJournal(true, directory.toString(), 1, "never", 5, Long.MAX_VALUE);
+		opened.add(journal);
+		return journal;
+	}
+
+	// The last state replayed for each symbol, as {price, quantity, version}
+	private static Map<String, double[]> replay(TradeJournal journal) {
+		Map<String, double[]> state = new HashMap<>();
+		journal.replay((symbol, price, quantity, version) -> state.put(symbol, new double[] {price, quantity, version}));
+		return state;
+	}
+
+	private List<Path> files(String prefix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().toList();
+		}
+	}
+
+	@Test
+	void replaysTheLatestStateOfEachSymbol() {
+		TradeJournal journal = open();
+		assertFalse(journal.replay((symbol, price, quantity, version) -> { }));
+		journal.append(JournalEventType.TRADE, "AAPL", 150.0, 1000, 1);
+		journal.append(JournalEventType.TRADE, "AAPL", 151.0, 990, 2);
+		journal.append(JournalEventType.TRADE, "MSFT", 300.0, 1200, 1);
+		journal.close();
+
+		Map<String, double[]> state = replay(open());
+
+		assertEquals(2, state.size());
+		assertEquals(151.0, state.get("AAPL")[0]);
+		assertEquals(990, state.get("AAPL")[1]);
+		assertEquals(2, state.get("AAPL")[2]);
+		assertEquals(300.0, state.get("MSFT")[0]);
+	}
+
+	@Test
+	void replayStopsAtATornRecord() throws IOException {
+		TradeJournal journal = open();
+		journal.replay((symbol, price, quantity, version) -> { });
+		journal.append(JournalEventType.TRADE, "AAPL", 150.0, 1000, 1);
+		journal.append(JournalEventType.TRADE, "AAPL", 151.0, 990, 2);
+		journal.append(JournalEventType.TRADE, "AAPL", 152.0, 980, 3);
+		journal.close();
+
+		// Each record is its length, its checksum and its body; flips a byte in the second body
+		try (RandomAccessFile segment = new RandomAccessFile(files(JournalSegment.PREFIX).get(0).toFile(), "rw")) {
+			int first = segment.readInt();
+			long body = 8L + first + 8 + 20;
+			segment.seek(body);
+			int value = segment.read();
+			segment.seek(body);
+			segment.write(value ^ 0xFF);
+		}
+
+		Map<String, double[]> state = replay(open());
+
+		assertEquals(150.0, state.get("AAPL")[0]);
+		assertEquals(1, state.get("AAPL")[2]);
+	}
+
+	@Test
+	void replayStopsAtARecordShorterThanItsFields() throws IOException {
+		TradeJournal journal = open();
+		journal.replay((symbol, price, quantity, version) -> { });
+		journal.append(JournalEventType.TRADE, "AAPL", 150.0, 1000, 1);
+		journal.append(JournalEventType.TRADE, "AAPL", 151.0, 990, 2);
+		journal.close();
+
+		// Rewrites the second record without its version, under a checksum that matches
+		try (RandomAccessFile segment = new RandomAccessFile(files(JournalSegment.PREFIX).get(0).toFile(), "rw")) {
+			long second = 8L + segment.readInt();
+			segment.seek(second);
+			byte[] body = new byte[segment.readInt() - 8];
+			segment.readInt();
+			segment.readFully(body);
+			CRC32 crc = new CRC32();
+			crc.update(body);
+			segment.seek(second);
+			segment.writeInt(body.length);
+			segment.writeInt((int) crc.getValue());
+			segment.write(body);
+		}
+
+		Map<String, double[]> state = replay(open());
+
+		assertEquals(150.0, state.get("AAPL")[0]);
+		assertEquals(1, state.get("AAPL")[2]);
+	}
+
+	@Test
+	void appendsAfterATornRecordContinueInANewSegment() throws IOException {
+		TradeJournal journal = open();
+		journal.replay((symbol, price, quantity, version) -> { });
+		journal.append(JournalEventType.TRADE, "AAPL", 150.0, 1000, 1);
+		journal.append(JournalEventType.TRADE, "AAPL", 151.0, 990, 2);
+		journal.close();
+		try (RandomAccessFile segment = new RandomAccessFile(files(JournalSegment.PREFIX).get(0).toFile(), "rw")) {
+			segment.seek(8L + segment.readInt() + 4);
+			segment.writeInt(0);
+		}
+
+		TradeJournal reopened = open();
+		replay(reopened);
+		reopened.append(JournalEventType.TRADE, "AAPL", 160.0, 900, 5);
+		reopened.close();
+
+		assertEquals(2, files(JournalSegment.PREFIX).size());
+		assertEquals(160.0, replay(open()).get("AAPL")[0]);
+	}
+
+	@Test
+	void replayKeepsOnlyOrdersStillResting() {
+		TradeJournal journal = open();
+		journal.replay((symbol, price, quantity, version) -> { });
+		journal.appendOrder("AAPL", 3, OrderSide.SELL, 151.0, 10, "seller");
+		journal.appendOrder("AAPL", 1, OrderSide.BUY, 149.0, 5, "buyer");
+		journal.appendOrder("AAPL", 2, OrderSide.BUY, 148.0, 5, "buyer");
+		journal.appendOrder("AAPL", 3, OrderSide.SELL, 151.0, 4, "seller");
+		journal.appendOrder("AAPL", 2, null, 0.0, 0, "buyer");
+		journal.close();
+
+		List<String> resting = new ArrayList<>();
+		open().replay((symbol, price, quantity, version) -> { },
+				(symbol, orderId, side, price, quantity, clientId) -> resting.add(orderId + " " + side + " " + quantity + " " + clientId));
+
+		assertEquals(List.of("1 BUY 5 buyer", "3 SELL 4 seller"), resting);
+	}
+
+	private static Settlement settlement(long sequence, long key, int quantity, boolean last) {
+		return new Settlement("alice", key, "AAPL", OrderSide.BUY, quantity, 150.0, 1_000, last, 3, 4).withSequence(sequence);
+	}
+
+	// Settlements replayed as "sequence key quantity", and grants as "key quantity"
+	private static List<String> replaySettlements(TradeJournal journal, List<String> grants) {
+		List<String> settlements = new ArrayList<>();
+		journal.replay((symbol, price, quantity, version) -> { }, (symbol, orderId, side, price, quantity, clientId) -> { },
+				settlement -> settlements.add(settlement.getSequence() + " " + settlement.getKey() + " " + settlement.getQuantity()),
+				grant -> grants.add(grant.getKey() + " " + grant.getQuantity()));
+		return settlements;
+	}
+
+	@Test
+	void replayKeepsSettlementsNotAcknowledgedAndGrantsNotReleased() {
+		TradeJournal journal = open();
+		journal.replay((symbol, price, quantity, version) -> { });
+		journal.appendGrant(new Reservation("alice", 5, "AAPL", OrderSide.BUY, 100, 157.5));
+		journal.appendGrant(new Reservation("alice", 6, "AAPL", OrderSide.SELL, 50, 150.0));
+		journal.appendSettlement(settlement(10, 5, 7, false));
+		journal.appendSettlement(settlement(11, 5, 3, false));
+		journal.appendSettlement(settlement(12, 5, 0, true));
+		journal.appendSettled(11);
+		journal.close();
+
+		List<String> grants = new ArrayList<>();
+		List<String> settlements = replaySettlements(open(), grants);
+
+		assertEquals(List.of("11 5 3", "12 5 0"), settlements);
+		assertEquals(List.of("6 50"), grants);
+	}
+
+	@Test
+	void snapshotCarriesUndeliveredSettlementsAndOpenGrants() {
+		TradeJournal journal = open();
+		journal.replay((symbol, price, quantity, version) -> { });
+		journal.setSettlementSource(() -> List.of(settlement(20, 8, 5, false)),
+				() -> List.of(new Reservation("alice", 8, "AAPL", OrderSide.BUY, 40, 157.5)));
+		journal.snapshot();
+		journal.appendSettlement(settlement(21, 8, 2, false));
+		journal.close();
+
+		List<String> grants = new ArrayList<>();
+		List<String> settlements = replaySettlements(open(), grants);
+
+		assertEquals(List.of("20 8 5", "21 8 2"), settlements);
+		assertEquals(List.of("8 40"), grants);
+	}
+
+	@Test
+	void snapshotCoversEarlierSegmentsWhichArePruned() throws IOException {
+		TradeJournal journal = open();
+		journal.replay((symbol, price, quantity, version) -> { });
+		// A 1 MB segment holds some 25000 of these records
+		int records = 80_000;
+		for (int i = 1; i <= records; i++) {
+			journal.append(JournalEventType.TRADE, "AAPL", i, i, i);
+		}
+		assertTrue(files(JournalSegment.PREFIX).size() >= 3);
+
+		journal.setSnapshotSource(() -> List.of(new StockUpdate("AAPL", records, records, records)));
+		journal.setOrderSource(sink -> sink.restore("AAPL", 7, OrderSide.BUY, 99.0, 3, "buyer"));
+		journal.snapshot();
+
+		assertEquals(1, files("snapshot-").size());
+		assertEquals(1, files(JournalSegment.PREFIX).size());
+
+		journal.append(JournalEventType.TRADE, "MSFT", 300.0, 1200, 1);
+		journal.close();
+
+		Map<String, double[]> state = new HashMap<>();
+		List<Long> resting = new ArrayList<>();
+		open().replay((symbol, price, quantity, version) -> state.put(symbol, new double[] {price, quantity, version}),
+				(symbol, orderId, side, price, quantity, clientId) -> resting.add(orderId));
+
+		assertEquals(records, state.get("AAPL")[2]);
+		assertEquals(300.0, state.get("MSFT")[0]);
+		assertEquals(List.of(7L), resting);
+	}
+
+	@Test
+	void keepsTheTwoNewestSnapshots() throws IOException {
+		TradeJournal journal = open();
+		journal.replay((symbol, price, quantity, version) -> { });
+		journal.setSnapshotSource(() -> List.of(new StockUpdate("AAPL", 150.0, 1000, 1)));
+		for (int i = 1; i <= 3; i++) {
+			journal.append(JournalEventType.TRADE, "AAPL", 150.0, 1000, i);
+			journal.snapshot();
+		}
+
+		List<Path> snapshots = files("snapshot-");
+		assertEquals(2, snapshots.size());
+		assertTrue(snapshots.get(1).getFileName().toString().contains("00000000000000000003"));
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.brokerrmi.rmi_stock_exchange.marketdata;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.CandleSeries;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CandleAggregatorTest {
+
+	private final SymbolStore symbols = new SymbolStore(16);
+	private final int aapl = symbols.add("AAPL", 100.0, 1000, 0);
+
+	@Test
+	void intervalsAreParsedWithTheirUnits() {
+		CandleAggregator candles = new CandleAggregator(true, "500ms, 1s,5m,1h,250,", 10, symbols);
+
+		assertArrayEquals(new long[] {500, 1_000, 300_000, 3_600_000, 250}, (long[]) candles.snapshot().get("intervalsMs"));
+		assertThrows(IllegalArgumentException.class, () -> new CandleAggregator(true, "0s", 10, symbols));
+		assertThrows(NumberFormatException.class, () -> new CandleAggregator(true, "1d", 10, symbols));
+	}
+
+	@Test
+	void tradesInOneIntervalMakeOneBar() {
+		CandleAggregator candles = new CandleAggregator(true, "1s", 10, symbols);
+		candles.record(aapl, 100.0, 10, 1_000);
+		candles.record(aapl, 105.0, 5, 1_500);
+		candles.record(aapl, 95.0, 5, 1_999);
+
+		CandleSeries series = candles.latest("AAPL", 1_000, 10);
+
+		assertEquals(1, series.size());
+		assertArrayEquals(new long[] {1_000}, series.getStartTimes());
+		assertArrayEquals(new double[] {100.0}, series.getOpens());
+		assertArrayEquals(new double[] {105.0}, series.getHighs());
+		assertArrayEquals(new double[] {95.0}, series.getLows());
+		assertArrayEquals(new double[] {95.0}, series.getCloses());
+		assertArrayEquals(new long[] {20}, series.getVolumes());
+		assertEquals(100.0, series.getVwaps()[0], 1e-9);
+	}
+
+	@Test
+	void barsRollOverAtIntervalBoundariesAndTheRingKeepsTheLatest() {
+		CandleAggregator candles = new CandleAggregator(true, "1s,2s", 3, symbols);
+		candles.record(aapl, 100.0, 1, 1_000);
+		candles.record(aapl, 101.0, 1, 2_000);
+		// Late trade: counts toward the latest bar rather than reopening an old one
+		candles.record(aapl, 99.0, 1, 1_500);
+		candles.record(aapl, 102.0, 1, 3_999);
+		candles.record(aapl, 103.0, 1, 4_000);
+
+		CandleSeries seconds = candles.latest("AAPL", 1_000, 10);
+		assertArrayEquals(new long[] {2_000, 3_000, 4_000}, seconds.getStartTimes());
+		assertArrayEquals(new double[] {101.0, 102.0, 103.0}, seconds.getOpens());
+		assertArrayEquals(new double[] {99.0, 102.0, 103.0}, seconds.getLows());
+		assertArrayEquals(new long[] {2, 1, 1}, seconds.getVolumes());
+
+		CandleSeries twoSeconds = candles.latest("AAPL", 2_000, 2);
+		assertArrayEquals(new long[] {2_000, 4_000}, twoSeconds.getStartTimes());
+		assertArrayEquals(new double[] {102.0, 103.0}, twoSeconds.getCloses());
+		assertArrayEquals(new long[] {3, 1}, twoSeconds.getVolumes());
+	}
+
+	@Test
+	void unknownSymbolsAndIntervalsGiveEmptySeries() {
+		CandleAggregator candles = new CandleAggregator(true, "1s", 10, symbols);
+		candles.record(aapl, 100.0, 10, 1_000);
+
+		assertEquals(0, candles.latest("MSFT", 1_000, 10).size());
+		assertEquals(0, candles.latest("AAPL", 60_000, 10).size());
+		assertEquals(0, new CandleAggregator(false, "1s", 10, symbols).latest("AAPL", 1_000, 10).size());
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.brokerrmi.rmi_stock_exchange.membership;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MembershipServiceTest {
+
+	// Heartbeats every 20 ms; suspect at phi 3, dead at phi 6 after 100 ms suspected
+	private final MembershipService membership = new MembershipService("broker1", 20, 2, 3, 6, 100, 0, 5, 100);
+	private final List<String> events = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		membership.shutdown();
+	}
+
+	// A stub that is not a GossipService, so this broker never calls it
+	private static TradingService stub() {
+		return (TradingService) Proxy.newProxyInstance(TradingService.class.getClassLoader(), new Class<?>[] {TradingService.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "equals" -> proxy == args[0];
+					case "hashCode" -> System.identityHashCode(proxy);
+					case "toString" -> "stub";
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	private void start() {
+		membership.start(stub(), new MembershipListener() {
+			@Override
+			public void memberUp(String brokerId, TradingService service) {
+				events.add("up " + brokerId);
+			}
+
+			@Override
+			public void memberDown(String brokerId, TradingService service) {
+				events.add("down " + brokerId);
+			}
+		});
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	void silentMemberIsSuspectedThenDeclaredDeadAndComesBackWhenItsHeartbeatMoves() throws InterruptedException {
+		start();
+		TradingService peer = stub();
+		membership.join("broker2", peer);
+		assertEquals(MembershipService.Status.ALIVE, membership.status("broker2"));
+
+		awaitTrue(() -> membership.status("broker2") == MembershipService.Status.DEAD);
+		assertTrue((Long) membership.snapshot().get("suspicions") >= 1);
+		assertEquals(1L, membership.snapshot().get("deaths"));
+
+		membership.gossip("broker2", List.of(new MemberState("broker2", peer, 0, 1)));
+		assertEquals(MembershipService.Status.ALIVE, membership.status("broker2"));
+		awaitTrue(() -> events.equals(List.of("up broker2", "down broker2", "up broker2")));
+		assertEquals(1L, membership.snapshot().get("rejoins"));
+	}
+
+	@Test
+	void unreachableMemberIsDeadAtOnceAndARestartReplacesIt() throws InterruptedException {
+		start();
+		TradingService peer = stub();
+		membership.join("broker2", peer);
+		membership.reportUnreachable("broker2", peer);
+		assertEquals(MembershipService.Status.DEAD, membership.status("broker2"));
+
+		// Gossip about an old heartbeat of the same incarnation changes nothing
+		membership.gossip("broker3", List.of(new MemberState("broker2", peer, 0, 0)));
+		assertEquals(MembershipService.Status.DEAD, membership.status("broker2"));
+
+		TradingService restarted = stub();
+		membership.gossip("broker2", List.of(new MemberState("broker2", restarted, 1, 0)));
+		assertEquals(MembershipService.Status.ALIVE, membership.status("broker2"));
+		awaitTrue(() -> events.equals(List.of("up broker2", "down broker2", "up broker2")));
+	}
+}
@@ -0,0 +1,86 @@
+package com.example.brokerrmi.rmi_stock_exchange.membership;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhiAccrualDetectorTest {
+
+	private static final long MS = 1_000_000;
+
+	// Heartbeats every intervalMs from time 0, the last at the returned time in nanos
+	private static long beat(PhiAccrualDetector detector, long intervalMs, int beats) {
+		long now = 0;
+		for (int i = 0; i < beats; i++) {
+			now += intervalMs * MS;
+			detector.heartbeat(now);
+		}
+		return now;
+	}
+
+	@Test
+	void phiIsLowAtTheUsualIntervalAndCrossesTheThresholdsAsSilenceGrows() {
+		PhiAccrualDetector detector = new PhiAccrualDetector(100, 100, 0, 10, 0);
+		long last = beat(detector, 100, 100);
+
+		// At the mean the silence is as likely as not
+		assertEquals(Math.log10(2), detector.phi(last + 100 * MS), 1e-9);
+		assertTrue(detector.phi(last + 50 * MS) < 0.1);
+		assertTrue(detector.phi(last + 120 * MS) < 5);
+		assertTrue(detector.phi(last + 150 * MS) >= 5);
+		assertTrue(detector.phi(last + 160 * MS) >= 8);
+
+		double previous = 0;
+		for (long silence = 0; silence <= 300; silence += 5) {
+			double phi = detector.phi(last + silence * MS);
+			assertTrue(phi >= previous, "phi fell at " + silence + " ms");
+			previous = phi;
+		}
+	}
+
+	@Test
+	void irregularHeartbeatsGetMoreSlackThanSteadyOnes() {
+		PhiAccrualDetector steady = new PhiAccrualDetector(100, 100, 0, 10, 0);
+		long steadyLast = beat(steady, 100, 100);
+		PhiAccrualDetector irregular = new PhiAccrualDetector(100, 100, 0, 10, 0);
+		long irregularLast = 0;
+		for (int i = 0; i < 100; i++) {
+			irregularLast += (i % 2 == 0 ? 40 : 160) * MS;
+			irregular.heartbeat(irregularLast);
+		}
+
+		assertTrue(steady.phi(steadyLast + 200 * MS) > 8);
+		assertTrue(irregular.phi(irregularLast + 200 * MS) < 3);
+	}
+
+	@Test
+	void acceptablePauseShiftsTheCurve() {
+		PhiAccrualDetector strict = new PhiAccrualDetector(100, 100, 0, 10, 0);
+		PhiAccrualDetector lenient = new PhiAccrualDetector(100, 100, 500, 10, 0);
+		long last = beat(strict, 100, 100);
+		beat(lenient, 100, 100);
+
+		assertEquals(strict.phi(last + 150 * MS), lenient.phi(last + 650 * MS), 1e-9);
+		assertTrue(lenient.phi(last + 550 * MS) < 1);
+	}
+
+	@Test
+	void resetRestartsTheSilenceAndWindowForgetsOldIntervals() {
+		PhiAccrualDetector detector = new PhiAccrualDetector(10, 100, 0, 10, 0);
+		long last = beat(detector, 100, 10);
+		assertTrue(detector.phi(last + 1_000 * MS) > 8);
+
+		detector.reset(last + 1_000 * MS);
+		assertEquals(0, detector.millisSinceLastHeartbeat(last + 1_000 * MS));
+		assertTrue(detector.phi(last + 1_050 * MS) < 1);
+
+		// Ten slower heartbeats fill the window, so 1 s is the usual interval from then on
+		long now = last + 1_000 * MS;
+		for (int i = 0; i < 10; i++) {
+			now += 1_000 * MS;
+			detector.heartbeat(now);
+		}
+		assertEquals(Math.log10(2), detector.phi(now + 1_000 * MS), 1e-9);
+	}
+}
@@ -0,0 +1,94 @@
+package com.example.brokerrmi.rmi_stock_exchange.sequencer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+
+	@Test
+	void capacityRoundsUpToAPowerOfTwo() {
+		assertEquals(8, new MpscRingBuffer<Integer>(5).capacity());
+		assertEquals(8, new MpscRingBuffer<Integer>(8).capacity());
+		assertEquals(2, new MpscRingBuffer<Integer>(0).capacity());
+	}
+
+	@Test
+	void fullRingRefusesUntilTheConsumerFreesASlot() {
+		MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(ring.offer(i));
+		}
+		assertFalse(ring.offer(4));
+
+		assertEquals(0, ring.poll());
+		assertTrue(ring.offer(4));
+		assertFalse(ring.offer(5));
+	}
+
+	@Test
+	void wrapsAroundInOrder() {
+		MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+		assertNull(ring.poll());
+		int next = 0;
+		// Three in, two out: the ring fills and wraps over its slots many times
+		for (int i = 0; i < 1000; i += 3) {
+			for (int j = i; j < i + 3; j++) {
+				if (!ring.offer(j)) {
+					assertEquals(next++, ring.poll());
+					assertTrue(ring.offer(j));
+				}
+			}
+			assertEquals(next++, ring.poll());
+			assertEquals(next++, ring.poll());
+		}
+		while (!ring.isEmpty()) {
+			assertEquals(next++, ring.poll());
+		}
+		assertEquals(1002, next);
+		assertNull(ring.poll());
+	}
+
+	@Test
+	void eachProducersElementsArriveInTheOrderItOfferedThem() throws InterruptedException {
+		MpscRingBuffer<long[]> ring = new MpscRingBuffer<>(64);
+		int producers = 4;
+		int perProducer = 10_000;
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			long producer = p;
+			Thread thread = new Thread(() -> {
+				for (long i = 0; i < perProducer; i++) {
+					long[] element = {producer, i};
+					while (!ring.offer(element)) {
+						Thread.yield();
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+
+		long[] expected = new long[producers];
+		int received = 0;
+		while (received < producers * perProducer) {
+			long[] element = ring.poll();
+			if (element == null) {
+				Thread.yield();
+				continue;
+			}
+			assertEquals(expected[(int) element[0]]++, element[1]);
+			received++;
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(ring.isEmpty());
+	}
+}
@@ -0,0 +1,88 @@
+package com.example.brokerrmi.rmi_stock_exchange.sequencer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SequencerShardTest {
+
+	// Two tasks fill the ring
+	private final SequencerShard shard = new SequencerShard(0, 2);
+	private final List<Integer> ran = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		shard.stop();
+	}
+
+	private CompletableFuture<Integer> submit(int value) {
+		return shard.submit(() -> {
+			ran.add(value);
+			return value;
+		});
+	}
+
+	// Submits from another thread, which waits for as long as the ring is full
+	private Thread submitLater(int value, AtomicReference<CompletableFuture<Integer>> future) {
+		Thread thread = new Thread(() -> future.set(submit(value)));
+		thread.start();
+		return thread;
+	}
+
+	@Test
+	void submitWaitsWhileTheRingIsFullAndTasksRunInOrder() throws Exception {
+		CompletableFuture<Integer> first = submit(1);
+		CompletableFuture<Integer> second = submit(2);
+		AtomicReference<CompletableFuture<Integer>> third = new AtomicReference<>();
+		Thread submitter = submitLater(3, third);
+
+		submitter.join(200);
+		assertTrue(submitter.isAlive());
+
+		shard.start();
+		submitter.join(5_000);
+		assertEquals(3, third.get().get(5, TimeUnit.SECONDS));
+		assertEquals(1, first.get());
+		assertEquals(2, second.get());
+		assertEquals(List.of(1, 2, 3), ran);
+	}
+
+	@Test
+	void submitWaitingOnAFullRingFailsOnceTheShardStops() throws Exception {
+		submit(1);
+		submit(2);
+		AtomicReference<CompletableFuture<Integer>> third = new AtomicReference<>();
+		Thread submitter = submitLater(3, third);
+		submitter.join(100);
+
+		shard.stop();
+		submitter.join(5_000);
+
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> third.get().get());
+		assertInstanceOf(IllegalStateException.class, failure.getCause());
+		assertEquals(List.of(), ran);
+	}
+
+	@Test
+	void failingTaskCompletesItsFutureExceptionallyAndTheShardGoesOn() throws Exception {
+		shard.start();
+		CompletableFuture<Integer> failing = shard.submit(() -> {
+			throw new IllegalArgumentException("boom");
+		});
+
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+		assertEquals(7, submit(7).get(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,86 @@
+package com.example.brokerrmi.rmi_stock_exchange.store;
+
+import com.example.brokerrmi.rmi_stock_exchange.transport.BinaryProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceSnapshotPublisherTest {
+
+	private final SymbolStore store = new SymbolStore(16);
+	private PriceSnapshotPublisher publisher;
+
+	@AfterEach
+	void tearDown() {
+		publisher.shutdown();
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	void publishNowSnapshotsEverySymbolAndItsEncoding() {
+		int aapl = store.add("AAPL", 100.0, 10, 1);
+		store.add("GOOG", 2800.0, 5, 1);
+		publisher = new PriceSnapshotPublisher(store, 60_000);
+		store.set(aapl, 101.5, 10, 2);
+		publisher.publishNow();
+
+		PriceSnapshot snapshot = publisher.current();
+		assertEquals(2, snapshot.size());
+		assertEquals(Map.of("AAPL", 101.5, "GOOG", 2800.0), snapshot.getPrices());
+		// Decoded from a copy, as a client reads it off the wire
+		ByteBuffer encoded = snapshot.encoded();
+		byte[] copy = new byte[encoded.remaining()];
+		encoded.get(copy);
+		assertEquals(snapshot.getPrices(), BinaryProtocol.decodePrices(ByteBuffer.wrap(copy)));
+		assertEquals(snapshot.getVersion(), snapshot.encoded().getLong());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.getPrices().put("MSFT", 1.0));
+	}
+
+	@Test
+	void changeIsPublishedInTheBackgroundAndTheSnapshotIsKeptUntilThen() throws InterruptedException {
+		int aapl = store.add("AAPL", 100.0, 10, 1);
+		publisher = new PriceSnapshotPublisher(store, 0);
+		awaitTrue(() -> publisher.current().size() == 1);
+		PriceSnapshot first = publisher.current();
+		Thread.sleep(50);
+		assertSame(first, publisher.current());
+
+		store.set(aapl, 99.0, 10, 2);
+		publisher.markChanged();
+		awaitTrue(() -> publisher.current() != first);
+		assertEquals(99.0, publisher.current().getPrices().get("AAPL"));
+		assertEquals(first.getVersion() + 1, publisher.current().getVersion());
+	}
+
+	@Test
+	void burstOfChangesWithinOneIntervalIsPublishedOnce() throws InterruptedException {
+		int aapl = store.add("AAPL", 100.0, 10, 1);
+		// The first publish starts a long interval, during which changes only accumulate
+		publisher = new PriceSnapshotPublisher(store, 500);
+		awaitTrue(() -> publisher.current().getVersion() == 1);
+		for (int i = 1; i <= 1000; i++) {
+			store.set(aapl, 100.0 + i, 10, 1 + i);
+			publisher.markChanged();
+		}
+
+		awaitTrue(() -> publisher.current().getVersion() == 2);
+		assertEquals(1100.0, publisher.current().getPrices().get("AAPL"));
+		Thread.sleep(600);
+		assertEquals(2, publisher.current().getVersion());
+	}
+}
@@ -0,0 +1,111 @@
+package com.example.brokerrmi.rmi_stock_exchange.store;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SymbolStoreTest {
+
+	@Test
+	void readersNeverSeeAHalfWrittenSlot() throws InterruptedException {
+		SymbolStore store = new SymbolStore(16);
+		int id = store.add("AAPL", 0.0, 0, 0);
+		AtomicBoolean writing = new AtomicBoolean(true);
+		AtomicReference<String> torn = new AtomicReference<>();
+		AtomicInteger reads = new AtomicInteger();
+
+		// Every write sets price, quantity and version to the same number, so a mixed slot shows
+		List<Thread> readers = new ArrayList<>();
+		for (int r = 0; r < 3; r++) {
+			Thread reader = new Thread(() -> {
+				long last = 0;
+				double[] prices = new double[1];
+				int[] quantities = new int[1];
+				long[] versions = new long[1];
+				while (writing.get()) {
+					StockUpdate update = store.read(id);
+					store.read(id, prices, quantities, versions, 0);
+					if (update.getPrice() != update.getVersion() || update.getQuantity() != update.getVersion()
+							|| prices[0] != versions[0] || quantities[0] != versions[0]) {
+						torn.compareAndSet(null, update + " / " + prices[0] + " " + quantities[0] + " " + versions[0]);
+					}
+					if (update.getVersion() < last) {
+						torn.compareAndSet(null, "version went back from " + last + " to " + update.getVersion());
+					}
+					last = update.getVersion();
+					reads.incrementAndGet();
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+		// Keeps writing until the readers have overlapped it, however the threads are scheduled
+		int written = 0;
+		while (written < 1_000_000 || reads.get() < 10_000) {
+			written++;
+			store.set(id, written, written, written);
+		}
+		writing.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		assertNull(torn.get());
+		assertEquals(written, store.version(id));
+	}
+
+	@Test
+	void indexGrowsAcrossChunksWithoutLosingSymbols() {
+		SymbolStore store = new SymbolStore(16);
+		// 4096 symbols to a chunk: three chunks, and the index doubles from 32 slots many times
+		int count = 10_000;
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, store.add("SYM" + i, i, i, i));
+		}
+
+		assertEquals(count, store.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, store.idOf("SYM" + i));
+			assertEquals("SYM" + i, store.symbol(i));
+			assertEquals(i, store.price(i));
+			assertEquals(i, store.quantity(i));
+			assertEquals(i, store.version(i));
+		}
+		assertEquals(-1, store.idOf("SYM" + count));
+		assertEquals(-(4097 + 1), store.add("SYM4097", 1.0, 1, 1));
+		assertEquals(4097, store.getOrAdd("SYM4097", 1.0, 1, 1));
+		assertEquals(4097.0, store.price(4097));
+	}
+
+	@Test
+	void lookupsWhileTheIndexGrowsFindEverySymbolAlreadyAdded() throws InterruptedException {
+		SymbolStore store = new SymbolStore(16);
+		int count = 20_000;
+		AtomicReference<String> missing = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			while (store.size() < count) {
+				int size = store.size();
+				for (int i = Math.max(0, size - 64); i < size; i++) {
+					if (store.idOf("SYM" + i) != i || !("SYM" + i).equals(store.symbol(i))) {
+						missing.compareAndSet(null, "SYM" + i);
+					}
+				}
+			}
+		});
+		reader.start();
+		for (int i = 0; i < count; i++) {
+			store.add("SYM" + i, i, i, i);
+		}
+		reader.join();
+
+		assertNull(missing.get());
+	}
+}
@@ -0,0 +1,150 @@
+package com.example.brokerrmi.rmi_stock_exchange.transport;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import com.example.brokerrmi.rmi_stock_exchange.store.PriceSnapshotPublisher;
+import com.example.brokerrmi.rmi_stock_exchange.store.SymbolStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryProtocolTest {
+
+	private final List<String> trades = new CopyOnWriteArrayList<>();
+	private final PriceSnapshotPublisher snapshots = new PriceSnapshotPublisher(new SymbolStore(16), 0);
+	private BinaryTradingServer server;
+
+	@AfterEach
+	void tearDown() {
+		if (server != null) {
+			server.stop();
+		}
+		snapshots.shutdown();
+	}
+
+	// Records each trade as "side symbol quantity clientId key"; buys succeed and sells do not
+	private TradingService recorder() {
+		return (TradingService) Proxy.newProxyInstance(TradingService.class.getClassLoader(), new Class<?>[] {TradingService.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "buyStock", "sellStock" -> {
+						trades.add(method.getName() + " " + args[0] + " " + args[1] + " " + args[2] + " " + args[3]);
+						yield method.getName().equals("buyStock");
+					}
+					case "getBrokerId" -> "broker1";
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	private int startServer() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		server = new BinaryTradingServer(recorder(), snapshots, true, port, 0);
+		server.start();
+		return port;
+	}
+
+	@Test
+	void frameLengthCountsEveryByteAfterTheLengthField() {
+		ByteBuffer buffer = ByteBuffer.allocate(128);
+		buffer.put((byte) 7);
+		int start = BinaryProtocol.beginFrame(buffer, BinaryProtocol.BUY, 42);
+		BinaryProtocol.putString(buffer, "AAPL");
+		buffer.putInt(10);
+		BinaryProtocol.putString(buffer, "ålice");
+		buffer.putLong(99);
+		BinaryProtocol.endFrame(buffer, start);
+		buffer.flip();
+
+		assertEquals(7, buffer.get());
+		int length = buffer.getInt();
+		assertEquals(buffer.remaining(), length);
+		assertEquals(BinaryProtocol.HEADER_BYTES + BinaryProtocol.stringBytes("AAPL") + 4
+				+ BinaryProtocol.stringBytes("ålice") + 8, length);
+		assertEquals(BinaryProtocol.BUY, buffer.get());
+		assertEquals(42, buffer.getLong());
+		assertEquals("AAPL", BinaryProtocol.getString(buffer));
+		assertEquals(10, buffer.getInt());
+		assertEquals("ålice", BinaryProtocol.getString(buffer));
+		assertEquals(99, buffer.getLong());
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	void responseTypeSetsTheHighBitOfTheRequestType() {
+		byte response = BinaryProtocol.responseType(BinaryProtocol.GET_ALL_STOCKS);
+		assertTrue(BinaryProtocol.isResponse(response));
+		assertFalse(BinaryProtocol.isResponse(BinaryProtocol.GET_ALL_STOCKS));
+		assertEquals(BinaryProtocol.GET_ALL_STOCKS, (byte) (response & ~BinaryProtocol.RESPONSE_FLAG));
+	}
+
+	@Test
+	void pricesRoundTrip() {
+		byte[] encoded = BinaryProtocol.encodePrices(5, new String[] {"AAPL", "GOOG", "unused"},
+				new double[] {101.5, 2800.25, 1.0}, 2);
+		ByteBuffer buffer = ByteBuffer.wrap(encoded);
+
+		assertEquals(Map.of("AAPL", 101.5, "GOOG", 2800.25), BinaryProtocol.decodePrices(buffer));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	void tradeFramesReachTheServiceWithTheirIdempotencyKey() throws IOException {
+		int port = startServer();
+		try (BinaryTradingClient client = new BinaryTradingClient("localhost", port)) {
+			assertTrue(client.buyStock("AAPL", 10, "alice", 1234));
+			assertFalse(client.sellStock("GOOG", 3, "bob", Long.MAX_VALUE));
+			assertTrue(client.buyStock("MSFT", 1, "carol"));
+			assertEquals("broker1", client.getBrokerId());
+		}
+
+		assertEquals(List.of("buyStock AAPL 10 alice 1234", "sellStock GOOG 3 bob " + Long.MAX_VALUE,
+				"buyStock MSFT 1 carol 0"), trades);
+	}
+
+	@Test
+	void tradeFrameWithoutTheIdempotencyKeyStillParses() throws IOException {
+		int port = startServer();
+		ByteBuffer request = ByteBuffer.allocate(64);
+		int start = BinaryProtocol.beginFrame(request, BinaryProtocol.BUY, 9);
+		BinaryProtocol.putString(request, "AAPL");
+		request.putInt(5);
+		BinaryProtocol.putString(request, "alice");
+		BinaryProtocol.endFrame(request, start);
+		request.flip();
+
+		ByteBuffer response = ByteBuffer.allocate(64);
+		try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+			while (request.hasRemaining()) {
+				channel.write(request);
+			}
+			// length, type, correlation id, status, success
+			while (response.position() < BinaryProtocol.LENGTH_BYTES + BinaryProtocol.HEADER_BYTES + 2) {
+				if (channel.read(response) < 0) {
+					break;
+				}
+			}
+		}
+		response.flip();
+
+		assertEquals(BinaryProtocol.HEADER_BYTES + 2, response.getInt());
+		assertEquals(BinaryProtocol.responseType(BinaryProtocol.BUY), response.get());
+		assertEquals(9, response.getLong());
+		assertEquals(BinaryProtocol.STATUS_OK, response.get());
+		assertEquals(1, response.get());
+		assertEquals(List.of("buyStock AAPL 5 alice 0"), trades);
+	}
+}
@@ -0,0 +1,34 @@
+// AccountState.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+// A client's account as handed to its new home broker after a membership change, holds included
+public class AccountState implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String clientId;
+    private final double cash;
+    private final Map<String, Long> positions;
+    private final List<Reservation> holds;
+
+    public AccountState(String clientId, double cash, Map<String, Long> positions, List<Reservation> holds) {
+        this.clientId = clientId;
+        this.cash = cash;
+        this.positions = positions;
+        this.holds = holds;
+    }
+
+    public String getClientId() { return clientId; }
+    public double getCash() { return cash; }
+    public Map<String, Long> getPositions() { return positions; }
+    public List<Reservation> getHolds() { return holds; }
+
+    @Override
+    public String toString() {
+        return String.format("AccountState{client='%s', cash=%.2f, positions=%s, holds=%d}",
+                clientId, cash, positions, holds.size());
+    }
+}
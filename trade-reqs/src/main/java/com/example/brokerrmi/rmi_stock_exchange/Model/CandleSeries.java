@@ -0,0 +1,64 @@
+// CandleSeries.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+/**
+ * The latest OHLCV bars of one symbol at one interval, oldest first, one array per field so a few
+ * hundred bars serialize as a handful of primitive arrays. Intervals without trades have no bar.
+ * The day VWAP and volume cover every trade since midnight UTC.
+ */
+public class CandleSeries implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String symbol;
+    private final long intervalMillis;
+    private final long[] startTimes;
+    private final double[] opens;
+    private final double[] highs;
+    private final double[] lows;
+    private final double[] closes;
+    private final long[] volumes;
+    private final double[] vwaps;
+    private final double dayVwap;
+    private final long dayVolume;
+
+    public CandleSeries(String symbol, long intervalMillis, long[] startTimes, double[] opens, double[] highs,
+                        double[] lows, double[] closes, long[] volumes, double[] vwaps, double dayVwap, long dayVolume) {
+        this.symbol = symbol;
+        this.intervalMillis = intervalMillis;
+        this.startTimes = startTimes;
+        this.opens = opens;
+        this.highs = highs;
+        this.lows = lows;
+        this.closes = closes;
+        this.volumes = volumes;
+        this.vwaps = vwaps;
+        this.dayVwap = dayVwap;
+        this.dayVolume = dayVolume;
+    }
+
+    public static CandleSeries empty(String symbol, long intervalMillis) {
+        return new CandleSeries(symbol, intervalMillis, new long[0], new double[0], new double[0], new double[0],
+                new double[0], new long[0], new double[0], 0.0, 0);
+    }
+
+    public int size() { return startTimes.length; }
+    public String getSymbol() { return symbol; }
+    public long getIntervalMillis() { return intervalMillis; }
+    public long[] getStartTimes() { return startTimes; }
+    public double[] getOpens() { return opens; }
+    public double[] getHighs() { return highs; }
+    public double[] getLows() { return lows; }
+    public double[] getCloses() { return closes; }
+    public long[] getVolumes() { return volumes; }
+    public double[] getVwaps() { return vwaps; }
+    public double getDayVwap() { return dayVwap; }
+    public long getDayVolume() { return dayVolume; }
+
+    @Override
+    public String toString() {
+        return String.format("CandleSeries{symbol='%s', interval=%dms, bars=%d, dayVwap=%.2f, dayVolume=%d}",
+                symbol, intervalMillis, startTimes.length, dayVwap, dayVolume);
+    }
+}
@@ -0,0 +1,47 @@
+// Fill.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+public class Fill implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;
+    private final String symbol;
+    private final long orderId;
+    private final long counterOrderId;
+    private final OrderSide side;
+    private final double price;
+    private final int quantity;
+    private final String clientId;
+    private final long timestamp;
+
+    public Fill(long sequence, String symbol, long orderId, long counterOrderId, OrderSide side,
+                double price, int quantity, String clientId, long timestamp) {
+        this.sequence = sequence;
+        this.symbol = symbol;
+        this.orderId = orderId;
+        this.counterOrderId = counterOrderId;
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+        this.clientId = clientId;
+        this.timestamp = timestamp;
+    }
+
+    public long getSequence() { return sequence; }
+    public String getSymbol() { return symbol; }
+    public long getOrderId() { return orderId; }
+    public long getCounterOrderId() { return counterOrderId; }
+    public OrderSide getSide() { return side; }
+    public double getPrice() { return price; }
+    public int getQuantity() { return quantity; }
+    public String getClientId() { return clientId; }
+    public long getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        return String.format("Fill{seq=%d, %s %s x %d at %.2f, order=%d, counterOrder=%d, client='%s'}",
+                sequence, side, symbol, quantity, price, orderId, counterOrderId, clientId);
+    }
+}
@@ -0,0 +1,7 @@
+// OrderSide.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+public enum OrderSide {
+    BUY,
+    SELL
+}
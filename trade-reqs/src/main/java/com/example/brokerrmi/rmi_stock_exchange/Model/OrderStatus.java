@@ -0,0 +1,10 @@
+// OrderStatus.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+public enum OrderStatus {
+    NEW,
+    PARTIALLY_FILLED,
+    FILLED,
+    CANCELLED,
+    REJECTED
+}
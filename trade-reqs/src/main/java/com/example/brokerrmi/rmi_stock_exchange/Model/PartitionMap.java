@@ -0,0 +1,120 @@
+// PartitionMap.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Symbol ownership in a partitioned cluster: a consistent hash ring with a number of virtual
+ * points per broker. A symbol is owned by the first {@code replicas} distinct brokers met walking
+ * clockwise from the symbol's hash, and the first of them is its primary, which executes its
+ * trades. A broker joining or leaving only moves the symbols next to its own points. The ring
+ * depends on nothing but the member ids, so brokers and clients with the same members agree on
+ * every owner.
+ */
+public final class PartitionMap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long epoch;
+    private final int replicas;
+    private final List<String> brokerIds;
+    // Sorted ring positions and, for each, the index of its broker in brokerIds
+    private final long[] points;
+    private final int[] pointOwners;
+
+    public PartitionMap(long epoch, Collection<String> brokerIds, int replicas, int virtualNodes) {
+        this.epoch = epoch;
+        this.brokerIds = List.copyOf(new TreeSet<>(brokerIds));
+        this.replicas = Math.max(1, Math.min(replicas, this.brokerIds.size()));
+        int perBroker = Math.max(1, virtualNodes);
+        int count = this.brokerIds.size() * perBroker;
+
+        long[] unsorted = new long[count];
+        Integer[] order = new Integer[count];
+        for (int broker = 0; broker < this.brokerIds.size(); broker++) {
+            long seed = (long) this.brokerIds.get(broker).hashCode() << 32;
+            for (int node = 0; node < perBroker; node++) {
+                int slot = broker * perBroker + node;
+                unsorted[slot] = mix(seed | node);
+                order[slot] = slot;
+            }
+        }
+        // Ties are broken by broker so every JVM builds the same ring
+        Arrays.sort(order, Comparator.<Integer>comparingLong(slot -> unsorted[slot]).thenComparingInt(slot -> slot));
+        this.points = new long[count];
+        this.pointOwners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = unsorted[order[i]];
+            pointOwners[i] = order[i] / perBroker;
+        }
+    }
+
+    // Increases on the broker that built the map whenever its members change
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    // Sorted
+    public List<String> getBrokerIds() {
+        return brokerIds;
+    }
+
+    public String primary(String symbol) {
+        return points.length == 0 ? null : brokerIds.get(pointOwners[search(hash(symbol))]);
+    }
+
+    // Primary first
+    public List<String> owners(String symbol) {
+        List<String> owners = new ArrayList<>(replicas);
+        if (points.length == 0) {
+            return owners;
+        }
+        int start = search(hash(symbol));
+        for (int i = 0; i < points.length && owners.size() < replicas; i++) {
+            String owner = brokerIds.get(pointOwners[(start + i) % points.length]);
+            if (!owners.contains(owner)) {
+                owners.add(owner);
+            }
+        }
+        return owners;
+    }
+
+    public boolean isOwner(String brokerId, String symbol) {
+        return owners(symbol).contains(brokerId);
+    }
+
+    // First point at or after the hash, wrapping round the ring
+    private int search(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == points.length ? 0 : index;
+    }
+
+    private static long hash(String symbol) {
+        return mix(symbol.hashCode());
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionMap{epoch=" + epoch + ", replicas=" + replicas + ", brokers=" + brokerIds + "}";
+    }
+}
@@ -0,0 +1,43 @@
+// PriceBatch.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+/**
+ * Price, quantity and version of each requested symbol, in request order, as parallel primitive
+ * arrays rather than a map of boxed values. A symbol the broker does not list has version -1.
+ * The symbols themselves are not sent back, since the caller already has them in this order:
+ * {@link #getSymbols()} is null on a batch received over RMI until {@link #withSymbols} attaches them.
+ */
+public class PriceBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final transient String[] symbols;
+    private final double[] prices;
+    private final int[] quantities;
+    private final long[] versions;
+
+    public PriceBatch(String[] symbols, double[] prices, int[] quantities, long[] versions) {
+        this.symbols = symbols;
+        this.prices = prices;
+        this.quantities = quantities;
+        this.versions = versions;
+    }
+
+    // The same values labelled with the symbols they were requested for
+    public PriceBatch withSymbols(String[] symbols) {
+        return new PriceBatch(symbols, prices, quantities, versions);
+    }
+
+    public int size() { return prices.length; }
+    public String[] getSymbols() { return symbols; }
+    public double[] getPrices() { return prices; }
+    public int[] getQuantities() { return quantities; }
+    public long[] getVersions() { return versions; }
+    public boolean isListed(int index) { return versions[index] >= 0; }
+
+    @Override
+    public String toString() {
+        return String.format("PriceBatch{symbols=%d}", prices.length);
+    }
+}
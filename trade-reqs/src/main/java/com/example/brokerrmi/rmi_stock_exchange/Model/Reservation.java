@@ -0,0 +1,42 @@
+// Reservation.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+/**
+ * Cash or shares held back on a client's home broker for trades and orders that run on another
+ * broker, which draw from it there: a buy holds quantity times price, a sell holds quantity shares.
+ * The key names the hold in the client's account until trades settle it or it is released.
+ */
+public class Reservation implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String clientId;
+    private final long key;
+    private final String symbol;
+    private final OrderSide side;
+    private final int quantity;
+    private final double price;
+
+    public Reservation(String clientId, long key, String symbol, OrderSide side, int quantity, double price) {
+        this.clientId = clientId;
+        this.key = key;
+        this.symbol = symbol;
+        this.side = side;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    public String getClientId() { return clientId; }
+    public long getKey() { return key; }
+    public String getSymbol() { return symbol; }
+    public OrderSide getSide() { return side; }
+    public int getQuantity() { return quantity; }
+    public double getPrice() { return price; }
+
+    @Override
+    public String toString() {
+        return String.format("Reservation{key=%016x, %s %s x %d at %.2f, client='%s'}",
+                key, side, symbol, quantity, price, clientId);
+    }
+}
@@ -0,0 +1,31 @@
+// StockUpdate.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+public class StockUpdate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String symbol;
+    private final double price;
+    private final int quantity;
+    private final long version;
+
+    public StockUpdate(String symbol, double price, int quantity, long version) {
+        this.symbol = symbol;
+        this.price = price;
+        this.quantity = quantity;
+        this.version = version;
+    }
+
+    public String getSymbol() { return symbol; }
+    public double getPrice() { return price; }
+    public int getQuantity() { return quantity; }
+    public long getVersion() { return version; }
+
+    @Override
+    public String toString() {
+        return String.format("StockUpdate{symbol='%s', price=%.2f, quantity=%d, version=%d}",
+                symbol, price, quantity, version);
+    }
+}
@@ -0,0 +1,32 @@
+// TradePage.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+import java.util.List;
+
+// One page of a trade history query; pass nextCursor to the same broker for the next page
+public class TradePage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<TradeRecord> trades;
+    private final long nextCursor;
+
+    public TradePage(List<TradeRecord> trades, long nextCursor) {
+        this.trades = trades;
+        this.nextCursor = nextCursor;
+    }
+
+    public static TradePage empty() {
+        return new TradePage(List.of(), -1);
+    }
+
+    public List<TradeRecord> getTrades() { return trades; }
+    // Negative once the query has no more trades
+    public long getNextCursor() { return nextCursor; }
+    public boolean isLast() { return nextCursor < 0; }
+
+    @Override
+    public String toString() {
+        return String.format("TradePage{trades=%d, nextCursor=%d}", trades.size(), nextCursor);
+    }
+}
@@ -0,0 +1,38 @@
+// TradeRequest.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+public class TradeRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final OrderSide side;
+    private final String symbol;
+    private final int quantity;
+    private final String clientId;
+    // Client-generated, the same on every retry of this trade; 0 = run every time it arrives
+    private final long idempotencyKey;
+
+    public TradeRequest(OrderSide side, String symbol, int quantity, String clientId) {
+        this(side, symbol, quantity, clientId, 0);
+    }
+
+    public TradeRequest(OrderSide side, String symbol, int quantity, String clientId, long idempotencyKey) {
+        this.side = side;
+        this.symbol = symbol;
+        this.quantity = quantity;
+        this.clientId = clientId;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public OrderSide getSide() { return side; }
+    public String getSymbol() { return symbol; }
+    public int getQuantity() { return quantity; }
+    public String getClientId() { return clientId; }
+    public long getIdempotencyKey() { return idempotencyKey; }
+
+    @Override
+    public String toString() {
+        return String.format("TradeRequest{%s %s x %d, client='%s'}", side, symbol, quantity, clientId);
+    }
+}
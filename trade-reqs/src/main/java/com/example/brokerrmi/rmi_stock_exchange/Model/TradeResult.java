@@ -0,0 +1,27 @@
+// TradeResult.java
+package com.example.brokerrmi.rmi_stock_exchange.Model;
+
+import java.io.Serializable;
+
+public class TradeResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean success;
+    private final double price;
+    private final String message;
+
+    public TradeResult(boolean success, double price, String message) {
+        this.success = success;
+        this.price = price;
+        this.message = message;
+    }
+
+    public boolean isSuccess() { return success; }
+    public double getPrice() { return price; }
+    public String getMessage() { return message; }
+
+    @Override
+    public String toString() {
+        return String.format("TradeResult{success=%s, price=%.2f, message='%s'}", success, price, message);
+    }
+}
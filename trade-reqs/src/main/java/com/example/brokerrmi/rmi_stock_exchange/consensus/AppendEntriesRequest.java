@@ -0,0 +1,34 @@
+// AppendEntriesRequest.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Sent by the leader with a batch of entries, or none as a heartbeat
+public class AppendEntriesRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long term;
+    private final String leaderId;
+    private final long prevLogIndex;
+    private final long prevLogTerm;
+    private final List<LogEntry> entries;
+    private final long leaderCommit;
+
+    public AppendEntriesRequest(long term, String leaderId, long prevLogIndex, long prevLogTerm,
+                                List<LogEntry> entries, long leaderCommit) {
+        this.term = term;
+        this.leaderId = leaderId;
+        this.prevLogIndex = prevLogIndex;
+        this.prevLogTerm = prevLogTerm;
+        this.entries = entries;
+        this.leaderCommit = leaderCommit;
+    }
+
+    public long getTerm() { return term; }
+    public String getLeaderId() { return leaderId; }
+    public long getPrevLogIndex() { return prevLogIndex; }
+    public long getPrevLogTerm() { return prevLogTerm; }
+    public List<LogEntry> getEntries() { return entries; }
+    public long getLeaderCommit() { return leaderCommit; }
+}
@@ -0,0 +1,23 @@
+// AppendEntriesResponse.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import java.io.Serializable;
+
+public class AppendEntriesResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long term;
+    private final boolean success;
+    // On success the last index known to match the leader; otherwise where the leader should retry from, minus one
+    private final long lastLogIndex;
+
+    public AppendEntriesResponse(long term, boolean success, long lastLogIndex) {
+        this.term = term;
+        this.success = success;
+        this.lastLogIndex = lastLogIndex;
+    }
+
+    public long getTerm() { return term; }
+    public boolean isSuccess() { return success; }
+    public long getLastLogIndex() { return lastLogIndex; }
+}
@@ -0,0 +1,33 @@
+// InstallSnapshotRequest.java
+package com.example.brokerrmi.rmi_stock_exchange.consensus;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.StockUpdate;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Full state as of lastIncludedIndex, sent to a follower that needs entries the leader has compacted away
+public class InstallSnapshotRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long term;
+    private final String leaderId;
+    private final long lastIncludedIndex;
+    private final long lastIncludedTerm;
+    private final List<StockUpdate> state;
+
+    public InstallSnapshotRequest(long term, String leaderId, long lastIncludedIndex, long lastIncludedTerm,
+                                  List<StockUpdate> state) {
+        this.term = term;
+        this.leaderId = leaderId;
+        this.lastIncludedIndex = lastIncludedIndex;
+        this.lastIncludedTerm = lastIncludedTerm;
+        this.state = state;
+    }
+
+    public long getTerm() { return term; }
+    public String getLeaderId() { return leaderId; }
+    public long getLastIncludedIndex() { return lastIncludedIndex; }
+    public long getLastIncludedTerm() { return lastIncludedTerm; }
+    public List<StockUpdate> getState() { return state; }
+}
@@ -1,26 +1,59 @@
 package com.example.client.trade_reqs;
 
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountSnapshot;
+import com.example.brokerrmi.rmi_stock_exchange.Model.CandleSeries;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Fill;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderResult;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderType;
+import com.example.brokerrmi.rmi_stock_exchange.Model.PriceBatch;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeRecord;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+import com.example.client.trade_reqs.load.LoadGenerator;
+import com.example.client.trade_reqs.load.LoadProfile;
 import com.example.client.trade_reqs.service.FaultTolerantTradingClient;
+import com.example.client.trade_reqs.service.QuoteCache;
+import com.example.client.trade_reqs.service.RetryPolicy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootApplication
 public class TradeReqsApplication implements CommandLineRunner {
 
 	private final FaultTolerantTradingClient client;
 	private final Scanner scanner;
+	private final LoadProfile loadProfile;
 
-	public TradeReqsApplication() {
-		this.client = new FaultTolerantTradingClient();
+	public TradeReqsApplication(@Value("${trading.transport:rmi}") String transport,
+								@Value("${trading.batch.max-size:256}") int batchSize,
+								@Value("${trading.batch.linger-ms:2}") long batchLingerMs,
+								@Value("${trading.health.probe-interval-ms:1000}") long probeIntervalMs,
+								@Value("${trading.pool.max-concurrent-calls:64}") int maxConcurrentCalls,
+								@Value("${trading.retry.max-attempts:0}") int maxAttempts,
+								@Value("${trading.retry.deadline-ms:5000}") long deadlineMs,
+								@Value("${trading.retry.hedge-delay-ms:0}") long hedgeDelayMs,
+								@Value("${trading.cache.max-entries:10000}") int cacheMaxEntries,
+								@Value("${trading.cache.ttl-ms:0}") long cacheTtlMs,
+								LoadProfile loadProfile) {
+		this.client = new FaultTolerantTradingClient(transport, batchSize, batchLingerMs, probeIntervalMs, maxConcurrentCalls,
+				new RetryPolicy(maxAttempts, deadlineMs, hedgeDelayMs),
+				cacheTtlMs > 0 ? new QuoteCache(cacheMaxEntries, cacheTtlMs) : null);
 		this.scanner = new Scanner(System.in);
+		this.loadProfile = loadProfile;
 	}
 
 	public static void main(String[] args) {
-		SpringApplication.run(TradeReqsApplication.class, args);
+		// RMI and broker pool threads would otherwise keep the JVM up after exit or a finished load run
+		System.exit(SpringApplication.exit(SpringApplication.run(TradeReqsApplication.class, args)));
 	}
 
 	@Override
@@ -29,10 +62,15 @@ public class TradeReqsApplication implements CommandLineRunner {
 
 		try {
 			client.connect();
-			runInteractiveMenu();
+			if (loadProfile.isEnabled()) {
+				new LoadGenerator(client, loadProfile).run();
+			} else {
+				runInteractiveMenu();
+			}
 		} catch (Exception e) {
 			System.out.println("❌ Failed to start client: " + e.getMessage());
 		} finally {
+			client.close();
 			scanner.close();
 		}
 	}
@@ -60,12 +98,26 @@ public class TradeReqsApplication implements CommandLineRunner {
 			switch (action) {
 				case "price":
 				case "p":
-					if (parts.length >= 2) {
+					if (parts.length > 2) {
+						List<String> symbols = new ArrayList<>();
+						for (int i = 1; i < parts.length; i++) {
+							symbols.add(parts[i].toUpperCase());
+						}
+						PriceBatch batch = client.getPrices(symbols);
+						for (int i = 0; i < batch.size(); i++) {
+							if (batch.isListed(i)) {
+								System.out.printf("💰 %-6s $%.2f (%d available)%n", batch.getSymbols()[i],
+										batch.getPrices()[i], batch.getQuantities()[i]);
+							} else {
+								System.out.printf("❌ %-6s not listed%n", batch.getSymbols()[i]);
+							}
+						}
+					} else if (parts.length == 2) {
 						String symbol = parts[1].toUpperCase();
 						double price = client.getStockPrice(symbol);
 						System.out.printf("💰 %s Current Price: $%.2f%n", symbol, price);
 					} else {
-						System.out.println("❌ Usage: price <SYMBOL> or p <SYMBOL>");
+						System.out.println("❌ Usage: price <SYMBOL> [SYMBOL ...] or p <SYMBOL> [SYMBOL ...]");
 					}
 					break;
 
@@ -105,6 +157,88 @@ public class TradeReqsApplication implements CommandLineRunner {
 					}
 					break;
 
+				case "limit":
+					if (parts.length >= 5) {
+						OrderSide side = OrderSide.valueOf(parts[1].toUpperCase());
+						String symbol = parts[2].toUpperCase();
+						int quantity = Integer.parseInt(parts[3]);
+						double limitPrice = Double.parseDouble(parts[4]);
+						OrderResult result = client.submitOrder(symbol, side, OrderType.LIMIT, limitPrice, quantity, "trader");
+						printOrderResult(result);
+					} else {
+						System.out.println("❌ Usage: limit <buy/sell> <SYMBOL> <QUANTITY> <PRICE>");
+					}
+					break;
+
+				case "market":
+					if (parts.length >= 4) {
+						OrderSide side = OrderSide.valueOf(parts[1].toUpperCase());
+						String symbol = parts[2].toUpperCase();
+						int quantity = Integer.parseInt(parts[3]);
+						OrderResult result = client.submitOrder(symbol, side, OrderType.MARKET, 0.0, quantity, "trader");
+						printOrderResult(result);
+					} else {
+						System.out.println("❌ Usage: market <buy/sell> <SYMBOL> <QUANTITY>");
+					}
+					break;
+
+				case "cancel":
+					if (parts.length >= 3) {
+						String symbol = parts[1].toUpperCase();
+						long orderId = Long.parseLong(parts[2]);
+						boolean cancelled = client.cancelOrder(symbol, orderId, "trader");
+						System.out.println(cancelled ? "✅ Order " + orderId + " cancelled" : "❌ Order " + orderId + " not found");
+					} else {
+						System.out.println("❌ Usage: cancel <SYMBOL> <ORDER_ID>");
+					}
+					break;
+
+				case "fills":
+					List<Fill> fills = client.getFills("trader", 0L);
+					if (fills.isEmpty()) {
+						System.out.println("📭 No fills yet");
+					}
+					fills.forEach(fill -> System.out.printf("   #%d %s %d %s @ $%.2f (order %d)%n",
+							fill.getSequence(), fill.getSide(), fill.getQuantity(), fill.getSymbol(),
+							fill.getPrice(), fill.getOrderId()));
+					break;
+
+				case "account":
+					AccountSnapshot account = client.getAccount("trader");
+					System.out.printf("💼 Cash: $%.2f%n", account.getCash());
+					if (account.getPositions().isEmpty()) {
+						System.out.println("📭 No positions");
+					}
+					account.getPositions().forEach((symbol, position) ->
+							System.out.printf("   %-10s %d%n", symbol, position));
+					break;
+
+				case "history":
+					if (parts.length >= 2) {
+						String symbol = parts[1].toUpperCase();
+						long minutes = parts.length >= 3 ? Long.parseLong(parts[2]) : 60;
+						long now = System.currentTimeMillis();
+						printTrades(client.getTrades(symbol, now - TimeUnit.MINUTES.toMillis(minutes), now, 50));
+					} else {
+						System.out.println("❌ Usage: history <SYMBOL> [MINUTES]");
+					}
+					break;
+
+				case "candles":
+					if (parts.length >= 2) {
+						String symbol = parts[1].toUpperCase();
+						String interval = parts.length >= 3 ? parts[2] : "1m";
+						int count = parts.length >= 4 ? Integer.parseInt(parts[3]) : 10;
+						printCandles(client.getCandles(symbol, intervalMillis(interval), count), interval);
+					} else {
+						System.out.println("❌ Usage: candles <SYMBOL> [1s|1m|5m] [COUNT]");
+					}
+					break;
+
+				case "trades":
+					printTrades(client.getClientTrades("trader", 50));
+					break;
+
 				case "list":
 				case "l":
 				case "stocks":
@@ -118,9 +252,26 @@ public class TradeReqsApplication implements CommandLineRunner {
 					System.out.println("└────────────┴─────────────┘");
 					break;
 
+				case "watch":
+					List<String> symbols = new ArrayList<>();
+					for (int i = 1; i < parts.length; i++) {
+						symbols.add(parts[i].toUpperCase());
+					}
+					client.subscribe(symbols, update -> System.out.printf("%n📡 %s $%.2f (qty %d)%n",
+							update.getSymbol(), update.getPrice(), update.getQuantity()));
+					System.out.println("👀 Watching " + (symbols.isEmpty() ? "all symbols" : symbols) + " - 'unwatch' to stop");
+					break;
+
+				case "unwatch":
+					client.unsubscribe();
+					System.out.println("🙈 Stopped watching market data");
+					break;
+
 				case "status":
-					System.out.println("🟢 Client is connected and ready");
-					System.out.println("📡 Broker network: 3 nodes available");
+					System.out.println("📡 Broker network (requests go to the fastest healthy broker):");
+					client.getBrokerStatus().forEach(line -> System.out.println("   " + line));
+					System.out.println("🧩 Partitions: " + client.getPartitionStatus());
+					System.out.println("💾 Quote cache: " + client.getQuoteCacheStatus());
 					break;
 
 				case "help":
@@ -137,12 +288,15 @@ public class TradeReqsApplication implements CommandLineRunner {
 						int times = parts.length >= 5 ? Integer.parseInt(parts[4]) : 5;
 
 						System.out.printf("🔄 Executing %d %s operations for %s...%n", times, operation, symbol);
+						List<CompletableFuture<TradeResult>> results = new ArrayList<>(times);
+						for (int i = 1; i <= times; i++) {
+							results.add(client.submitTrade(operation, symbol, quantity, "bulk-trader"));
+						}
 						for (int i = 1; i <= times; i++) {
-							boolean success = client.executeTrade(operation, symbol, quantity, "bulk-trader");
+							TradeResult result = results.get(i - 1).join();
 							System.out.printf("   %d/%d: %s %d %s - %s%n",
 									i, times, operation.toUpperCase(), quantity, symbol,
-									success ? "✅" : "❌");
-							Thread.sleep(500); // Small delay between operations
+									result.isSuccess() ? String.format("✅ $%.2f", result.getPrice()) : "❌ " + result.getMessage());
 						}
 					} else {
 						System.out.println("❌ Usage: bulk <buy/sell> <SYMBOL> <QUANTITY> [TIMES]");
@@ -154,25 +308,78 @@ public class TradeReqsApplication implements CommandLineRunner {
 			}
 		} catch (NumberFormatException e) {
 			System.out.println("❌ Invalid number format. Please check your input.");
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			System.out.println("❌ Operation interrupted.");
+		} catch (IllegalArgumentException e) {
+			System.out.println("❌ Invalid argument: " + e.getMessage());
 		} catch (Exception e) {
 			System.out.println("❌ Error: " + e.getMessage());
 		}
 	}
 
+	private void printCandles(CandleSeries candles, String interval) {
+		if (candles.size() == 0) {
+			System.out.println("📭 No " + interval + " bars for " + candles.getSymbol());
+		}
+		for (int i = 0; i < candles.size(); i++) {
+			System.out.printf("   %tT O %.2f H %.2f L %.2f C %.2f V %d VWAP %.2f%n", candles.getStartTimes()[i],
+					candles.getOpens()[i], candles.getHighs()[i], candles.getLows()[i], candles.getCloses()[i],
+					candles.getVolumes()[i], candles.getVwaps()[i]);
+		}
+		System.out.printf("📊 %s day VWAP $%.2f on %d shares%n", candles.getSymbol(), candles.getDayVwap(),
+				candles.getDayVolume());
+	}
+
+	// "1s", "1m", "5m", "1h" or plain milliseconds
+	private static long intervalMillis(String interval) {
+		long amount = Long.parseLong(interval.replaceAll("[a-z]+$", ""));
+		if (interval.endsWith("ms")) {
+			return amount;
+		} else if (interval.endsWith("s")) {
+			return TimeUnit.SECONDS.toMillis(amount);
+		} else if (interval.endsWith("m")) {
+			return TimeUnit.MINUTES.toMillis(amount);
+		} else if (interval.endsWith("h")) {
+			return TimeUnit.HOURS.toMillis(amount);
+		}
+		return amount;
+	}
+
+	private void printTrades(List<TradeRecord> trades) {
+		if (trades.isEmpty()) {
+			System.out.println("📭 No trades");
+		}
+		trades.forEach(trade -> System.out.printf("   #%d %tT %s %d %s @ $%.2f (%s on %s)%n",
+				trade.getSequence(), trade.getTimestamp(), trade.getSide(), trade.getQuantity(), trade.getSymbol(),
+				trade.getPrice(), trade.getClientId(), trade.getBrokerId()));
+	}
+
+	private void printOrderResult(OrderResult result) {
+		System.out.printf("📝 Order %d: %s (filled %d, remaining %d)%n", result.getOrderId(),
+				result.getStatus(), result.getFilledQuantity(), result.getRemainingQuantity());
+		result.getFills().forEach(fill -> System.out.printf("   ✅ %d @ $%.2f against order %d%n",
+				fill.getQuantity(), fill.getPrice(), fill.getCounterOrderId()));
+	}
+
 	private void showHelp() {
 		System.out.println("\n📖 Available Commands:");
 		System.out.println("┌───────────────────┬─────────────────────────────────────────────┐");
 		System.out.println("│ Command           │ Description                                 │");
 		System.out.println("├───────────────────┼─────────────────────────────────────────────┤");
-		System.out.println("│ price <SYMBOL>    │ Get current stock price                     │");
+		System.out.println("│ price <SYM ...>   │ Get current stock prices                    │");
 		System.out.println("│ buy <SYM> <QTY>   │ Buy shares of a stock                       │");
 		System.out.println("│ sell <SYM> <QTY>  │ Sell shares of a stock                      │");
+		System.out.println("│ limit <op> S Q PX │ Place a limit order in the order book       │");
+		System.out.println("│ market <op> S Q   │ Place a market order in the order book      │");
+		System.out.println("│ cancel <SYM> <ID> │ Cancel a resting order                      │");
+		System.out.println("│ fills             │ Show your order book fills                  │");
+		System.out.println("│ account           │ Show your cash and positions                │");
+		System.out.println("│ history S [MIN]   │ Show a stock's trades (last 60 min default) │");
+		System.out.println("│ trades            │ Show your trade history                     │");
+		System.out.println("│ candles S [I] [N] │ Show OHLCV bars and VWAP (1s, 1m or 5m)     │");
 		System.out.println("│ list              │ Show all available stocks                   │");
+		System.out.println("│ watch [SYM ...]   │ Stream live prices (all symbols if none)    │");
+		System.out.println("│ unwatch           │ Stop streaming live prices                  │");
 		System.out.println("│ status            │ Show client connection status               │");
-		System.out.println("│ bulk <op> <s> <q> │ Execute multiple trades (op=buy/sell)       │");
+		System.out.println("│ bulk <op> <s> <q> │ Execute multiple trades in one batch        │");
 		System.out.println("│ help              │ Show this help message                      │");
 		System.out.println("│ exit              │ Exit the application                        │");
 		System.out.println("└───────────────────┴─────────────────────────────────────────────┘");
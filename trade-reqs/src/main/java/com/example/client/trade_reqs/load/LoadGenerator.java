@@ -0,0 +1,216 @@
+package com.example.client.trade_reqs.load;
+
+import com.example.client.trade_reqs.service.FaultTolerantTradingClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link LoadProfile} against the brokers and writes a latency report.
+ *
+ * <p>In open-loop mode request i is due at {@code start + i / rate} and its latency is measured
+ * from that intended start, not from when it was actually sent. A stall on the broker (or in this
+ * generator) therefore shows up in every request that should have been sent during it, instead of
+ * quietly lowering the send rate and hiding the stall; this is the correction for coordinated
+ * omission. Closed-loop workers wait for each answer before sending again, so their numbers are
+ * service times and are labelled as such. Requests that finish during the warmup are not recorded.
+ */
+public class LoadGenerator {
+    enum Operation { BUY, SELL, READ }
+
+    private static final String CLIENT_ID = "load-generator";
+    private static final double[] REPORT_PERCENTILES = {
+            0, 10, 25, 50, 75, 90, 95, 99, 99.5, 99.9, 99.95, 99.99, 99.999, 100 };
+
+    private final FaultTolerantTradingClient client;
+    private final LoadProfile profile;
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final LatencyHistogram allLatencies = new LatencyHistogram();
+    private final Map<Operation, LongAdder> rejected = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final LongAdder sent = new LongAdder();
+    private SymbolPicker symbols;
+    private volatile long recordFromNanos;
+
+    public LoadGenerator(FaultTolerantTradingClient client, LoadProfile profile) {
+        this.client = client;
+        this.profile = profile;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            rejected.put(operation, new LongAdder());
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    // Blocks for warmup plus duration, then writes the report and returns it
+    public String run() throws IOException, InterruptedException {
+        List<String> universe = profile.getSymbols().isEmpty()
+                ? new ArrayList<>(client.getAllStocks(0).keySet())
+                : profile.getSymbols();
+        symbols = new SymbolPicker(universe, profile.getDistribution(), profile.getZipfExponent());
+        System.out.printf("🏋️ %s-loop load on %d symbols (%s) for %ds after a %ds warmup...%n",
+                profile.getMode().name().toLowerCase(Locale.ROOT), symbols.size(),
+                profile.getDistribution().name().toLowerCase(Locale.ROOT),
+                profile.getDurationSeconds(), profile.getWarmupSeconds());
+
+        long start = System.nanoTime();
+        recordFromNanos = start + TimeUnit.SECONDS.toNanos(profile.getWarmupSeconds());
+        long end = recordFromNanos + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+        if (profile.getMode() == LoadProfile.Mode.OPEN) {
+            runOpenLoop(start, end);
+        } else {
+            runClosedLoop(end);
+        }
+        double measuredSeconds = (System.nanoTime() - recordFromNanos) / 1e9;
+
+        String report = report(measuredSeconds);
+        Path reportFile = Path.of(profile.getReportFile());
+        Files.writeString(reportFile, report);
+        System.out.print(report);
+        System.out.println("📝 Report written to " + reportFile.toAbsolutePath());
+        return report;
+    }
+
+    private void runOpenLoop(long start, long end) throws InterruptedException {
+        double intervalNanos = 1e9 / profile.getRatePerSecond();
+        Semaphore outstanding = new Semaphore(profile.getMaxOutstanding());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long intended = start + (long) (i * intervalNanos);
+                if (intended >= end) {
+                    break;
+                }
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                // Waiting here for a slot delays the request, and that delay is part of its latency
+                outstanding.acquire();
+                Operation operation = nextOperation();
+                String symbol = symbols.next();
+                executor.execute(() -> {
+                    try {
+                        send(operation, symbol, intended);
+                    } finally {
+                        outstanding.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private void runClosedLoop(long end) throws InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < profile.getConcurrency(); worker++) {
+                executor.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        send(nextOperation(), symbols.next(), System.nanoTime());
+                    }
+                });
+            }
+        }
+    }
+
+    private void send(Operation operation, String symbol, long startNanos) {
+        sent.increment();
+        boolean ok;
+        try {
+            ok = switch (operation) {
+                case BUY -> client.executeTrade("buy", symbol, profile.getQuantity(), CLIENT_ID);
+                case SELL -> client.executeTrade("sell", symbol, profile.getQuantity(), CLIENT_ID);
+                // Staleness 0 keeps the quote cache out of the measurement
+                case READ -> {
+                    client.getStockPrice(symbol, 0);
+                    yield true;
+                }
+            };
+        } catch (RuntimeException e) {
+            if (System.nanoTime() >= recordFromNanos) {
+                errors.get(operation).increment();
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        if (now < recordFromNanos) {
+            return;
+        }
+        if (!ok) {
+            rejected.get(operation).increment();
+        }
+        long latency = now - startNanos;
+        latencies.get(operation).record(latency);
+        allLatencies.record(latency);
+    }
+
+    private Operation nextOperation() {
+        int roll = ThreadLocalRandom.current().nextInt(100);
+        if (roll < profile.getBuyPercent()) {
+            return Operation.BUY;
+        }
+        return roll < profile.getBuyPercent() + profile.getSellPercent() ? Operation.SELL : Operation.READ;
+    }
+
+    private String report(double measuredSeconds) {
+        boolean open = profile.getMode() == LoadProfile.Mode.OPEN;
+        StringBuilder out = new StringBuilder();
+        out.append("Load report\n");
+        out.append(String.format(Locale.ROOT, "mode            %s%n", open
+                ? String.format(Locale.ROOT, "open loop, %.0f req/s target, at most %d outstanding",
+                        profile.getRatePerSecond(), profile.getMaxOutstanding())
+                : "closed loop, " + profile.getConcurrency() + " workers"));
+        out.append(String.format(Locale.ROOT, "latency         %s%n", open
+                ? "from intended send time (corrected for coordinated omission)"
+                : "service time from actual send (not corrected for coordinated omission)"));
+        out.append(String.format(Locale.ROOT, "symbols         %d, %s%s%n", symbols.size(),
+                profile.getDistribution().name().toLowerCase(Locale.ROOT),
+                profile.getDistribution() == LoadProfile.Distribution.ZIPF
+                        ? String.format(Locale.ROOT, " s=%.2f, hottest symbol %.1f%% of requests",
+                                profile.getZipfExponent(), symbols.hottestShare() * 100)
+                        : ""));
+        out.append(String.format(Locale.ROOT, "mix             %d%% buy, %d%% sell, %d%% read, quantity %d%n",
+                profile.getBuyPercent(), profile.getSellPercent(), profile.getReadPercent(), profile.getQuantity()));
+        out.append(String.format(Locale.ROOT, "measured        %.1fs after %ds warmup, %d requests sent in total%n",
+                measuredSeconds, profile.getWarmupSeconds(), sent.sum()));
+        out.append(String.format(Locale.ROOT, "throughput      %.1f req/s completed%n",
+                allLatencies.getCount() / Math.max(measuredSeconds, 1e-9)));
+        out.append('\n');
+
+        out.append(String.format(Locale.ROOT, "%-6s %9s %8s %8s %10s %10s %10s %10s %10s %10s %10s%n",
+                "op", "count", "rejected", "errors", "mean(us)", "p50", "p90", "p99", "p99.9", "p99.99", "max"));
+        for (Operation operation : Operation.values()) {
+            appendRow(out, operation.name(), latencies.get(operation),
+                    rejected.get(operation).sum(), errors.get(operation).sum());
+        }
+        long totalRejected = rejected.values().stream().mapToLong(LongAdder::sum).sum();
+        long totalErrors = errors.values().stream().mapToLong(LongAdder::sum).sum();
+        appendRow(out, "ALL", allLatencies, totalRejected, totalErrors);
+
+        out.append("\nPercentile distribution, all operations (microseconds)\n");
+        for (double percentile : REPORT_PERCENTILES) {
+            out.append(String.format(Locale.ROOT, "%9.3f%%  %12.1f%n",
+                    percentile, allLatencies.percentileNanos(percentile) / 1000.0));
+        }
+        return out.toString();
+    }
+
+    private static void appendRow(StringBuilder out, String name, LatencyHistogram histogram, long rejected, long errors) {
+        out.append(String.format(Locale.ROOT, "%-6s %9d %8d %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                name, histogram.getCount(), rejected, errors, histogram.getMeanNanos() / 1000.0,
+                histogram.percentileNanos(50) / 1000.0, histogram.percentileNanos(90) / 1000.0,
+                histogram.percentileNanos(99) / 1000.0, histogram.percentileNanos(99.9) / 1000.0,
+                histogram.percentileNanos(99.99) / 1000.0, histogram.getMaxNanos() / 1000.0));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.client.trade_reqs.load;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Settings for a headless load run, read from the {@code load.*} properties. An open-loop run
+ * sends at a fixed rate whatever the brokers' latency; a closed-loop run keeps a fixed number of
+ * requests in flight, each sent as soon as the previous one on its worker answers.
+ */
+@Component
+public class LoadProfile {
+    public enum Mode { NONE, OPEN, CLOSED }
+
+    public enum Distribution { UNIFORM, ZIPF }
+
+    private final Mode mode;
+    private final double ratePerSecond;
+    private final int concurrency;
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final Distribution distribution;
+    private final double zipfExponent;
+    private final List<String> symbols;
+    private final int buyPercent;
+    private final int sellPercent;
+    private final int quantity;
+    private final int maxOutstanding;
+    private final String reportFile;
+
+    public LoadProfile(
+            @Value("${load.mode:none}") String mode,
+            @Value("${load.rate-per-second:1000}") double ratePerSecond,
+            @Value("${load.concurrency:32}") int concurrency,
+            @Value("${load.duration-s:60}") long durationSeconds,
+            @Value("${load.warmup-s:10}") long warmupSeconds,
+            @Value("${load.distribution:zipf}") String distribution,
+            @Value("${load.zipf-exponent:1.0}") double zipfExponent,
+            @Value("${load.symbols:}") String symbols,
+            @Value("${load.buy-percent:45}") int buyPercent,
+            @Value("${load.sell-percent:45}") int sellPercent,
+            @Value("${load.quantity:1}") int quantity,
+            @Value("${load.max-outstanding:10000}") int maxOutstanding,
+            @Value("${load.report-file:load-report.txt}") String reportFile) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.ratePerSecond = ratePerSecond;
+        this.concurrency = Math.max(1, concurrency);
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = Math.max(0, warmupSeconds);
+        this.distribution = Distribution.valueOf(distribution.trim().toUpperCase(Locale.ROOT));
+        this.zipfExponent = zipfExponent;
+        this.symbols = Arrays.stream(symbols.split(","))
+                .map(String::trim)
+                .filter(symbol -> !symbol.isEmpty())
+                .map(symbol -> symbol.toUpperCase(Locale.ROOT))
+                .toList();
+        if (buyPercent < 0 || sellPercent < 0 || buyPercent + sellPercent > 100) {
+            throw new IllegalArgumentException("load.buy-percent and load.sell-percent must add up to at most 100");
+        }
+        if (this.mode == Mode.OPEN && ratePerSecond <= 0) {
+            throw new IllegalArgumentException("load.rate-per-second must be positive for an open-loop run");
+        }
+        this.buyPercent = buyPercent;
+        this.sellPercent = sellPercent;
+        this.quantity = Math.max(1, quantity);
+        this.maxOutstanding = Math.max(1, maxOutstanding);
+        this.reportFile = reportFile;
+    }
+
+    public boolean isEnabled() {
+        return mode != Mode.NONE;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    // Empty means every symbol the brokers list at the start of the run
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    public int getBuyPercent() {
+        return buyPercent;
+    }
+
+    public int getSellPercent() {
+        return sellPercent;
+    }
+
+    public int getReadPercent() {
+        return 100 - buyPercent - sellPercent;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    // Open loop only: requests past this many in flight wait, and the wait counts towards their latency
+    public int getMaxOutstanding() {
+        return maxOutstanding;
+    }
+
+    public String getReportFile() {
+        return reportFile;
+    }
+}
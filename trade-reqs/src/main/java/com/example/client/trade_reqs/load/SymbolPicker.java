@@ -0,0 +1,53 @@
+package com.example.client.trade_reqs.load;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws symbols uniformly or from a Zipf distribution, where the k-th symbol in the list is
+ * picked with weight 1 / k^s, so the first few symbols are hot and the tail is cold.
+ */
+final class SymbolPicker {
+    private final String[] symbols;
+    // Cumulative probabilities; null for uniform
+    private final double[] cumulative;
+
+    SymbolPicker(List<String> symbols, LoadProfile.Distribution distribution, double exponent) {
+        if (symbols.isEmpty()) {
+            throw new IllegalArgumentException("No symbols to generate load for");
+        }
+        this.symbols = symbols.toArray(new String[0]);
+        if (distribution == LoadProfile.Distribution.UNIFORM) {
+            this.cumulative = null;
+            return;
+        }
+        cumulative = new double[this.symbols.length];
+        double total = 0;
+        for (int rank = 1; rank <= this.symbols.length; rank++) {
+            total += 1.0 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    String next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (cumulative == null) {
+            return symbols[random.nextInt(symbols.length)];
+        }
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return symbols[Math.min(index >= 0 ? index : -index - 1, symbols.length - 1)];
+    }
+
+    // Share of draws that land on the hottest symbol
+    double hottestShare() {
+        return cumulative == null ? 1.0 / symbols.length : cumulative[0];
+    }
+
+    int size() {
+        return symbols.length;
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.client.trade_reqs.service;
+
+import com.example.brokerrmi.rmi_stock_exchange.broker.ServerBusyException;
+import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
+import com.example.brokerrmi.rmi_stock_exchange.transport.BinaryTradingClient;
+
+import java.io.IOException;
+import java.rmi.ServerException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Live connections to every broker in {@link ServiceRegistry}. Stubs are resolved up front and
+ * kept; each request goes to the healthy broker with the lowest EWMA latency weighted by its
+ * in-flight requests, and a failed broker is skipped at once in favour of the next best one.
+ * Down brokers are re-resolved by a background health probe, never inside the request path.
+ * <p>
+ * The asynchronous variants run each request on its own virtual thread, so thousands can be
+ * outstanding at once; every request, blocking or not, follows the same {@link RetryPolicy}.
+ * A request can name preferred brokers, such as the owners of a symbol in a partitioned cluster;
+ * the best healthy one of them is tried first and the rest of the pool only after them.
+ */
+public class BrokerPool implements AutoCloseable {
+    // Brokers serve the binary transport 1000 ports above their RMI registry by default
+    private static final int BINARY_PORT_OFFSET = 1000;
+    // Weight of the newest sample in the latency average
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final List<Broker> brokers = new ArrayList<>();
+    private final boolean binaryTransport;
+    private final long probeIntervalMs;
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService prober;
+    private final ExecutorService callers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("broker-call-", 0).factory());
+
+    private volatile Consumer<Broker> downListener = broker -> { };
+
+    @FunctionalInterface
+    public interface BrokerCall<T> {
+        T call(Broker broker) throws Exception;
+    }
+
+    public BrokerPool(List<String> addresses, boolean binaryTransport, long probeIntervalMs, int maxConcurrentCalls,
+                      RetryPolicy retryPolicy) {
+        this.binaryTransport = binaryTransport;
+        this.probeIntervalMs = Math.max(50, probeIntervalMs);
+        this.retryPolicy = retryPolicy;
+        for (String address : addresses) {
+            brokers.add(new Broker(address, Math.max(1, maxConcurrentCalls)));
+        }
+        this.prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "broker-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Resolves every broker in parallel and starts probing; fails only if none can be reached
+    public void start() {
+        CompletableFuture.allOf(brokers.stream()
+                .map(broker -> CompletableFuture.runAsync(() -> probe(broker)))
+                .toArray(CompletableFuture[]::new)).join();
+        if (healthyCount() == 0) {
+            throw new RuntimeException("All brokers are unavailable!");
+        }
+        prober.scheduleWithFixedDelay(this::probeAll, probeIntervalMs, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Called once for each broker that goes from healthy to down
+    public void setDownListener(Consumer<Broker> downListener) {
+        this.downListener = downListener;
+    }
+
+    /**
+     * Runs the call on the best broker, moving straight on to the next best if it fails. Errors
+     * raised by the broker's own code ({@link ServerException}) are not failovers and are thrown;
+     * a broker shedding load ({@link ServerBusyException}) is skipped but not marked down.
+     * The deadline is checked between attempts; use {@link #executeAsync} to bound a single call.
+     */
+    public <T> T execute(String description, BrokerCall<T> call) {
+        return execute(description, List.of(), call);
+    }
+
+    // preferred: broker ids to try before any other, empty for none
+    public <T> T execute(String description, List<String> preferred, BrokerCall<T> call) {
+        return execute(description, call, preferred, List.of(), System.nanoTime() + retryPolicy.getDeadlineNanos());
+    }
+
+    // Completes exceptionally with a TimeoutException once the policy's deadline has passed
+    public <T> CompletableFuture<T> executeAsync(String description, BrokerCall<T> call) {
+        return executeAsync(description, List.of(), call);
+    }
+
+    public <T> CompletableFuture<T> executeAsync(String description, List<String> preferred, BrokerCall<T> call) {
+        long deadline = System.nanoTime() + retryPolicy.getDeadlineNanos();
+        return CompletableFuture.supplyAsync(() -> execute(description, call, preferred, List.of(), deadline), callers)
+                .orTimeout(retryPolicy.getDeadlineMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Like {@link #executeAsync}, but if the best broker has not answered within the hedge delay
+     * the call is also sent to the next best one and the first answer wins. Only for reads: the
+     * call may run on two brokers.
+     */
+    public <T> CompletableFuture<T> executeHedgedAsync(String description, BrokerCall<T> call) {
+        return executeHedgedAsync(description, List.of(), call);
+    }
+
+    public <T> CompletableFuture<T> executeHedgedAsync(String description, List<String> preferred, BrokerCall<T> call) {
+        Broker primary = select(List.of(), preferred);
+        if (primary == null || !retryPolicy.isHedging() || healthyCount() < 2) {
+            return executeAsync(description, preferred, call);
+        }
+        long deadline = System.nanoTime() + retryPolicy.getDeadlineNanos();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(2);
+        BiConsumer<T, Throwable> complete = (value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        };
+
+        CompletableFuture.supplyAsync(() -> execute(description, call, preferred, List.of(), deadline), callers)
+                .whenComplete(complete);
+        long hedgeDelay = retryPolicy.hedgeDelayNanos(primary.getLatencyNanos());
+        CompletableFuture.runAsync(() -> {
+            if (result.isDone()) {
+                outstanding.decrementAndGet();
+                return;
+            }
+            // Starts from the next best broker; on failure it fails over like any other request
+            try {
+                complete.accept(execute(description, call, preferred, List.of(primary), deadline), null);
+            } catch (RuntimeException e) {
+                complete.accept(null, e);
+            }
+        }, CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.NANOSECONDS, callers));
+        return result.orTimeout(retryPolicy.getDeadlineMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private <T> T execute(String description, BrokerCall<T> call, List<String> preferred, List<Broker> exclude,
+                          long deadline) {
+        List<Broker> tried = new ArrayList<>(exclude);
+        int attempts = retryPolicy.attemptsFor(brokers.size());
+        Broker broker;
+        while (tried.size() - exclude.size() < attempts && (broker = select(tried, preferred)) != null) {
+            if (System.nanoTime() - deadline >= 0) {
+                throw new RuntimeException(description + " missed its " + retryPolicy.getDeadlineMs() + " ms deadline");
+            }
+            tried.add(broker);
+            broker.inFlight.incrementAndGet();
+            try {
+                acquirePermit(broker, description, deadline);
+                long start = System.nanoTime();
+                try {
+                    T result = call.call(broker);
+                    broker.recordLatency(System.nanoTime() - start);
+                    return result;
+                } catch (ServerBusyException e) {
+                    // Shed by the broker's admission control before running; it is healthy, just full
+                    System.out.println(description + " rejected by busy " + broker.describeId() + ", trying next broker...");
+                } catch (ServerException e) {
+                    if (e.getCause() instanceof ServerBusyException) {
+                        System.out.println(description + " rejected by busy " + broker.describeId() + ", trying next broker...");
+                        continue;
+                    }
+                    throw new RuntimeException(description + " failed on " + broker.brokerId + ": " + e.getCause().getMessage(), e.getCause());
+                } catch (Exception e) {
+                    System.out.println(description + " failed on " + broker.describeId() + ", retrying...");
+                    markDown(broker);
+                } finally {
+                    broker.permits.release();
+                }
+            } finally {
+                broker.inFlight.decrementAndGet();
+            }
+        }
+        throw new RuntimeException(tried.size() > exclude.size()
+                ? description + " failed after " + (tried.size() - exclude.size()) + " attempts"
+                : description + " failed: all brokers are unavailable");
+    }
+
+    // Each concurrent RMI call holds its own socket, so requests beyond the broker's limit wait here
+    private void acquirePermit(Broker broker, String description, long deadline) {
+        try {
+            if (!broker.permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new RuntimeException(description + " missed its " + retryPolicy.getDeadlineMs()
+                        + " ms deadline waiting for " + broker.describeId());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(description + " interrupted", e);
+        }
+    }
+
+    // The broker the next request would go to, or null if none is healthy
+    public Broker best() {
+        return select(List.of(), List.of());
+    }
+
+    public int healthyCount() {
+        int healthy = 0;
+        for (Broker broker : brokers) {
+            if (broker.healthy.get()) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>(brokers.size());
+        for (Broker broker : brokers) {
+            lines.add(String.format("%-8s %-16s %s  ewma %8.1f us  in-flight %d",
+                    broker.describeId(), broker.address, broker.healthy.get() ? "🟢 UP  " : "🔴 DOWN",
+                    broker.getLatencyNanos() / 1000.0, broker.inFlight.get()));
+        }
+        return lines;
+    }
+
+    @Override
+    public void close() {
+        prober.shutdownNow();
+        callers.shutdownNow();
+        for (Broker broker : brokers) {
+            broker.healthy.set(false);
+            broker.closeBinary();
+        }
+    }
+
+    private Broker select(List<Broker> exclude, List<String> preferred) {
+        if (!preferred.isEmpty()) {
+            Broker best = select(exclude, broker -> preferred.contains(broker.brokerId));
+            if (best != null) {
+                return best;
+            }
+        }
+        return select(exclude, broker -> true);
+    }
+
+    private Broker select(List<Broker> exclude, Predicate<Broker> eligible) {
+        Broker best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Broker broker : brokers) {
+            if (!broker.healthy.get() || exclude.contains(broker) || !eligible.test(broker)) {
+                continue;
+            }
+            // Queueing behind in-flight requests costs roughly one latency each
+            double score = broker.getLatencyNanos() * (broker.inFlight.get() + 1);
+            if (score < bestScore) {
+                best = broker;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private void markDown(Broker broker) {
+        if (broker.healthy.compareAndSet(true, false)) {
+            downListener.accept(broker);
+        }
+    }
+
+    private void probeAll() {
+        for (Broker broker : brokers) {
+            probe(broker);
+        }
+    }
+
+    // Healthy brokers are pinged to keep their latency current; down ones are looked up afresh
+    private void probe(Broker broker) {
+        try {
+            if (broker.healthy.get()) {
+                if (broker.binary != null && !broker.binary.isOpen()) {
+                    throw new IOException("binary connection closed");
+                }
+                long start = System.nanoTime();
+                broker.service.isAlive();
+                broker.recordLatency(System.nanoTime() - start);
+                return;
+            }
+            broker.resolve(binaryTransport);
+            System.out.println("Connected to: " + broker.brokerId + " at " + broker.address
+                    + (broker.binary != null ? " (binary transport)" : ""));
+        } catch (Exception e) {
+            if (broker.healthy.get()) {
+                System.out.println("Health check failed on " + broker.describeId() + ": " + e.getMessage());
+                markDown(broker);
+            }
+        }
+    }
+
+    public static final class Broker {
+        private final String address;
+        // Requests running on or waiting for this broker
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Semaphore permits;
+        // Double bits of the latency average in nanoseconds
+        private final AtomicLong latencyNanos = new AtomicLong(Double.doubleToLongBits(1_000_000.0));
+
+        private volatile TradingService service;
+        private volatile BinaryTradingClient binary;
+        private volatile String brokerId;
+        private final AtomicBoolean healthy = new AtomicBoolean();
+
+        private Broker(String address, int maxConcurrentCalls) {
+            this.address = address;
+            this.permits = new Semaphore(maxConcurrentCalls);
+        }
+
+        public TradingService getService() {
+            return service;
+        }
+
+        // Null unless the binary transport is enabled and reachable
+        public BinaryTradingClient getBinary() {
+            return binary;
+        }
+
+        public String getBrokerId() {
+            return brokerId;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public double getLatencyNanos() {
+            return Double.longBitsToDouble(latencyNanos.get());
+        }
+
+        private String describeId() {
+            return brokerId != null ? brokerId : "unknown";
+        }
+
+        private void recordLatency(long nanos) {
+            long current;
+            long next;
+            do {
+                current = latencyNanos.get();
+                double average = Double.longBitsToDouble(current);
+                next = Double.doubleToLongBits(average + EWMA_ALPHA * (nanos - average));
+            } while (!latencyNanos.compareAndSet(current, next));
+        }
+
+        // Only the prober (or start) resolves a broker, and only while it is down
+        private void resolve(boolean binaryTransport) throws Exception {
+            String[] parts = address.split(":");
+            String host = parts[0];
+            int port = Integer.parseInt(parts[1]);
+
+            Registry registry = LocateRegistry.getRegistry(host, port);
+            TradingService resolved = (TradingService) registry.lookup("TradingService");
+            String id = resolved.getBrokerId();
+            // Timed on the now warm connection, so connection setup does not count against the broker
+            long start = System.nanoTime();
+            resolved.isAlive();
+            long latency = System.nanoTime() - start;
+
+            closeBinary();
+            binary = binaryTransport ? new BinaryTradingClient(host, port + BINARY_PORT_OFFSET) : null;
+            service = resolved;
+            brokerId = id;
+            latencyNanos.set(Double.doubleToLongBits(latency));
+            healthy.set(true);
+        }
+
+        private void closeBinary() {
+            BinaryTradingClient current = binary;
+            binary = null;
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+}
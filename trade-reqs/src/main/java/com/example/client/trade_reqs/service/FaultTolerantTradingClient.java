@@ -1,183 +1,585 @@
 package com.example.client.trade_reqs.service;
 
+import com.example.brokerrmi.rmi_stock_exchange.Model.AccountSnapshot;
+import com.example.brokerrmi.rmi_stock_exchange.Model.CandleSeries;
+import com.example.brokerrmi.rmi_stock_exchange.Model.Fill;
+import com.example.brokerrmi.rmi_stock_exchange.Model.MarketDataUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderResult;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderSide;
+import com.example.brokerrmi.rmi_stock_exchange.Model.OrderType;
+import com.example.brokerrmi.rmi_stock_exchange.Model.PartitionMap;
+import com.example.brokerrmi.rmi_stock_exchange.Model.PriceBatch;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradePage;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeRecord;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeRequest;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
 import com.example.brokerrmi.rmi_stock_exchange.broker.TradingService;
 
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.util.Arrays;
-import java.util.Collections;
+import java.rmi.RemoteException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Client-side entry point to the broker network. Every call is routed through a {@link BrokerPool}
+ * to the fastest healthy broker and fails over to the next one without reconnecting; market data
+ * subscriptions stay on one broker and move only when that broker goes down. With a
+ * {@link QuoteCache}, price reads are answered locally while the cached quote is fresh enough, and
+ * a market data subscription to every symbol keeps the cache up to date.
+ * <p>
+ * Against partitioned brokers the client keeps their {@link PartitionMap}: trades go straight to
+ * the symbol's primary, reads to the fastest of its owners, and a full price list is gathered from
+ * every broker's share. The map is fetched again after a probe interval or when a broker goes
+ * down; a stale map costs one forwarding hop on the broker, not a wrong answer.
+ * <p>
+ * Every trade carries an idempotency key, fixed before the first attempt, so a retry on another
+ * broker after a timeout gets the first attempt's result instead of trading twice.
+ */
 public class FaultTolerantTradingClient {
-    private final List<String> brokerAddresses;
-    private TradingService currentBroker;
-    private String currentBrokerId;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long DEFAULT_BATCH_LINGER_MS = 2;
+    private static final long DEFAULT_PROBE_INTERVAL_MS = 1000;
+    private static final int DEFAULT_MAX_CONCURRENT_CALLS = 64;
+    private static final int HISTORY_PAGE_SIZE = 1000;
+    private static final RetryPolicy DEFAULT_RETRY_POLICY = new RetryPolicy(0, 5000, 0);
+
+    private final BrokerPool brokerPool;
+    private final OrderBatcher orderBatcher;
+    private final QuoteCache quoteCache;
+    private volatile MarketDataSubscription subscription;
+    private volatile MarketDataSubscription quoteFeed;
+    private final long partitionRefreshNanos;
+    private final AtomicBoolean refreshingPartitions = new AtomicBoolean();
+    private volatile PartitionMap partitionMap;
+    private volatile long partitionMapFetchedAt;
+    // Keys count up from a random origin, so they never repeat within a client and rarely meet another client's
+    private final AtomicLong idempotencyKeys = new AtomicLong(new SecureRandom().nextLong());
+    // The broker that last answered a trade, order or account call for each client, tried first for its next one
+    private final Map<String, String> clientBrokers = new ConcurrentHashMap<>();
 
     public FaultTolerantTradingClient() {
-        this.brokerAddresses = Arrays.asList(
-                "localhost:1099",
-                "localhost:1100",
-                "localhost:1101"
-        );
+        this("rmi");
     }
 
-    private void connectToBroker(String address) throws Exception {
-        String[] parts = address.split(":");
-        String host = parts[0];
-        int port = Integer.parseInt(parts[1]);
+    public FaultTolerantTradingClient(String transport) {
+        this(transport, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_LINGER_MS);
+    }
 
-        Registry registry = LocateRegistry.getRegistry(host, port);
-        TradingService broker = (TradingService) registry.lookup("TradingService");
+    public FaultTolerantTradingClient(String transport, int batchSize, long batchLingerMs) {
+        this(transport, batchSize, batchLingerMs, DEFAULT_PROBE_INTERVAL_MS);
+    }
 
-        this.currentBroker = broker;
-        this.currentBrokerId = broker.getBrokerId();
-        System.out.println("Connected to: " + currentBrokerId + " at " + address);
+    public FaultTolerantTradingClient(String transport, int batchSize, long batchLingerMs, long probeIntervalMs) {
+        this(transport, batchSize, batchLingerMs, probeIntervalMs, DEFAULT_MAX_CONCURRENT_CALLS, DEFAULT_RETRY_POLICY);
     }
 
-    public void connect() {
-        Collections.shuffle(brokerAddresses); // Load balancing
+    public FaultTolerantTradingClient(String transport, int batchSize, long batchLingerMs, long probeIntervalMs,
+                                      int maxConcurrentCalls, RetryPolicy retryPolicy) {
+        this(transport, batchSize, batchLingerMs, probeIntervalMs, maxConcurrentCalls, retryPolicy, null);
+    }
+
+    // quoteCache: null to send every price read to a broker
+    public FaultTolerantTradingClient(String transport, int batchSize, long batchLingerMs, long probeIntervalMs,
+                                      int maxConcurrentCalls, RetryPolicy retryPolicy, QuoteCache quoteCache) {
+        this.brokerPool = new BrokerPool(ServiceRegistry.getAllBrokers(), "binary".equalsIgnoreCase(transport),
+                probeIntervalMs, maxConcurrentCalls, retryPolicy);
+        this.brokerPool.setDownListener(broker -> {
+            MarketDataSubscription current = subscription;
+            if (current != null) {
+                current.onBrokerDown(broker);
+            }
+            MarketDataSubscription feed = quoteFeed;
+            if (feed != null) {
+                feed.onBrokerDown(broker);
+            }
+            if (partitionMap != null) {
+                refreshPartitionMapAsync();
+            }
+        });
+        this.partitionRefreshNanos = TimeUnit.MILLISECONDS.toNanos(probeIntervalMs);
+        this.orderBatcher = new OrderBatcher(this::executeTrades, batchSize, batchLingerMs);
+        this.quoteCache = quoteCache;
+    }
 
-        for (String address : brokerAddresses) {
+    // Connects to every reachable broker; throws only if none of them answers
+    public void connect() {
+        brokerPool.start();
+        refreshPartitionMap();
+        if (quoteCache != null) {
+            quoteFeed = new MarketDataSubscription(brokerPool, List.of(), quoteCache::update, quoteCache::clear);
             try {
-                connectToBroker(address);
-                return;
-            } catch (Exception e) {
-                System.out.println("Failed to connect to " + address + ": " + e.getMessage());
+                quoteFeed.start();
+            } catch (RuntimeException e) {
+                // Cached quotes still expire after the TTL, they are just not refreshed by pushes
+                System.out.println("Quote cache running without broker updates: " + e.getMessage());
             }
         }
-        throw new RuntimeException("All brokers are unavailable!");
     }
 
     public boolean executeTrade(String operation, String symbol, int quantity, String clientId) {
-        int retries = brokerAddresses.size();
+        try {
+            return brokerPool.execute("Operation", routeOf(symbol, clientId),
+                    sticky(clientId, tradeCall(operation, symbol, quantity, clientId, nextIdempotencyKey())));
+        } finally {
+            invalidateQuote(symbol);
+        }
+    }
 
-        while (retries > 0) {
-            try {
-                switch (operation.toLowerCase()) {
-                    case "buy" -> {
-                        return currentBroker.buyStock(symbol, quantity, clientId);
-                    }
-                    case "sell" -> {
-                        return currentBroker.sellStock(symbol, quantity, clientId);
-                    }
-                    default -> throw new IllegalArgumentException("Unknown operation: " + operation);
-                }
-            } catch (Exception e) {
-                System.out.println("Operation failed on " + currentBrokerId + ", retrying...");
-                connect(); // Reconnect to another broker
-                retries--;
+    // Runs on a virtual thread. Retried after a failure but never hedged: a broker only learns the keys of
+    // trades run elsewhere once they complete, so two attempts in flight at once could both run
+    public CompletableFuture<Boolean> executeTradeAsync(String operation, String symbol, int quantity, String clientId) {
+        return brokerPool.executeAsync("Operation", routeOf(symbol, clientId),
+                        sticky(clientId, tradeCall(operation, symbol, quantity, clientId, nextIdempotencyKey())))
+                .whenComplete((bought, error) -> invalidateQuote(symbol));
+    }
+
+    // Even a failed trade may have run on the broker, so the quote is dropped either way
+    private void invalidateQuote(String symbol) {
+        if (quoteCache != null) {
+            quoteCache.invalidate(symbol);
+        }
+    }
+
+    private long nextIdempotencyKey() {
+        long key;
+        do {
+            key = idempotencyKeys.incrementAndGet();
+        } while (key == 0);
+        return key;
+    }
+
+    // Every attempt sends the same key
+    private static BrokerPool.BrokerCall<Boolean> tradeCall(String operation, String symbol, int quantity, String clientId,
+                                                           long idempotencyKey) {
+        return switch (operation.toLowerCase()) {
+            case "buy" -> broker -> broker.getBinary() != null
+                    ? broker.getBinary().buyStock(symbol, quantity, clientId, idempotencyKey)
+                    : broker.getService().buyStock(symbol, quantity, clientId, idempotencyKey);
+            case "sell" -> broker -> broker.getBinary() != null
+                    ? broker.getBinary().sellStock(symbol, quantity, clientId, idempotencyKey)
+                    : broker.getService().sellStock(symbol, quantity, clientId, idempotencyKey);
+            default -> throw new IllegalArgumentException("Unknown operation: " + operation);
+        };
+    }
+
+    // One round trip for the whole list (one per owner when partitioned); results line up with the requests by index
+    public List<TradeResult> executeTrades(List<TradeRequest> requests) {
+        List<TradeRequest> trades = withIdempotencyKeys(requests);
+        try {
+            PartitionMap map = partitionMap();
+            if (map == null) {
+                return brokerPool.execute("Batch of " + trades.size() + " trades",
+                        broker -> broker.getService().executeTrades(trades));
+            }
+            return executeTradesByOwner(map, trades);
+        } finally {
+            for (TradeRequest trade : trades) {
+                invalidateQuote(trade.getSymbol());
             }
         }
-        throw new RuntimeException("Operation failed after all retries");
     }
 
-    public double getStockPrice(String symbol) {
-        int retries = brokerAddresses.size();
+    // Trades without a key get one here, before the first attempt
+    private List<TradeRequest> withIdempotencyKeys(List<TradeRequest> trades) {
+        List<TradeRequest> keyed = new ArrayList<>(trades.size());
+        for (TradeRequest trade : trades) {
+            keyed.add(trade.getIdempotencyKey() != 0 ? trade : new TradeRequest(trade.getSide(), trade.getSymbol(),
+                    trade.getQuantity(), trade.getClientId(), nextIdempotencyKey()));
+        }
+        return keyed;
+    }
 
-        while (retries > 0) {
-            try {
-                return currentBroker.getPrice(symbol);
-            } catch (Exception e) {
-                System.out.println("Price query failed on " + currentBrokerId + ", retrying...");
-                connect();
-                retries--;
+    private List<TradeResult> executeTradesByOwner(PartitionMap map, List<TradeRequest> trades) {
+        Map<String, List<Integer>> byOwner = new LinkedHashMap<>();
+        for (int i = 0; i < trades.size(); i++) {
+            String symbol = trades.get(i).getSymbol();
+            String owner = symbol != null ? map.primary(symbol) : null;
+            byOwner.computeIfAbsent(owner != null ? owner : "", id -> new ArrayList<>()).add(i);
+        }
+        Map<List<Integer>, CompletableFuture<List<TradeResult>>> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> group : byOwner.entrySet()) {
+            List<TradeRequest> batch = new ArrayList<>(group.getValue().size());
+            for (int position : group.getValue()) {
+                batch.add(trades.get(position));
             }
+            List<String> preferred = group.getKey().isEmpty() ? List.of() : List.of(group.getKey());
+            pending.put(group.getValue(), brokerPool.executeAsync("Batch of " + batch.size() + " trades", preferred,
+                    broker -> broker.getService().executeTrades(batch)));
         }
-        throw new RuntimeException("Price query failed after all retries");
+        TradeResult[] results = new TradeResult[trades.size()];
+        pending.forEach((positions, batchResults) -> {
+            List<TradeResult> done = batchResults.join();
+            for (int j = 0; j < positions.size(); j++) {
+                results[positions.get(j)] = done.get(j);
+            }
+        });
+        return new ArrayList<>(List.of(results));
+    }
+
+    // Queues the trade for the next batch instead of paying a round trip for it alone
+    public CompletableFuture<TradeResult> submitTrade(String operation, String symbol, int quantity, String clientId) {
+        OrderSide side = switch (operation.toLowerCase()) {
+            case "buy" -> OrderSide.BUY;
+            case "sell" -> OrderSide.SELL;
+            default -> throw new IllegalArgumentException("Unknown operation: " + operation);
+        };
+        return orderBatcher.submit(new TradeRequest(side, symbol, quantity, clientId, nextIdempotencyKey()));
+    }
+
+    // Pushes updates for the given symbols (all symbols if empty) instead of polling getPrice
+    public synchronized void subscribe(List<String> symbols, Consumer<MarketDataUpdate> onUpdate) {
+        unsubscribe();
+        MarketDataSubscription created = new MarketDataSubscription(brokerPool, symbols, onUpdate, () -> { });
+        try {
+            created.start();
+        } catch (RuntimeException e) {
+            created.close();
+            throw e;
+        }
+        subscription = created;
+    }
+
+    public synchronized void unsubscribe() {
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
+        }
+    }
+
+    public void close() {
+        unsubscribe();
+        if (quoteFeed != null) {
+            quoteFeed.close();
+        }
+        orderBatcher.close();
+        brokerPool.close();
+    }
+
+    public double getStockPrice(String symbol) {
+        return getStockPrice(symbol, Long.MAX_VALUE);
+    }
+
+    // maxStalenessMs: how old a cached quote may be (the cache TTL at most, 0 = always ask a broker)
+    public double getStockPrice(String symbol, long maxStalenessMs) {
+        Double cached = quoteCache != null ? quoteCache.get(symbol, maxStalenessMs) : null;
+        if (cached != null) {
+            return cached;
+        }
+        long requestedAt = System.nanoTime();
+        double price = brokerPool.execute("Price query", ownersOf(symbol), priceCall(symbol));
+        if (quoteCache != null) {
+            quoteCache.put(symbol, price, requestedAt);
+        }
+        return price;
+    }
+
+    // Hedged: a slow broker is raced against the next best one
+    public CompletableFuture<Double> getStockPriceAsync(String symbol) {
+        Double cached = quoteCache != null ? quoteCache.get(symbol, Long.MAX_VALUE) : null;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long requestedAt = System.nanoTime();
+        CompletableFuture<Double> price = brokerPool.executeHedgedAsync("Price query", ownersOf(symbol), priceCall(symbol));
+        if (quoteCache != null) {
+            price.thenAccept(value -> quoteCache.put(symbol, value, requestedAt));
+        }
+        return price;
+    }
+
+    private static BrokerPool.BrokerCall<Double> priceCall(String symbol) {
+        return broker -> broker.getBinary() != null
+                ? broker.getBinary().getPrice(symbol)
+                : broker.getService().getPrice(symbol);
     }
 
     public Map<String, Double> getAllStocks() {
-        int retries = brokerAddresses.size();
+        return getAllStocks(Long.MAX_VALUE);
+    }
 
-        while (retries > 0) {
-            try {
-                return currentBroker.getAllStocks();
-            } catch (Exception e) {
-                System.out.println("Get all stocks failed on " + currentBrokerId + ", retrying...");
-                connect();
-                retries--;
-            }
+    // maxStalenessMs as for getStockPrice, applied to the last full load
+    public Map<String, Double> getAllStocks(long maxStalenessMs) {
+        Map<String, Double> cached = quoteCache != null ? quoteCache.getAll(maxStalenessMs) : null;
+        if (cached != null) {
+            return cached;
+        }
+        long requestedAt = System.nanoTime();
+        PartitionMap map = partitionMap();
+        Map<String, Double> prices = map == null
+                ? brokerPool.execute("Get all stocks", allStocksCall())
+                : gatherAllStocks(map).join();
+        if (quoteCache != null) {
+            quoteCache.putAll(prices, requestedAt);
         }
-        throw new RuntimeException("Get all stocks failed after all retries");
+        return prices;
     }
 
-    public void registerBroker(String brokerId, TradingService brokerService) {
-        int retries = brokerAddresses.size();
+    public CompletableFuture<Map<String, Double>> getAllStocksAsync() {
+        Map<String, Double> cached = quoteCache != null ? quoteCache.getAll(Long.MAX_VALUE) : null;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long requestedAt = System.nanoTime();
+        PartitionMap map = partitionMap();
+        CompletableFuture<Map<String, Double>> prices = map == null
+                ? brokerPool.executeHedgedAsync("Get all stocks", allStocksCall())
+                : gatherAllStocks(map);
+        if (quoteCache != null) {
+            prices.thenAccept(value -> quoteCache.putAll(value, requestedAt));
+        }
+        return prices;
+    }
 
-        while (retries > 0) {
-            try {
-                currentBroker.registerBroker(brokerId, brokerService);
-                return;
-            } catch (Exception e) {
-                System.out.println("Register broker failed on " + currentBrokerId + ", retrying...");
-                connect();
-                retries--;
+    // One call for any number of symbols, in the order given; a partitioned broker asks the other owners itself
+    public PriceBatch getPrices(Collection<String> symbols) {
+        List<String> requested = new ArrayList<>(symbols);
+        long requestedAt = System.nanoTime();
+        PriceBatch batch = brokerPool.execute("Price batch", broker -> broker.getService().getPrices(requested))
+                .withSymbols(requested.toArray(new String[0]));
+        if (quoteCache != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isListed(i)) {
+                    quoteCache.put(batch.getSymbols()[i], batch.getPrices()[i], requestedAt);
+                }
             }
         }
-        throw new RuntimeException("Register broker failed after all retries");
+        return batch;
     }
 
-    public void updateStock(String symbol, double newPrice, String sourceBrokerId) {
-        int retries = brokerAddresses.size();
+    private static BrokerPool.BrokerCall<Map<String, Double>> allStocksCall() {
+        return broker -> broker.getBinary() != null
+                ? broker.getBinary().getAllStocks()
+                : broker.getService().getAllStocks();
+    }
 
-        while (retries > 0) {
-            try {
-                currentBroker.updateStock(symbol, newPrice, sourceBrokerId);
-                return;
-            } catch (Exception e) {
-                System.out.println("Update stock failed on " + currentBrokerId + ", retrying...");
-                connect();
-                retries--;
+    /**
+     * Each partitioned broker is only current for the symbols it owns, so every member is asked
+     * for its list and a symbol's price is taken from one of its owners where one answered. If a
+     * broker fails, the pool sends its request elsewhere and those symbols come from copies.
+     */
+    private CompletableFuture<Map<String, Double>> gatherAllStocks(PartitionMap map) {
+        List<CompletableFuture<Map.Entry<String, Map<String, Double>>>> replies = new ArrayList<>();
+        for (String brokerId : map.getBrokerIds()) {
+            replies.add(brokerPool.executeAsync("Get all stocks", List.of(brokerId),
+                    broker -> Map.entry(broker.getBrokerId(), allStocksCall().call(broker))));
+        }
+        return CompletableFuture.allOf(replies.toArray(CompletableFuture[]::new)).handle((ignored, error) -> {
+            Map<String, Double> owned = new HashMap<>();
+            Map<String, Double> copies = new HashMap<>();
+            boolean answered = false;
+            for (CompletableFuture<Map.Entry<String, Map<String, Double>>> reply : replies) {
+                if (reply.isCompletedExceptionally()) {
+                    continue;
+                }
+                answered = true;
+                Map.Entry<String, Map<String, Double>> share = reply.join();
+                share.getValue().forEach((symbol, price) -> {
+                    if (map.isOwner(share.getKey(), symbol)) {
+                        owned.put(symbol, price);
+                    } else {
+                        copies.putIfAbsent(symbol, price);
+                    }
+                });
+            }
+            if (!answered) {
+                throw new RuntimeException("Get all stocks failed: no broker answered");
             }
+            copies.forEach(owned::putIfAbsent);
+            return owned;
+        });
+    }
+
+    public OrderResult submitOrder(String symbol, OrderSide side, OrderType type, double price, int quantity,
+                                   String clientId) {
+        try {
+            return brokerPool.execute("Order submission", routeOf(symbol, clientId),
+                    sticky(clientId, broker -> broker.getService().submitOrder(symbol, side, type, price, quantity, clientId)));
+        } finally {
+            invalidateQuote(symbol);
         }
-        throw new RuntimeException("Update stock failed after all retries");
     }
 
-    public void syncStockData(Map<String, Double> stockData) {
-        int retries = brokerAddresses.size();
+    public boolean cancelOrder(String symbol, long orderId, String clientId) {
+        return brokerPool.execute("Cancel", routeOf(symbol, clientId),
+                sticky(clientId, broker -> broker.getService().cancelOrder(symbol, orderId, clientId)));
+    }
 
-        while (retries > 0) {
-            try {
-                currentBroker.syncStockData(stockData);
-                return;
-            } catch (Exception e) {
-                System.out.println("Sync stock data failed on " + currentBrokerId + ", retrying...");
-                connect();
-                retries--;
+    // Fill sequences are numbered by the broker holding the client's account, so every read goes through the same one
+    public List<Fill> getFills(String clientId, long afterSequence) {
+        return brokerPool.execute("Get fills", clientBroker(clientId),
+                sticky(clientId, broker -> broker.getService().getFills(clientId, afterSequence)));
+    }
+
+    public AccountSnapshot getAccount(String clientId) {
+        return brokerPool.execute("Get account", clientBroker(clientId),
+                sticky(clientId, broker -> broker.getService().getAccount(clientId)));
+    }
+
+    // Bars are kept by the broker that runs the symbol's trades, so the call goes to its primary
+    public CandleSeries getCandles(String symbol, long intervalMillis, int count) {
+        return brokerPool.execute("Get candles", primaryOf(symbol),
+                broker -> broker.getService().getCandles(symbol, intervalMillis, count));
+    }
+
+    // History cursors belong to the broker that issued them, so every page of one query is read from the same broker;
+    // a symbol's trades are kept by its home and a client's by the client's, so they are routed like trades
+    public List<TradeRecord> getTrades(String symbol, long fromMillis, long toMillis, int maxTrades) {
+        return brokerPool.execute("Get trades", primaryOf(symbol), broker -> readPages(maxTrades,
+                (cursor, limit) -> broker.getService().getTrades(symbol, fromMillis, toMillis, cursor, limit)));
+    }
+
+    public List<TradeRecord> getClientTrades(String clientId, int maxTrades) {
+        return brokerPool.execute("Get client trades", clientBroker(clientId), sticky(clientId, broker -> readPages(maxTrades,
+                (cursor, limit) -> broker.getService().getClientTrades(clientId, cursor, limit))));
+    }
+
+    @FunctionalInterface
+    private interface PageCall {
+        TradePage read(long cursor, int limit) throws RemoteException;
+    }
+
+    private static List<TradeRecord> readPages(int maxTrades, PageCall call) throws RemoteException {
+        List<TradeRecord> trades = new ArrayList<>();
+        long cursor = 0;
+        while (trades.size() < maxTrades) {
+            TradePage page = call.read(cursor, Math.min(HISTORY_PAGE_SIZE, maxTrades - trades.size()));
+            trades.addAll(page.getTrades());
+            if (page.isLast()) {
+                break;
             }
+            cursor = page.getNextCursor();
         }
-        throw new RuntimeException("Sync stock data failed after all retries");
+        return trades;
+    }
+
+    public void registerBroker(String brokerId, TradingService brokerService) {
+        brokerPool.execute("Register broker", broker -> {
+            broker.getService().registerBroker(brokerId, brokerService);
+            return null;
+        });
+    }
+
+    public void updateStock(String symbol, double newPrice, String sourceBrokerId) {
+        brokerPool.execute("Update stock", broker -> {
+            broker.getService().updateStock(symbol, newPrice, sourceBrokerId);
+            return null;
+        });
+    }
+
+    public void syncStockData(Map<String, Double> stockData) {
+        brokerPool.execute("Sync stock data", broker -> {
+            broker.getService().syncStockData(stockData);
+            return null;
+        });
     }
 
     public boolean isAlive() {
-        int retries = brokerAddresses.size();
+        return brokerPool.execute("Health check", broker -> broker.getService().isAlive());
+    }
 
-        while (retries > 0) {
-            try {
-                return currentBroker.isAlive();
-            } catch (Exception e) {
-                System.out.println("Health check failed on " + currentBrokerId + ", retrying...");
-                connect();
-                retries--;
-            }
+    // The broker the next request would be routed to
+    public String getCurrentBrokerId() {
+        return brokerPool.execute("Get broker ID", broker -> broker.getService().getBrokerId());
+    }
+
+    public List<String> getBrokerStatus() {
+        return brokerPool.describe();
+    }
+
+    public String getPartitionStatus() {
+        PartitionMap map = partitionMap;
+        return map == null
+                ? "not partitioned, every broker holds every symbol"
+                : String.format("epoch %d, %d replicas over %s", map.getEpoch(), map.getReplicas(), map.getBrokerIds());
+    }
+
+    // Picks up the cluster's current ownership; keeps the cached map if no broker answers
+    public void refreshPartitionMap() {
+        try {
+            partitionMap = brokerPool.execute("Partition map", broker -> broker.getService().getPartitionMap());
+        } catch (RuntimeException e) {
+            System.out.println("Could not refresh partition map: " + e.getMessage());
+        } finally {
+            partitionMapFetchedAt = System.nanoTime();
         }
-        throw new RuntimeException("Health check failed after all retries");
     }
 
-    public String getCurrentBrokerId() {
-        int retries = brokerAddresses.size();
+    private void refreshPartitionMapAsync() {
+        if (refreshingPartitions.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("partition-refresh").start(() -> {
+                try {
+                    refreshPartitionMap();
+                } finally {
+                    refreshingPartitions.set(false);
+                }
+            });
+        }
+    }
 
-        while (retries > 0) {
-            try {
-                return currentBroker.getBrokerId();
-            } catch (Exception e) {
-                System.out.println("Get broker ID failed on " + currentBrokerId + ", retrying...");
-                connect();
-                retries--;
-            }
+    // Null when the brokers are not partitioned; refreshed in the background once it is a probe interval old
+    private PartitionMap partitionMap() {
+        PartitionMap map = partitionMap;
+        if (map != null && System.nanoTime() - partitionMapFetchedAt > partitionRefreshNanos) {
+            refreshPartitionMapAsync();
         }
-        throw new RuntimeException("Get broker ID failed after all retries");
+        return map;
+    }
+
+    // Trades and order book calls go to the symbol's primary
+    private List<String> primaryOf(String symbol) {
+        PartitionMap map = partitionMap();
+        String primary = map != null && symbol != null ? map.primary(symbol) : null;
+        return primary != null ? List.of(primary) : List.of();
+    }
+
+    // The symbol's primary when partitioned, otherwise the client's broker, so a client's calls are not spread over
+    // brokers that each forward them on to the account's home
+    private List<String> routeOf(String symbol, String clientId) {
+        List<String> primary = primaryOf(symbol);
+        return primary.isEmpty() ? clientBroker(clientId) : primary;
+    }
+
+    private List<String> clientBroker(String clientId) {
+        String brokerId = clientId != null ? clientBrokers.get(clientId) : null;
+        return brokerId != null ? List.of(brokerId) : List.of();
+    }
+
+    // Remembers which broker answered, so the client's next call starts there; a failover moves it along
+    private <T> BrokerPool.BrokerCall<T> sticky(String clientId, BrokerPool.BrokerCall<T> call) {
+        if (clientId == null) {
+            return call;
+        }
+        return broker -> {
+            T result = call.call(broker);
+            clientBrokers.put(clientId, broker.getBrokerId());
+            return result;
+        };
+    }
+
+    // Reads can go to any owner, since replicas receive every update
+    private List<String> ownersOf(String symbol) {
+        PartitionMap map = partitionMap();
+        return map != null && symbol != null ? map.owners(symbol) : List.of();
+    }
+
+    public String getQuoteCacheStatus() {
+        if (quoteCache == null) {
+            return "disabled";
+        }
+        long hits = quoteCache.getHitCount();
+        long reads = hits + quoteCache.getMissCount();
+        return String.format("%d quotes, ttl %d ms, %d/%d reads served locally (%.1f%%)",
+                quoteCache.size(), quoteCache.getTtlMs(), hits, reads, reads == 0 ? 0.0 : hits * 100.0 / reads);
     }
 
     // Additional utility methods
@@ -223,20 +625,21 @@ public class FaultTolerantTradingClient {
     public void executeMultipleTrades(String operation, String symbol, int quantity, int numberOfTrades) {
         System.out.printf("\n🔄 Executing %d %s operations for %s...%n", numberOfTrades, operation.toUpperCase(), symbol);
 
+        List<CompletableFuture<TradeResult>> results = new ArrayList<>(numberOfTrades);
+        for (int i = 1; i <= numberOfTrades; i++) {
+            results.add(submitTrade(operation, symbol, quantity, "batch-client-" + i));
+        }
+
         int successCount = 0;
         for (int i = 1; i <= numberOfTrades; i++) {
             try {
-                boolean success = executeTrade(operation, symbol, quantity, "batch-client-" + i);
-                if (success) {
+                TradeResult result = results.get(i - 1).join();
+                if (result.isSuccess()) {
                     successCount++;
-                    System.out.printf("   %d/%d: ✅ SUCCESS - %s %d %s%n", i, numberOfTrades, operation.toUpperCase(), quantity, symbol);
+                    System.out.printf("   %d/%d: ✅ SUCCESS - %s %d %s at $%.2f%n", i, numberOfTrades, operation.toUpperCase(), quantity, symbol, result.getPrice());
                 } else {
-                    System.out.printf("   %d/%d: ❌ FAILED - %s %d %s%n", i, numberOfTrades, operation.toUpperCase(), quantity, symbol);
+                    System.out.printf("   %d/%d: ❌ FAILED - %s %d %s (%s)%n", i, numberOfTrades, operation.toUpperCase(), quantity, symbol, result.getMessage());
                 }
-
-                // Small delay to see the replication in action
-                Thread.sleep(100);
-
             } catch (Exception e) {
                 System.out.printf("   %d/%d: 💥 ERROR - %s%n", i, numberOfTrades, e.getMessage());
             }
@@ -0,0 +1,68 @@
+package com.example.client.trade_reqs.service;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.MarketDataUpdate;
+import com.example.brokerrmi.rmi_stock_exchange.broker.MarketDataListener;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Receives pushed market data from the broker and keeps the latest quote per symbol. A sequence
+ * jump within a subscription means a batch was lost; the gap handler is told so it can
+ * resubscribe, which starts over with a fresh snapshot.
+ */
+public class MarketDataSubscriber extends UnicastRemoteObject implements MarketDataListener {
+    private final Consumer<MarketDataUpdate> onUpdate;
+    private final Runnable onGap;
+    private final Map<String, MarketDataUpdate> latest = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private long currentSubscriptionId;
+    private long lastSequence;
+
+    public MarketDataSubscriber(Consumer<MarketDataUpdate> onUpdate, Runnable onGap) throws RemoteException {
+        super();
+        this.onUpdate = onUpdate;
+        this.onGap = onGap;
+    }
+
+    @Override
+    public void onMarketData(long subscriptionId, long sequence, List<MarketDataUpdate> updates) {
+        synchronized (this) {
+            if (subscriptionId != currentSubscriptionId) {
+                if (sequence != 1) {
+                    // Late batch from a subscription that has been replaced
+                    return;
+                }
+                currentSubscriptionId = subscriptionId;
+                lastSequence = 0;
+            }
+            boolean gap = sequence != lastSequence + 1;
+            lastSequence = sequence;
+            if (gap) {
+                onGap.run();
+            }
+        }
+        for (MarketDataUpdate update : updates) {
+            latest.put(update.getSymbol(), update);
+            onUpdate.accept(update);
+        }
+    }
+
+    public MarketDataUpdate getLatest(String symbol) {
+        return latest.get(symbol);
+    }
+
+    public void close() {
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException ignored) {
+            // Already unexported
+        }
+    }
+}
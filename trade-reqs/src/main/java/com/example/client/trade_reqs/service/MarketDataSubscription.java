@@ -0,0 +1,91 @@
+package com.example.client.trade_reqs.service;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.MarketDataUpdate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * One market data subscription made through the broker pool. It stays on the broker it was made
+ * on and moves to the best healthy broker after a sequence gap or when that broker goes down,
+ * starting over with a fresh snapshot; {@code onRestart} runs first, as updates may have been lost.
+ */
+public class MarketDataSubscription {
+    private final BrokerPool brokerPool;
+    private final List<String> symbols;
+    private final MarketDataSubscriber subscriber;
+    private final Runnable onRestart;
+    private volatile BrokerPool.Broker broker;
+    // Guarded by this
+    private long subscriptionId;
+    private boolean closed;
+
+    public MarketDataSubscription(BrokerPool brokerPool, List<String> symbols, Consumer<MarketDataUpdate> onUpdate,
+                                  Runnable onRestart) {
+        this.brokerPool = brokerPool;
+        this.symbols = List.copyOf(symbols);
+        this.onRestart = onRestart;
+        try {
+            this.subscriber = new MarketDataSubscriber(onUpdate, () -> CompletableFuture.runAsync(this::resubscribe));
+        } catch (Exception e) {
+            throw new RuntimeException("Could not export market data listener", e);
+        }
+    }
+
+    public synchronized void start() {
+        subscribeOnBestBroker();
+    }
+
+    public void onBrokerDown(BrokerPool.Broker down) {
+        if (down == broker) {
+            CompletableFuture.runAsync(this::resubscribe);
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (broker != null) {
+            try {
+                broker.getService().unsubscribe(subscriptionId);
+            } catch (Exception e) {
+                // The broker drops the subscription by itself once deliveries fail
+            }
+        }
+        subscriber.close();
+        broker = null;
+        subscriptionId = 0;
+    }
+
+    // After a sequence gap or the loss of its broker, a fresh subscription starts over with a full snapshot
+    private synchronized void resubscribe() {
+        if (closed) {
+            return;
+        }
+        onRestart.run();
+        BrokerPool.Broker previousBroker = broker;
+        long previous = subscriptionId;
+        try {
+            subscribeOnBestBroker();
+        } catch (Exception e) {
+            System.out.println("Market data resubscribe failed: " + e.getMessage());
+            return;
+        }
+        try {
+            previousBroker.getService().unsubscribe(previous);
+        } catch (Exception e) {
+            // Gone with its broker
+        }
+    }
+
+    private void subscribeOnBestBroker() {
+        subscriptionId = brokerPool.execute("Subscribe", candidate -> {
+            long id = candidate.getService().subscribe(subscriber, symbols);
+            broker = candidate;
+            return id;
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.client.trade_reqs.service;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeRequest;
+import com.example.brokerrmi.rmi_stock_exchange.Model.TradeResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups trades submitted from any thread into batches for one broker round trip each. A batch is
+ * sent once it reaches the size limit or the linger window since its first trade has passed;
+ * while a batch is in flight the next one keeps filling, so batches grow with load.
+ */
+public class OrderBatcher implements AutoCloseable {
+    private final Function<List<TradeRequest>, List<TradeResult>> sender;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingTrade> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public OrderBatcher(Function<List<TradeRequest>, List<TradeResult>> sender, int maxBatchSize, long lingerMs) {
+        this.sender = sender;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+        // Bounded so producers slow down instead of queueing without limit when the broker lags
+        this.queue = new LinkedBlockingQueue<>(this.maxBatchSize * 16);
+        this.flusher = new Thread(this::flushLoop, "order-batcher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public CompletableFuture<TradeResult> submit(TradeRequest trade) {
+        PendingTrade pending = new PendingTrade(trade);
+        if (!running) {
+            pending.future.completeExceptionally(new IllegalStateException("Order batcher is closed"));
+            return pending.future;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(lingerNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingTrade pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("Order batcher is closed"));
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingTrade> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    // Take whatever is already queued before waiting on the linger window
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingTrade next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Closing: send what has been collected so far
+            }
+            if (!batch.isEmpty()) {
+                send(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<PendingTrade> batch) {
+        List<TradeRequest> trades = new ArrayList<>(batch.size());
+        for (PendingTrade pending : batch) {
+            trades.add(pending.trade);
+        }
+        try {
+            List<TradeResult> results = sender.apply(trades);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    private static final class PendingTrade {
+        private final TradeRequest trade;
+        private final CompletableFuture<TradeResult> future = new CompletableFuture<>();
+
+        private PendingTrade(TradeRequest trade) {
+            this.trade = trade;
+        }
+    }
+}
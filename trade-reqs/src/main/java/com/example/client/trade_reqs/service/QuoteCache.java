@@ -0,0 +1,140 @@
+package com.example.client.trade_reqs.service;
+
+import com.example.brokerrmi.rmi_stock_exchange.Model.MarketDataUpdate;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Near cache of broker quotes. At most {@code maxEntries} symbols are kept, least recently used
+ * first out, and a quote is only served while it is younger than the TTL, counted from when the
+ * broker last confirmed it: by answering a read, or by pushing an update on the client's market
+ * data feed. A result that was requested before a newer push or invalidation arrived never
+ * overwrites it, so an own trade is always read back from the broker.
+ */
+public class QuoteCache {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Guarded by this; access order makes the eldest entry the least recently used
+    private final LinkedHashMap<String, Quote> quotes;
+    // True while every symbol of the last full load is still cached
+    private boolean complete;
+    private long completeSince;
+    private long lastInvalidated = Long.MIN_VALUE;
+
+    public QuoteCache(int maxEntries, long ttlMs) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.quotes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Quote> eldest) {
+                if (size() > QuoteCache.this.maxEntries) {
+                    complete = false;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public long getTtlMs() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    // The cached price, or null if missing or older than maxAgeMs (capped at the TTL)
+    public synchronized Double get(String symbol, long maxAgeMs) {
+        Quote quote = quotes.get(symbol);
+        if (quote == null || quote.invalidated || System.nanoTime() - quote.confirmedAt > maxAgeNanos(maxAgeMs)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return quote.price;
+    }
+
+    // Every symbol's price if the last full load is complete and young enough, otherwise null
+    public synchronized Map<String, Double> getAll(long maxAgeMs) {
+        if (!complete || System.nanoTime() - completeSince > maxAgeNanos(maxAgeMs)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        Map<String, Double> prices = new HashMap<>(quotes.size() * 2);
+        quotes.forEach((symbol, quote) -> prices.put(symbol, quote.price));
+        return prices;
+    }
+
+    // requestedAt: System.nanoTime() taken before the read was sent
+    public synchronized void put(String symbol, double price, long requestedAt) {
+        Quote quote = quotes.get(symbol);
+        if (quote == null || quote.confirmedAt < requestedAt) {
+            quotes.put(symbol, new Quote(price, requestedAt, false));
+        }
+    }
+
+    public synchronized void putAll(Map<String, Double> prices, long requestedAt) {
+        prices.forEach((symbol, price) -> put(symbol, price, requestedAt));
+        if (prices.size() <= maxEntries && lastInvalidated < requestedAt) {
+            complete = true;
+            completeSince = requestedAt;
+        }
+    }
+
+    // Pushed by the broker; unknown symbols are added so the full view stays complete. An invalidated
+    // symbol waits for a read instead, since the push may have been sent before this client's trade
+    public synchronized void update(MarketDataUpdate update) {
+        Quote quote = quotes.get(update.getSymbol());
+        if (quote == null || !quote.invalidated) {
+            quotes.put(update.getSymbol(), new Quote(update.getPrice(), System.nanoTime(), false));
+        }
+    }
+
+    // The symbol changed by this client: its next read must go to the broker
+    public synchronized void invalidate(String symbol) {
+        long now = System.nanoTime();
+        quotes.put(symbol, new Quote(Double.NaN, now, true));
+        complete = false;
+        lastInvalidated = now;
+    }
+
+    // Updates may have been missed (feed gap or broker change), so nothing cached can be trusted
+    public synchronized void clear() {
+        quotes.clear();
+        complete = false;
+        lastInvalidated = System.nanoTime();
+    }
+
+    public synchronized int size() {
+        return quotes.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private long maxAgeNanos(long maxAgeMs) {
+        return Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxAgeMs)));
+    }
+
+    private static final class Quote {
+        private final double price;
+        private final long confirmedAt;
+        private final boolean invalidated;
+
+        private Quote(double price, long confirmedAt, boolean invalidated) {
+            this.price = price;
+            this.confirmedAt = confirmedAt;
+            this.invalidated = invalidated;
+        }
+    }
+}
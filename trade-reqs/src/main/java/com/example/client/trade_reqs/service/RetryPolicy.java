@@ -0,0 +1,42 @@
+package com.example.client.trade_reqs.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How hard a request tries before giving up, shared by the blocking and asynchronous client
+ * calls: at most {@code maxAttempts} brokers (0 = every broker once), all within one deadline.
+ * Reads may also be hedged: if the first broker has not answered after the hedge delay, the same
+ * read is sent to the next best broker and whichever answers first wins.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long deadlineMs;
+    private final long hedgeDelayMs;
+
+    // hedgeDelayMs: 0 = twice the first broker's average latency, negative = never hedge
+    public RetryPolicy(int maxAttempts, long deadlineMs, long hedgeDelayMs) {
+        this.maxAttempts = maxAttempts;
+        this.deadlineMs = deadlineMs;
+        this.hedgeDelayMs = hedgeDelayMs;
+    }
+
+    public int attemptsFor(int brokerCount) {
+        return maxAttempts > 0 ? Math.min(maxAttempts, brokerCount) : brokerCount;
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    public long getDeadlineNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+    }
+
+    public boolean isHedging() {
+        return hedgeDelayMs >= 0;
+    }
+
+    public long hedgeDelayNanos(double brokerLatencyNanos) {
+        return hedgeDelayMs > 0 ? TimeUnit.MILLISECONDS.toNanos(hedgeDelayMs) : (long) (2 * brokerLatencyNanos);
+    }
+}